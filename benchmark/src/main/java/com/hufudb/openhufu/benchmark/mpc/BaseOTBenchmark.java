@@ -0,0 +1,111 @@
+package com.hufudb.openhufu.benchmark.mpc;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import com.google.common.collect.ImmutableList;
+import com.hufudb.openhufu.mpc.ProtocolExecutor;
+import com.hufudb.openhufu.mpc.ot.PublicKeyOT;
+import com.hufudb.openhufu.mpc.ot.X25519OT;
+import com.hufudb.openhufu.rpc.Party;
+import com.hufudb.openhufu.rpc.Rpc;
+import com.hufudb.openhufu.rpc.grpc.OpenHuFuOwnerInfo;
+import com.hufudb.openhufu.rpc.local.LocalRpcManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * OTs per second of the base OTs, the Elgamal based PublicKeyOT and X25519OT,
+ * each invocation runs one 1-out-of-2^exp OT between two parties over a LocalRpc
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BaseOTBenchmark {
+  @Param({"1", "2"})
+  public int exp;
+
+  private List<byte[]> secrets;
+  private Rpc rpc0;
+  private Rpc rpc1;
+  private PublicKeyOT pkSender;
+  private PublicKeyOT pkReceiver;
+  private X25519OT x25519Sender;
+  private X25519OT x25519Receiver;
+  private ExecutorService service;
+  private long taskId;
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+        .include(BaseOTBenchmark.class.getSimpleName())
+        .build();
+    new Runner(opt).run();
+  }
+
+  @Setup
+  public void setUp() {
+    List<Party> parties = ImmutableList.of(new OpenHuFuOwnerInfo(0, "localhost:0"),
+        new OpenHuFuOwnerInfo(1, "localhost:1"));
+    LocalRpcManager manager = new LocalRpcManager(parties);
+    rpc0 = manager.getRpc(0);
+    rpc1 = manager.getRpc(1);
+    rpc0.connect();
+    rpc1.connect();
+    pkSender = new PublicKeyOT(rpc0);
+    pkReceiver = new PublicKeyOT(rpc1);
+    x25519Sender = new X25519OT(rpc0);
+    x25519Receiver = new X25519OT(rpc1);
+    ImmutableList.Builder<byte[]> builder = ImmutableList.builder();
+    for (int i = 0; i < (1 << exp); ++i) {
+      builder.add(("secret" + i).getBytes());
+    }
+    secrets = builder.build();
+    service = Executors.newSingleThreadExecutor();
+  }
+
+  @TearDown
+  public void tearDown() {
+    service.shutdown();
+    rpc0.disconnect();
+    rpc1.disconnect();
+  }
+
+  private byte[] transfer(ProtocolExecutor sender, ProtocolExecutor receiver) throws Exception {
+    final long tid = ++taskId;
+    final int sel = (int) (tid % secrets.size());
+    Future<Object> senderRes =
+        service.submit(() -> sender.run(tid, ImmutableList.of(0, 1), secrets));
+    byte[] result = (byte[]) receiver.run(tid, ImmutableList.of(0, 1), sel, exp);
+    senderRes.get();
+    return result;
+  }
+
+  @Benchmark
+  public byte[] publicKeyOT() throws Exception {
+    return transfer(pkSender, pkReceiver);
+  }
+
+  @Benchmark
+  public byte[] x25519OT() throws Exception {
+    return transfer(x25519Sender, x25519Receiver);
+  }
+}
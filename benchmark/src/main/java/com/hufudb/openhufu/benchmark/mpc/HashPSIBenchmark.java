@@ -0,0 +1,103 @@
+package com.hufudb.openhufu.benchmark.mpc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import com.google.common.collect.ImmutableList;
+import com.hufudb.openhufu.mpc.codec.HashFunction;
+import com.hufudb.openhufu.mpc.codec.OpenHuFuCodec;
+import com.hufudb.openhufu.mpc.psi.HashPSI;
+import com.hufudb.openhufu.rpc.Party;
+import com.hufudb.openhufu.rpc.Rpc;
+import com.hufudb.openhufu.rpc.grpc.OpenHuFuOwnerInfo;
+import com.hufudb.openhufu.rpc.local.LocalRpcManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Time of one HashPSI between two parties over a LocalRpc, both parties hold size 8-byte keys
+ * and half of them are in the intersection
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+public class HashPSIBenchmark {
+  @Param({"1000000", "10000000"})
+  public int size;
+
+  @Param({"MD5", "SHA256"})
+  public HashFunction hash;
+
+  private List<byte[]> keys0;
+  private List<byte[]> keys1;
+  private Rpc rpc0;
+  private Rpc rpc1;
+  private HashPSI psi0;
+  private HashPSI psi1;
+  private ExecutorService service;
+  private long taskId;
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+        .include(HashPSIBenchmark.class.getSimpleName())
+        .build();
+    new Runner(opt).run();
+  }
+
+  @Setup
+  public void setUp() {
+    List<Party> parties = ImmutableList.of(new OpenHuFuOwnerInfo(0, "localhost:0"),
+        new OpenHuFuOwnerInfo(1, "localhost:1"));
+    LocalRpcManager manager = new LocalRpcManager(parties);
+    rpc0 = manager.getRpc(0);
+    rpc1 = manager.getRpc(1);
+    rpc0.connect();
+    rpc1.connect();
+    psi0 = new HashPSI(rpc0);
+    psi1 = new HashPSI(rpc1);
+    keys0 = new ArrayList<>(size);
+    keys1 = new ArrayList<>(size);
+    for (long i = 0; i < size; ++i) {
+      keys0.add(OpenHuFuCodec.encodeLong(i));
+      keys1.add(OpenHuFuCodec.encodeLong(i + size / 2));
+    }
+    service = Executors.newSingleThreadExecutor();
+  }
+
+  @TearDown
+  public void tearDown() {
+    service.shutdown();
+    rpc0.disconnect();
+    rpc1.disconnect();
+  }
+
+  @Benchmark
+  public int[] intersect() throws Exception {
+    final long tid = ++taskId;
+    Future<int[]> other = service.submit(
+        () -> psi1.intersect(tid, ImmutableList.of(0, 1), keys1, hash.getId()));
+    int[] result = psi0.intersect(tid, ImmutableList.of(0, 1), keys0, hash.getId());
+    other.get();
+    return result;
+  }
+}
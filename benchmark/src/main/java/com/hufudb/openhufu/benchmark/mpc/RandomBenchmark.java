@@ -0,0 +1,84 @@
+package com.hufudb.openhufu.benchmark.mpc;
+
+import java.util.concurrent.TimeUnit;
+import com.hufudb.openhufu.mpc.random.AESRandom;
+import com.hufudb.openhufu.mpc.random.BasicRandom;
+import com.hufudb.openhufu.mpc.random.OpenHuFuRandom;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Cost of the random values used by the protocols with BasicRandom (SecureRandom for each value)
+ * and AESRandom (buffered AES-CTR), the bulk benchmarks generate size values
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class RandomBenchmark {
+  @Param({"BasicRandom", "AESRandom"})
+  public String impl;
+
+  @Param({"1024"})
+  public int size;
+
+  private OpenHuFuRandom random;
+  private long[] longs;
+  private byte[] bytes;
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+        .include(RandomBenchmark.class.getSimpleName())
+        .build();
+    new Runner(opt).run();
+  }
+
+  @Setup
+  public void setUp() {
+    random = impl.equals("AESRandom") ? new AESRandom() : new BasicRandom();
+    longs = new long[size];
+    bytes = new byte[size * Long.BYTES];
+  }
+
+  @Benchmark
+  public long nextLong() {
+    return random.nextLong();
+  }
+
+  @Benchmark
+  public boolean nextBoolean() {
+    return random.nextBoolean();
+  }
+
+  @Benchmark
+  public byte[] randomBytes16() {
+    return random.randomBytes(16);
+  }
+
+  @Benchmark
+  public long[] nextLongs() {
+    random.nextLongs(longs);
+    return longs;
+  }
+
+  @Benchmark
+  public byte[] nextBytes() {
+    random.nextBytes(bytes);
+    return bytes;
+  }
+}
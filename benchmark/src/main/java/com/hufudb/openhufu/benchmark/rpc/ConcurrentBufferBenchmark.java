@@ -0,0 +1,80 @@
+package com.hufudb.openhufu.benchmark.rpc;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import com.hufudb.openhufu.rpc.concurrent.ConcurrentBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compare the mailbox based ConcurrentBuffer with the former ring buffer,
+ * each thread puts a batch of packets and pops them in reverse order
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+public class ConcurrentBufferBenchmark {
+  // a ring of 1 << 20 slots, so that a preempted thread rarely blocks the ring on wrap-around
+  private static final int RING_OFFSET = 20;
+
+  @Param({"1", "8"})
+  public int batch;
+
+  private final AtomicLong keyGenerator = new AtomicLong();
+  private ConcurrentBuffer<Long, Long> mailbox;
+  private RingBuffer<Long, Long> ring;
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+        .include(ConcurrentBufferBenchmark.class.getSimpleName())
+        .build();
+    new Runner(opt).run();
+  }
+
+  @Setup
+  public void setUp() {
+    mailbox = new ConcurrentBuffer<>();
+    ring = new RingBuffer<>(RING_OFFSET);
+  }
+
+  @Benchmark
+  public void mailbox(Blackhole bh) {
+    long base = keyGenerator.getAndAdd(batch);
+    for (long i = 0; i < batch; ++i) {
+      mailbox.put(base + i, i);
+    }
+    for (long i = batch - 1; i >= 0; --i) {
+      bh.consume(mailbox.blockingPop(base + i));
+    }
+  }
+
+  @Benchmark
+  public void ring(Blackhole bh) {
+    long base = keyGenerator.getAndAdd(batch);
+    for (long i = 0; i < batch; ++i) {
+      ring.put(base + i, i);
+    }
+    for (long i = batch - 1; i >= 0; --i) {
+      bh.consume(ring.blockingPop(base + i));
+    }
+  }
+}
@@ -34,6 +34,9 @@ public enum ErrorCode {
   // data type error
   DATA_TYPE_NOT_SUPPORT(40001, "data type: {} not support"),
 
+  // protocol error
+  PROTOCOL_FAILED(50001, "protocol failed in {}"),
+
   SETUP_FAILED(90001, "setup failed"),
   ;
 
@@ -6,6 +6,7 @@ import com.hufudb.openhufu.data.schema.TableSchema;
 import com.hufudb.openhufu.rpc.grpc.OpenHuFuOwnerInfo;
 import com.hufudb.openhufu.rpc.Party;
 import com.hufudb.openhufu.proto.ServiceGrpc;
+import com.hufudb.openhufu.proto.DataPacket.RpcMetricsProto;
 import com.hufudb.openhufu.proto.OpenHuFuData.DataSetProto;
 import com.hufudb.openhufu.proto.OpenHuFuData.SchemaProto;
 import com.hufudb.openhufu.proto.OpenHuFuData.TableSchemaListProto;
@@ -92,6 +93,19 @@ public class OwnerClient {
     return new EmptyIterator<DataSetProto>();
   }
 
+  /**
+   * get the rpc metrics of the owner, clear them if reset is true
+   */
+  public RpcMetricsProto getMetrics(boolean reset) {
+    try {
+      return blockingStub
+          .getMetrics(GeneralRequest.newBuilder().setValue(reset ? "reset" : "").build());
+    } catch (StatusRuntimeException e) {
+      LOG.error("RPC failed in getMetrics: {}", e.getStatus());
+      return RpcMetricsProto.getDefaultInstance();
+    }
+  }
+
   public String getEndpoint() {
     return endpoint;
   }
@@ -15,6 +15,8 @@ import com.hufudb.openhufu.plan.Plan;
 import com.hufudb.openhufu.plan.RootPlan;
 import com.hufudb.openhufu.plan.UnaryPlan;
 import com.hufudb.openhufu.proto.OpenHuFuPlan.Expression;
+import com.hufudb.openhufu.proto.OpenHuFuPlan.JoinCondition;
+import com.hufudb.openhufu.proto.OpenHuFuPlan.JoinType;
 import com.hufudb.openhufu.proto.OpenHuFuPlan.OperatorType;
 import com.hufudb.openhufu.rewriter.Rewriter;
 
@@ -37,9 +39,32 @@ public class BasicRewriter implements Rewriter {
 
   @Override
   public Plan rewriteBinary(BinaryPlan binary) {
+    if (isCountOnly(binary)) {
+      // owners compute the size of the join with PSI cardinality instead of joining the rows
+      binary.setJoinInfo(binary.getJoinCond().toBuilder().setCountOnly(true).build());
+    }
     return binary;
   }
 
+  /**
+   * only COUNT(*) over an inner equi-join, without filter, group, sort or limit on the join
+   */
+  static boolean isCountOnly(BinaryPlan binary) {
+    JoinCondition joinCond = binary.getJoinCond();
+    if (joinCond == null || !joinCond.getType().equals(JoinType.INNER)
+        || joinCond.hasCondition() || joinCond.getLeftKeyCount() == 0) {
+      return false;
+    }
+    if (binary.getAggExps().isEmpty() || !binary.getGroups().isEmpty()
+        || !binary.getWhereExps().isEmpty() || !binary.getOrders().isEmpty()
+        || binary.getFetch() != 0 || binary.getOffset() != 0) {
+      return false;
+    }
+    return binary.getAggExps().stream()
+        .allMatch(exp -> exp.getOpType().equals(OperatorType.AGG_FUNC)
+            && exp.getI32() == AggFuncType.COUNT.getId() && exp.getInCount() == 0);
+  }
+
   @Override
   public Plan rewriteUnary(UnaryPlan unary) {
     return unary;
@@ -2,6 +2,7 @@ package com.hufudb.openhufu.core.sql.plan;
 
 import com.hufudb.openhufu.core.client.OpenHuFuClient;
 import com.hufudb.openhufu.core.client.OwnerClient;
+import com.hufudb.openhufu.expression.ExpressionUtils;
 import java.util.ArrayList;
 import java.util.List;
 import com.hufudb.openhufu.plan.EmptyPlan;
@@ -69,8 +70,11 @@ public class PlanUtils {
       builder.addAllOrder(plan.getOrders());
     }
     List<Pair<OwnerClient, QueryPlanProto>> ownerPlan = generateOwnerPlans(client, plan.getChildren().get(0));
-    // todo: generate task info for each expression
-    TaskInfo.Builder taskInfo = TaskInfo.newBuilder().setTaskId(client.getTaskId());
+    // reserve a task id for each aggregate function, they run in parallel on the owners
+    final int aggFunctions = ExpressionUtils.countAggregateFunctions(plan.getAggExps());
+    TaskInfo.Builder taskInfo = TaskInfo.newBuilder()
+        .setTaskId(client.getTaskId(1 + aggFunctions))
+        .setReservedTasks(aggFunctions);
     for (Pair<OwnerClient, QueryPlanProto> p : ownerPlan) {
       taskInfo.addParties(p.getLeft().getParty().getPartyId());
     }
@@ -102,7 +106,11 @@ public class PlanUtils {
     List<Pair<OwnerClient, QueryPlanProto>> leftPlan = generateOwnerPlans(client, left);
     List<Pair<OwnerClient, QueryPlanProto>> rightPlan = generateOwnerPlans(client, right);
     List<Pair<OwnerClient, QueryPlanProto>> ownerPlan = new ArrayList<>();
-    TaskInfo.Builder taskInfo = TaskInfo.newBuilder().setTaskId(client.getTaskId());
+    // reserve a task id for each pair of left and right owners
+    TaskInfo.Builder taskInfo = TaskInfo.newBuilder()
+        .setTaskId(client.getTaskId(1 + leftPlan.size() * rightPlan.size()))
+        .setLeftPartyCount(leftPlan.size())
+        .setReservedTasks(leftPlan.size() * rightPlan.size());
     for (Pair<OwnerClient, QueryPlanProto> p : leftPlan) {
       taskInfo.addParties(p.getLeft().getParty().getPartyId());
     }
@@ -0,0 +1,96 @@
+package com.hufudb.openhufu.core.rewriter;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import com.google.common.collect.ImmutableList;
+import com.hufudb.openhufu.expression.AggFuncType;
+import com.hufudb.openhufu.expression.ExpressionFactory;
+import com.hufudb.openhufu.plan.BinaryPlan;
+import com.hufudb.openhufu.plan.LeafPlan;
+import com.hufudb.openhufu.proto.OpenHuFuData.ColumnType;
+import com.hufudb.openhufu.proto.OpenHuFuData.Modifier;
+import com.hufudb.openhufu.proto.OpenHuFuPlan.Expression;
+import com.hufudb.openhufu.proto.OpenHuFuPlan.JoinCondition;
+import com.hufudb.openhufu.proto.OpenHuFuPlan.JoinType;
+import com.hufudb.openhufu.proto.OpenHuFuPlan.OperatorType;
+import org.junit.Test;
+
+public class BasicRewriterTest {
+  static final Expression COUNT_ALL = ExpressionFactory.createAggFunc(ColumnType.LONG,
+      Modifier.PUBLIC, AggFuncType.COUNT.getId(), ImmutableList.of());
+
+  static Expression inputRef(int ref) {
+    return ExpressionFactory.createInputRef(ref, ColumnType.LONG, Modifier.PUBLIC);
+  }
+
+  static JoinCondition.Builder equiJoin(JoinType type) {
+    return JoinCondition.newBuilder().setType(type).setModifier(Modifier.PUBLIC).addLeftKey(0)
+        .addRightKey(0);
+  }
+
+  // SELECT COUNT(*) FROM l JOIN r ON l.k = r.k
+  static BinaryPlan countJoin() {
+    BinaryPlan binary = new BinaryPlan(new LeafPlan(), new LeafPlan());
+    binary.setJoinInfo(equiJoin(JoinType.INNER).build());
+    binary.setAggExps(ImmutableList.of(COUNT_ALL));
+    return binary;
+  }
+
+  @Test
+  public void testCountOnly() {
+    assertTrue(BasicRewriter.isCountOnly(countJoin()));
+    BinaryPlan binary = countJoin();
+    binary.setAggExps(ImmutableList.of(COUNT_ALL, COUNT_ALL));
+    assertTrue(BasicRewriter.isCountOnly(binary));
+    // the rewriter marks the join condition
+    BinaryPlan rewritten = (BinaryPlan) new BasicRewriter(null).rewriteBinary(countJoin());
+    assertTrue(rewritten.getJoinCond().getCountOnly());
+  }
+
+  @Test
+  public void testNotCountOnly() {
+    // with a filter
+    BinaryPlan binary = countJoin();
+    binary.setWhereExps(ImmutableList.of(ExpressionFactory.createBinaryOperator(OperatorType.GT,
+        ColumnType.BOOLEAN, inputRef(0), ExpressionFactory.createLiteral(ColumnType.LONG, 3L))));
+    assertFalse(BasicRewriter.isCountOnly(binary));
+    // with a group
+    binary = countJoin();
+    binary.setGroups(ImmutableList.of(0));
+    assertFalse(BasicRewriter.isCountOnly(binary));
+    // with other aggregates
+    binary = countJoin();
+    binary.setAggExps(ImmutableList.of(COUNT_ALL, ExpressionFactory.createAggFunc(
+        ColumnType.LONG, Modifier.PUBLIC, AggFuncType.SUM.getId(),
+        ImmutableList.of(inputRef(1)))));
+    assertFalse(BasicRewriter.isCountOnly(binary));
+    binary = countJoin();
+    binary.setAggExps(ImmutableList.of(ExpressionFactory.createAggFunc(ColumnType.LONG,
+        Modifier.PUBLIC, AggFuncType.COUNT.getId(), ImmutableList.of(inputRef(1)))));
+    assertFalse(BasicRewriter.isCountOnly(binary));
+    // without aggregates
+    binary = countJoin();
+    binary.setAggExps(ImmutableList.of());
+    assertFalse(BasicRewriter.isCountOnly(binary));
+    // with a limit
+    binary = countJoin();
+    binary.setFetch(10);
+    assertFalse(BasicRewriter.isCountOnly(binary));
+    // outer joins
+    for (JoinType type : ImmutableList.of(JoinType.LEFT, JoinType.RIGHT, JoinType.OUTER,
+        JoinType.SEMI)) {
+      binary = countJoin();
+      binary.setJoinInfo(equiJoin(type).build());
+      assertFalse(BasicRewriter.isCountOnly(binary));
+    }
+    // theta join
+    binary = countJoin();
+    binary.setJoinInfo(equiJoin(JoinType.INNER).setCondition(ExpressionFactory
+        .createBinaryOperator(OperatorType.GT, ColumnType.BOOLEAN, inputRef(0), inputRef(1)))
+        .build());
+    assertFalse(BasicRewriter.isCountOnly(binary));
+    // the rewriter leaves the join condition unmarked
+    BinaryPlan rewritten = (BinaryPlan) new BasicRewriter(null).rewriteBinary(binary);
+    assertFalse(rewritten.getJoinCond().getCountOnly());
+  }
+}
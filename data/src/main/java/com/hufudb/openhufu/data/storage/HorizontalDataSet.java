@@ -4,14 +4,14 @@ import java.util.List;
 import com.hufudb.openhufu.data.schema.Schema;
 
 /**
- * Horizontal combination of multiple @ProtoDataSet
+ * Horizontal combination of multiple @MaterializedDataSet with the same schema
  */
 public class HorizontalDataSet implements MaterializedDataSet {
   final Schema schema;
-  final List<ProtoDataSet> slices;
+  final List<? extends MaterializedDataSet> slices;
   final int rowCount;
 
-  public HorizontalDataSet(List<ProtoDataSet> dataSets) {
+  public HorizontalDataSet(List<? extends MaterializedDataSet> dataSets) {
     assert dataSets.size() > 0;
     this.schema = dataSets.get(0).getSchema();
     this.slices = dataSets;
@@ -12,6 +12,8 @@ public enum ProtocolType {
   BOARDCAST("BOARDCAST", 1, true),
   STREAM("STREAM", 2, true),
   PK_OT("PUBLIC_KEY_BASED_OT", 10, true),
+  EXT_OT("IKNP_OT_EXTENSION", 11, true),
+  X25519_OT("X25519_OT", 12, true),
   BEAVER_TRIPLE("BEAVER_TRIPLE", 20, true),
   GMW("GMW", 100, true),
   SS("SS", 101, true),
@@ -1,11 +1,11 @@
 package com.hufudb.openhufu.mpc;
 
-import com.hufudb.openhufu.mpc.random.BasicRandom;
+import com.hufudb.openhufu.mpc.random.AESRandom;
 import com.hufudb.openhufu.mpc.random.OpenHuFuRandom;
 import com.hufudb.openhufu.rpc.Rpc;
 
 public abstract class RpcProtocolExecutor implements ProtocolExecutor {
-    protected static final OpenHuFuRandom random = new BasicRandom();
+    protected static final OpenHuFuRandom random = new AESRandom();
   
     final protected Rpc rpc;
     final protected ProtocolType type;
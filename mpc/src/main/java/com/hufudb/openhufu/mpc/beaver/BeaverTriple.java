@@ -0,0 +1,96 @@
+package com.hufudb.openhufu.mpc.beaver;
+
+import java.util.List;
+import com.hufudb.openhufu.mpc.ProtocolException;
+import com.hufudb.openhufu.mpc.ProtocolType;
+import com.hufudb.openhufu.mpc.RpcProtocolExecutor;
+import com.hufudb.openhufu.mpc.ot.ExtensionOT;
+import com.hufudb.openhufu.rpc.Rpc;
+
+/**
+ * Boolean Beaver triple generation with OT extension
+ *   Participants: A and B (A < B)
+ *   A picks random bits a_A, b_A, r_A and B picks a_B, b_B, r_B for each triple,
+ *   c = (a_A ^ a_B) & (b_A ^ b_B) needs the cross terms a_A & b_B and a_B & b_A
+ *   Step1: A sends (r_A, r_A ^ a_A) to B with bit OTs of ExtensionOT, B selects with b_B
+ *          and gets r_A ^ a_A & b_B
+ *   Step2: B sends (r_B, r_B ^ a_B) to A in the same way, A gets r_B ^ a_B & b_A
+ *   Step3: c_A = a_A & b_A ^ r_A ^ (r_B ^ a_B & b_A), c_B = a_B & b_B ^ r_B ^ (r_A ^ a_A & b_B)
+ *   The OTs of step 1 and step 2 use the taskId and extraInfo of the generation
+ *   The ExtensionOT is the one of the rpc, two ExtensionOTs on an rpc send the same base OT
+ *   packets and mix up their setups
+ */
+public class BeaverTriple extends RpcProtocolExecutor {
+  final ExtensionOT otExecutor;
+
+  public BeaverTriple(Rpc rpc, ExtensionOT otExecutor) {
+    super(rpc, ProtocolType.BEAVER_TRIPLE);
+    this.otExecutor = otExecutor;
+  }
+
+  long[] randomBits(int words) {
+    long[] bits = new long[words];
+    random.nextLongs(bits);
+    return bits;
+  }
+
+  // r_own, the own share of a_own & b_other
+  long[] sendCrossTerm(long taskId, int otherId, long[] a, int num, long extraInfo)
+      throws ProtocolException {
+    long[] r = randomBits(a.length);
+    long[] ra = new long[a.length];
+    for (int i = 0; i < a.length; ++i) {
+      ra[i] = r[i] ^ a[i];
+    }
+    otExecutor.sendBits(taskId, otherId, r, ra, num, extraInfo);
+    return r;
+  }
+
+  // r_other ^ a_other & b_own, the own share of a_other & b_own
+  long[] receiveCrossTerm(long taskId, int otherId, long[] b, int num, long extraInfo)
+      throws ProtocolException {
+    return otExecutor.receiveBits(taskId, otherId, b, num, extraInfo);
+  }
+
+  /**
+   * generate num triples with the other party, both parties call it with the same arguments
+   */
+  public BooleanTriples generate(long taskId, int otherId, int num, long extraInfo)
+      throws ProtocolException {
+    final int words = (num + 63) / 64;
+    long[] a = randomBits(words);
+    long[] b = randomBits(words);
+    long[] sent;
+    long[] received;
+    if (ownId < otherId) {
+      sent = sendCrossTerm(taskId, otherId, a, num, extraInfo);
+      received = receiveCrossTerm(taskId, otherId, b, num, extraInfo);
+    } else {
+      received = receiveCrossTerm(taskId, otherId, b, num, extraInfo);
+      sent = sendCrossTerm(taskId, otherId, a, num, extraInfo);
+    }
+    long[] c = new long[words];
+    for (int i = 0; i < words; ++i) {
+      c[i] = (a[i] & b[i]) ^ sent[i] ^ received[i];
+    }
+    LOG.debug("{} generates {} triples with Party [{}]", rpc.ownParty(), num, otherId);
+    return new BooleanTriples(num, a, b, c);
+  }
+
+  /**
+   * @param parties {A, B}
+   * @param args[0] int number of triples
+   * @param args[1] long extraInfo (optional)
+   * @return BooleanTriples, the local shares
+   */
+  @Override
+  public Object run(long taskId, List<Integer> parties, Object... args) throws ProtocolException {
+    assert parties.size() == 2;
+    int otherId = parties.get(0) == ownId ? parties.get(1) : parties.get(0);
+    long extraInfo = 0;
+    if (args.length > 1) {
+      extraInfo = ((Number) args[1]).longValue();
+    }
+    return generate(taskId, otherId, (int) args[0], extraInfo);
+  }
+}
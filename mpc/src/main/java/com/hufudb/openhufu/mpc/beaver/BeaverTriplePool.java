@@ -0,0 +1,373 @@
+package com.hufudb.openhufu.mpc.beaver;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import com.hufudb.openhufu.mpc.ProtocolException;
+import com.hufudb.openhufu.rpc.Rpc;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounded pools of Boolean triples shared by the tasks of a rpc, one pool for each peer.
+ * The owner of the pools closes them when it shuts down, which stops the producer threads.
+ * Triples are numbered in the order they are generated within an epoch of the pool.
+ * A task on the smaller party (A) reserves a range of triples and tells B the start of the range,
+ * the start carries the epoch of A in its high bits. Then both parties take the same range, which
+ * blocks until the range is generated. Batches are dropped once all of their triples are taken,
+ * or once they are more than capacity triples behind the end of the ranges taken, so a range which
+ * is reserved but never taken (e.g. its task is cancelled) does not keep its batches forever, and
+ * a take of such a stale range fails.
+ * A producer thread of each pool generates triples in batches in the background:
+ *   both parties generate batch k of epoch e with BeaverTriple
+ *     taskId: BACKGROUND_TASK_ID - e, extraInfo: POOL_FLAG + k
+ *   a party generates batches only after its first take of the epoch, and stays capacity triples
+ *   ahead of the end of the ranges taken, both parties take the same ranges so they keep pace
+ *   without signals, and a pool without tasks does not wait on the peer
+ * Epochs are decided by A:
+ *   A starts from a random epoch, and moves to the next epoch when a generation fails
+ *   B moves to the epoch of a range when it is newer than its own
+ *   the batches and the ranges of the old epoch are dropped, and their takes fail
+ *   invalidate drops the pool of a peer, call it when the peer is added again (e.g. after a
+ *   restart), the pool of B then follows the epoch of A whatever it is, it returns after the
+ *   producer stops, so invalidate the ExtensionOT sessions of the peer after the pool
+ */
+public class BeaverTriplePool {
+  private static final Logger LOG = LoggerFactory.getLogger(BeaverTriplePool.class);
+  public static final int DEFAULT_BATCH_SIZE = 1 << 14;
+  public static final int DEFAULT_CAPACITY = 1 << 18;
+  static final long BACKGROUND_TASK_ID = Long.MAX_VALUE;
+  static final long POOL_FLAG = 1L << 50;
+  // a range start is epoch << EPOCH_SHIFT | index
+  static final int EPOCH_SHIFT = 40;
+  static final long INDEX_MASK = (1L << EPOCH_SHIFT) - 1;
+  static final long NO_EPOCH = -1;
+  // bound of waiting for a producer to stop, it stops once its receive is interrupted
+  static final long STOP_TIMEOUT_MS = 10000;
+
+  final Rpc rpc;
+  final BeaverTriple generator;
+  final int batchSize;
+  final long capacity;
+  final ConcurrentMap<Integer, PeerPool> pools;
+  volatile boolean closed;
+
+  public BeaverTriplePool(Rpc rpc, BeaverTriple generator, int batchSize, long capacity) {
+    this.rpc = rpc;
+    this.generator = generator;
+    this.batchSize = batchSize;
+    this.capacity = capacity;
+    this.pools = new ConcurrentHashMap<>();
+    this.closed = false;
+  }
+
+  PeerPool getPool(int peerId) throws ProtocolException {
+    if (closed) {
+      throw new ProtocolException("BeaverTriplePool is closed");
+    }
+    return pools.computeIfAbsent(peerId, id -> {
+      PeerPool pool = new PeerPool(id);
+      pool.start();
+      return pool;
+    });
+  }
+
+  /**
+   * reserve num triples with peer, only the smaller party of the pair reserves
+   * @return the start of the range
+   */
+  public long reserve(int peerId, int num) throws ProtocolException {
+    if (rpc.ownParty().getPartyId() > peerId) {
+      throw new ProtocolException("Triples are reserved by the party with smaller id");
+    }
+    return getPool(peerId).reserve(num);
+  }
+
+  /**
+   * take triples [start, start + num) with peer, block until they are generated
+   */
+  public BooleanTriples take(int peerId, long start, int num) throws ProtocolException {
+    return getPool(peerId).take(start, num);
+  }
+
+  // number of generated triples which are not reserved yet, for the smaller party
+  public long available(int peerId) throws ProtocolException {
+    return getPool(peerId).available();
+  }
+
+  /**
+   * drop the pool with peer, the waiting takes fail, and the next task starts a new pool,
+   * return after the producer of the pool stops
+   */
+  public void invalidate(int peerId) {
+    PeerPool pool = pools.remove(peerId);
+    if (pool != null) {
+      pool.close();
+      LOG.debug("{} drops triples with Party [{}]", rpc.ownParty(), peerId);
+    }
+  }
+
+  public void close() {
+    closed = true;
+    pools.values().forEach(PeerPool::close);
+    pools.clear();
+  }
+
+  static class Batch {
+    final BooleanTriples triples;
+    int taken;
+
+    Batch(BooleanTriples triples) {
+      this.triples = triples;
+      this.taken = 0;
+    }
+  }
+
+  class PeerPool implements Runnable {
+    final int peerId;
+    final boolean allocator;
+    final Map<Long, Batch> batches;
+    final Thread producer;
+    long epoch;
+    // batches generated in the epoch
+    long produced;
+    // triples reserved in the epoch, on A
+    long reserved;
+    // end of the ranges taken in the epoch, batches are generated after the first take
+    long demand;
+    // batches below it are dropped as stale
+    long expired;
+    // begins of the takes in progress, with their counts
+    final TreeMap<Long, Integer> taking;
+    boolean started;
+    boolean generating;
+    boolean stopped;
+    // generation of the epoch failed on B, wait for a newer epoch from A
+    ProtocolException failure;
+
+    PeerPool(int peerId) {
+      this.peerId = peerId;
+      this.allocator = rpc.ownParty().getPartyId() < peerId;
+      this.batches = new HashMap<>();
+      // a random epoch does not reuse the task ids of the pool before a restart
+      this.epoch = allocator ? ThreadLocalRandom.current().nextLong(1L << 20) : NO_EPOCH;
+      this.produced = 0;
+      this.reserved = 0;
+      this.demand = 0;
+      this.expired = 0;
+      this.taking = new TreeMap<>();
+      this.started = false;
+      this.generating = false;
+      this.stopped = false;
+      this.failure = null;
+      this.producer = new Thread(this,
+          String.format("beaver-triple-%d-%d", rpc.ownParty().getPartyId(), peerId));
+      this.producer.setDaemon(true);
+    }
+
+    void start() {
+      producer.start();
+    }
+
+    void close() {
+      synchronized (this) {
+        stopped = true;
+        notifyAll();
+      }
+      producer.interrupt();
+      if (Thread.currentThread() == producer) {
+        return;
+      }
+      try {
+        producer.join(STOP_TIMEOUT_MS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      if (producer.isAlive()) {
+        LOG.warn("Producer of triples with Party [{}] does not stop in {} ms", peerId,
+            STOP_TIMEOUT_MS);
+      }
+    }
+
+    synchronized long available() {
+      return produced * batchSize - reserved;
+    }
+
+    // drop the batches and the ranges of the current epoch
+    synchronized void reset(long newEpoch) {
+      LOG.info("{} moves triples with Party [{}] from epoch {} to {}", rpc.ownParty(), peerId,
+          epoch, newEpoch);
+      epoch = newEpoch;
+      batches.clear();
+      produced = 0;
+      reserved = 0;
+      demand = 0;
+      expired = 0;
+      started = false;
+      failure = null;
+      notifyAll();
+      if (generating && Thread.currentThread() != producer) {
+        // stop the generation of the old epoch
+        producer.interrupt();
+      }
+    }
+
+    synchronized long reserve(int num) throws ProtocolException {
+      checkState(epoch);
+      long start = epoch << EPOCH_SHIFT | reserved;
+      reserved += num;
+      return start;
+    }
+
+    void checkState(long e) throws ProtocolException {
+      if (closed || stopped) {
+        throw new ProtocolException("BeaverTriplePool is closed");
+      }
+      if (e != epoch) {
+        throw new ProtocolException(String.format(
+            "Triples of epoch %d with Party [%d] are dropped, now in epoch %d", e, peerId, epoch));
+      }
+      if (failure != null) {
+        throw new ProtocolException("Triple generation with Party [" + peerId + "] failed",
+            failure);
+      }
+    }
+
+    synchronized BooleanTriples take(long start, int num) throws ProtocolException {
+      final long e = start >>> EPOCH_SHIFT;
+      final long begin = start & INDEX_MASK;
+      if (!allocator && e > epoch) {
+        // A has moved to a new epoch
+        reset(e);
+      }
+      checkState(e);
+      started = true;
+      demand = Math.max(demand, begin + num);
+      taking.merge(begin, 1, Integer::sum);
+      try {
+        dropStale();
+        notifyAll();
+        return copy(e, begin, num);
+      } finally {
+        taking.computeIfPresent(begin, (b, c) -> c > 1 ? c - 1 : null);
+      }
+    }
+
+    BooleanTriples copy(long e, long begin, int num) throws ProtocolException {
+      int words = (num + 63) / 64;
+      BooleanTriples out =
+          new BooleanTriples(num, new long[words], new long[words], new long[words]);
+      int done = 0;
+      while (done < num) {
+        long idx = begin + done;
+        long k = idx / batchSize;
+        int offset = (int) (idx % batchSize);
+        while (produced <= k) {
+          try {
+            wait();
+          } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new ProtocolException("Interrupted when waiting for triples", ie);
+          }
+          checkState(e);
+        }
+        Batch batch = batches.get(k);
+        if (batch == null) {
+          throw new ProtocolException(
+              String.format("Triples [%d, %d) are taken or stale", begin, begin + num));
+        }
+        int n = Math.min(batchSize - offset, num - done);
+        out.copyFrom(batch.triples, offset, done, n);
+        batch.taken += n;
+        if (batch.taken >= batchSize) {
+          batches.remove(k);
+        }
+        done += n;
+      }
+      return out;
+    }
+
+    // drop the batches which end more than capacity triples behind demand, except those of the
+    // takes in progress
+    void dropStale() {
+      long limit = demand - capacity;
+      if (!taking.isEmpty()) {
+        limit = Math.min(limit, taking.firstKey());
+      }
+      long horizon = limit / batchSize;
+      if (horizon > expired) {
+        final long h = horizon;
+        int before = batches.size();
+        batches.keySet().removeIf(k -> k < h);
+        if (batches.size() < before) {
+          LOG.debug("{} drops {} stale batches of triples with Party [{}]", rpc.ownParty(),
+              before - batches.size(), peerId);
+        }
+        expired = horizon;
+      }
+    }
+
+    boolean needBatch() {
+      return started && failure == null && produced * batchSize < demand + capacity;
+    }
+
+    @Override
+    public void run() {
+      while (true) {
+        final long e;
+        final long k;
+        synchronized (this) {
+          while (!closed && !stopped && !needBatch()) {
+            try {
+              wait();
+            } catch (InterruptedException ie) {
+              // left by a reset after the generation returned, or by close
+            }
+          }
+          if (closed || stopped) {
+            break;
+          }
+          // clear an interrupt left by a reset, so it does not fail the next generation
+          Thread.interrupted();
+          e = epoch;
+          k = produced;
+          generating = true;
+        }
+        BooleanTriples triples = null;
+        ProtocolException error = null;
+        try {
+          triples = generator.generate(BACKGROUND_TASK_ID - e, peerId, batchSize, POOL_FLAG + k);
+        } catch (ProtocolException ex) {
+          error = ex;
+        }
+        synchronized (this) {
+          generating = false;
+          if (closed || stopped) {
+            break;
+          }
+          if (e != epoch) {
+            // reset during the generation
+            continue;
+          }
+          if (error == null) {
+            batches.put(k, new Batch(triples));
+            produced = k + 1;
+            notifyAll();
+          } else {
+            LOG.error("Fail to generate triples of epoch {} with Party [{}]", e, peerId, error);
+            if (allocator) {
+              reset(e + 1);
+            } else {
+              failure = error;
+              notifyAll();
+            }
+          }
+        }
+      }
+      LOG.debug("Stop generating triples with Party [{}]", peerId);
+    }
+  }
+}
@@ -0,0 +1,111 @@
+package com.hufudb.openhufu.mpc.beaver;
+
+/**
+ * Local shares of Boolean multiplication triples (a, b, c), c = a & b after the shares are xor-ed,
+ * triple i is bit i % 64 of word i / 64
+ */
+public class BooleanTriples {
+  final int size;
+  final long[] a;
+  final long[] b;
+  final long[] c;
+
+  public BooleanTriples(int size, long[] a, long[] b, long[] c) {
+    this.size = size;
+    this.a = a;
+    this.b = b;
+    this.c = c;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean getA(int i) {
+    return getBit(a, i);
+  }
+
+  public boolean getB(int i) {
+    return getBit(b, i);
+  }
+
+  public boolean getC(int i) {
+    return getBit(c, i);
+  }
+
+  /**
+   * triples [from, from + 64) packed in a long, the bits after the last triple are undefined
+   */
+  public long getAWord(int from) {
+    return getBits(a, from);
+  }
+
+  public long getBWord(int from) {
+    return getBits(b, from);
+  }
+
+  public long getCWord(int from) {
+    return getBits(c, from);
+  }
+
+  public long[] getA() {
+    return a;
+  }
+
+  public long[] getB() {
+    return b;
+  }
+
+  public long[] getC() {
+    return c;
+  }
+
+  /**
+   * copy of triples [from, from + len)
+   */
+  public BooleanTriples slice(int from, int len) {
+    int words = (len + 63) / 64;
+    BooleanTriples out = new BooleanTriples(len, new long[words], new long[words], new long[words]);
+    out.copyFrom(this, from, 0, len);
+    return out;
+  }
+
+  // triples [from, from + len) of src to [to, to + len) of this, the target bits must be 0
+  void copyFrom(BooleanTriples src, int from, int to, int len) {
+    copyBits(src.a, from, a, to, len);
+    copyBits(src.b, from, b, to, len);
+    copyBits(src.c, from, c, to, len);
+  }
+
+  static boolean getBit(long[] bits, int i) {
+    return (bits[i >>> 6] & (1L << i)) != 0;
+  }
+
+  // 64 bits of src starting from bit from
+  static long getBits(long[] src, int from) {
+    int w = from >>> 6;
+    if (w >= src.length) {
+      return 0;
+    }
+    int shift = from & 63;
+    long bits = src[w] >>> shift;
+    if (shift != 0 && w + 1 < src.length) {
+      bits |= src[w + 1] << (64 - shift);
+    }
+    return bits;
+  }
+
+  static void copyBits(long[] src, int from, long[] dst, int to, int len) {
+    int done = 0;
+    while (done < len) {
+      int offset = (to + done) & 63;
+      int n = Math.min(64 - offset, len - done);
+      long bits = getBits(src, from + done);
+      if (n < 64) {
+        bits &= (1L << n) - 1;
+      }
+      dst[(to + done) >>> 6] |= bits << offset;
+      done += n;
+    }
+  }
+}
@@ -0,0 +1,159 @@
+package com.hufudb.openhufu.mpc.bristol;
+
+import java.util.Arrays;
+
+/**
+ * Build circuits in code instead of parsing Bristol files, wire i of an operand is bit i of its
+ * little endian encoding (see OpenHuFuCodec)
+ */
+final class CircuitBuilder {
+  final int in1;
+  final int in2;
+  int wireNum;
+  int gateNum;
+  int[] ins1;
+  int[] ins2;
+  int[] outs;
+  byte[] types;
+
+  CircuitBuilder(int in1, int in2) {
+    this.in1 = in1;
+    this.in2 = in2;
+    this.wireNum = in1 + in2;
+    this.gateNum = 0;
+    this.ins1 = new int[64];
+    this.ins2 = new int[64];
+    this.outs = new int[64];
+    this.types = new byte[64];
+  }
+
+  // wire of bit i of the input of the first party
+  int input1(int i) {
+    return i;
+  }
+
+  // wire of bit i of the input of the second party
+  int input2(int i) {
+    return in1 + i;
+  }
+
+  private int gate(int a, int b, GateType type) {
+    if (gateNum == outs.length) {
+      ins1 = Arrays.copyOf(ins1, gateNum * 2);
+      ins2 = Arrays.copyOf(ins2, gateNum * 2);
+      outs = Arrays.copyOf(outs, gateNum * 2);
+      types = Arrays.copyOf(types, gateNum * 2);
+    }
+    ins1[gateNum] = a;
+    ins2[gateNum] = b;
+    outs[gateNum] = wireNum;
+    types[gateNum] = (byte) type.getId();
+    gateNum++;
+    return wireNum++;
+  }
+
+  int and(int a, int b) {
+    return gate(a, b, GateType.AND);
+  }
+
+  int xor(int a, int b) {
+    return gate(a, b, GateType.XOR);
+  }
+
+  int not(int a) {
+    return gate(a, 0, GateType.NOT);
+  }
+
+  /**
+   * renumber the wires so that the outputs are the last wires, as required by Bristol format,
+   * an output which is an input or another output is copied by two NOT gates
+   */
+  CompiledCircuit build(int... outputs) {
+    boolean[] used = new boolean[wireNum + 2 * outputs.length];
+    outputs = outputs.clone();
+    for (int i = 0; i < outputs.length; ++i) {
+      if (outputs[i] < in1 + in2 || used[outputs[i]]) {
+        outputs[i] = not(not(outputs[i]));
+      }
+      used[outputs[i]] = true;
+    }
+    final int outStart = wireNum - outputs.length;
+    int[] wireMap = new int[wireNum];
+    for (int w = 0; w < in1 + in2; ++w) {
+      wireMap[w] = w;
+    }
+    for (int i = 0; i < outputs.length; ++i) {
+      wireMap[outputs[i]] = outStart + i;
+    }
+    int next = in1 + in2;
+    for (int g = 0; g < gateNum; ++g) {
+      if (!used[outs[g]]) {
+        wireMap[outs[g]] = next++;
+      }
+    }
+    int[] newIns1 = new int[gateNum];
+    int[] newIns2 = new int[gateNum];
+    int[] newOuts = new int[gateNum];
+    for (int g = 0; g < gateNum; ++g) {
+      newIns1[g] = wireMap[ins1[g]];
+      newIns2[g] = wireMap[ins2[g]];
+      newOuts[g] = wireMap[outs[g]];
+    }
+    return CompiledCircuit.layered(wireNum, in1, in2, outputs.length, newIns1, newIns2, newOuts,
+        Arrays.copyOf(types, gateNum));
+  }
+
+  /**
+   * x < y of bits-bit unsigned integers, x from the first party and y from the second party,
+   * the borrow of x - y is rippled with one AND gate for each bit: c' = MAJ(~x, y, c)
+   */
+  static CompiledCircuit lessThan(int bits) {
+    CircuitBuilder builder = new CircuitBuilder(bits, bits);
+    int c = builder.and(builder.not(builder.input1(0)), builder.input2(0));
+    for (int i = 1; i < bits; ++i) {
+      int x = builder.input1(i);
+      int y = builder.input2(i);
+      int p = builder.not(builder.xor(x, c));
+      int q = builder.xor(y, c);
+      c = builder.xor(c, builder.and(p, q));
+    }
+    return builder.build(c);
+  }
+
+  /**
+   * x == y of bits-bit integers, the equal bits are reduced by a tree of AND gates
+   */
+  static CompiledCircuit equal(int bits) {
+    CircuitBuilder builder = new CircuitBuilder(bits, bits);
+    int[] level = new int[bits];
+    for (int i = 0; i < bits; ++i) {
+      level[i] = builder.not(builder.xor(builder.input1(i), builder.input2(i)));
+    }
+    for (int size = bits; size > 1; size = (size + 1) / 2) {
+      for (int i = 0; i < size / 2; ++i) {
+        level[i] = builder.and(level[2 * i], level[2 * i + 1]);
+      }
+      if (size % 2 == 1) {
+        level[size / 2] = level[size - 1];
+      }
+    }
+    return builder.build(level[0]);
+  }
+
+  /**
+   * (s ^ t) ? x : y of bits-bit integers, the first party gives x and s, the second party gives
+   * y and t, i.e. the selection bit is XOR shared (e.g. the output of a comparison),
+   * s and t are bit `bits` of the inputs, one layer of bits AND gates: y ^ (sel & (x ^ y))
+   */
+  static CompiledCircuit mux(int bits) {
+    CircuitBuilder builder = new CircuitBuilder(bits + 1, bits + 1);
+    int sel = builder.xor(builder.input1(bits), builder.input2(bits));
+    int[] outputs = new int[bits];
+    for (int i = 0; i < bits; ++i) {
+      int x = builder.input1(i);
+      int y = builder.input2(i);
+      outputs[i] = builder.xor(y, builder.and(sel, builder.xor(x, y)));
+    }
+    return builder.build(outputs);
+  }
+}
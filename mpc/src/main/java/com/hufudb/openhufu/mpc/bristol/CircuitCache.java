@@ -0,0 +1,136 @@
+package com.hufudb.openhufu.mpc.bristol;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.Set;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cache of compiled circuits on disk, as files in the binary format of CompiledCircuit under
+ * $OPENHUFU_ROOT/cache/circuit (or java.io.tmpdir/openhufu/circuit if OPENHUFU_ROOT is not set).
+ * java.io.tmpdir is shared with other users, so its directories are created with permission 0700,
+ * and they are refused (no cache) unless they are owned by the current user with permission 0700.
+ * A file is named by the circuit and a version of its source, it is mapped to read, and written
+ * to a temporary file then moved, so concurrent owners never read a partial file.
+ * Any error of the cache falls back to compiling the circuit.
+ */
+final class CircuitCache {
+  static final Logger LOG = LoggerFactory.getLogger(CircuitCache.class);
+
+  static final Set<PosixFilePermission> OWNER_ONLY = PosixFilePermissions.fromString("rwx------");
+
+  private CircuitCache() {}
+
+  // resolved once, so an unsafe directory is reported once
+  private static class DefaultDir {
+    static final Path DIR = resolveDefaultDir();
+  }
+
+  /**
+   * the cache directory, null if there is no safe one
+   */
+  static Path defaultDir() {
+    return DefaultDir.DIR;
+  }
+
+  static Path resolveDefaultDir() {
+    String root = System.getenv("OPENHUFU_ROOT");
+    if (root != null) {
+      return Paths.get(root, "cache", "circuit");
+    }
+    Path base = Paths.get(System.getProperty("java.io.tmpdir"), "openhufu");
+    Path dir = base.resolve("circuit");
+    return privateDir(base) && privateDir(dir) ? dir : null;
+  }
+
+  /**
+   * create dir with permission 0700, or check that the existing dir is a directory (not a link)
+   * owned by the current user with permission 0700
+   */
+  static boolean privateDir(Path dir) {
+    try {
+      Files.createDirectory(dir, PosixFilePermissions.asFileAttribute(OWNER_ONLY));
+    } catch (FileAlreadyExistsException e) {
+      // checked below
+    } catch (IOException | UnsupportedOperationException e) {
+      LOG.warn("Fail to create {}, compiled circuits are not cached: {}", dir, e.getMessage());
+      return false;
+    }
+    try {
+      PosixFileAttributes attrs =
+          Files.readAttributes(dir, PosixFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+      UserPrincipal user = dir.getFileSystem().getUserPrincipalLookupService()
+          .lookupPrincipalByName(System.getProperty("user.name"));
+      if (attrs.isDirectory() && attrs.owner().equals(user)
+          && attrs.permissions().equals(OWNER_ONLY)) {
+        return true;
+      }
+      LOG.warn("{} is not private to {}, compiled circuits are not cached", dir, user.getName());
+    } catch (IOException | UnsupportedOperationException e) {
+      LOG.warn("Fail to check {}, compiled circuits are not cached: {}", dir, e.getMessage());
+    }
+    return false;
+  }
+
+  static Path fileOf(Path dir, String name, long version) {
+    return dir.resolve(String.format("%s-%d-%x.bin", name, CompiledCircuit.VERSION, version));
+  }
+
+  static CompiledCircuit load(Path dir, String name, long version,
+      Supplier<CompiledCircuit> compiler) {
+    if (dir == null) {
+      return compiler.get();
+    }
+    final Path file = fileOf(dir, name, version);
+    if (Files.isRegularFile(file)) {
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+        return CompiledCircuit
+            .fromByteBuffer(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+      } catch (IOException | IllegalArgumentException e) {
+        LOG.warn("Fail to read compiled circuit {}, compile it again: {}", file, e.getMessage());
+      }
+    }
+    CompiledCircuit circuit = compiler.get();
+    store(dir, file, circuit);
+    return circuit;
+  }
+
+  static void store(Path dir, Path file, CompiledCircuit circuit) {
+    Path tmp = null;
+    try {
+      Files.createDirectories(dir);
+      tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+      try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+        ByteBuffer buffer = circuit.toByteBuffer();
+        while (buffer.hasRemaining()) {
+          channel.write(buffer);
+        }
+      }
+      Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      LOG.debug("Cache compiled circuit in {}", file);
+    } catch (IOException | UnsupportedOperationException e) {
+      LOG.warn("Fail to cache compiled circuit in {}: {}", file, e.getMessage());
+      if (tmp != null) {
+        try {
+          Files.deleteIfExists(tmp);
+        } catch (IOException ignored) {
+          // the temporary file is left
+        }
+      }
+    }
+  }
+}
@@ -1,19 +1,42 @@
 package com.hufudb.openhufu.mpc.bristol;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.io.ByteStreams;
 
+/**
+ * Circuits evaluated by GMW, each is compiled and cached (see CircuitCache) on first use,
+ * so owners never running GMW load nothing.
+ * A circuit either comes from a Bristol file under resources, versioned by the CRC of the file,
+ * or is built in code by CircuitBuilder, versioned by BUILDER_VERSION.
+ */
 public enum CircuitType {
   ADD_32("ADD_32", "bristol/adder_32bit.txt", 1),
   ADD_64("ADD_64", "bristol/adder_64bit.txt", 2),
   LT_32("LT_32", "bristol/comparator_32bit_signed_lt.txt", 10),
-  LTE_32("LTE_32", "bristol/comparator_32bit_signed_lteq.txt", 11);
+  LTE_32("LTE_32", "bristol/comparator_32bit_signed_lteq.txt", 11),
+  LT_64("LT_64", () -> CircuitBuilder.lessThan(64), 12),
+  EQ_32("EQ_32", () -> CircuitBuilder.equal(32), 20),
+  EQ_64("EQ_64", () -> CircuitBuilder.equal(64), 21),
+  MUX_32("MUX_32", () -> CircuitBuilder.mux(32), 30),
+  MUX_64("MUX_64", () -> CircuitBuilder.mux(64), 31);
+
+  // bump when a circuit of CircuitBuilder changes
+  static final long BUILDER_VERSION = 1;
 
   private static final ImmutableMap<Integer, CircuitType> MAP;
 
   private final String name;
-  private BristolFile bristol;
+  private final String path;
+  private final Supplier<CompiledCircuit> builder;
   private final int id;
+  private volatile CompiledCircuit circuit;
+  private volatile BristolFile bristol;
 
   static {
     final ImmutableMap.Builder<Integer, CircuitType> builder = ImmutableMap.builder();
@@ -25,8 +48,15 @@ public enum CircuitType {
 
   CircuitType(String name, String path, int id) {
     this.name = name;
-    InputStream inputStream = BristolFile.class.getClassLoader().getResourceAsStream(path);
-    this.bristol = BristolFile.fromStream(inputStream);
+    this.path = path;
+    this.builder = null;
+    this.id = id;
+  }
+
+  CircuitType(String name, Supplier<CompiledCircuit> builder, int id) {
+    this.name = name;
+    this.path = null;
+    this.builder = builder;
     this.id = id;
   }
 
@@ -42,8 +72,61 @@ public enum CircuitType {
     return name;
   }
 
+  private byte[] readResource() {
+    try (InputStream inputStream =
+        BristolFile.class.getClassLoader().getResourceAsStream(path)) {
+      if (inputStream == null) {
+        throw new IllegalStateException("Bristol file " + path + " not found");
+      }
+      return ByteStreams.toByteArray(inputStream);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Fail to read Bristol file " + path, e);
+    }
+  }
+
+  /**
+   * the parsed Bristol file, only for circuits from a Bristol file, GMW uses getCircuit instead
+   */
   public BristolFile getBristol() {
-    return bristol;
+    if (path == null) {
+      throw new UnsupportedOperationException(name + " is not from a Bristol file");
+    }
+    BristolFile result = bristol;
+    if (result == null) {
+      synchronized (this) {
+        result = bristol;
+        if (result == null) {
+          result = BristolFile.fromStream(new ByteArrayInputStream(readResource()));
+          bristol = result;
+        }
+      }
+    }
+    return result;
+  }
+
+  public CompiledCircuit getCircuit() {
+    CompiledCircuit result = circuit;
+    if (result == null) {
+      synchronized (this) {
+        result = circuit;
+        if (result == null) {
+          result = load();
+          circuit = result;
+        }
+      }
+    }
+    return result;
+  }
+
+  private CompiledCircuit load() {
+    if (builder != null) {
+      return CircuitCache.load(CircuitCache.defaultDir(), name, BUILDER_VERSION, builder);
+    }
+    final byte[] source = readResource();
+    CRC32 crc = new CRC32();
+    crc.update(source);
+    return CircuitCache.load(CircuitCache.defaultDir(), name, crc.getValue(),
+        () -> CompiledCircuit.compile(BristolFile.fromStream(new ByteArrayInputStream(source))));
   }
 
   public static CircuitType of(int id) {
@@ -0,0 +1,233 @@
+package com.hufudb.openhufu.mpc.bristol;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import com.google.common.collect.ImmutableList;
+import com.hufudb.openhufu.mpc.bristol.BristolFile.Gate;
+
+/**
+ * Circuit in struct-of-arrays form, gate g reads wires gateIn1[g] (and gateIn2[g]), writes wire
+ * gateOut[g] and is of GateType gateType[g]. Gates are ordered by layer, the gates of layer l are
+ * [layerStart[l], layerStart[l + 1]) and only read the wires of former layers, the AND gates of a
+ * layer come first: [layerStart[l], andEnd[l]).
+ * Wires [0, in1) and [in1, in1 + in2) are the inputs of the two parties, the last out wires are
+ * the outputs, as in Bristol format.
+ *
+ * Binary format, little endian ints:
+ *   [MAGIC, VERSION, wireNum, gateNum, in1, in2, out, layerNum,
+ *    layerStart[layerNum + 1], andEnd[layerNum], gateIn1[gateNum], gateIn2[gateNum],
+ *    gateOut[gateNum], gateType[gateNum] as bytes]
+ */
+public final class CompiledCircuit {
+  static final int MAGIC = 0x4f484343; // "OHCC"
+  static final int VERSION = 1;
+  static final int HEADER_INTS = 8;
+
+  final int wireNum;
+  final int gateNum;
+  final int in1;
+  final int in2;
+  final int out;
+  final int andNum;
+  public final int[] layerStart;
+  public final int[] andEnd;
+  public final int[] gateIn1;
+  public final int[] gateIn2;
+  public final int[] gateOut;
+  public final byte[] gateType;
+
+  private CompiledCircuit(int wireNum, int in1, int in2, int out, int[] layerStart, int[] andEnd,
+      int[] gateIn1, int[] gateIn2, int[] gateOut, byte[] gateType) {
+    this.wireNum = wireNum;
+    this.gateNum = gateOut.length;
+    this.in1 = in1;
+    this.in2 = in2;
+    this.out = out;
+    this.layerStart = layerStart;
+    this.andEnd = andEnd;
+    this.gateIn1 = gateIn1;
+    this.gateIn2 = gateIn2;
+    this.gateOut = gateOut;
+    this.gateType = gateType;
+    int ands = 0;
+    for (int l = 0; l < andEnd.length; ++l) {
+      ands += andEnd[l] - layerStart[l];
+    }
+    this.andNum = ands;
+  }
+
+  /**
+   * layer the gates given in topological order, a gate is in layer (depth - 1) where depth is the
+   * longest path from the inputs, the order of the AND gates in a layer is kept
+   */
+  static CompiledCircuit layered(int wireNum, int in1, int in2, int out, int[] ins1, int[] ins2,
+      int[] outs, byte[] types) {
+    final int n = outs.length;
+    int[] depth = new int[wireNum];
+    int[] gateDepth = new int[n];
+    int layerNum = 0;
+    for (int g = 0; g < n; ++g) {
+      int d = depth[ins1[g]];
+      if (types[g] != GateType.NOT.getId()) {
+        d = Math.max(d, depth[ins2[g]]);
+      }
+      gateDepth[g] = d + 1;
+      depth[outs[g]] = d + 1;
+      layerNum = Math.max(layerNum, d + 1);
+    }
+    // counting sort by (layer, not AND)
+    int[] start = new int[layerNum * 2 + 1];
+    for (int g = 0; g < n; ++g) {
+      start[bucket(gateDepth[g], types[g]) + 1]++;
+    }
+    for (int b = 0; b < layerNum * 2; ++b) {
+      start[b + 1] += start[b];
+    }
+    int[] layerStart = new int[layerNum + 1];
+    int[] andEnd = new int[layerNum];
+    for (int l = 0; l < layerNum; ++l) {
+      layerStart[l] = start[2 * l];
+      andEnd[l] = start[2 * l + 1];
+    }
+    layerStart[layerNum] = n;
+    int[] gateIn1 = new int[n];
+    int[] gateIn2 = new int[n];
+    int[] gateOut = new int[n];
+    byte[] gateType = new byte[n];
+    for (int g = 0; g < n; ++g) {
+      int pos = start[bucket(gateDepth[g], types[g])]++;
+      gateIn1[pos] = ins1[g];
+      gateIn2[pos] = ins2[g];
+      gateOut[pos] = outs[g];
+      gateType[pos] = types[g];
+    }
+    return new CompiledCircuit(wireNum, in1, in2, out, layerStart, andEnd, gateIn1, gateIn2,
+        gateOut, gateType);
+  }
+
+  private static int bucket(int depth, byte type) {
+    return (depth - 1) * 2 + (type == GateType.AND.getId() ? 0 : 1);
+  }
+
+  public static CompiledCircuit compile(BristolFile bristol) {
+    final int n = bristol.getGateNum();
+    int[] ins1 = new int[n];
+    int[] ins2 = new int[n];
+    int[] outs = new int[n];
+    byte[] types = new byte[n];
+    int g = 0;
+    for (ImmutableList<Gate> layer : bristol.getGates()) {
+      for (Gate gate : layer) {
+        ins1[g] = gate.in1;
+        ins2[g] = gate.in2;
+        outs[g] = gate.out;
+        types[g] = (byte) gate.type.getId();
+        g++;
+      }
+    }
+    return layered(bristol.getWireNum(), bristol.getIn1(), bristol.getIn2(), bristol.getOut(),
+        ins1, ins2, outs, types);
+  }
+
+  public int byteSize() {
+    return Integer.BYTES * (HEADER_INTS + layerStart.length + andEnd.length + 3 * gateNum)
+        + gateNum;
+  }
+
+  public ByteBuffer toByteBuffer() {
+    ByteBuffer buffer = ByteBuffer.allocate(byteSize()).order(ByteOrder.LITTLE_ENDIAN);
+    buffer.putInt(MAGIC).putInt(VERSION).putInt(wireNum).putInt(gateNum).putInt(in1)
+        .putInt(in2).putInt(out).putInt(andEnd.length);
+    for (int[] array : ImmutableList.of(layerStart, andEnd, gateIn1, gateIn2, gateOut)) {
+      buffer.asIntBuffer().put(array);
+      buffer.position(buffer.position() + array.length * Integer.BYTES);
+    }
+    buffer.put(gateType);
+    buffer.flip();
+    return buffer;
+  }
+
+  /**
+   * read from the binary format, e.g. a mapped file, the arrays are copied in bulk
+   *
+   * @throws IllegalArgumentException if the buffer is not a valid compiled circuit
+   */
+  public static CompiledCircuit fromByteBuffer(ByteBuffer source) {
+    ByteBuffer buffer = source.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    if (buffer.remaining() < HEADER_INTS * Integer.BYTES || buffer.getInt() != MAGIC
+        || buffer.getInt() != VERSION) {
+      throw new IllegalArgumentException("Not a compiled circuit of version " + VERSION);
+    }
+    final int wireNum = buffer.getInt();
+    final int gateNum = buffer.getInt();
+    final int in1 = buffer.getInt();
+    final int in2 = buffer.getInt();
+    final int out = buffer.getInt();
+    final int layerNum = buffer.getInt();
+    if (wireNum < 0 || gateNum < 0 || layerNum < 0 || buffer.remaining() != (long) Integer.BYTES
+        * (2 * layerNum + 1 + 3L * gateNum) + gateNum) {
+      throw new IllegalArgumentException("Truncated compiled circuit");
+    }
+    int[] layerStart = readInts(buffer, layerNum + 1);
+    int[] andEnd = readInts(buffer, layerNum);
+    int[] gateIn1 = readInts(buffer, gateNum);
+    int[] gateIn2 = readInts(buffer, gateNum);
+    int[] gateOut = readInts(buffer, gateNum);
+    byte[] gateType = new byte[gateNum];
+    buffer.get(gateType);
+    for (int g = 0; g < gateNum; ++g) {
+      if (gateIn1[g] < 0 || gateIn1[g] >= wireNum || gateIn2[g] < 0 || gateIn2[g] >= wireNum
+          || gateOut[g] < 0 || gateOut[g] >= wireNum) {
+        throw new IllegalArgumentException("Wire out of range in compiled circuit");
+      }
+    }
+    return new CompiledCircuit(wireNum, in1, in2, out, layerStart, andEnd, gateIn1, gateIn2,
+        gateOut, gateType);
+  }
+
+  private static int[] readInts(ByteBuffer buffer, int size) {
+    int[] array = new int[size];
+    buffer.asIntBuffer().get(array);
+    buffer.position(buffer.position() + size * Integer.BYTES);
+    return array;
+  }
+
+  public int getWireNum() {
+    return wireNum;
+  }
+
+  public int getGateNum() {
+    return gateNum;
+  }
+
+  public int getIn1() {
+    return in1;
+  }
+
+  public int getIn2() {
+    return in2;
+  }
+
+  public int getOut() {
+    return out;
+  }
+
+  public int getAndNum() {
+    return andNum;
+  }
+
+  public int getLayerNum() {
+    return andEnd.length;
+  }
+
+  // number of layers with AND gates, i.e. the rounds of GMW
+  public int getAndDepth() {
+    int depth = 0;
+    for (int l = 0; l < andEnd.length; ++l) {
+      if (andEnd[l] > layerStart[l]) {
+        depth++;
+      }
+    }
+    return depth;
+  }
+}
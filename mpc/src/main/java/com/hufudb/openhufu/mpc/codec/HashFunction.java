@@ -1,11 +1,13 @@
 package com.hufudb.openhufu.mpc.codec;
 
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.hash.Hashing;
 
 public enum HashFunction {
-  MD5("MD5", 1, in -> Hashing.md5().hashBytes(in).asBytes()),
-  SHA256("SHA256", 2, in -> Hashing.sha256().hashBytes(in).asBytes());
+  MD5("MD5", 1, "MD5", 16, in -> Hashing.md5().hashBytes(in).asBytes()),
+  SHA256("SHA256", 2, "SHA-256", 32, in -> Hashing.sha256().hashBytes(in).asBytes());
 
   private static final ImmutableMap<Integer, HashFunction> MAP;
 
@@ -19,11 +21,15 @@ public enum HashFunction {
 
   private final String name;
   private final int id;
+  private final String algorithm;
+  private final int length;
   private final Hash func;
 
-  HashFunction(String name, int id, Hash func) {
+  HashFunction(String name, int id, String algorithm, int length, Hash func) {
     this.name = name;
     this.id = id;
+    this.algorithm = algorithm;
+    this.length = length;
     this.func = func;
   }
 
@@ -35,6 +41,11 @@ public enum HashFunction {
     return name;
   }
 
+  // number of bytes of a digest
+  public int getLength() {
+    return length;
+  }
+
   @Override
   public String toString() {
     return name;
@@ -44,6 +55,18 @@ public enum HashFunction {
     return func.hash(in);
   }
 
+  /**
+   * a new MessageDigest of this function, which is not thread-safe but can write digests into
+   * a given array, use it for hashing many elements on one thread
+   */
+  public MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance(algorithm);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(algorithm + " is not available", e);
+    }
+  }
+
   public static HashFunction of(int id) {
     return MAP.get(id);
   }
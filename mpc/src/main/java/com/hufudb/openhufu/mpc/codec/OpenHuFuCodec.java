@@ -21,6 +21,23 @@ public class OpenHuFuCodec {
     return ByteBuffer.wrap(value).order(ByteOrder.LITTLE_ENDIAN).getInt();
   }
 
+  public static byte[] encodeInts(int[] values) {
+    ByteBuffer buffer =
+        ByteBuffer.allocate(values.length * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    buffer.asIntBuffer().put(values);
+    return buffer.array();
+  }
+
+  public static int[] decodeInts(ByteBuffer value, int size) {
+    int[] values = new int[size];
+    value.duplicate().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(values);
+    return values;
+  }
+
+  public static int[] decodeInts(byte[] value, int size) {
+    return decodeInts(ByteBuffer.wrap(value), size);
+  }
+
   public static byte[] encodeLong(long value) {
     return ByteBuffer.allocate(Long.BYTES).order(ByteOrder.LITTLE_ENDIAN).putLong(value).array();
   }
@@ -29,6 +46,32 @@ public class OpenHuFuCodec {
     return ByteBuffer.wrap(value).order(ByteOrder.LITTLE_ENDIAN).getLong();
   }
 
+  public static byte[] encodeLongs(long[] values) {
+    ByteBuffer buffer =
+        ByteBuffer.allocate(values.length * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    buffer.asLongBuffer().put(values);
+    return buffer.array();
+  }
+
+  /**
+   * bit i of the result is bit i % 8 of byte i / 8, missing bytes are 0
+   */
+  public static long[] decodeLongs(ByteBuffer value, int size) {
+    long[] values = new long[size];
+    ByteBuffer buffer = value.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    int full = Math.min(size, buffer.remaining() / Long.BYTES);
+    buffer.asLongBuffer().get(values, 0, full);
+    buffer.position(buffer.position() + full * Long.BYTES);
+    for (int i = 0; buffer.hasRemaining() && full < size; ++i) {
+      values[full] |= (buffer.get() & 0xffL) << (i * Byte.SIZE);
+    }
+    return values;
+  }
+
+  public static long[] decodeLongs(byte[] value, int size) {
+    return decodeLongs(ByteBuffer.wrap(value), size);
+  }
+
   public static byte[] encodeFloat(float value) {
     return ByteBuffer.allocate(Float.BYTES).order(ByteOrder.LITTLE_ENDIAN).putFloat(value).array();
   }
@@ -45,6 +88,23 @@ public class OpenHuFuCodec {
     return ByteBuffer.wrap(value).order(ByteOrder.LITTLE_ENDIAN).getDouble();
   }
 
+  public static byte[] encodeDoubles(double[] values) {
+    ByteBuffer buffer =
+        ByteBuffer.allocate(values.length * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    buffer.asDoubleBuffer().put(values);
+    return buffer.array();
+  }
+
+  public static double[] decodeDoubles(ByteBuffer value, int size) {
+    double[] values = new double[size];
+    value.duplicate().order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer().get(values);
+    return values;
+  }
+
+  public static double[] decodeDoubles(byte[] value, int size) {
+    return decodeDoubles(ByteBuffer.wrap(value), size);
+  }
+
   public static byte[] encodeBoolean(boolean value) {
     byte v = value ? TRUE : FALSE;
     return ByteBuffer.allocate(1).put(v).array();
@@ -3,18 +3,22 @@ package com.hufudb.openhufu.mpc.gmw;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import com.google.common.collect.ImmutableList;
 import com.hufudb.openhufu.data.storage.BitArray;
 import com.hufudb.openhufu.mpc.ProtocolException;
+import com.hufudb.openhufu.mpc.ProtocolExecutor;
 import com.hufudb.openhufu.mpc.ProtocolType;
 import com.hufudb.openhufu.mpc.RpcProtocolExecutor;
-import com.hufudb.openhufu.mpc.bristol.BristolFile;
+import com.hufudb.openhufu.mpc.beaver.BeaverTriplePool;
+import com.hufudb.openhufu.mpc.beaver.BooleanTriples;
 import com.hufudb.openhufu.mpc.bristol.CircuitType;
-import com.hufudb.openhufu.mpc.bristol.BristolFile.Gate;
+import com.hufudb.openhufu.mpc.bristol.CompiledCircuit;
+import com.hufudb.openhufu.mpc.bristol.GateType;
 import com.hufudb.openhufu.mpc.codec.OpenHuFuCodec;
-import com.hufudb.openhufu.mpc.ot.PublicKeyOT;
+import com.hufudb.openhufu.mpc.ot.ExtensionOT;
 import com.hufudb.openhufu.rpc.Rpc;
 import com.hufudb.openhufu.rpc.utils.DataPacket;
 import com.hufudb.openhufu.rpc.utils.DataPacketHeader;
@@ -24,27 +28,51 @@ import com.hufudb.openhufu.rpc.utils.DataPacketHeader;
  *   Participants: A and B (A < B)
  *   params:
  *     taskId, participants(2 party id), inputdata, circuit type id
- *   Step1: A and B load corresponding Bristol format file of opType and cache the file,
+ *   Step1: A and B load the compiled circuit of the circuit type (see CircuitType),
  *         share inputBytes to each other and cache local bytes
  *     Send DataPacket Format for A/B:
  *       Header: [ptoId: gmw, stepId: 1, senderId: A/B, recieverId: B/A, extraInfo: circuitType]
- *       Payload: [shares of inputBytes]
+ *       Payload: [shares of inputBytes of each instance]
  *   Step2: A and B receive shares from another
- *   Step3: A and B evaluate circuits
+ *   Step3: A and B evaluate circuits layer by layer on all instances (bitsliced),
+ *         wires are kept as bits of a long[], one bit for each instance
  *     XOR/NOT are evaluated locally
- *     AND use 4-1 OT with init DataPacket  A/B:
+ *     all AND gates of a layer are evaluated together in one round:
+ *     With a BeaverTriplePool, A reserves a triple for each AND gate and appends the
+ *     start of the range to the payload of step 1, and AND gate i uses triple (a, b, c) i,
+ *     A and B open d = x ^ a and e = y ^ b of all AND gates of the layer
+ *       Header: [ptoId: gmw, stepId: 2, senderId: A/B, receiverId: B/A, extraInfo: layer]
+ *       Payload: [packed d, packed e]
+ *     z = c ^ d & b ^ e & a, and A adds d & e
+ *     With ExtensionOT, A is the sender of 4-1 OTs of all AND gates of the layer
+ *       (see ExtensionOT.sendBatch, extraInfo: layer)
+ *     With other OT executors (e.g. PublicKeyOT), each AND gate runs a 4-1 OT
  *       Header: [ptoId: ot, stepId: 0, senderId: A, receiverId: B, extraInfo: wireId]
  */
 public class GMW extends RpcProtocolExecutor {
-  final PublicKeyOT otExecutor;
+  final ProtocolExecutor otExecutor;
+  final BeaverTriplePool triplePool;
   final ExecutorService threadPool;
 
-  public GMW(Rpc rpc, PublicKeyOT otExecutor, ExecutorService service) {
+  /**
+   * evaluate AND gates with precomputed triples of triplePool, or with otExecutor if it is null,
+   * an ExtensionOT otExecutor is the one of the rpc, shared with the generator of triplePool
+   */
+  public GMW(Rpc rpc, ProtocolExecutor otExecutor, BeaverTriplePool triplePool,
+      ExecutorService service) {
     super(rpc, ProtocolType.GMW);
     this.otExecutor = otExecutor;
+    this.triplePool = triplePool;
     this.threadPool = service;
   }
 
+  /**
+   * evaluate AND gates with interactive OTs
+   */
+  public GMW(Rpc rpc, ProtocolExecutor otExecutor, ExecutorService service) {
+    this(rpc, otExecutor, null, service);
+  }
+
   int getOther(List<Integer> parties) {
     int ownId = rpc.ownParty().getPartyId();
     if (parties.get(0) == ownId) {
@@ -57,27 +85,35 @@ public class GMW extends RpcProtocolExecutor {
     }
   }
 
-  byte[] generateShares(byte[] ori, GMWMeta meta) {
-    final byte[] randomMask = random.randomBytes(ori.length);
-    byte[] shares = new byte[ori.length];
-    OpenHuFuCodec.xor(ori, randomMask, shares);
-    final int in1 = meta.bristol.getIn1();
-    final int in2 = meta.bristol.getIn2();
-    if (meta.isA) {
-      meta.initIn1(shares, in1);
-    } else {
-      meta.initIn2(shares, in2);
+  // keep ori ^ mask of each instance, and return the masks for the other party
+  List<byte[]> generateShares(List<byte[]> inputs, GMWMeta meta) {
+    List<byte[]> masks = new ArrayList<>(inputs.size());
+    for (int lane = 0; lane < inputs.size(); ++lane) {
+      byte[] ori = inputs.get(lane);
+      byte[] randomMask = random.randomBytes(ori.length);
+      byte[] shares = new byte[ori.length];
+      OpenHuFuCodec.xor(ori, randomMask, shares);
+      if (meta.isA) {
+        meta.initIn1(shares, lane);
+      } else {
+        meta.initIn2(shares, lane);
+      }
+      masks.add(randomMask);
     }
-    return randomMask;
+    return masks;
   }
 
   // step 1: generate shares and send to another
-  DataPacketHeader prepare(List<byte[]> inputs, GMWMeta meta) {
-    byte[] shares = generateShares(inputs.get(0), meta);
+  DataPacketHeader prepare(List<byte[]> inputs, GMWMeta meta) throws ProtocolException {
+    List<byte[]> payload = generateShares(inputs, meta);
     LOG.debug("{} generates shares", rpc.ownParty());
     DataPacketHeader outHeader = new DataPacketHeader(meta.taskId, getProtocolType().getId(), 1,
         (long) meta.circuitType, meta.ownId, meta.otherId);
-    rpc.send(DataPacket.fromByteArrayList(outHeader, ImmutableList.of(shares)));
+    if (triplePool != null && meta.isA) {
+      meta.tripleStart = triplePool.reserve(meta.otherId, meta.andNum * meta.lanes);
+      payload.add(OpenHuFuCodec.encodeLong(meta.tripleStart));
+    }
+    rpc.send(DataPacket.fromByteArrayList(outHeader, payload));
     LOG.debug("{} sends shares to Party [{}]", rpc.ownParty(), outHeader.getReceiverId());
     DataPacketHeader expect = new DataPacketHeader(meta.taskId, getProtocolType().getId(), 1,
         (long) meta.circuitType, meta.otherId, meta.ownId);
@@ -86,108 +122,213 @@ public class GMW extends RpcProtocolExecutor {
   }
 
   // step 2: init shares from another party
-  void initWire(DataPacket packet, GMWMeta meta) {
-    byte[] shares = packet.getPayload().get(0);
-    final int in1 = meta.bristol.getIn1();
-    final int in2 = meta.bristol.getIn2();
-    if (meta.isA) {
-      meta.initIn2(shares, in2);
-    } else {
-      meta.initIn1(shares, in1);
+  void initWire(DataPacket packet, GMWMeta meta) throws ProtocolException {
+    List<byte[]> shares = packet.getPayload();
+    if (triplePool != null && !meta.isA) {
+      meta.tripleStart = OpenHuFuCodec.decodeLong(shares.get(shares.size() - 1));
+      shares = shares.subList(0, shares.size() - 1);
+    }
+    if (shares.size() != meta.lanes) {
+      throw new ProtocolException(String.format("GMW with %d instances, but Party [%d] has %d",
+          meta.lanes, packet.getHeader().getSenderId(), shares.size()));
+    }
+    for (int lane = 0; lane < meta.lanes; ++lane) {
+      if (meta.isA) {
+        meta.initIn2(shares.get(lane), lane);
+      } else {
+        meta.initIn1(shares.get(lane), lane);
+      }
     }
     LOG.debug("{} get shares from Party [{}]", rpc.ownParty(), packet.getHeader().getSenderId());
   }
 
-  Callable<Boolean> evaluateAnd(GMWMeta meta, int in1, int in2, int out) {
+  // the 4 secrets of A for a AND gate: rb ^ ((x ^ i) & (y ^ j)) for B's selection 2i + j
+  static List<byte[]> andSecrets(boolean x, boolean y, boolean rb) {
+    return ImmutableList.of(OpenHuFuCodec.encodeBoolean(rb ^ (x & y)),
+        OpenHuFuCodec.encodeBoolean(rb ^ (x & !y)), OpenHuFuCodec.encodeBoolean(rb ^ (!x & y)),
+        OpenHuFuCodec.encodeBoolean(rb ^ (!x & !y)));
+  }
+
+  Callable<Boolean> evaluateAnd(GMWMeta meta, int in1, int in2, int out, int lane) {
     return new Callable<Boolean>() {
       @Override
       public Boolean call() throws Exception {
-        BitArray wireSet = meta.wireSet;
+        boolean x = meta.getWire(in1, lane);
+        boolean y = meta.getWire(in2, lane);
+        long flag = (long) out * meta.lanes + lane;
         if (meta.isA) {
           boolean rb = random.nextBoolean();
-          ImmutableList.Builder<byte[]> builder = ImmutableList.builder();
-          builder.add(OpenHuFuCodec
-              .encodeBoolean(rb ^ ((wireSet.get(in1) ^ false) & (wireSet.get(in2) ^ false))));
-          builder.add(OpenHuFuCodec
-              .encodeBoolean(rb ^ ((wireSet.get(in1) ^ false) & (wireSet.get(in2) ^ true))));
-          builder.add(OpenHuFuCodec
-              .encodeBoolean(rb ^ ((wireSet.get(in1) ^ true) & (wireSet.get(in2) ^ false))));
-          builder.add(OpenHuFuCodec
-              .encodeBoolean(rb ^ ((wireSet.get(in1) ^ true) & (wireSet.get(in2) ^ true))));
-          otExecutor.run(meta.taskId, ImmutableList.of(meta.ownId, meta.otherId), builder.build(),
-              (long) out);
-          wireSet.set(out, rb);
+          otExecutor.run(meta.taskId, ImmutableList.of(meta.ownId, meta.otherId),
+              andSecrets(x, y, rb), flag);
+          return rb;
         } else {
-          int sel = (wireSet.get(in1) ? 2 : 0) + (wireSet.get(in2) ? 1 : 0);
+          int sel = (x ? 2 : 0) + (y ? 1 : 0);
           byte[] result = (byte[]) otExecutor.run(meta.taskId,
-              ImmutableList.of(meta.otherId, meta.ownId), sel, 2, (long) out);
-          wireSet.set(out, OpenHuFuCodec.decodeBoolean(result));
+              ImmutableList.of(meta.otherId, meta.ownId), sel, 2, flag);
+          return OpenHuFuCodec.decodeBoolean(result);
         }
-        return true;
       }
     };
   }
 
-  Callable<Boolean> evaluateXor(GMWMeta meta, int in1, int in2, int out) {
-    return new Callable<Boolean>() {
-      @Override
-      public Boolean call() throws Exception {
-        meta.setBitSet(out, meta.getBitSet(in1) ^ meta.getBitSet(in2));
-        return true;
+  // AND gates [from, to) of a layer with one OT per gate and instance, run concurrently in the
+  // thread pool
+  void evaluateAndConcurrently(GMWMeta meta, int from, int to) throws ProtocolException {
+    final CompiledCircuit circuit = meta.circuit;
+    List<Callable<Boolean>> concurrentTasks = new ArrayList<>((to - from) * meta.lanes);
+    for (int g = from; g < to; ++g) {
+      for (int lane = 0; lane < meta.lanes; ++lane) {
+        concurrentTasks.add(evaluateAnd(meta, circuit.gateIn1[g], circuit.gateIn2[g],
+            circuit.gateOut[g], lane));
       }
-    };
+    }
+    try {
+      List<Future<Boolean>> futures = threadPool.invokeAll(concurrentTasks);
+      for (int i = 0; i < futures.size(); ++i) {
+        meta.setWire(circuit.gateOut[from + i / meta.lanes], i % meta.lanes,
+            futures.get(i).get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ProtocolException("Interrupted when evaluating AND gates", e);
+    } catch (ExecutionException e) {
+      throw new ProtocolException("Error when evaluating AND gates", e.getCause());
+    }
   }
 
-  Callable<Boolean> evaluateNot(GMWMeta meta, int in, int out) {
-    return new Callable<Boolean>() {
-      @Override
-      public Boolean call() throws Exception {
-        if (meta.isA) {
-          meta.setBitSet(out, !meta.getBitSet(in));
-        } else {
-          meta.setBitSet(out, meta.getBitSet(in));
+  // AND gates [from, to) of a layer with one batch of OTs
+  void evaluateAndWithOT(GMWMeta meta, int from, int to, int layer) throws ProtocolException {
+    ExtensionOT ot = (ExtensionOT) otExecutor;
+    final CompiledCircuit circuit = meta.circuit;
+    final int lanes = meta.lanes;
+    if (meta.isA) {
+      List<List<byte[]>> secrets = new ArrayList<>((to - from) * lanes);
+      for (int g = from; g < to; ++g) {
+        for (int lane = 0; lane < lanes; ++lane) {
+          boolean rb = random.nextBoolean();
+          secrets.add(andSecrets(meta.getWire(circuit.gateIn1[g], lane),
+              meta.getWire(circuit.gateIn2[g], lane), rb));
+          meta.setWire(circuit.gateOut[g], lane, rb);
         }
-        return true;
       }
-    };
+      ot.sendBatch(meta.taskId, meta.otherId, secrets, 2, layer);
+    } else {
+      int[] sels = new int[(to - from) * lanes];
+      for (int i = 0; i < sels.length; ++i) {
+        int g = from + i / lanes;
+        int lane = i % lanes;
+        sels[i] = (meta.getWire(circuit.gateIn1[g], lane) ? 2 : 0)
+            + (meta.getWire(circuit.gateIn2[g], lane) ? 1 : 0);
+      }
+      List<byte[]> results = ot.receiveBatch(meta.taskId, meta.otherId, sels, 2, layer);
+      for (int i = 0; i < sels.length; ++i) {
+        meta.setWire(circuit.gateOut[from + i / lanes], i % lanes,
+            OpenHuFuCodec.decodeBoolean(results.get(i)));
+      }
+    }
   }
 
-  void evaluateCircuit(GMWMeta meta) {
-    ImmutableList<ImmutableList<Gate>> concurrentGates = meta.bristol.getGates();
-    LOG.debug("{}]starts to evaluate circuit", rpc.ownParty());
-    for (ImmutableList<Gate> gates : concurrentGates) {
-      List<Callable<Boolean>> concurrentTasks = new ArrayList<>();
-      LOG.debug("{} evaluate batch circuit", rpc.ownParty());
-      for (Gate gate : gates) {
-        switch (gate.type) {
-          case AND:
-            concurrentTasks.add(evaluateAnd(meta, gate.in1, gate.in2, gate.out));
-            break;
-          case XOR:
-            concurrentTasks.add(evaluateXor(meta, gate.in1, gate.in2, gate.out));
-            break;
-          case NOT:
-            concurrentTasks.add(evaluateNot(meta, gate.in1, gate.out));
-            break;
-          default:
-            LOG.error("Unsupported gate type {}", gate);
-            throw new UnsupportedOperationException("Unsupported gate type");
+  /**
+   * AND gates [start, end) of a layer with triples, gate start + j uses triples
+   * [tripleIdx + j * lanes, tripleIdx + (j + 1) * lanes), 64 instances are computed by one word
+   */
+  void evaluateAndWithTriples(GMWMeta meta, int start, int end, int layer, int tripleIdx)
+      throws ProtocolException {
+    final CompiledCircuit circuit = meta.circuit;
+    final int n = end - start;
+    final int words = meta.words;
+    final int lanes = meta.lanes;
+    long[] d = new long[n * words];
+    long[] e = new long[n * words];
+    BooleanTriples triples = meta.triples;
+    for (int j = 0; j < n; ++j) {
+      final int in1 = circuit.gateIn1[start + j];
+      final int in2 = circuit.gateIn2[start + j];
+      int base = tripleIdx + j * lanes;
+      for (int k = 0; k < words; ++k) {
+        // lanes after the last instance are not opened
+        long mask = meta.laneMask(k);
+        d[j * words + k] = (meta.getWord(in1, k) ^ triples.getAWord(base + (k << 6))) & mask;
+        e[j * words + k] = (meta.getWord(in2, k) ^ triples.getBWord(base + (k << 6))) & mask;
+      }
+    }
+    DataPacketHeader outHeader = new DataPacketHeader(meta.taskId, getProtocolTypeId(), 2,
+        (long) layer, meta.ownId, meta.otherId);
+    rpc.send(DataPacket.fromByteArrayList(outHeader,
+        ImmutableList.of(OpenHuFuCodec.encodeLongs(d), OpenHuFuCodec.encodeLongs(e))));
+    DataPacketHeader expect = new DataPacketHeader(meta.taskId, getProtocolTypeId(), 2,
+        (long) layer, meta.otherId, meta.ownId);
+    DataPacket packet = rpc.receive(expect);
+    if (packet == null) {
+      throw new ProtocolException("Fail to receive openings of AND gates in layer " + layer);
+    }
+    long[] otherD = OpenHuFuCodec.decodeLongs(
+        packet.getPayloadByteStrings().get(0).asReadOnlyByteBuffer(), n * words);
+    long[] otherE = OpenHuFuCodec.decodeLongs(
+        packet.getPayloadByteStrings().get(1).asReadOnlyByteBuffer(), n * words);
+    for (int j = 0; j < n; ++j) {
+      int base = tripleIdx + j * lanes;
+      for (int k = 0; k < words; ++k) {
+        int from = base + (k << 6);
+        long dk = d[j * words + k] ^ otherD[j * words + k];
+        long ek = e[j * words + k] ^ otherE[j * words + k];
+        long z = triples.getCWord(from) ^ (dk & triples.getBWord(from))
+            ^ (ek & triples.getAWord(from));
+        if (meta.isA) {
+          z ^= dk & ek;
         }
+        meta.setWord(circuit.gateOut[start + j], k, z);
       }
-      try {
-        List<Future<Boolean>> futures = threadPool.invokeAll(concurrentTasks);
-        for (Future<Boolean> f : futures) {
-          f.get();
+    }
+  }
+
+  void evaluateCircuit(GMWMeta meta) throws ProtocolException {
+    final CompiledCircuit circuit = meta.circuit;
+    final int[] in1 = circuit.gateIn1;
+    final int[] in2 = circuit.gateIn2;
+    final int[] out = circuit.gateOut;
+    LOG.debug("{} starts to evaluate circuit on {} instances", rpc.ownParty(), meta.lanes);
+    int tripleIdx = 0;
+    for (int layer = 0; layer < circuit.getLayerNum(); ++layer) {
+      final int andStart = circuit.layerStart[layer];
+      final int andEnd = circuit.andEnd[layer];
+      for (int g = andEnd; g < circuit.layerStart[layer + 1]; ++g) {
+        if (circuit.gateType[g] == GateType.XOR.getId()) {
+          for (int k = 0; k < meta.words; ++k) {
+            meta.setWord(out[g], k, meta.getWord(in1[g], k) ^ meta.getWord(in2[g], k));
+          }
+        } else if (circuit.gateType[g] == GateType.NOT.getId()) {
+          for (int k = 0; k < meta.words; ++k) {
+            long in = meta.getWord(in1[g], k);
+            meta.setWord(out[g], k, meta.isA ? ~in : in);
+          }
+        } else {
+          LOG.error("Unsupported gate type {}", circuit.gateType[g]);
+          throw new UnsupportedOperationException("Unsupported gate type");
         }
-      } catch (Exception e) { // NOSONAR
-        LOG.error("Error when evaluate circuit in GMW", e);
+      }
+      if (andStart == andEnd) {
+        continue;
+      }
+      if (meta.triples != null) {
+        evaluateAndWithTriples(meta, andStart, andEnd, layer, tripleIdx);
+        tripleIdx += (andEnd - andStart) * meta.lanes;
+      } else if (otExecutor instanceof ExtensionOT) {
+        evaluateAndWithOT(meta, andStart, andEnd, layer);
+      } else {
+        evaluateAndConcurrently(meta, andStart, andEnd);
       }
     }
   }
 
   /**
+   * Each element of inputdata is an instance of the circuit, both parties must have the same
+   * number of instances, the instances are evaluated together in bitsliced mode: a wire keeps one
+   * bit per instance, and a gate is evaluated on 64 instances with one operation on long.
+   *
    * @param args[0] List<byte[]> inputdata
    * @param args[1] int circuitId
+   * @return List<byte[]> the output shares of each instance
    * @throws ProtocolException
    */
   @Override
@@ -196,61 +337,104 @@ public class GMW extends RpcProtocolExecutor {
     List<byte[]> inputData = (List<byte[]>) args[0];
     int circuitId = (int) args[1];
     CircuitType type = CircuitType.of(circuitId);
-    LOG.debug("Load bristol of circuit {}", type);
+    LOG.debug("Load circuit {}", type);
     int otherId = getOther(parties);
-    GMWMeta meta = new GMWMeta(type, taskId, rpc.ownParty().getPartyId(), otherId, circuitId);
+    GMWMeta meta = new GMWMeta(type, taskId, rpc.ownParty().getPartyId(), otherId, circuitId,
+        inputData.size());
     DataPacketHeader expect = prepare(inputData, meta);
     DataPacket sharesPacket = rpc.receive(expect);
+    if (sharesPacket == null) {
+      throw new ProtocolException("Fail to receive shares of GMW");
+    }
     initWire(sharesPacket, meta);
+    if (triplePool != null && meta.andNum > 0) {
+      meta.triples = triplePool.take(otherId, meta.tripleStart, meta.andNum * meta.lanes);
+    }
     evaluateCircuit(meta);
-    BitArray resultSet = meta.wireSet.get(meta.bristol.getWireNum() - meta.bristol.getOut(),
-        meta.bristol.getWireNum());
-    LOG.debug("Result bitset [{}]", resultSet.toString());
-    return ImmutableList.of(resultSet.toByteArray());
+    final int outNum = meta.circuit.getOut();
+    final int outStart = meta.circuit.getWireNum() - outNum;
+    ImmutableList.Builder<byte[]> results = ImmutableList.builder();
+    for (int lane = 0; lane < meta.lanes; ++lane) {
+      BitArray resultSet = new BitArray(outNum);
+      for (int i = 0; i < outNum; ++i) {
+        resultSet.set(i, meta.getWire(outStart + i, lane));
+      }
+      results.add(resultSet.toByteArray());
+    }
+    return results.build();
   }
 
   static class GMWMeta {
-    final BristolFile bristol;
-    final BitArray wireSet;
+    final CompiledCircuit circuit;
+    final int lanes;
+    final int words;
+    // instance i of wire w is bit i % 64 of wires[w * words + i / 64],
+    // only touched by the thread running the task
+    final long[] wires;
     final long taskId;
     final int ownId;
     final int otherId;
     final int circuitType;
     final boolean isA;
+    final int andNum;
+    long tripleStart;
+    BooleanTriples triples;
 
-    GMWMeta(CircuitType type, long taskId, int ownId, int otherId, int circuitType) {
-      this.bristol = type.getBristol();
-      this.wireSet = new BitArray(this.bristol.getWireNum());
+    GMWMeta(CircuitType type, long taskId, int ownId, int otherId, int circuitType, int lanes) {
+      this.circuit = type.getCircuit();
+      this.lanes = lanes;
+      this.words = (lanes + 63) / 64;
+      this.wires = new long[this.circuit.getWireNum() * words];
       this.taskId = taskId;
       this.ownId = ownId;
       this.otherId = otherId;
       this.circuitType = circuitType;
       this.isA = ownId < otherId;
+      this.andNum = circuit.getAndNum();
     }
 
-    void initIn1(byte[] inBytes, int size) {
+    void initIn1(byte[] inBytes, int lane) {
       BitArray in1 = BitArray.valueOf(inBytes);
-      final int in1Size = bristol.getIn1();
+      final int in1Size = Math.min(circuit.getIn1(), in1.size());
       for (int i = 0; i < in1Size; ++i) {
-        wireSet.set(i, in1.get(i));
+        setWire(i, lane, in1.get(i));
       }
     }
 
-    void initIn2(byte[] inBytes, int size) {
+    void initIn2(byte[] inBytes, int lane) {
       BitArray in2 = BitArray.valueOf(inBytes);
-      final int in1Size = bristol.getIn1();
-      final int in2Size = bristol.getIn2();
+      final int in1Size = circuit.getIn1();
+      final int in2Size = Math.min(circuit.getIn2(), in2.size());
       for (int i = 0; i < in2Size; ++i) {
-        wireSet.set(i + in1Size, in2.get(i));
+        setWire(i + in1Size, lane, in2.get(i));
       }
     }
 
-    synchronized void setBitSet(int i, boolean value) {
-      wireSet.set(i, value);
+    // valid lanes of word k
+    long laneMask(int k) {
+      int rest = lanes - (k << 6);
+      return rest >= 64 ? -1L : (1L << rest) - 1;
+    }
+
+    long getWord(int wire, int k) {
+      return wires[wire * words + k];
+    }
+
+    void setWord(int wire, int k, long value) {
+      wires[wire * words + k] = value;
+    }
+
+    void setWire(int wire, int lane, boolean value) {
+      int idx = wire * words + (lane >>> 6);
+      if (value) {
+        wires[idx] |= 1L << lane;
+      } else {
+        wires[idx] &= ~(1L << lane);
+      }
     }
 
-    synchronized boolean getBitSet(int i) {
-      return wireSet.get(i);
+    boolean getWire(int wire, int lane) {
+      return (wires[wire * words + (lane >>> 6)] & (1L << lane)) != 0;
     }
   }
 }
@@ -0,0 +1,535 @@
+package com.hufudb.openhufu.mpc.ot;
+
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import com.google.common.collect.ImmutableList;
+import com.google.protobuf.ByteString;
+import com.hufudb.openhufu.mpc.ProtocolException;
+import com.hufudb.openhufu.mpc.ProtocolExecutor;
+import com.hufudb.openhufu.mpc.ProtocolType;
+import com.hufudb.openhufu.mpc.RpcProtocolExecutor;
+import com.hufudb.openhufu.mpc.codec.OpenHuFuCodec;
+import com.hufudb.openhufu.rpc.Rpc;
+import com.hufudb.openhufu.rpc.utils.DataPacket;
+import com.hufudb.openhufu.rpc.utils.DataPacketHeader;
+
+/**
+ * IKNP OT extension (Ishai et al., Extending Oblivious Transfers Efficiently)
+ *   Participants: S and R
+ *   Setup (once for each (S, R), when they first meet):
+ *     S picks k random bits s, R picks k pairs of seeds (k_j^0, k_j^1), k = 128
+ *     R and S run k base OTs (X25519OT by default, or PublicKeyOT), S gets k_j^{s_j}
+ *       Header: [ptoId: base ot, taskId: 0, senderId: S/R, receiverId: R/S,
+ *                extraInfo: SETUP_FLAG + k * epoch + j]
+ *     epoch counts the setups of (S, R) on both sides, so a failed setup is retried with new
+ *     headers. invalidate drops the sessions and the count of a peer, the owner calls it when the
+ *     peer is added again (e.g. after a restart), so that both sides set up from epoch 0.
+ *   Extension of m 1-out-of-2 OTs, R holds choice bits r (m bits):
+ *   Step1: R picks a nonce, t_j = G(k_j^0, nonce), u_j = t_j ^ G(k_j^1, nonce) ^ r,
+ *          sends [nonce, u_0, ..., u_k-1] to S
+ *     Send DataPacket Format:
+ *       Header: [ptoId: ext_ot, stepId: 1, senderId: R, receiverId: S, extraInfo: flag]
+ *   Step2: S gets q_j = G(k_j^{s_j}, nonce) ^ s_j * u_j, so row q_i = t_i ^ r_i * s,
+ *          sends y_i^0 = x_i^0 ^ H(nonce, i, q_i), y_i^1 = x_i^1 ^ H(nonce, i, q_i ^ s) to R
+ *     Send DataPacket Format:
+ *       Header: [ptoId: ext_ot, stepId: 2, senderId: S, receiverId: R, extraInfo: flag]
+ *   Step3: R gets x_i^{r_i} = y_i^{r_i} ^ H(nonce, i, t_i)
+ *   G is AES-CTR and H is SHA-256, so only the setup uses public key operations.
+ *
+ * 1-out-of-n (n = 2^exp) OT is built from exp extended OTs: S transfers exp pairs of random keys
+ * (K_j^0, K_j^1), and sends e_v = x_v ^ H(nonce, c, v, K_0^{v_0}, ..., K_exp-1^{v_exp-1}) for each v,
+ * R can only open e_sel. The x_v and e_v are sent in the packet of step 2.
+ *
+ * run has the same contract as PublicKeyOT, use sendBatch and receiveBatch for many OTs in one round,
+ * and sendBits and receiveBits for many OTs of single bits, whose y_i are sent as packed bits.
+ */
+public class ExtensionOT extends RpcProtocolExecutor {
+  static final int KAPPA = 128;
+  static final int SEED_BYTES = KAPPA / Byte.SIZE;
+  static final long SETUP_TASK_ID = 0;
+  // keeps the extraInfo of base OTs away from the flags used by callers of PublicKeyOT
+  static final long SETUP_FLAG = 1L << 48;
+
+  final ProtocolExecutor baseOT;
+  final ConcurrentMap<Integer, CompletableFuture<SenderSession>> senderSessions;
+  final ConcurrentMap<Integer, CompletableFuture<ReceiverSession>> receiverSessions;
+  // number of setups started with each peer
+  final ConcurrentMap<Integer, Long> senderEpochs;
+  final ConcurrentMap<Integer, Long> receiverEpochs;
+
+  /**
+   * the sessions are kept for the lifetime of the executor, share one executor among the tasks
+   * of a rpc so that the base OTs are run once for each peer instead of once for each task
+   */
+  public ExtensionOT(Rpc rpc, ProtocolExecutor baseOT) {
+    super(rpc, ProtocolType.EXT_OT);
+    this.baseOT = baseOT;
+    this.senderSessions = new ConcurrentHashMap<>();
+    this.receiverSessions = new ConcurrentHashMap<>();
+    this.senderEpochs = new ConcurrentHashMap<>();
+    this.receiverEpochs = new ConcurrentHashMap<>();
+  }
+
+  public ExtensionOT(Rpc rpc) {
+    this(rpc, new X25519OT(rpc));
+  }
+
+  /**
+   * drop the sessions with peer, the next task with peer runs the setup again from epoch 0,
+   * call it on both sides when the peer is added or removed
+   */
+  public void invalidate(int peerId) {
+    senderSessions.remove(peerId);
+    receiverSessions.remove(peerId);
+    senderEpochs.remove(peerId);
+    receiverEpochs.remove(peerId);
+    LOG.debug("{} drops OT extension sessions with Party [{}]", rpc.ownParty(), peerId);
+  }
+
+  // the epoch of a new setup with peer
+  static long nextEpoch(ConcurrentMap<Integer, Long> epochs, int peerId) {
+    return epochs.merge(peerId, 1L, Long::sum) - 1;
+  }
+
+  static class SenderSession {
+    final boolean[] s;
+    final byte[] sBytes;
+    // k_j^{s_j}
+    final byte[][] seeds;
+
+    SenderSession(boolean[] s, byte[] sBytes, byte[][] seeds) {
+      this.s = s;
+      this.sBytes = sBytes;
+      this.seeds = seeds;
+    }
+  }
+
+  static class ReceiverSession {
+    final byte[][] seeds0;
+    final byte[][] seeds1;
+
+    ReceiverSession(byte[][] seeds0, byte[][] seeds1) {
+      this.seeds0 = seeds0;
+      this.seeds1 = seeds1;
+    }
+  }
+
+  interface Setup<T> {
+    T run(int peerId) throws ProtocolException;
+  }
+
+  <T> T getSession(ConcurrentMap<Integer, CompletableFuture<T>> sessions, int peerId,
+      Setup<T> setup) throws ProtocolException {
+    CompletableFuture<T> future = new CompletableFuture<>();
+    CompletableFuture<T> prev = sessions.putIfAbsent(peerId, future);
+    if (prev == null) {
+      try {
+        future.complete(setup.run(peerId));
+      } catch (ProtocolException | RuntimeException e) {
+        // let the next task retry the setup
+        sessions.remove(peerId, future);
+        future.completeExceptionally(e);
+        throw e;
+      }
+      return future.join();
+    }
+    try {
+      return prev.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ProtocolException("Interrupted when waiting for OT extension setup", e);
+    } catch (ExecutionException e) {
+      throw new ProtocolException("OT extension setup failed", e.getCause());
+    }
+  }
+
+  // setup as S, receive k_j^{s_j} with base OTs
+  SenderSession setupSender(int receiverId) throws ProtocolException {
+    final long epoch = nextEpoch(senderEpochs, receiverId);
+    LOG.debug("{} runs {} base OTs as sender of OT extension to Party [{}], epoch {}",
+        rpc.ownParty(), KAPPA, receiverId, epoch);
+    boolean[] s = new boolean[KAPPA];
+    byte[] sBytes = random.randomBytes(SEED_BYTES);
+    byte[][] seeds = new byte[KAPPA][];
+    for (int j = 0; j < KAPPA; ++j) {
+      s[j] = getBit(sBytes, j);
+      seeds[j] = (byte[]) baseOT.run(SETUP_TASK_ID, ImmutableList.of(receiverId, ownId),
+          s[j] ? 1 : 0, 1, SETUP_FLAG + KAPPA * epoch + j);
+      if (seeds[j] == null || seeds[j].length != SEED_BYTES) {
+        throw new ProtocolException("Base OT of OT extension failed");
+      }
+    }
+    return new SenderSession(s, sBytes, seeds);
+  }
+
+  // setup as R, send (k_j^0, k_j^1) with base OTs
+  ReceiverSession setupReceiver(int senderId) throws ProtocolException {
+    final long epoch = nextEpoch(receiverEpochs, senderId);
+    LOG.debug("{} runs {} base OTs as receiver of OT extension from Party [{}], epoch {}",
+        rpc.ownParty(), KAPPA, senderId, epoch);
+    byte[][] seeds0 = new byte[KAPPA][];
+    byte[][] seeds1 = new byte[KAPPA][];
+    for (int j = 0; j < KAPPA; ++j) {
+      seeds0[j] = random.randomBytes(SEED_BYTES);
+      seeds1[j] = random.randomBytes(SEED_BYTES);
+      baseOT.run(SETUP_TASK_ID, ImmutableList.of(ownId, senderId),
+          ImmutableList.of(seeds0[j], seeds1[j]), SETUP_FLAG + KAPPA * epoch + j);
+    }
+    return new ReceiverSession(seeds0, seeds1);
+  }
+
+  // rows of an extension, q_i on S or t_i on R
+  static class Extension {
+    final byte[] nonce;
+    final byte[][] rows;
+
+    Extension(byte[] nonce, byte[][] rows) {
+      this.nonce = nonce;
+      this.rows = rows;
+    }
+  }
+
+  // step 1 on S, receive the columns of m OTs and compute q
+  Extension extendAsSender(SenderSession session, long taskId, int receiverId, int m,
+      long extraInfo) throws ProtocolException {
+    final int colBytes = (m + 7) / 8;
+    DataPacketHeader expect =
+        new DataPacketHeader(taskId, getProtocolTypeId(), 1, extraInfo, receiverId, ownId);
+    DataPacket packet = rpc.receive(expect);
+    if (packet == null) {
+      throw new ProtocolException("Fail to receive columns of OT extension");
+    }
+    List<ByteString> payload = packet.getPayloadByteStrings();
+    if (payload.size() != KAPPA + 1) {
+      throw new ProtocolException("Wrong number of columns of OT extension");
+    }
+    byte[] nonce = payload.get(0).toByteArray();
+    byte[][] q = new byte[KAPPA][];
+    for (int j = 0; j < KAPPA; ++j) {
+      q[j] = expand(session.seeds[j], nonce, colBytes);
+      if (session.s[j]) {
+        ByteString u = payload.get(j + 1);
+        if (u.size() != colBytes) {
+          throw new ProtocolException("Wrong column size of OT extension");
+        }
+        for (int i = 0; i < colBytes; ++i) {
+          q[j][i] ^= u.byteAt(i);
+        }
+      }
+    }
+    return new Extension(nonce, transpose(q, m));
+  }
+
+  // step 1 on R, send the columns of m OTs with choice bits r and compute t
+  Extension extendAsReceiver(ReceiverSession session, long taskId, int senderId, byte[] r, int m,
+      long extraInfo) throws ProtocolException {
+    final int colBytes = (m + 7) / 8;
+    byte[] nonce = random.randomBytes(SEED_BYTES);
+    byte[][] t = new byte[KAPPA][];
+    List<byte[]> columns = new ArrayList<>(KAPPA + 1);
+    columns.add(nonce);
+    for (int j = 0; j < KAPPA; ++j) {
+      t[j] = expand(session.seeds0[j], nonce, colBytes);
+      byte[] u = expand(session.seeds1[j], nonce, colBytes);
+      for (int i = 0; i < colBytes; ++i) {
+        u[i] ^= t[j][i] ^ (i < r.length ? r[i] : 0);
+      }
+      columns.add(u);
+    }
+    DataPacketHeader outHeader =
+        new DataPacketHeader(taskId, getProtocolTypeId(), 1, extraInfo, ownId, senderId);
+    rpc.send(DataPacket.fromByteArrayList(outHeader, columns));
+    LOG.debug("{} send {}", rpc.ownParty(), outHeader);
+    return new Extension(nonce, transpose(t, m));
+  }
+
+  List<ByteString> receiveSecrets(long taskId, int senderId, int expectSize, long extraInfo)
+      throws ProtocolException {
+    DataPacketHeader expect =
+        new DataPacketHeader(taskId, getProtocolTypeId(), 2, extraInfo, senderId, ownId);
+    DataPacket packet = rpc.receive(expect);
+    if (packet == null) {
+      throw new ProtocolException("Fail to receive secrets of OT extension");
+    }
+    List<ByteString> payload = packet.getPayloadByteStrings();
+    if (payload.size() != expectSize) {
+      throw new ProtocolException("Wrong number of secrets of OT extension");
+    }
+    return payload;
+  }
+
+  /**
+   * run numOT = secrets.size() 1-out-of-n OTs as S in one round
+   *
+   * @param secrets n = 2^exp secrets for each OT
+   */
+  public void sendBatch(long taskId, int receiverId, List<List<byte[]>> secrets, int exp,
+      long extraInfo) throws ProtocolException {
+    SenderSession session = getSession(senderSessions, receiverId, this::setupSender);
+    final int n = 1 << exp;
+    final int m = secrets.size() * exp;
+    Extension ext = extendAsSender(session, taskId, receiverId, m, extraInfo);
+    byte[] nonce = ext.nonce;
+    byte[][] rows = ext.rows;
+    MessageDigest md = sha256();
+    List<byte[]> out = new ArrayList<>(2 * m + n * secrets.size());
+    List<byte[]> masked = new ArrayList<>(n * secrets.size());
+    byte[][][] keys = new byte[2][exp][];
+    byte[] qs = new byte[SEED_BYTES];
+    for (int c = 0; c < secrets.size(); ++c) {
+      List<byte[]> x = secrets.get(c);
+      if (x.size() != n) {
+        throw new ProtocolException(String.format("OT extension requires %d secrets", n));
+      }
+      for (int j = 0; j < exp; ++j) {
+        int idx = c * exp + j;
+        keys[0][j] = random.randomBytes(SEED_BYTES);
+        keys[1][j] = random.randomBytes(SEED_BYTES);
+        OpenHuFuCodec.xor(rows[idx], session.sBytes, qs);
+        out.add(xorInPlace(hash(md, SEED_BYTES, nonce, OpenHuFuCodec.encodeInt(idx), rows[idx]),
+            keys[0][j]));
+        out.add(xorInPlace(hash(md, SEED_BYTES, nonce, OpenHuFuCodec.encodeInt(idx), qs),
+            keys[1][j]));
+      }
+      for (int v = 0; v < n; ++v) {
+        byte[] pad = hash(md, x.get(v).length, selectKeys(nonce, c, v, keys, exp));
+        masked.add(xorInPlace(pad, x.get(v)));
+      }
+    }
+    out.addAll(masked);
+    DataPacketHeader outHeader =
+        new DataPacketHeader(taskId, getProtocolTypeId(), 2, extraInfo, ownId, receiverId);
+    rpc.send(DataPacket.fromByteArrayList(outHeader, out));
+    LOG.debug("{} send {}", rpc.ownParty(), outHeader);
+  }
+
+  /**
+   * run sels.length 1-out-of-n OTs as R in one round
+   *
+   * @param sels the index to select in each OT
+   * @return the selected secret of each OT
+   */
+  public List<byte[]> receiveBatch(long taskId, int senderId, int[] sels, int exp,
+      long extraInfo) throws ProtocolException {
+    ReceiverSession session = getSession(receiverSessions, senderId, this::setupReceiver);
+    final int n = 1 << exp;
+    final int m = sels.length * exp;
+    byte[] r = new byte[(m + 7) / 8];
+    for (int c = 0; c < sels.length; ++c) {
+      for (int j = 0; j < exp; ++j) {
+        if (((sels[c] >> j) & 1) == 1) {
+          setBit(r, c * exp + j);
+        }
+      }
+    }
+    Extension ext = extendAsReceiver(session, taskId, senderId, r, m, extraInfo);
+    byte[] nonce = ext.nonce;
+    byte[][] rows = ext.rows;
+    List<ByteString> payload = receiveSecrets(taskId, senderId, 2 * m + n * sels.length, extraInfo);
+    MessageDigest md = sha256();
+    List<byte[]> results = new ArrayList<>(sels.length);
+    byte[][][] keys = new byte[2][exp][];
+    for (int c = 0; c < sels.length; ++c) {
+      int sel = sels[c] & (n - 1);
+      for (int j = 0; j < exp; ++j) {
+        int idx = c * exp + j;
+        int bit = (sel >> j) & 1;
+        byte[] pad = hash(md, SEED_BYTES, nonce, OpenHuFuCodec.encodeInt(idx), rows[idx]);
+        keys[bit][j] = xorInPlace(pad, payload.get(2 * idx + bit).toByteArray());
+      }
+      byte[] e = payload.get(2 * m + c * n + sel).toByteArray();
+      results.add(xorInPlace(hash(md, e.length, selectKeys(nonce, c, sel, keys, exp)), e));
+    }
+    return results;
+  }
+
+  /**
+   * run m 1-out-of-2 OTs of single bits as S in one round, bit i of x0/x1 is
+   * bit i % 64 of x0[i / 64]/x1[i / 64], the bits are sent packed instead of as keys
+   */
+  public void sendBits(long taskId, int receiverId, long[] x0, long[] x1, int m, long extraInfo)
+      throws ProtocolException {
+    SenderSession session = getSession(senderSessions, receiverId, this::setupSender);
+    Extension ext = extendAsSender(session, taskId, receiverId, m, extraInfo);
+    MessageDigest md = sha256();
+    final int words = (m + 63) / 64;
+    long[] y0 = new long[words];
+    long[] y1 = new long[words];
+    byte[] qs = new byte[SEED_BYTES];
+    for (int i = 0; i < m; ++i) {
+      OpenHuFuCodec.xor(ext.rows[i], session.sBytes, qs);
+      long h0 = hashBit(md, ext.nonce, i, ext.rows[i]);
+      long h1 = hashBit(md, ext.nonce, i, qs);
+      y0[i >>> 6] |= (h0 ^ (x0[i >>> 6] >>> i)) << i & (1L << i);
+      y1[i >>> 6] |= (h1 ^ (x1[i >>> 6] >>> i)) << i & (1L << i);
+    }
+    DataPacketHeader outHeader =
+        new DataPacketHeader(taskId, getProtocolTypeId(), 2, extraInfo, ownId, receiverId);
+    rpc.send(DataPacket.fromByteArrayList(outHeader,
+        ImmutableList.of(OpenHuFuCodec.encodeLongs(y0), OpenHuFuCodec.encodeLongs(y1))));
+    LOG.debug("{} send {}", rpc.ownParty(), outHeader);
+  }
+
+  /**
+   * run m 1-out-of-2 OTs of single bits as R in one round
+   *
+   * @param choices choice bit i is bit i % 64 of choices[i / 64]
+   * @return bit i is x0_i or x1_i according to choice bit i
+   */
+  public long[] receiveBits(long taskId, int senderId, long[] choices, int m, long extraInfo)
+      throws ProtocolException {
+    ReceiverSession session = getSession(receiverSessions, senderId, this::setupReceiver);
+    final int words = (m + 63) / 64;
+    byte[] r = OpenHuFuCodec.encodeLongs(choices);
+    Extension ext = extendAsReceiver(session, taskId, senderId, r, m, extraInfo);
+    List<ByteString> payload = receiveSecrets(taskId, senderId, 2, extraInfo);
+    long[] y0 = OpenHuFuCodec.decodeLongs(payload.get(0).asReadOnlyByteBuffer(), words);
+    long[] y1 = OpenHuFuCodec.decodeLongs(payload.get(1).asReadOnlyByteBuffer(), words);
+    MessageDigest md = sha256();
+    long[] results = new long[words];
+    for (int i = 0; i < m; ++i) {
+      long mask = 1L << i;
+      long y = (choices[i >>> 6] & mask) != 0 ? y1[i >>> 6] : y0[i >>> 6];
+      long h = hashBit(md, ext.nonce, i, ext.rows[i]);
+      results[i >>> 6] |= ((h << i) ^ y) & mask;
+    }
+    return results;
+  }
+
+  // [nonce, c, v, K_0^{v_0}, ..., K_exp-1^{v_exp-1}]
+  static byte[][] selectKeys(byte[] nonce, int c, int v, byte[][][] keys, int exp) {
+    byte[][] parts = new byte[exp + 3][];
+    parts[0] = nonce;
+    parts[1] = OpenHuFuCodec.encodeInt(c);
+    parts[2] = OpenHuFuCodec.encodeInt(v);
+    for (int j = 0; j < exp; ++j) {
+      parts[j + 3] = keys[(v >> j) & 1][j];
+    }
+    return parts;
+  }
+
+  // G: expand the seed with AES-CTR
+  static byte[] expand(byte[] seed, byte[] nonce, int len) throws ProtocolException {
+    try {
+      Cipher cipher = Cipher.getInstance("AES/CTR/NoPadding");
+      cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(seed, "AES"), new IvParameterSpec(nonce));
+      return cipher.doFinal(new byte[len]);
+    } catch (GeneralSecurityException e) {
+      throw new ProtocolException("Fail to expand seed of OT extension", e);
+    }
+  }
+
+  static MessageDigest sha256() throws ProtocolException {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (GeneralSecurityException e) {
+      throw new ProtocolException("SHA-256 is not available", e);
+    }
+  }
+
+  // H: SHA-256 of the parts, extended with a counter for len > 32
+  static byte[] hash(MessageDigest md, int len, byte[]... parts) {
+    byte[] out = new byte[len];
+    int offset = 0;
+    for (int counter = 0; offset < len; ++counter) {
+      for (byte[] part : parts) {
+        md.update(part);
+      }
+      md.update(OpenHuFuCodec.encodeInt(counter));
+      byte[] digest = md.digest();
+      int size = Math.min(digest.length, len - offset);
+      System.arraycopy(digest, 0, out, offset, size);
+      offset += size;
+    }
+    return out;
+  }
+
+  // lowest bit of H(nonce, i, row)
+  static long hashBit(MessageDigest md, byte[] nonce, int i, byte[] row) {
+    md.update(nonce);
+    md.update(OpenHuFuCodec.encodeInt(i));
+    md.update(row);
+    return md.digest()[0] & 1L;
+  }
+
+  static byte[] xorInPlace(byte[] a, byte[] b) {
+    for (int i = 0; i < a.length; ++i) {
+      a[i] ^= b[i];
+    }
+    return a;
+  }
+
+  static boolean getBit(byte[] bytes, int i) {
+    return ((bytes[i >>> 3] >>> (i & 7)) & 1) == 1;
+  }
+
+  static void setBit(byte[] bytes, int i) {
+    bytes[i >>> 3] |= 1 << (i & 7);
+  }
+
+  // KAPPA columns of m bits -> m rows of KAPPA bits
+  static byte[][] transpose(byte[][] columns, int m) {
+    byte[][] rows = new byte[m][SEED_BYTES];
+    for (int j = 0; j < KAPPA; ++j) {
+      byte[] col = columns[j];
+      byte mask = (byte) (1 << (j & 7));
+      int jb = j >>> 3;
+      for (int b = 0; b < col.length; ++b) {
+        int v = col[b] & 0xff;
+        while (v != 0) {
+          int i = (b << 3) + Integer.numberOfTrailingZeros(v);
+          if (i < m) {
+            rows[i][jb] |= mask;
+          }
+          v &= v - 1;
+        }
+      }
+    }
+    return rows;
+  }
+
+  /**
+   * @param parties {senderId, receiverId}
+   * @param args[0] List<byte[]> inputdata for sender (required), or int sel for receiver (required)
+   * @param args[1] long extraInfo for sender (optional), or int exp for receiver (required)
+   * @param args[2] long extraInfo for receiver (optional)
+   * @return null for sender, byte[] for receiver
+   */
+  @Override
+  public Object run(long taskId, List<Integer> parties, Object... args) throws ProtocolException {
+    if (args.length < 1) {
+      LOG.error("ExtensionOT requires args List<byte[]> for sender and int receiver");
+      return null;
+    }
+    int senderId = parties.get(0);
+    int receiverId = parties.get(1);
+    long extraInfo = 0;
+    if (senderId == ownId) {
+      if (args.length > 1) {
+        extraInfo = (long) args[1];
+      }
+      List<byte[]> inputData = (List<byte[]>) args[0];
+      int exp = Integer.numberOfTrailingZeros(inputData.size());
+      if (inputData.size() != 1 << exp) {
+        throw new ProtocolException("Number of secrets of ExtensionOT must be a power of 2");
+      }
+      sendBatch(taskId, receiverId, ImmutableList.of(inputData), exp, extraInfo);
+      return null;
+    } else {
+      if (args.length > 2) {
+        extraInfo = (long) args[2];
+      }
+      return receiveBatch(taskId, senderId, new int[] {(int) args[0]}, (int) args[1], extraInfo)
+          .get(0);
+    }
+  }
+}
@@ -92,7 +92,7 @@ public class PublicKeyOT extends RpcProtocolExecutor {
   // step3, run on R
   byte[] decryptSecrets(DataPacket packet, Elgamal privateKey, int sel) throws ProtocolException {
     Elgamal key = privateKey;
-    byte[] target = packet.getPayload().get(sel);
+    byte[] target = packet.getPayloadByteStrings().get(sel).toByteArray();
     byte[] decryptedBytes = null;
     LOG.debug("{} decrypt secret [{}]", rpc.ownParty(), sel);
     try {
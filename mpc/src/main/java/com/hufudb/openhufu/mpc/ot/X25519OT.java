@@ -0,0 +1,247 @@
+package com.hufudb.openhufu.mpc.ot;
+
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.interfaces.XECPublicKey;
+import java.security.spec.NamedParameterSpec;
+import java.security.spec.XECPublicKeySpec;
+import java.util.ArrayList;
+import java.util.List;
+import javax.crypto.KeyAgreement;
+import com.google.protobuf.ByteString;
+import com.hufudb.openhufu.mpc.ProtocolException;
+import com.hufudb.openhufu.mpc.ProtocolType;
+import com.hufudb.openhufu.mpc.RpcProtocolExecutor;
+import com.hufudb.openhufu.mpc.codec.OpenHuFuCodec;
+import com.hufudb.openhufu.rpc.Rpc;
+import com.hufudb.openhufu.rpc.utils.DataPacket;
+import com.hufudb.openhufu.rpc.utils.DataPacketHeader;
+
+/**
+ * 1-out-of-n OT with X25519 key agreement, the same flow as PublicKeyOT on an elliptic curve
+ *   Participants: S and R
+ *   Step1: R generates a X25519 key pair (sk, pk) and n - 1 pseudo public keys pk', which are
+ *          random points of the prime order subgroup (the same subgroup as real public keys),
+ *          so R doesn't know their private keys and S can't tell pk from them
+ *     Header: [ptoId: x25519_ot, stepId: 1, senderId: R, receiverId: S, extraInfo: flag]
+ *     Payload: [pk_0, ..., pk_n-1] (pk_b = pk), 32 bytes each
+ *   Step2: S generates an ephemeral key pair (e, E), encrypts x_i with H(X25519(e, pk_i), i)
+ *     Header: [ptoId: x25519_ot, stepId: 2, senderId: S, receiverId: R, extraInfo: flag]
+ *     Payload: [E, e_0, ..., e_n-1]
+ *   Step3: R decrypts e_b with H(X25519(sk, E), b)
+ * run has the same contract as PublicKeyOT
+ */
+public class X25519OT extends RpcProtocolExecutor {
+  static final int KEY_BYTES = 32;
+  // p = 2^255 - 19
+  static final BigInteger P = BigInteger.ONE.shiftLeft(255).subtract(BigInteger.valueOf(19));
+  static final BigInteger A = BigInteger.valueOf(486662);
+  static final BigInteger A24 = BigInteger.valueOf(121665);
+  static final BigInteger LEGENDRE_EXP = P.subtract(BigInteger.ONE).shiftRight(1);
+
+  public X25519OT(Rpc rpc) {
+    super(rpc, ProtocolType.X25519_OT);
+  }
+
+  static KeyPair generateKeyPair() throws ProtocolException {
+    try {
+      return KeyPairGenerator.getInstance("X25519").generateKeyPair();
+    } catch (GeneralSecurityException e) {
+      throw new ProtocolException("X25519 is not available", e);
+    }
+  }
+
+  // u-coordinate in 32 bytes little-endian, as RFC 7748
+  static byte[] encodeU(BigInteger u) {
+    byte[] be = u.toByteArray();
+    byte[] le = new byte[KEY_BYTES];
+    for (int i = 0; i < KEY_BYTES && i < be.length; ++i) {
+      le[i] = be[be.length - 1 - i];
+    }
+    return le;
+  }
+
+  static BigInteger decodeU(byte[] le) {
+    byte[] be = new byte[KEY_BYTES + 1];
+    for (int i = 0; i < KEY_BYTES; ++i) {
+      be[KEY_BYTES - i] = le[i];
+    }
+    return new BigInteger(be);
+  }
+
+  static byte[] encodeKey(PublicKey key) {
+    return encodeU(((XECPublicKey) key).getU());
+  }
+
+  static PublicKey decodeKey(byte[] bytes) throws ProtocolException {
+    if (bytes.length != KEY_BYTES) {
+      throw new ProtocolException("X25519 public key must have " + KEY_BYTES + " bytes");
+    }
+    try {
+      return KeyFactory.getInstance("XDH")
+          .generatePublic(new XECPublicKeySpec(NamedParameterSpec.X25519, decodeU(bytes)));
+    } catch (GeneralSecurityException e) {
+      throw new ProtocolException("Invalid X25519 public key", e);
+    }
+  }
+
+  static byte[] agree(PrivateKey sk, PublicKey pk) throws ProtocolException {
+    try {
+      KeyAgreement ka = KeyAgreement.getInstance("XDH");
+      ka.init(sk);
+      ka.doPhase(pk, true);
+      return ka.generateSecret();
+    } catch (GeneralSecurityException e) {
+      throw new ProtocolException("X25519 key agreement failed", e);
+    }
+  }
+
+  /**
+   * a random point of the prime order subgroup without known private key: pick random u until
+   * it is on the curve, then clear the cofactor by doubling it 3 times
+   */
+  byte[] pseudoPublicKey() {
+    while (true) {
+      BigInteger u = new BigInteger(1, random.randomBytes(KEY_BYTES)).mod(P);
+      BigInteger v = u.multiply(u).add(A.multiply(u)).add(BigInteger.ONE).multiply(u).mod(P);
+      if (v.signum() == 0 || !v.modPow(LEGENDRE_EXP, P).equals(BigInteger.ONE)) {
+        continue;
+      }
+      BigInteger x = u;
+      BigInteger z = BigInteger.ONE;
+      for (int i = 0; i < 3; ++i) {
+        // x-only doubling of RFC 7748
+        BigInteger aa = x.add(z).pow(2).mod(P);
+        BigInteger bb = x.subtract(z).pow(2).mod(P);
+        BigInteger e = aa.subtract(bb).mod(P);
+        x = aa.multiply(bb).mod(P);
+        z = e.multiply(aa.add(A24.multiply(e))).mod(P);
+      }
+      if (z.signum() == 0) {
+        // a point of small order
+        continue;
+      }
+      return encodeU(x.multiply(z.modInverse(P)).mod(P));
+    }
+  }
+
+  static MessageDigest sha256() throws ProtocolException {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (GeneralSecurityException e) {
+      throw new ProtocolException("SHA-256 is not available", e);
+    }
+  }
+
+  // xor the secret with H(shared, i), extended with a counter for secrets longer than 32 bytes
+  static byte[] mask(MessageDigest md, byte[] shared, int i, byte[] secret) {
+    byte[] out = new byte[secret.length];
+    byte[] idx = OpenHuFuCodec.encodeInt(i);
+    for (int counter = 0, offset = 0; offset < out.length; ++counter) {
+      md.update(shared);
+      md.update(idx);
+      md.update(OpenHuFuCodec.encodeInt(counter));
+      byte[] block = md.digest();
+      for (int j = 0; j < block.length && offset < out.length; ++j, ++offset) {
+        out[offset] = (byte) (secret[offset] ^ block[j]);
+      }
+    }
+    return out;
+  }
+
+  // step 1, run on R
+  PrivateKey sendPublicKeys(long taskId, int senderId, int sel, int exp, long extraInfo)
+      throws ProtocolException {
+    final int n = 1 << exp;
+    KeyPair keyPair = generateKeyPair();
+    List<byte[]> payloads = new ArrayList<>(n);
+    for (int i = 0; i < n; ++i) {
+      payloads.add(i == sel ? encodeKey(keyPair.getPublic()) : pseudoPublicKey());
+    }
+    DataPacketHeader outHeader =
+        new DataPacketHeader(taskId, getProtocolTypeId(), 1, extraInfo, ownId, senderId);
+    rpc.send(DataPacket.fromByteArrayList(outHeader, payloads));
+    return keyPair.getPrivate();
+  }
+
+  // step 2, run on S
+  Object senderProcedure(long taskId, int receiverId, List<byte[]> secrets, long extraInfo)
+      throws ProtocolException {
+    LOG.debug("{} is sender of X25519OT", rpc.ownParty());
+    DataPacketHeader expect =
+        new DataPacketHeader(taskId, getProtocolTypeId(), 1, extraInfo, receiverId, ownId);
+    DataPacket packet = rpc.receive(expect);
+    if (packet == null) {
+      throw new ProtocolException("Fail to receive public keys of X25519OT");
+    }
+    List<byte[]> publicKeys = packet.getPayload();
+    if (publicKeys.size() != secrets.size()) {
+      throw new ProtocolException(String.format("X25519OT with %d secrets but %d public keys",
+          secrets.size(), publicKeys.size()));
+    }
+    KeyPair ephemeral = generateKeyPair();
+    MessageDigest md = sha256();
+    List<byte[]> payloads = new ArrayList<>(secrets.size() + 1);
+    payloads.add(encodeKey(ephemeral.getPublic()));
+    for (int i = 0; i < secrets.size(); ++i) {
+      byte[] shared = agree(ephemeral.getPrivate(), decodeKey(publicKeys.get(i)));
+      payloads.add(mask(md, shared, i, secrets.get(i)));
+    }
+    DataPacketHeader outHeader =
+        new DataPacketHeader(taskId, getProtocolTypeId(), 2, extraInfo, ownId, receiverId);
+    rpc.send(DataPacket.fromByteArrayList(outHeader, payloads));
+    return null;
+  }
+
+  // step 3, run on R
+  byte[] receiverProcedure(long taskId, int senderId, int sel, int exp, long extraInfo)
+      throws ProtocolException {
+    LOG.debug("{} is receiver of X25519OT", rpc.ownParty());
+    sel = sel & ((1 << exp) - 1);
+    PrivateKey sk = sendPublicKeys(taskId, senderId, sel, exp, extraInfo);
+    DataPacketHeader expect =
+        new DataPacketHeader(taskId, getProtocolTypeId(), 2, extraInfo, senderId, ownId);
+    DataPacket packet = rpc.receive(expect);
+    if (packet == null) {
+      throw new ProtocolException("Fail to receive secrets of X25519OT");
+    }
+    // only the key and the selected secret are read
+    List<ByteString> payload = packet.getPayloadByteStrings();
+    byte[] shared = agree(sk, decodeKey(payload.get(0).toByteArray()));
+    return mask(sha256(), shared, sel, payload.get(sel + 1).toByteArray());
+  }
+
+  /**
+   * @param parties {senderId, receiverId}
+   * @param args[0] List<byte[]> inputdata for sender (required), or int sel for receiver (required)
+   * @param args[1] long extraInfo for sender (optional), or int exp for receiver (required)
+   * @param args[2] long extraInfo for receiver (optional)
+   * @return null for sender, byte[] for receiver
+   */
+  @Override
+  public Object run(long taskId, List<Integer> parties, Object... args) throws ProtocolException {
+    if (args.length < 1) {
+      throw new ProtocolException("X25519OT requires args List<byte[]> for sender and int receiver");
+    }
+    int senderId = parties.get(0);
+    int receiverId = parties.get(1);
+    long extraInfo = 0;
+    if (senderId == ownId) {
+      if (args.length > 1) {
+        extraInfo = ((Number) args[1]).longValue();
+      }
+      return senderProcedure(taskId, receiverId, (List<byte[]>) args[0], extraInfo);
+    } else {
+      if (args.length > 2) {
+        extraInfo = ((Number) args[2]).longValue();
+      }
+      return receiverProcedure(taskId, senderId, (int) args[0], (int) args[1], extraInfo);
+    }
+  }
+}
@@ -0,0 +1,108 @@
+package com.hufudb.openhufu.mpc.psi;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Open addressing index of packed digests, keyed by the first 8 bytes of each digest.
+ * A hit on the truncated tag is verified against the full digest, rows with the same digest
+ * are chained in ascending order, so no object is allocated for each row.
+ */
+final class DigestTable {
+  static final int EMPTY = -1;
+
+  final byte[] digests;
+  final ByteBuffer view;
+  final int length;
+  final int size;
+  final int mask;
+  final long[] tags;
+  final int[] heads;
+  // number of rows with the digest of the slot
+  final int[] counts;
+  final int[] next;
+
+  /**
+   * @param digests size digests of length bytes, row i starts at i * length
+   */
+  DigestTable(byte[] digests, int length, int size) {
+    this.digests = digests;
+    this.view = ByteBuffer.wrap(digests).order(ByteOrder.LITTLE_ENDIAN);
+    this.length = length;
+    this.size = size;
+    // load factor at most 0.75
+    int capacity = Integer.highestOneBit(Math.max(size + size / 3, 8) - 1) << 1;
+    this.mask = capacity - 1;
+    this.tags = new long[capacity];
+    this.heads = new int[capacity];
+    this.counts = new int[capacity];
+    this.next = new int[size];
+    Arrays.fill(heads, EMPTY);
+    // insert backwards and prepend, so that the chain of a digest is in ascending order
+    for (int row = size - 1; row >= 0; --row) {
+      insert(row);
+    }
+  }
+
+  private void insert(int row) {
+    final int offset = row * length;
+    final long tag = view.getLong(offset);
+    int slot = (int) tag & mask;
+    while (heads[slot] != EMPTY) {
+      if (tags[slot] == tag && equals(heads[slot], view, offset)) {
+        next[row] = heads[slot];
+        heads[slot] = row;
+        counts[slot]++;
+        return;
+      }
+      slot = (slot + 1) & mask;
+    }
+    tags[slot] = tag;
+    heads[slot] = row;
+    counts[slot] = 1;
+    next[row] = EMPTY;
+  }
+
+  private boolean equals(int row, ByteBuffer other, int offset) {
+    final int base = row * length;
+    for (int i = 0; i < length; ++i) {
+      if (digests[base + i] != other.get(offset + i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @param other a little endian buffer holding a digest at the absolute offset
+   * @return the first row with the same digest, or EMPTY
+   */
+  int find(ByteBuffer other, int offset) {
+    int slot = slot(other, offset);
+    return slot == EMPTY ? EMPTY : heads[slot];
+  }
+
+  // number of rows with the same digest
+  int count(ByteBuffer other, int offset) {
+    int slot = slot(other, offset);
+    return slot == EMPTY ? 0 : counts[slot];
+  }
+
+  private int slot(ByteBuffer other, int offset) {
+    final long tag = other.getLong(offset);
+    int slot = (int) tag & mask;
+    while (heads[slot] != EMPTY) {
+      if (tags[slot] == tag && equals(heads[slot], other, offset)) {
+        return slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return EMPTY;
+  }
+
+  // the next row with the same digest as row, or EMPTY
+  int next(int row) {
+    return next[row];
+  }
+}
@@ -1,15 +1,25 @@
 package com.hufudb.openhufu.mpc.psi;
 
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.Collectors;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ImmutableMultimap;
-import com.google.common.collect.Multimap;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
 import com.hufudb.openhufu.mpc.ProtocolException;
 import com.hufudb.openhufu.mpc.ProtocolType;
 import com.hufudb.openhufu.mpc.RpcProtocolExecutor;
 import com.hufudb.openhufu.mpc.codec.HashFunction;
 import com.hufudb.openhufu.mpc.codec.OpenHuFuCodec;
+import com.hufudb.openhufu.mpc.utils.Stream;
 import com.hufudb.openhufu.rpc.Rpc;
 import com.hufudb.openhufu.rpc.utils.DataPacket;
 import com.hufudb.openhufu.rpc.utils.DataPacketHeader;
@@ -32,25 +42,47 @@ import org.apache.commons.lang3.tuple.Pair;
  *       Header: [ptoId: hpsi, stepId, 1, senderId: S/R, receiverId: R/S, extraInfo: hashFuncId]
  *       Payload: [byte arrary of set size]
  *   Step2:
- *     NS/NR hashes their local set elements, NS send hash result to NR
+ *     NS/NR hashes their local set elements in parallel, NS streams the packed digests to NR
  *     NS:
- *       Header: [ptoId: hpsi, stepId, 2, senderId: NS, receiverId: NR, extraInfo: hashFuncId]
- *       Payload: [hash(ele_ns_i)]
+ *       Header: [ptoId: stream, senderId: NS, receiverId: NR, extraInfo: DIGEST_FLAG + hashFuncId]
+ *       Payload: [hash(ele_ns_0) || hash(ele_ns_1) || ...] in pieces
  *   Step3:
- *     NR receives [hash(ele_ns_i)] from NS, and find the same elements in [hash(ele_nr_i)]
+ *     NR indexes [hash(ele_nr_i)] in a DigestTable, probes it with [hash(ele_ns_i)] in parallel,
+ *     and streams the indices of NS in the intersection back to NS
+ *     NR:
+ *       Header: [ptoId: stream, senderId: NR, receiverId: NS, extraInfo: RESULT_FLAG + hashFuncId]
+ *       Payload: [packed int indices] in pieces
  *     Result for R and S:
- *     [index of elements in the intersection result as byte arry]
+ *     [index of elements in the intersection result], as int[] in intersect
+ *     or as a list of encoded ints in run
+ *   In cardinality, NR sums the multiplicities of [hash(ele_ns_i)] in its table instead,
+ *   and only sends the sum back
+ *     NR:
+ *       Header: [ptoId: hpsi, stepId, 3, senderId: NR, receiverId: NS, extraInfo: hashFuncId]
+ *       Payload: [size of the join]
  */
 
 public class HashPSI extends RpcProtocolExecutor {
 
+  // rows hashed or probed by one fork-join task
+  static final int SEGMENT_ROWS = 1 << 14;
+  static final int CHUNK_BYTES = 1 << 20;
+  // the transfers of step 2 and 3 are streams, apart from other streams of the task
+  static final long DIGEST_FLAG = ((long) ProtocolType.HASH_PSI.getId() << 32) + (2L << 8);
+  static final long RESULT_FLAG = ((long) ProtocolType.HASH_PSI.getId() << 32) + (3L << 8);
+
+  final Stream stream;
+
   public HashPSI(Rpc rpc) {
     super(rpc, ProtocolType.HASH_PSI);
+    this.stream = new Stream(rpc);
   }
 
   /*
-   * determine who is sender in the following steps party with smaller set is sender when set size
-   * is equal, party with lower id is sender
+   * determine who is sender in the following steps, party with smaller set is sender,
+   * when set size is equal, party with lower id is sender.
+   * Both parties hash with the same function, so the digests sent are proportional to the set
+   * size and the smaller sender moves the fewest bytes
    */
   Pair<Integer, Integer> getSenderReceiver(long taskId, int hashType, List<Integer> parties,
       List<byte[]> inputs) {
@@ -76,7 +108,7 @@ public class HashPSI extends RpcProtocolExecutor {
       LOG.error("{} fail to get set size from party {} in HashPSI", rpc.ownParty(), otherId);
       throw new RuntimeException("Fail to get set size in HashPSI");
     } else {
-      int remoteSize = OpenHuFuCodec.decodeInt(setSizeResult.getPayload().get(0));
+      int remoteSize = OpenHuFuCodec.decodeInt(setSizeResult.getPayloadByteStrings().get(0).toByteArray());
       if (remoteSize < localSize) {
         return Pair.of(otherId, ownId);
       } else if (remoteSize > localSize) {
@@ -91,113 +123,272 @@ public class HashPSI extends RpcProtocolExecutor {
     }
   }
 
-  // sender just generate a byte arry list
-  List<byte[]> hash4Sender(List<byte[]> ori, HashFunction func) {
-    long startTime = System.currentTimeMillis();
-    ImmutableList.Builder<byte[]> builder = ImmutableList.builder();
-    for (byte[] row : ori) {
-      builder.add(func.hash(row));
+  // digests of the keys packed in one array, hashed in parallel over segments of SEGMENT_ROWS
+  static byte[] hash(List<byte[]> keys, HashFunction func) throws ProtocolException {
+    final int length = func.getLength();
+    if ((long) keys.size() * length > Integer.MAX_VALUE) {
+      throw new ProtocolException("Too many elements for HashPSI: " + keys.size());
+    }
+    final byte[] digests = new byte[keys.size() * length];
+    List<RecursiveAction> tasks = new ArrayList<>();
+    for (int lo = 0; lo < keys.size(); lo += SEGMENT_ROWS) {
+      final int from = lo;
+      final int to = Math.min(lo + SEGMENT_ROWS, keys.size());
+      tasks.add(new RecursiveAction() {
+        @Override
+        protected void compute() {
+          MessageDigest md = func.newDigest();
+          try {
+            for (int i = from; i < to; ++i) {
+              md.update(keys.get(i));
+              md.digest(digests, i * length, length);
+            }
+          } catch (DigestException e) {
+            throw new IllegalStateException("Fail to hash in HashPSI", e);
+          }
+        }
+      });
+    }
+    ForkJoinTask.invokeAll(tasks);
+    return digests;
+  }
+
+  // views of the digests in pieces of CHUNK_BYTES, without copy
+  static List<ByteString> chunk(byte[] data, int unit) {
+    final int chunkBytes = Math.max(CHUNK_BYTES / unit, 1) * unit;
+    List<ByteString> chunks = new ArrayList<>();
+    for (int offset = 0; offset < data.length; offset += chunkBytes) {
+      chunks.add(UnsafeByteOperations.unsafeWrap(data, offset,
+          Math.min(chunkBytes, data.length - offset)));
+    }
+    return chunks;
+  }
+
+  /**
+   * probe the table with the digests of sender in parallel over segments,
+   * return [sender indices, receiver indices] ordered by sender index
+   */
+  static int[][] probe(DigestTable table, List<ByteString> senderDigests) {
+    final int length = table.length;
+    List<RecursiveTask<int[][]>> tasks = new ArrayList<>();
+    int base = 0;
+    for (ByteString chunk : senderDigests) {
+      final ByteBuffer buffer = chunk.asReadOnlyByteBuffer().order(ByteOrder.LITTLE_ENDIAN);
+      final int rows = chunk.size() / length;
+      for (int lo = 0; lo < rows; lo += SEGMENT_ROWS) {
+        final int from = lo;
+        final int to = Math.min(lo + SEGMENT_ROWS, rows);
+        final int offset = base;
+        tasks.add(new RecursiveTask<int[][]>() {
+          @Override
+          protected int[][] compute() {
+            final int start = buffer.position();
+            int[] senderIdx = new int[to - from];
+            int[] receiverIdx = new int[to - from];
+            int count = 0;
+            for (int i = from; i < to; ++i) {
+              for (int r = table.find(buffer, start + i * length); r != DigestTable.EMPTY;
+                  r = table.next(r)) {
+                if (count == senderIdx.length) {
+                  senderIdx = Arrays.copyOf(senderIdx, count * 2);
+                  receiverIdx = Arrays.copyOf(receiverIdx, count * 2);
+                }
+                senderIdx[count] = offset + i;
+                receiverIdx[count] = r;
+                count++;
+              }
+            }
+            return new int[][] {Arrays.copyOf(senderIdx, count),
+                Arrays.copyOf(receiverIdx, count)};
+          }
+        });
+      }
+      base += rows;
     }
+    ForkJoinTask.invokeAll(tasks);
+    int total = 0;
+    for (RecursiveTask<int[][]> task : tasks) {
+      total += task.join()[0].length;
+    }
+    int[][] result = new int[2][total];
+    int pos = 0;
+    for (RecursiveTask<int[][]> task : tasks) {
+      int[][] part = task.join();
+      System.arraycopy(part[0], 0, result[0], pos, part[0].length);
+      System.arraycopy(part[1], 0, result[1], pos, part[1].length);
+      pos += part[0].length;
+    }
+    return result;
+  }
+
+  // sum of the multiplicities in the table of the digests of sender, in parallel over segments
+  static long count(DigestTable table, List<ByteString> senderDigests) {
+    final int length = table.length;
+    List<RecursiveTask<Long>> tasks = new ArrayList<>();
+    for (ByteString chunk : senderDigests) {
+      final ByteBuffer buffer = chunk.asReadOnlyByteBuffer().order(ByteOrder.LITTLE_ENDIAN);
+      final int rows = chunk.size() / length;
+      for (int lo = 0; lo < rows; lo += SEGMENT_ROWS) {
+        final int from = lo;
+        final int to = Math.min(lo + SEGMENT_ROWS, rows);
+        tasks.add(new RecursiveTask<Long>() {
+          @Override
+          protected Long compute() {
+            final int start = buffer.position();
+            long sum = 0;
+            for (int i = from; i < to; ++i) {
+              sum += table.count(buffer, start + i * length);
+            }
+            return sum;
+          }
+        });
+      }
+    }
+    ForkJoinTask.invokeAll(tasks);
+    long total = 0;
+    for (RecursiveTask<Long> task : tasks) {
+      total += task.join();
+    }
+    return total;
+  }
+
+  // sender hash local data, send them to receiver and wait for intersect result
+  int[] senderProcedure(List<byte[]> localData, long taskId, int receiverId, HashFunction func)
+      throws ProtocolException {
+    long startTime = System.currentTimeMillis();
+    byte[] digests = hash(localData, func);
     long endTime = System.currentTimeMillis();
     LOG.info("Sender hash use {} ms", endTime - startTime);
-    return builder.build();
+    stream.sendByteStrings(taskId, ImmutableList.of(receiverId), chunk(digests, func.getLength()),
+        DIGEST_FLAG + func.getId());
+    List<ByteString> psiResult =
+        stream.receiveByteStrings(taskId, receiverId, RESULT_FLAG + func.getId());
+    int[] result = decodeIndices(psiResult);
+    LOG.debug("{} get {} elements in HashPSI", rpc.ownParty(), result.length);
+    return result;
   }
 
-  // receiver generate a multimap to speed up finding identical elements
-  Multimap<ByteBuffer, Integer> hash4Receiver(List<byte[]> ori, HashFunction func) {
+  // receiver hash local data wait for sender's result, execute intersect and send result to sender
+  int[] receiverProcedure(List<byte[]> localData, long taskId, int senderId, HashFunction func)
+      throws ProtocolException {
     long startTime = System.currentTimeMillis();
-    ImmutableMultimap.Builder<ByteBuffer, Integer> builder = ImmutableMultimap.builder();
-    for (int i = 0; i < ori.size(); ++i) {
-      byte[] key = func.hash(ori.get(i));
-      builder.put(ByteBuffer.wrap(key), i);
-    }
+    DigestTable receiverIndex =
+        new DigestTable(hash(localData, func), func.getLength(), localData.size());
     long endTime = System.currentTimeMillis();
     LOG.info("Receiver hash use {} ms", endTime - startTime);
-    return builder.build();
+    List<ByteString> senderDigests =
+        stream.receiveByteStrings(taskId, senderId, DIGEST_FLAG + func.getId());
+    startTime = System.currentTimeMillis();
+    int[][] intersect = probe(receiverIndex, senderDigests);
+    endTime = System.currentTimeMillis();
+    LOG.info("Receiver intersection use {} ms", endTime - startTime);
+    stream.sendByteStrings(taskId, ImmutableList.of(senderId),
+        chunk(OpenHuFuCodec.encodeInts(intersect[0]), Integer.BYTES), RESULT_FLAG + func.getId());
+    LOG.debug("{} get {} elements in HashPSI", rpc.ownParty(), intersect[1].length);
+    return intersect[1];
   }
 
-  // sender hash local data, send them to receiver and wait for intersect result
-  List<byte[]> senderProcedure(List<byte[]> localData, long taskId, int receiverId,
-      HashFunction func) {
-    List<byte[]> hashResult = hash4Sender(localData, func);
-    DataPacketHeader senderHeader = new DataPacketHeader(taskId, type.getId(), 2, func.getId(),
-        rpc.ownParty().getPartyId(), receiverId);
-    rpc.send(DataPacket.fromByteArrayList(senderHeader, hashResult));
-    DataPacketHeader expectHeader = new DataPacketHeader(taskId, type.getId(), 3, func.getId(),
+  // the cardinality variant of senderProcedure, only the size of the join is sent back
+  long countSender(List<byte[]> localData, long taskId, int receiverId, HashFunction func)
+      throws ProtocolException {
+    byte[] digests = hash(localData, func);
+    stream.sendByteStrings(taskId, ImmutableList.of(receiverId), chunk(digests, func.getLength()),
+        DIGEST_FLAG + func.getId());
+    DataPacketHeader expect = new DataPacketHeader(taskId, type.getId(), 3, func.getId(),
         receiverId, rpc.ownParty().getPartyId());
-    DataPacket psiResult = rpc.receive(expectHeader);
-    if (psiResult == null) {
-      LOG.error("Sender [{}] fail to get result from Receiver[{}] in HashPSI", rpc.ownParty(),
-          receiverId);
-      throw new RuntimeException("Fail to get result in HashPSI");
-    } else {
-      LOG.debug("{} get {} elements in HashPSI", rpc.ownParty(), psiResult.getPayload().size());
-      return psiResult.getPayload();
+    DataPacket result = rpc.receive(expect);
+    if (result == null) {
+      LOG.error("Sender [{}] fail to get cardinality from Receiver[{}] in HashPSI",
+          rpc.ownParty(), receiverId);
+      throw new ProtocolException("Fail to get cardinality in HashPSI");
     }
+    return OpenHuFuCodec.decodeLong(result.getPayloadByteStrings().get(0).toByteArray());
   }
 
-  // receiver hash local data wait for sender's result, execute intersect and send result to sender
-  List<byte[]> receiverProcedure(List<byte[]> localData, long taskId, int senderId,
-      HashFunction func) {
-    Multimap<ByteBuffer, Integer> receiverIndex = hash4Receiver(localData, func);
-    DataPacketHeader expectHeader = new DataPacketHeader(taskId, type.getId(), 2, func.getId(),
-        senderId, rpc.ownParty().getPartyId());
-    DataPacket senderHashResult = rpc.receive(expectHeader);
-    if (senderHashResult == null) {
-      LOG.error("Receiver [{}] fail to get hash result from Sender[{}] in HashPSI", rpc.ownParty(),
-          senderId);
-      throw new RuntimeException("Fail to get hash result from sender in HashPSI");
-    } else {
-      long startTime = System.currentTimeMillis();
-      List<byte[]> senderData = senderHashResult.getPayload();
-      ImmutableList.Builder<byte[]> senderIntersect = ImmutableList.builder();
-      ImmutableList.Builder<byte[]> receiverIntersect = ImmutableList.builder();
-      for (int i = 0; i < senderData.size(); ++i) {
-        ByteBuffer senderHash = ByteBuffer.wrap(senderData.get(i));
-        if (receiverIndex.containsKey(senderHash)) {
-          for (Integer receiverId : receiverIndex.get(senderHash)) {
-            senderIntersect.add(OpenHuFuCodec.encodeInt(i));
-            receiverIntersect.add(OpenHuFuCodec.encodeInt(receiverId));
-          }
-        }
-      }
-      long endTime = System.currentTimeMillis();
-      LOG.info("Receiver intersection use {} ms", endTime - startTime);
-      DataPacketHeader resultHeader = new DataPacketHeader(taskId, type.getId(), 3, func.getId(),
-          rpc.ownParty().getPartyId(), senderId);
-      rpc.send(DataPacket.fromByteArrayList(resultHeader, senderIntersect.build()));
-      List<byte[]> receiverResult = receiverIntersect.build();
-      LOG.debug("{} get {} elements in HashPSI", rpc.ownParty(), receiverResult.size());
-      return receiverResult;
+  // the cardinality variant of receiverProcedure
+  long countReceiver(List<byte[]> localData, long taskId, int senderId, HashFunction func)
+      throws ProtocolException {
+    DigestTable receiverIndex =
+        new DigestTable(hash(localData, func), func.getLength(), localData.size());
+    List<ByteString> senderDigests =
+        stream.receiveByteStrings(taskId, senderId, DIGEST_FLAG + func.getId());
+    long cardinality = count(receiverIndex, senderDigests);
+    DataPacketHeader resultHeader = new DataPacketHeader(taskId, type.getId(), 3, func.getId(),
+        rpc.ownParty().getPartyId(), senderId);
+    rpc.send(DataPacket.fromByteArrayList(resultHeader,
+        ImmutableList.of(OpenHuFuCodec.encodeLong(cardinality))));
+    return cardinality;
+  }
+
+  static int[] decodeIndices(List<ByteString> chunks) {
+    int total = 0;
+    for (ByteString chunk : chunks) {
+      total += chunk.size() / Integer.BYTES;
+    }
+    int[] indices = new int[total];
+    int pos = 0;
+    for (ByteString chunk : chunks) {
+      int size = chunk.size() / Integer.BYTES;
+      chunk.asReadOnlyByteBuffer().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(indices, pos,
+          size);
+      pos += size;
     }
+    return indices;
   }
 
   /**
-   * @param args[0] List<byte[]> inputdata
-   * @param args[1] int hashType
+   * indices of own elements in the intersection, each pair of equal elements gives one index
+   * on both sides, and the two arrays are aligned
+   * @param keys own elements
+   * @param hashType id of HashFunction
    */
-  @Override
-  public Object run(long taskId, List<Integer> parties, Object... args) throws ProtocolException {
-    // todo: check this
-    List<byte[]> inputData = (List<byte[]>) args[0];
-    int hashType = (Integer) args[1];
-    Pair<Integer, Integer> senderReceiver = getSenderReceiver(taskId, hashType, parties, inputData);
+  public int[] intersect(long taskId, List<Integer> parties, List<byte[]> keys, int hashType)
+      throws ProtocolException {
+    Pair<Integer, Integer> senderReceiver = getSenderReceiver(taskId, hashType, parties, keys);
     int sender = senderReceiver.getLeft();
     int receiver = senderReceiver.getRight();
     HashFunction hashFunc = HashFunction.of(hashType);
     LOG.debug("Use {} in HashPSI", hashFunc);
     if (sender == rpc.ownParty().getPartyId()) {
       LOG.debug("{} is the sender of HashPSI", rpc.ownParty());
-      return senderProcedure(inputData, taskId, receiver, hashFunc);
+      return senderProcedure(keys, taskId, receiver, hashFunc);
     } else if (receiver == rpc.ownParty().getPartyId()) {
       LOG.debug("{} is the receiver of HashPSI", rpc.ownParty());
-      return receiverProcedure(inputData, taskId, sender, hashFunc);
+      return receiverProcedure(keys, taskId, sender, hashFunc);
     } else {
       LOG.error("Fail to determine who is sender/receiver in HashPSI");
       throw new RuntimeException("Fail to determine who is sender/receiver in HashPSI");
     }
   }
 
+  /**
+   * cardinality-only variant of intersect, both parties get the number of pairs of equal
+   * elements, i.e. the sum of the products of the multiplicities of each common element,
+   * no index is sent
+   */
+  public long cardinality(long taskId, List<Integer> parties, List<byte[]> keys, int hashType)
+      throws ProtocolException {
+    Pair<Integer, Integer> senderReceiver = getSenderReceiver(taskId, hashType, parties, keys);
+    HashFunction hashFunc = HashFunction.of(hashType);
+    if (senderReceiver.getLeft() == rpc.ownParty().getPartyId()) {
+      return countSender(keys, taskId, senderReceiver.getRight(), hashFunc);
+    } else {
+      return countReceiver(keys, taskId, senderReceiver.getLeft(), hashFunc);
+    }
+  }
+
+  /**
+   * @param args[0] List<byte[]> inputdata
+   * @param args[1] int hashType
+   */
+  @Override
+  public Object run(long taskId, List<Integer> parties, Object... args) throws ProtocolException {
+    List<byte[]> inputData = (List<byte[]>) args[0];
+    int hashType = (Integer) args[1];
+    int[] result = intersect(taskId, parties, inputData, hashType);
+    return Arrays.stream(result).mapToObj(OpenHuFuCodec::encodeInt).collect(Collectors.toList());
+  }
+
   // @Override
   // public List<byte[]> run(long taskId, List<Integer> parties, List<byte[]> inputData,
   //     Object... args) {
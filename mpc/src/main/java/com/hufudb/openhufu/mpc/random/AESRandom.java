@@ -0,0 +1,198 @@
+package com.hufudb.openhufu.mpc.random;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Random generator expanding a seed from SecureRandom with AES-CTR,
+ * the key stream is generated in blocks of BUFFER_BYTES and values are taken from the buffer,
+ * large requests are encrypted into the output directly.
+ * Each thread has its own stream seeded once, so it is safe to share an instance among threads.
+ */
+public class AESRandom implements OpenHuFuRandom {
+  static final int SEED_BYTES = 16;
+  static final int BUFFER_BYTES = 4096;
+  private static final byte[] ZEROS = new byte[BUFFER_BYTES];
+  private static final double DOUBLE_UNIT = 0x1.0p-53;
+  private static final float FLOAT_UNIT = 0x1.0p-24f;
+
+  final SecureRandom seeder;
+  final ThreadLocal<KeyStream> streams;
+
+  public AESRandom() {
+    this.seeder = new SecureRandom();
+    this.streams = ThreadLocal.withInitial(this::newStream);
+  }
+
+  private KeyStream newStream() {
+    byte[] key = new byte[SEED_BYTES];
+    byte[] iv = new byte[SEED_BYTES];
+    synchronized (seeder) {
+      seeder.nextBytes(key);
+      seeder.nextBytes(iv);
+    }
+    return new KeyStream(key, iv);
+  }
+
+  static final class KeyStream {
+    final Cipher cipher;
+    final byte[] buffer;
+    final ByteBuffer view;
+    int pos;
+    // unused random bits of nextBoolean
+    long bits;
+    int bitCount;
+
+    KeyStream(byte[] key, byte[] iv) {
+      try {
+        this.cipher = Cipher.getInstance("AES/CTR/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "AES"), new IvParameterSpec(iv));
+      } catch (GeneralSecurityException e) {
+        throw new IllegalStateException("AES/CTR is not available", e);
+      }
+      this.buffer = new byte[BUFFER_BYTES];
+      this.view = ByteBuffer.wrap(buffer).order(ByteOrder.LITTLE_ENDIAN);
+      this.pos = BUFFER_BYTES;
+    }
+
+    // encrypt zeros into out[offset, offset + len), len is a multiple of the AES block
+    void generate(byte[] out, int offset, int len) {
+      try {
+        while (len > 0) {
+          int n = Math.min(len, BUFFER_BYTES);
+          cipher.update(ZEROS, 0, n, out, offset);
+          offset += n;
+          len -= n;
+        }
+      } catch (GeneralSecurityException e) {
+        throw new IllegalStateException("Fail to generate AES key stream", e);
+      }
+    }
+
+    // ensure n bytes in the buffer
+    void require(int n) {
+      if (BUFFER_BYTES - pos < n) {
+        generate(buffer, 0, BUFFER_BYTES);
+        pos = 0;
+      }
+    }
+
+    int nextInt() {
+      require(Integer.BYTES);
+      int value = view.getInt(pos);
+      pos += Integer.BYTES;
+      return value;
+    }
+
+    long nextLong() {
+      require(Long.BYTES);
+      long value = view.getLong(pos);
+      pos += Long.BYTES;
+      return value;
+    }
+
+    boolean nextBoolean() {
+      if (bitCount == 0) {
+        bits = nextLong();
+        bitCount = Long.SIZE;
+      }
+      boolean value = (bits & 1) == 1;
+      bits >>>= 1;
+      bitCount--;
+      return value;
+    }
+
+    void nextBytes(byte[] out, int offset, int len) {
+      // take the rest of the buffer first, then the whole blocks, then the tail from the buffer
+      int head = Math.min(len, BUFFER_BYTES - pos);
+      System.arraycopy(buffer, pos, out, offset, head);
+      pos += head;
+      offset += head;
+      len -= head;
+      int blocks = len & ~(SEED_BYTES - 1);
+      generate(out, offset, blocks);
+      offset += blocks;
+      len -= blocks;
+      if (len > 0) {
+        require(len);
+        System.arraycopy(buffer, pos, out, offset, len);
+        pos += len;
+      }
+    }
+  }
+
+  @Override
+  public int nextInt() {
+    return streams.get().nextInt();
+  }
+
+  /**
+   * uniform in [0, n), the same algorithm as java.util.Random
+   */
+  @Override
+  public int nextInt(int n) {
+    if (n <= 0) {
+      throw new IllegalArgumentException("bound must be positive");
+    }
+    KeyStream stream = streams.get();
+    int r = stream.nextInt() >>> 1;
+    int m = n - 1;
+    if ((n & m) == 0) {
+      return (int) ((n * (long) r) >> 31);
+    }
+    for (int u = r; u - (r = u % n) + m < 0; u = stream.nextInt() >>> 1) {
+      // reject the values of the last incomplete range
+    }
+    return r;
+  }
+
+  @Override
+  public long nextLong() {
+    return streams.get().nextLong();
+  }
+
+  @Override
+  public double nextDouble() {
+    return (streams.get().nextLong() >>> 11) * DOUBLE_UNIT;
+  }
+
+  @Override
+  public float nextFloat() {
+    return (streams.get().nextInt() >>> 8) * FLOAT_UNIT;
+  }
+
+  @Override
+  public boolean nextBoolean() {
+    return streams.get().nextBoolean();
+  }
+
+  @Override
+  public byte[] randomBytes(int size) {
+    byte[] bytes = new byte[size];
+    nextBytes(bytes);
+    return bytes;
+  }
+
+  @Override
+  public void nextBytes(byte[] bytes) {
+    streams.get().nextBytes(bytes, 0, bytes.length);
+  }
+
+  @Override
+  public void nextLongs(long[] values) {
+    KeyStream stream = streams.get();
+    byte[] chunk = new byte[Math.min(values.length, BUFFER_BYTES / Long.BYTES) * Long.BYTES];
+    ByteBuffer chunkView = ByteBuffer.wrap(chunk).order(ByteOrder.LITTLE_ENDIAN);
+    for (int from = 0; from < values.length; from += chunk.length / Long.BYTES) {
+      int n = Math.min(values.length - from, chunk.length / Long.BYTES);
+      stream.nextBytes(chunk, 0, n * Long.BYTES);
+      chunkView.clear();
+      chunkView.asLongBuffer().get(values, from, n);
+    }
+  }
+}
@@ -45,4 +45,9 @@ public class BasicRandom implements OpenHuFuRandom {
     random.nextBytes(bytes);
     return bytes;
   }
+
+  @Override
+  public void nextBytes(byte[] bytes) {
+    random.nextBytes(bytes);
+  }
 }
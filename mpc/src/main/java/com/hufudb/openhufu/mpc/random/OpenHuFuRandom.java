@@ -8,4 +8,17 @@ public interface OpenHuFuRandom {
   float nextFloat();
   boolean nextBoolean();
   byte[] randomBytes(int size);
+
+  // fill bytes with random bytes
+  default void nextBytes(byte[] bytes) {
+    byte[] random = randomBytes(bytes.length);
+    System.arraycopy(random, 0, bytes, 0, bytes.length);
+  }
+
+  // fill values with random longs
+  default void nextLongs(long[] values) {
+    for (int i = 0; i < values.length; ++i) {
+      values[i] = nextLong();
+    }
+  }
 }
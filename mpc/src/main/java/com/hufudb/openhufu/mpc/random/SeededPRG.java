@@ -0,0 +1,37 @@
+package com.hufudb.openhufu.mpc.random;
+
+import java.security.GeneralSecurityException;
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import com.hufudb.openhufu.mpc.ProtocolException;
+import com.hufudb.openhufu.mpc.codec.OpenHuFuCodec;
+
+/**
+ * Deterministic expansion of a 16-byte seed with AES-CTR,
+ * parties holding the same seed get the same random vectors
+ */
+public final class SeededPRG {
+  public static final int SEED_BYTES = 16;
+
+  private SeededPRG() {}
+
+  public static byte[] expand(byte[] seed, int len) throws ProtocolException {
+    if (seed.length != SEED_BYTES) {
+      throw new ProtocolException("Seed of PRG must have " + SEED_BYTES + " bytes");
+    }
+    try {
+      Cipher cipher = Cipher.getInstance("AES/CTR/NoPadding");
+      cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(seed, "AES"),
+          new IvParameterSpec(new byte[SEED_BYTES]));
+      return cipher.doFinal(new byte[len]);
+    } catch (GeneralSecurityException e) {
+      throw new ProtocolException("Fail to expand seed of PRG", e);
+    }
+  }
+
+  public static long[] nextLongs(byte[] seed, int size) throws ProtocolException {
+    return OpenHuFuCodec.decodeLongs(expand(seed, size * Long.BYTES), size);
+  }
+
+}
@@ -0,0 +1,54 @@
+package com.hufudb.openhufu.mpc.secretsharing;
+
+import com.hufudb.openhufu.mpc.ProtocolException;
+
+/**
+ * Fixed-point encoding of doubles into Z_2^64: v is shared as round(v * 2^scaleBits),
+ * so FLOAT/DOUBLE values take the same long path as integers.
+ * Encoded values must stay in (-2^63, 2^63), i.e. |v| < 2^(63 - scaleBits),
+ * a sum beyond that range wraps around silently like a long sum.
+ */
+public final class FixedPoint {
+  // resolution 2^-20 (about 1e-6), values up to 2^43 (about 8.8e12)
+  public static final int DEFAULT_SCALE_BITS = 20;
+  public static final int MAX_SCALE_BITS = 62;
+
+  private FixedPoint() {}
+
+  public static void checkScaleBits(int scaleBits) {
+    if (scaleBits < 0 || scaleBits > MAX_SCALE_BITS) {
+      throw new IllegalArgumentException(
+          "Scale bits of fixed point must be in [0, " + MAX_SCALE_BITS + "]");
+    }
+  }
+
+  public static long encode(double value, int scaleBits) throws ProtocolException {
+    final double scaled = Math.scalb(value, scaleBits);
+    // 0x1.0p63 itself is out of range, Math.round saturates instead of failing
+    if (!(Math.abs(scaled) < 0x1.0p63)) {
+      throw new ProtocolException(String.format(
+          "Value %s is out of the fixed point range with %d scale bits", value, scaleBits));
+    }
+    return Math.round(scaled);
+  }
+
+  public static double decode(long value, int scaleBits) {
+    return Math.scalb((double) value, -scaleBits);
+  }
+
+  public static long[] encode(double[] values, int scaleBits) throws ProtocolException {
+    long[] encoded = new long[values.length];
+    for (int i = 0; i < values.length; ++i) {
+      encoded[i] = encode(values[i], scaleBits);
+    }
+    return encoded;
+  }
+
+  public static double[] decode(long[] values, int scaleBits) {
+    double[] decoded = new double[values.length];
+    for (int i = 0; i < values.length; ++i) {
+      decoded[i] = decode(values[i], scaleBits);
+    }
+    return decoded;
+  }
+}
@@ -6,8 +6,9 @@ import com.hufudb.openhufu.mpc.ProtocolException;
 import com.hufudb.openhufu.mpc.ProtocolType;
 import com.hufudb.openhufu.mpc.RpcProtocolExecutor;
 import com.hufudb.openhufu.mpc.codec.OpenHuFuCodec;
-import com.hufudb.openhufu.mpc.random.BasicRandom;
+import com.hufudb.openhufu.mpc.random.AESRandom;
 import com.hufudb.openhufu.mpc.random.OpenHuFuRandom;
+import com.hufudb.openhufu.mpc.random.SeededPRG;
 import com.hufudb.openhufu.proto.OpenHuFuData.ColumnType;
 import com.hufudb.openhufu.proto.OpenHuFuPlan.OperatorType;
 import com.hufudb.openhufu.rpc.Rpc;
@@ -15,14 +16,29 @@ import com.hufudb.openhufu.rpc.utils.DataPacket;
 import com.hufudb.openhufu.rpc.utils.DataPacketHeader;
 
 /**
- * (n, n) secret sharing implementation
+ * (n, n) secret sharing implementation over Z_2^64,
+ * FLOAT/DOUBLE values are shared in the fixed-point encoding of FixedPoint
  */
 public class SecretSharing extends RpcProtocolExecutor {
   final OpenHuFuRandom random;
+  final int scaleBits;
 
   public SecretSharing(Rpc rpc) {
+    this(rpc, FixedPoint.DEFAULT_SCALE_BITS);
+  }
+
+  /**
+   * @param scaleBits number of fractional bits of FLOAT/DOUBLE values, all parties must agree
+   */
+  public SecretSharing(Rpc rpc, int scaleBits) {
     super(rpc, ProtocolType.SS);
-    this.random = new BasicRandom();
+    FixedPoint.checkScaleBits(scaleBits);
+    this.random = new AESRandom();
+    this.scaleBits = scaleBits;
+  }
+
+  public int getScaleBits() {
+    return scaleBits;
   }
 
   List<Long> splitLong(long value, int n) {
@@ -37,18 +53,6 @@ public class SecretSharing extends RpcProtocolExecutor {
     return shares.build();
   }
 
-  List<Double> splitDouble(double value, int n) {
-    double sum = 0.0;
-    ImmutableList.Builder<Double> shares = ImmutableList.builderWithExpectedSize(n);
-    for (int i = 0; i < n - 1; ++i) {
-      double share = random.nextDouble();
-      sum += share;
-      shares.add(share);
-    }
-    shares.add(value - sum);
-    return shares.build();
-  }
-
   List<? extends Number> splitSecret(ColumnType type, Object value, List<Integer> parties)
       throws ProtocolException {
     switch (type) {
@@ -59,7 +63,8 @@ public class SecretSharing extends RpcProtocolExecutor {
         return splitLong(((Number) value).longValue(), parties.size());
       case FLOAT:
       case DOUBLE:
-        return splitDouble(((Number) value).doubleValue(), parties.size());
+        return splitLong(FixedPoint.encode(((Number) value).doubleValue(), scaleBits),
+            parties.size());
       default:
         throw new ProtocolException("Unsupported data type for SecretSharing");
     }
@@ -83,7 +88,7 @@ public class SecretSharing extends RpcProtocolExecutor {
         final DataPacketHeader expect =
             new DataPacketHeader(taskId, getProtocolTypeId(), 0, parties.get(i), ownId);
         DataPacket packet = rpc.receive(expect);
-        shares.add(OpenHuFuCodec.decodeLong(packet.getPayload().get(0)));
+        shares.add(OpenHuFuCodec.decodeLong(packet.getPayloadByteStrings().get(0).toByteArray()));
       } else {
         shares.add(localshares.get(i).longValue());
       }
@@ -91,43 +96,6 @@ public class SecretSharing extends RpcProtocolExecutor {
     return shares.build();
   }
 
-  List<? extends Number> distributeDouble(long taskId, List<Integer> parties,
-      List<? extends Number> localshares) {
-    // send local shares to other parties
-    ImmutableList.Builder<Double> shares = ImmutableList.builder();
-    for (int i = 0; i < parties.size(); ++i) {
-      if (parties.get(i) != ownId) {
-        final DataPacketHeader header =
-            new DataPacketHeader(taskId, getProtocolTypeId(), 0, ownId, parties.get(i));
-        rpc.send(DataPacket.fromByteArrayList(header,
-            ImmutableList.of(OpenHuFuCodec.encodeDouble(localshares.get(i).doubleValue()))));
-      }
-    }
-    // receive shares from other parties
-    for (int i = 0; i < parties.size(); ++i) {
-      if (parties.get(i) != ownId) {
-        final DataPacketHeader expect =
-            new DataPacketHeader(taskId, getProtocolTypeId(), 0, parties.get(i), ownId);
-        DataPacket packet = rpc.receive(expect);
-        shares.add(OpenHuFuCodec.decodeDouble(packet.getPayload().get(0)));
-      } else {
-        shares.add(localshares.get(i).doubleValue());
-      }
-    }
-    return shares.build();
-  }
-
-  List<? extends Number> distribute(long taskId, List<Integer> parties,
-      List<? extends Number> shares, ColumnType type) {
-    switch (type) {
-      case FLOAT:
-      case DOUBLE:
-        return distributeDouble(taskId, parties, shares);
-      default:
-        return distributeLong(taskId, parties, shares);
-    }
-  }
-
   long sumLong(long taskId, List<Integer> parties, List<? extends Number> shares) {
     long sum = 0L;
     for (Number s : shares) {
@@ -141,53 +109,162 @@ public class SecretSharing extends RpcProtocolExecutor {
       for (int i = 1; i < parties.size(); ++i) {
         final DataPacketHeader expect = new DataPacketHeader(taskId, getProtocolTypeId(), 1, parties.get(i), ownId);
         DataPacket packet = rpc.receive(expect);
-        sum += OpenHuFuCodec.decodeLong(packet.getPayload().get(0));
+        sum += OpenHuFuCodec.decodeLong(packet.getPayloadByteStrings().get(0).toByteArray());
       }
       return sum;
     }
   }
 
-  double sumDouble(long taskId, List<Integer> parties, List<? extends Number> shares) {
-    double sum = 0;
-    for (Number s : shares) {
-      sum += s.doubleValue();
+  Number sum(long taskId, ColumnType type, List<Integer> parties, List<? extends Number> shares) {
+    switch (type) {
+      case FLOAT:
+      case DOUBLE:
+        return FixedPoint.decode(sumLong(taskId, parties, shares), scaleBits);
+      default:
+        return sumLong(taskId, parties, shares);
+    }
+  }
+
+  /**
+   * Step1 of the vector sum: send a fresh seed to each other party, the share of that party is
+   * the expansion of the seed, so only n - 1 seeds are sent instead of n - 1 vectors
+   *   Header: [ptoId: ss, stepId: 2, senderId: own, receiverId: other, extraInfo]
+   *   Payload: [seed, vector length]
+   * @return seeds sent to the other parties and received from them, in the order of parties,
+   *         null for the own party
+   */
+  byte[][][] exchangeSeeds(long taskId, List<Integer> parties, int size, long extraInfo)
+      throws ProtocolException {
+    byte[][] sent = new byte[parties.size()][];
+    byte[][] received = new byte[parties.size()][];
+    for (int i = 0; i < parties.size(); ++i) {
+      if (parties.get(i) != ownId) {
+        sent[i] = random.randomBytes(SeededPRG.SEED_BYTES);
+        final DataPacketHeader header = new DataPacketHeader(taskId, getProtocolTypeId(), 2,
+            extraInfo, ownId, parties.get(i));
+        rpc.send(DataPacket.fromByteArrayList(header,
+            ImmutableList.of(sent[i], OpenHuFuCodec.encodeInt(size))));
+      }
+    }
+    for (int i = 0; i < parties.size(); ++i) {
+      if (parties.get(i) != ownId) {
+        final DataPacketHeader expect = new DataPacketHeader(taskId, getProtocolTypeId(), 2,
+            extraInfo, parties.get(i), ownId);
+        List<byte[]> payload = receivePayload(expect);
+        if (OpenHuFuCodec.decodeInt(payload.get(1)) != size) {
+          throw new ProtocolException(String.format(
+              "Party [%d] shares a vector of different length", parties.get(i)));
+        }
+        received[i] = payload.get(0);
+      }
+    }
+    return new byte[][][] {sent, received};
+  }
+
+  List<byte[]> receivePayload(DataPacketHeader expect) throws ProtocolException {
+    DataPacket packet = rpc.receive(expect);
+    if (packet == null) {
+      throw new ProtocolException("Fail to receive " + expect + " of SecretSharing");
+    }
+    return packet.getPayload();
+  }
+
+  /**
+   * vector version of the PLUS operation in two rounds, the i-th element of the result is the sum
+   * of the i-th elements of all parties
+   *   Step1: see exchangeSeeds, the own share is values - sum of PRG(sent seeds)
+   *   Step2: add PRG(received seeds) to the own share, send it to the first party
+   *     Header: [ptoId: ss, stepId: 3, senderId: own, receiverId: parties[0], extraInfo]
+   *     Payload: [packed vector]
+   * @return the sum for the first party, a vector of 0 for other parties
+   */
+  public long[] sumLongs(long taskId, List<Integer> parties, long[] values, long extraInfo)
+      throws ProtocolException {
+    final int size = values.length;
+    byte[][][] seeds = exchangeSeeds(taskId, parties, size, extraInfo);
+    long[] share = values.clone();
+    for (int i = 0; i < parties.size(); ++i) {
+      if (parties.get(i) != ownId) {
+        long[] sent = SeededPRG.nextLongs(seeds[0][i], size);
+        long[] received = SeededPRG.nextLongs(seeds[1][i], size);
+        for (int j = 0; j < size; ++j) {
+          share[j] += received[j] - sent[j];
+        }
+      }
     }
     if (ownId != parties.get(0)) {
-      DataPacketHeader header = new DataPacketHeader(taskId, getProtocolTypeId(), 1, ownId, parties.get(0));
-      rpc.send(DataPacket.fromByteArrayList(header, ImmutableList.of(OpenHuFuCodec.encodeDouble(sum))));
-      return 0L;
-    } else {
-      for (int i = 1; i < parties.size(); ++i) {
-        final DataPacketHeader expect = new DataPacketHeader(taskId, getProtocolTypeId(), 1, parties.get(i), ownId);
-        DataPacket packet = rpc.receive(expect);
-        sum += OpenHuFuCodec.decodeDouble(packet.getPayload().get(0));
+      DataPacketHeader header = new DataPacketHeader(taskId, getProtocolTypeId(), 3, extraInfo,
+          ownId, parties.get(0));
+      rpc.send(DataPacket.fromByteArrayList(header,
+          ImmutableList.of(OpenHuFuCodec.encodeLongs(share))));
+      return new long[size];
+    }
+    for (int i = 1; i < parties.size(); ++i) {
+      final DataPacketHeader expect = new DataPacketHeader(taskId, getProtocolTypeId(), 3,
+          extraInfo, parties.get(i), ownId);
+      long[] other = OpenHuFuCodec.decodeLongs(receivePayload(expect).get(0), size);
+      for (int j = 0; j < size; ++j) {
+        share[j] += other[j];
       }
-      return sum;
     }
+    return share;
   }
 
-  Number sum(long taskId, ColumnType type, List<Integer> parties, List<? extends Number> shares) {
+  public long[] sumLongs(long taskId, List<Integer> parties, long[] values)
+      throws ProtocolException {
+    return sumLongs(taskId, parties, values, 0L);
+  }
+
+  /**
+   * double version of sumLongs, values are encoded by FixedPoint and summed in the ring,
+   * so it has the same cost as sumLongs
+   */
+  public double[] sumDoubles(long taskId, List<Integer> parties, double[] values, long extraInfo)
+      throws ProtocolException {
+    long[] sum = sumLongs(taskId, parties, FixedPoint.encode(values, scaleBits), extraInfo);
+    return FixedPoint.decode(sum, scaleBits);
+  }
+
+  public double[] sumDoubles(long taskId, List<Integer> parties, double[] values)
+      throws ProtocolException {
+    return sumDoubles(taskId, parties, values, 0L);
+  }
+
+  Object runVector(long taskId, List<Integer> parties, ColumnType type, Object values,
+      OperatorType op) throws ProtocolException {
+    if (op != OperatorType.PLUS) {
+      throw new ProtocolException("Unsupported operation for secret sharing");
+    }
     switch (type) {
+      case BYTE:
+      case SHORT:
+      case INT:
+      case LONG:
+        return sumLongs(taskId, parties, (long[]) values);
       case FLOAT:
       case DOUBLE:
-        return sumDouble(taskId, parties, shares);
+        return sumDoubles(taskId, parties, (double[]) values);
       default:
-        return sumLong(taskId, parties, shares);
+        throw new ProtocolException("Unsupported data type for SecretSharing");
     }
   }
 
   /**
    * @param args[0] ColumnType of the input value
-   * @param args[1] input value
+   * @param args[1] input value, or a long[] / double[] vector of input values
    * @param args[2] OperatorType
-   * @return result of ColumnType for the first party, 0 for other parties
+   * @return result of ColumnType for the first party, 0 for other parties,
+   *         a vector of results for vector input
    */
   @Override
   public Object run(long taskId, List<Integer> parties, Object... args) throws ProtocolException {
     ColumnType type = (ColumnType) args[0];
     OperatorType op = (OperatorType) args[2];
+    if (args[1] instanceof long[] || args[1] instanceof double[]) {
+      return runVector(taskId, parties, type, args[1], op);
+    }
     List<? extends Number> localshares = splitSecret(type, args[1], parties);
-    List<? extends Number> shares = distribute(taskId, parties, localshares, type);
+    List<? extends Number> shares = distributeLong(taskId, parties, localshares);
     switch (op) {
       case PLUS:
         return sum(taskId, type, parties, shares);
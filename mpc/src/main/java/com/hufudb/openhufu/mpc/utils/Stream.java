@@ -2,8 +2,11 @@ package com.hufudb.openhufu.mpc.utils;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Collectors;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
 import com.hufudb.openhufu.mpc.ProtocolException;
 import com.hufudb.openhufu.mpc.ProtocolType;
 import com.hufudb.openhufu.mpc.RpcProtocolExecutor;
@@ -13,74 +16,155 @@ import com.hufudb.openhufu.rpc.utils.DataPacketHeader;
 
 /**
  * boardcast large data to all receiver, divide the data into small pieces and tranfer in stream
+ * flow control: the sender keeps at most WINDOW pieces in flight for each receiver,
+ * the receiver grants a credit of BATCH more pieces each time it consumes BATCH pieces
  */
 public class Stream extends RpcProtocolExecutor {
   static final long DEFAULT_MAX_SIZE = 4 * 1024 * 1023L;
+  static final int DEFAULT_WINDOW = 8;
+  static final int CREDIT_BASE = 1 << 30;
 
   private final long MAX_SIZE;
+  private final int WINDOW;
+  private final int BATCH;
 
   public Stream(Rpc rpc) {
-    super(rpc, ProtocolType.STREAM);
-    MAX_SIZE = DEFAULT_MAX_SIZE;
+    this(rpc, DEFAULT_MAX_SIZE, DEFAULT_WINDOW);
   }
 
   @VisibleForTesting
   public Stream(Rpc rpc, long size) {
+    this(rpc, size, DEFAULT_WINDOW);
+  }
+
+  @VisibleForTesting
+  public Stream(Rpc rpc, long size, int window) {
     super(rpc, ProtocolType.STREAM);
     MAX_SIZE = size;
+    WINDOW = Math.max(window, 1);
+    BATCH = Math.max(WINDOW / 2, 1);
   }
 
-  void send(long taskId, int packetId, List<Integer> receivers, List<byte[]> input, long extraInfo) {
+  void send(long taskId, int packetId, List<Integer> receivers, List<ByteString> input,
+      long extraInfo, int[] credits) throws ProtocolException {
     // todo: concurrent opt
-    for (Integer receiverId : receivers) {
+    for (int i = 0; i < receivers.size(); ++i) {
+      int receiverId = receivers.get(i);
+      while (packetId >= WINDOW + credits[i] * BATCH) {
+        waitCredit(taskId, receiverId, credits[i], extraInfo);
+        credits[i]++;
+      }
       DataPacketHeader header =
           new DataPacketHeader(taskId, getProtocolTypeId(), packetId, extraInfo, ownId, receiverId);
-      rpc.send(DataPacket.fromByteArrayList(header, input));
+      rpc.send(DataPacket.fromByteStringList(header, input));
+    }
+  }
+
+  // credits use stepIds from CREDIT_BASE, apart from the data pieces of a reverse stream
+  static int creditStep(int creditId) {
+    return CREDIT_BASE + creditId;
+  }
+
+  void waitCredit(long taskId, int receiverId, int creditId, long extraInfo)
+      throws ProtocolException {
+    DataPacketHeader expect =
+        new DataPacketHeader(taskId, getProtocolTypeId(), creditStep(creditId), extraInfo,
+            receiverId, ownId);
+    if (rpc.receive(expect) == null) {
+      LOG.error("{} fail to get credit {} from Party[{}]", rpc.ownParty(), creditId, receiverId);
+      throw new ProtocolException("Stream fail to get credit from receiver");
     }
   }
 
-  List<byte[]> senderProcedure(long taskId, List<Integer> receivers, List<byte[]> inputData, long extraInfo) {
+  void grantCredit(long taskId, int senderId, int creditId, long extraInfo) {
+    DataPacketHeader header =
+        new DataPacketHeader(taskId, getProtocolTypeId(), creditStep(creditId), extraInfo, ownId,
+            senderId);
+    rpc.send(DataPacket.fromByteStringList(header, ImmutableList.of()));
+  }
+
+  /**
+   * send the data to receivers without copying it, block when a receiver runs out of credits
+   */
+  public void sendByteStrings(long taskId, List<Integer> receivers, List<ByteString> inputData,
+      long extraInfo) throws ProtocolException {
+    int[] credits = new int[receivers.size()];
     long size = 0;
     int packetId = 0;
     int last = 0;
     for (int i = 0; i < inputData.size(); ++i) {
-      byte[] ele = inputData.get(i);
-      if (size + ele.length > MAX_SIZE) {
-        send(taskId, packetId, receivers, inputData.subList(last, i), extraInfo);
-        size = ele.length;
+      ByteString ele = inputData.get(i);
+      if (size + ele.size() > MAX_SIZE && i > last) {
+        send(taskId, packetId, receivers, inputData.subList(last, i), extraInfo, credits);
+        size = ele.size();
         last = i;
         packetId++;
       } else {
-        size += ele.length;
+        size += ele.size();
       }
     }
     if (size != 0) {
-      send(taskId, packetId, receivers, inputData.subList(last, inputData.size()), extraInfo);
+      send(taskId, packetId, receivers, inputData.subList(last, inputData.size()), extraInfo,
+          credits);
+      packetId++;
+    }
+    // send an empty packet to stop the stream, it doesn't consume credit
+    for (int receiverId : receivers) {
+      DataPacketHeader header =
+          new DataPacketHeader(taskId, getProtocolTypeId(), packetId, extraInfo, ownId, receiverId);
+      rpc.send(DataPacket.fromByteStringList(header, ImmutableList.of()));
+    }
+    // collect the remaining credits so that none of them is left in the buffer
+    for (int i = 0; i < receivers.size(); ++i) {
+      while (credits[i] < packetId / BATCH) {
+        waitCredit(taskId, receivers.get(i), credits[i], extraInfo);
+        credits[i]++;
+      }
     }
-    // send an empty packet to stop the stream
-    send(taskId, packetId + 1, receivers, ImmutableList.of(), extraInfo);
-    return ImmutableList.of();
   }
 
-  List<byte[]> receiverProcedure(long taskId, int senderId, long extraInfo) {
-    List<byte[]> result = new ArrayList<>();
+  /**
+   * receive the data of sender as views of the received packets,
+   * a missing piece (timeout or cancelled task) fails the transfer without granting more credits
+   */
+  public List<ByteString> receiveByteStrings(long taskId, int senderId, long extraInfo)
+      throws ProtocolException {
+    List<ByteString> result = new ArrayList<>();
     int i = 0;
     while (true) {
       DataPacketHeader expect =
           new DataPacketHeader(taskId, getProtocolTypeId(), i, extraInfo, senderId, ownId);
       DataPacket unit = rpc.receive(expect);
       if (unit == null) {
-        LOG.error("Stream transfor failed in {}", rpc.ownParty());
-      } else if (unit.getPayload().size() == 0) {
+        LOG.error("{} fail to get piece {} from Party[{}]", rpc.ownParty(), i, senderId);
+        throw new ProtocolException("Stream fail to get piece from sender");
+      } else if (unit.getPayloadSize() == 0) {
         break;
       } else {
-        result.addAll(unit.getPayload());
+        result.addAll(unit.getPayloadByteStrings());
       }
       ++i;
+      if (i % BATCH == 0) {
+        grantCredit(taskId, senderId, i / BATCH - 1, extraInfo);
+      }
     }
     return result;
   }
 
+  List<byte[]> senderProcedure(long taskId, List<Integer> receivers, List<byte[]> inputData, long extraInfo)
+      throws ProtocolException {
+    sendByteStrings(taskId, receivers,
+        inputData.stream().map(UnsafeByteOperations::unsafeWrap).collect(Collectors.toList()),
+        extraInfo);
+    return ImmutableList.of();
+  }
+
+  List<byte[]> receiverProcedure(long taskId, int senderId, long extraInfo)
+      throws ProtocolException {
+    return receiveByteStrings(taskId, senderId, extraInfo).stream().map(ByteString::toByteArray)
+        .collect(Collectors.toList());
+  }
+
   /**
    * @param parties [senderId, receiverIds...]
    * @param args[0] inputdata
@@ -0,0 +1,204 @@
+package com.hufudb.openhufu.mpc.beaver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import com.google.common.collect.ImmutableList;
+import com.hufudb.openhufu.mpc.ProtocolException;
+import com.hufudb.openhufu.mpc.ot.ExtensionOT;
+import com.hufudb.openhufu.rpc.Party;
+import com.hufudb.openhufu.rpc.Rpc;
+import com.hufudb.openhufu.rpc.grpc.OpenHuFuOwnerInfo;
+import com.hufudb.openhufu.rpc.local.LocalRpcManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class BeaverTripleTest {
+  Rpc rpc0;
+  Rpc rpc1;
+  // one ExtensionOT for each rpc, its base OT sessions are per peer
+  ExtensionOT ot0;
+  ExtensionOT ot1;
+  ExecutorService service;
+
+  @Before
+  public void setUp() {
+    List<Party> parties = ImmutableList.of(new OpenHuFuOwnerInfo(0, "localhost:0"),
+        new OpenHuFuOwnerInfo(1, "localhost:1"));
+    LocalRpcManager manager = new LocalRpcManager(parties);
+    rpc0 = manager.getRpc(0);
+    rpc1 = manager.getRpc(1);
+    rpc0.connect();
+    rpc1.connect();
+    ot0 = new ExtensionOT(rpc0);
+    ot1 = new ExtensionOT(rpc1);
+    service = Executors.newFixedThreadPool(2);
+  }
+
+  @After
+  public void tearDown() {
+    service.shutdown();
+    rpc0.disconnect();
+    rpc1.disconnect();
+  }
+
+  static void checkTriples(BooleanTriples t0, BooleanTriples t1, int num) {
+    assertEquals(num, t0.size());
+    assertEquals(num, t1.size());
+    for (int i = 0; i < num; ++i) {
+      boolean a = t0.getA(i) ^ t1.getA(i);
+      boolean b = t0.getB(i) ^ t1.getB(i);
+      boolean c = t0.getC(i) ^ t1.getC(i);
+      assertEquals("triple " + i, a & b, c);
+    }
+  }
+
+  @Test
+  public void testGenerate() throws Exception {
+    BeaverTriple g0 = new BeaverTriple(rpc0, ot0);
+    BeaverTriple g1 = new BeaverTriple(rpc1, ot1);
+    final int num = 1000;
+    Future<Object> f0 = service.submit(() -> g0.run(1, ImmutableList.of(0, 1), num));
+    Future<Object> f1 = service.submit(() -> g1.run(1, ImmutableList.of(0, 1), num));
+    checkTriples((BooleanTriples) f0.get(), (BooleanTriples) f1.get(), num);
+  }
+
+  @Test
+  public void testPool() throws Exception {
+    final int batch = 100;
+    BeaverTriplePool pool0 = new BeaverTriplePool(rpc0, new BeaverTriple(rpc0, ot0), batch, 300);
+    BeaverTriplePool pool1 = new BeaverTriplePool(rpc1, new BeaverTriple(rpc1, ot1), batch, 300);
+    try {
+      // ranges across batches, and a range larger than the capacity
+      int[] nums = {30, 150, 1, 250, 500};
+      for (int num : nums) {
+        long start = pool0.reserve(1, num);
+        Future<BooleanTriples> f0 = service.submit(() -> pool0.take(1, start, num));
+        Future<BooleanTriples> f1 = service.submit(() -> pool1.take(0, start, num));
+        checkTriples(f0.get(), f1.get(), num);
+      }
+      BooleanTriples t = pool0.take(1, pool0.reserve(1, 5), 5).slice(1, 3);
+      assertEquals(3, t.size());
+    } finally {
+      pool0.close();
+      pool1.close();
+    }
+  }
+
+  void checkRange(BeaverTriplePool pool0, BeaverTriplePool pool1, int num) throws Exception {
+    long start = pool0.reserve(1, num);
+    Future<BooleanTriples> f0 = service.submit(() -> pool0.take(1, start, num));
+    Future<BooleanTriples> f1 = service.submit(() -> pool1.take(0, start, num));
+    checkTriples(f0.get(), f1.get(), num);
+  }
+
+  @Test
+  public void testNewEpoch() throws Exception {
+    BeaverTriplePool pool0 = new BeaverTriplePool(rpc0, new BeaverTriple(rpc0, ot0), 100, 300);
+    BeaverTriplePool pool1 = new BeaverTriplePool(rpc1, new BeaverTriple(rpc1, ot1), 100, 300);
+    try {
+      checkRange(pool0, pool1, 150);
+      long stale = pool0.reserve(1, 10);
+      long epoch = stale >>> BeaverTriplePool.EPOCH_SHIFT;
+      // A moves to the next epoch as after a failed generation, B follows the next range
+      pool0.pools.get(1).reset(epoch + 1);
+      try {
+        pool0.take(1, stale, 10);
+        fail("Triples of the old epoch are dropped");
+      } catch (ProtocolException e) {
+        // expected
+      }
+      checkRange(pool0, pool1, 250);
+      assertEquals(epoch + 1, pool1.pools.get(0).epoch);
+      try {
+        pool1.take(0, stale, 10);
+        fail("Triples of the old epoch are dropped");
+      } catch (ProtocolException e) {
+        // expected
+      }
+    } finally {
+      pool0.close();
+      pool1.close();
+    }
+  }
+
+  @Test
+  public void testInvalidate() throws Exception {
+    BeaverTriplePool pool0 = new BeaverTriplePool(rpc0, new BeaverTriple(rpc0, ot0), 100, 300);
+    BeaverTriplePool pool1 = new BeaverTriplePool(rpc1, new BeaverTriple(rpc1, ot1), 100, 300);
+    // the restarted party has a new ExtensionOT as well
+    BeaverTriplePool restarted =
+        new BeaverTriplePool(rpc1, new BeaverTriple(rpc1, new ExtensionOT(rpc1)), 100, 300);
+    try {
+      checkRange(pool0, pool1, 120);
+      long start = pool0.reserve(1, 10);
+      Future<BooleanTriples> waiting = service.submit(() -> pool0.take(1, start + 1000, 10));
+      // party 1 restarts with a new pool, and is added again to party 0
+      pool1.close();
+      pool0.invalidate(1);
+      ot0.invalidate(1);
+      try {
+        waiting.get();
+        fail("Takes of an invalidated pool fail");
+      } catch (ExecutionException e) {
+        assertTrue(e.getCause() instanceof ProtocolException);
+      }
+      checkRange(pool0, restarted, 120);
+    } finally {
+      pool0.close();
+      pool1.close();
+      restarted.close();
+    }
+  }
+
+  @Test
+  public void testStaleRange() throws Exception {
+    BeaverTriplePool pool0 = new BeaverTriplePool(rpc0, new BeaverTriple(rpc0, ot0), 100, 300);
+    BeaverTriplePool pool1 = new BeaverTriplePool(rpc1, new BeaverTriple(rpc1, ot1), 100, 300);
+    try {
+      // a range whose task is cancelled before the take
+      long abandoned = pool0.reserve(1, 150);
+      for (int i = 0; i < 5; ++i) {
+        checkRange(pool0, pool1, 100);
+      }
+      // the takes end at 650, batches ending before 350 are dropped on both parties
+      for (BeaverTriplePool.PeerPool pool : ImmutableList.of(pool0.pools.get(1),
+          pool1.pools.get(0))) {
+        synchronized (pool) {
+          assertEquals(3, pool.expired);
+          assertTrue(pool.batches.keySet().stream().allMatch(k -> k >= 3));
+        }
+      }
+      try {
+        pool0.take(1, abandoned, 150);
+        fail("Triples of a stale range are dropped");
+      } catch (ProtocolException e) {
+        // expected
+      }
+    } finally {
+      pool0.close();
+      pool1.close();
+    }
+  }
+
+  @Test
+  public void testClose() throws Exception {
+    BeaverTriplePool pool0 = new BeaverTriplePool(rpc0, new BeaverTriple(rpc0, ot0), 100, 300);
+    BeaverTriplePool pool1 = new BeaverTriplePool(rpc1, new BeaverTriple(rpc1, ot1), 100, 300);
+    checkRange(pool0, pool1, 50);
+    Thread producer = pool0.pools.get(1).producer;
+    pool0.close();
+    pool1.close();
+    producer.join(10000);
+    assertTrue(!producer.isAlive());
+  }
+}
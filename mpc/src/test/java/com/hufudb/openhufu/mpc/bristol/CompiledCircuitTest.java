@@ -0,0 +1,191 @@
+package com.hufudb.openhufu.mpc.bristol;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import com.google.common.collect.ImmutableList;
+import com.hufudb.openhufu.mpc.bristol.BristolFile.Gate;
+import com.hufudb.openhufu.mpc.random.BasicRandom;
+import com.hufudb.openhufu.mpc.random.OpenHuFuRandom;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CompiledCircuitTest {
+  public static OpenHuFuRandom rand = new BasicRandom();
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  // evaluate on plain bits, wire i of an operand is bit i of its value
+  static long evaluate(CompiledCircuit circuit, long x, long y) {
+    boolean[] wires = new boolean[circuit.getWireNum()];
+    for (int i = 0; i < circuit.getIn1(); ++i) {
+      wires[i] = i < 64 && ((x >>> i) & 1) == 1;
+    }
+    for (int i = 0; i < circuit.getIn2(); ++i) {
+      wires[circuit.getIn1() + i] = i < 64 && ((y >>> i) & 1) == 1;
+    }
+    for (int g = 0; g < circuit.getGateNum(); ++g) {
+      boolean a = wires[circuit.gateIn1[g]];
+      boolean b = wires[circuit.gateIn2[g]];
+      switch (GateType.of(circuit.gateType[g])) {
+        case AND:
+          wires[circuit.gateOut[g]] = a & b;
+          break;
+        case XOR:
+          wires[circuit.gateOut[g]] = a ^ b;
+          break;
+        default:
+          wires[circuit.gateOut[g]] = !a;
+      }
+    }
+    long result = 0;
+    final int outStart = circuit.getWireNum() - circuit.getOut();
+    for (int i = 0; i < Math.min(circuit.getOut(), 64); ++i) {
+      result |= (wires[outStart + i] ? 1L : 0L) << i;
+    }
+    return result;
+  }
+
+  @Test
+  public void testCompile() {
+    for (CircuitType type : ImmutableList.of(CircuitType.ADD_32, CircuitType.ADD_64,
+        CircuitType.LT_32, CircuitType.LTE_32)) {
+      BristolFile bristol = type.getBristol();
+      CompiledCircuit circuit = CompiledCircuit.compile(bristol);
+      assertEquals(bristol.getGateNum(), circuit.getGateNum());
+      assertEquals(bristol.getWireNum(), circuit.getWireNum());
+      assertEquals(bristol.getOut(), circuit.getOut());
+      assertEquals(bristol.getGates().size(), circuit.getLayerNum());
+      for (int l = 0; l < circuit.getLayerNum(); ++l) {
+        List<Gate> ands = new ArrayList<>();
+        bristol.getGates().get(l).stream().filter(g -> g.type == GateType.AND)
+            .forEach(ands::add);
+        // the AND gates of a layer are first and keep their order
+        assertEquals(ands.size(), circuit.andEnd[l] - circuit.layerStart[l]);
+        for (int j = 0; j < ands.size(); ++j) {
+          assertEquals(ands.get(j).out, circuit.gateOut[circuit.layerStart[l] + j]);
+        }
+        assertEquals(bristol.getGates().get(l).size(),
+            circuit.layerStart[l + 1] - circuit.layerStart[l]);
+      }
+      assertEquals(circuit.getAndNum(), type.getCircuit().getAndNum());
+    }
+    CompiledCircuit adder = CircuitType.ADD_32.getCircuit();
+    for (int i = 0; i < 100; ++i) {
+      int x = rand.nextInt();
+      int y = rand.nextInt();
+      assertEquals((long) x + y & 0xffffffffL, evaluate(adder, x & 0xffffffffL, y & 0xffffffffL)
+          & 0xffffffffL);
+    }
+  }
+
+  @Test
+  public void testByteBuffer() {
+    CompiledCircuit circuit = CircuitType.ADD_64.getCircuit();
+    CompiledCircuit copy = CompiledCircuit.fromByteBuffer(circuit.toByteBuffer());
+    assertEquals(circuit.getWireNum(), copy.getWireNum());
+    assertEquals(circuit.getIn1(), copy.getIn1());
+    assertEquals(circuit.getIn2(), copy.getIn2());
+    assertEquals(circuit.getOut(), copy.getOut());
+    assertArrayEquals(circuit.layerStart, copy.layerStart);
+    assertArrayEquals(circuit.andEnd, copy.andEnd);
+    assertArrayEquals(circuit.gateIn1, copy.gateIn1);
+    assertArrayEquals(circuit.gateIn2, copy.gateIn2);
+    assertArrayEquals(circuit.gateOut, copy.gateOut);
+    assertArrayEquals(circuit.gateType, copy.gateType);
+  }
+
+  @Test
+  public void testCache() throws Exception {
+    Path dir = folder.getRoot().toPath().resolve("circuit");
+    AtomicInteger compiled = new AtomicInteger();
+    CompiledCircuit circuit = CircuitCache.load(dir, "EQ_32", 1, () -> {
+      compiled.incrementAndGet();
+      return CircuitBuilder.equal(32);
+    });
+    assertEquals(1, compiled.get());
+    Path file = CircuitCache.fileOf(dir, "EQ_32", 1);
+    assertTrue(Files.isRegularFile(file));
+    CompiledCircuit cached = CircuitCache.load(dir, "EQ_32", 1, () -> {
+      compiled.incrementAndGet();
+      return CircuitBuilder.equal(32);
+    });
+    assertEquals(1, compiled.get());
+    assertArrayEquals(circuit.gateOut, cached.gateOut);
+    // a broken file is compiled again and replaced
+    Files.write(file, new byte[] {1, 2, 3});
+    CircuitCache.load(dir, "EQ_32", 1, () -> {
+      compiled.incrementAndGet();
+      return CircuitBuilder.equal(32);
+    });
+    assertEquals(2, compiled.get());
+    assertEquals(circuit.byteSize(), Files.size(file));
+  }
+
+  @Test
+  public void testPrivateDir() throws Exception {
+    Path dir = folder.getRoot().toPath().resolve("private");
+    assertTrue(CircuitCache.privateDir(dir));
+    assertEquals(CircuitCache.OWNER_ONLY, Files.getPosixFilePermissions(dir));
+    assertTrue(CircuitCache.privateDir(dir));
+    // a directory others can write is refused
+    Path shared = folder.newFolder("shared").toPath();
+    Files.setPosixFilePermissions(shared, PosixFilePermissions.fromString("rwxrwxrwx"));
+    assertFalse(CircuitCache.privateDir(shared));
+    // so is a link to a private directory
+    Path link = Files.createSymbolicLink(folder.getRoot().toPath().resolve("link"), dir);
+    assertFalse(CircuitCache.privateDir(link));
+    // without a cache directory the circuit is compiled
+    AtomicInteger compiled = new AtomicInteger();
+    CircuitCache.load(null, "EQ_32", 1, () -> {
+      compiled.incrementAndGet();
+      return CircuitBuilder.equal(32);
+    });
+    assertEquals(1, compiled.get());
+  }
+
+  @Test
+  public void testBuiltCircuits() {
+    CompiledCircuit lt = CircuitType.LT_64.getCircuit();
+    CompiledCircuit eq = CircuitType.EQ_64.getCircuit();
+    CompiledCircuit eq32 = CircuitType.EQ_32.getCircuit();
+    CompiledCircuit mux = CircuitType.MUX_32.getCircuit();
+    assertEquals(64, lt.getAndNum());
+    assertEquals(63, eq.getAndNum());
+    assertEquals(6, eq.getAndDepth());
+    assertEquals(1, mux.getAndDepth());
+    long[] special = {0, 1, -1, Long.MIN_VALUE, Long.MAX_VALUE};
+    List<long[]> cases = new ArrayList<>();
+    for (long x : special) {
+      for (long y : special) {
+        cases.add(new long[] {x, y});
+      }
+    }
+    for (int i = 0; i < 100; ++i) {
+      long x = rand.nextLong();
+      cases.add(new long[] {x, rand.nextBoolean() ? x : rand.nextLong()});
+    }
+    for (long[] c : cases) {
+      assertEquals(Long.compareUnsigned(c[0], c[1]) < 0 ? 1 : 0, evaluate(lt, c[0], c[1]));
+      assertEquals(c[0] == c[1] ? 1 : 0, evaluate(eq, c[0], c[1]));
+      assertEquals((int) c[0] == (int) c[1] ? 1 : 0, evaluate(eq32, c[0], c[1]));
+      for (int s = 0; s < 2; ++s) {
+        for (int t = 0; t < 2; ++t) {
+          long x = (c[0] & 0xffffffffL) | ((long) s << 32);
+          long y = (c[1] & 0xffffffffL) | ((long) t << 32);
+          assertEquals((s ^ t) == 1 ? c[0] & 0xffffffffL : c[1] & 0xffffffffL,
+              evaluate(mux, x, y));
+        }
+      }
+    }
+  }
+}
@@ -1,22 +1,30 @@
 package com.hufudb.openhufu.mpc.gmw;
 
 import static org.junit.Assert.assertEquals;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.function.BiFunction;
 import com.google.common.collect.ImmutableList;
+import com.hufudb.openhufu.mpc.ProtocolType;
+import com.hufudb.openhufu.mpc.beaver.BeaverTriple;
+import com.hufudb.openhufu.mpc.beaver.BeaverTriplePool;
 import com.hufudb.openhufu.mpc.bristol.CircuitType;
 import com.hufudb.openhufu.mpc.codec.OpenHuFuCodec;
+import com.hufudb.openhufu.mpc.ot.ExtensionOT;
 import com.hufudb.openhufu.mpc.ot.PublicKeyOT;
 import com.hufudb.openhufu.mpc.random.BasicRandom;
 import com.hufudb.openhufu.mpc.random.OpenHuFuRandom;
 import com.hufudb.openhufu.rpc.Party;
+import com.hufudb.openhufu.rpc.Rpc;
 import com.hufudb.openhufu.rpc.grpc.OpenHuFuOwnerInfo;
 import com.hufudb.openhufu.rpc.grpc.OpenHuFuRpc;
 import com.hufudb.openhufu.rpc.grpc.OpenHuFuRpcManager;
+import com.hufudb.openhufu.rpc.local.LocalRpcManager;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -38,7 +46,19 @@ public class GMWTest {
     return ImmutableList.of(OpenHuFuCodec.encodeInt(value));
   }
 
+  // GMW with a triple pool, the pool and the GMW share the ExtensionOT of the rpc
+  static GMW tripleGMW(Rpc rpc, ExecutorService threadPool, int batchSize, long capacity) {
+    ExtensionOT ot = new ExtensionOT(rpc);
+    return new GMW(rpc, ot,
+        new BeaverTriplePool(rpc, new BeaverTriple(rpc, ot), batchSize, capacity), threadPool);
+  }
+
   public void testcase(int a, int b) throws Exception {
+    testcase(a, b, (rpc, threadPool) -> new GMW(rpc, new PublicKeyOT(rpc), threadPool));
+  }
+
+  public void testcase(int a, int b, BiFunction<Rpc, ExecutorService, GMW> factory)
+      throws Exception {
     try {
       String ownerName0 = InProcessServerBuilder.generateName();
       String ownerName1 = InProcessServerBuilder.generateName();
@@ -62,35 +82,40 @@ public class GMWTest {
       rpc1.connect();
       ExecutorService threadPool0 = Executors.newFixedThreadPool(4);
       ExecutorService threadPool1 = Executors.newFixedThreadPool(4);
-      PublicKeyOT otSender = new PublicKeyOT(rpc0);
-      PublicKeyOT otReceiver = new PublicKeyOT(rpc1);
-      GMW gmwSender = new GMW(rpc0, otSender, threadPool0);
-      GMW gmwReceiver = new GMW(rpc1, otReceiver, threadPool1);
-      ExecutorService service = Executors.newFixedThreadPool(2);
-      Future<Object> senFuture = service.submit(
-        new Callable<Object>() {
+      GMW gmwSender = factory.apply(rpc0, threadPool0);
+      GMW gmwReceiver = factory.apply(rpc1, threadPool1);
+      try {
+        ExecutorService service = Executors.newFixedThreadPool(2);
+        Future<Object> senFuture = service.submit(
+          new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+              return gmwSender.run(0, ImmutableList.of(0, 1), encodeValue(a), CircuitType.ADD_32.getId());
+            }
+          }
+        );
+        Future<Object> recFuture = service.submit(
+          new Callable<Object>() {
           @Override
           public Object call() throws Exception {
-            return gmwSender.run(0, ImmutableList.of(0, 1), encodeValue(a), CircuitType.ADD_32.getId());
+            return gmwReceiver.run(0, ImmutableList.of(0, 1), encodeValue(b), CircuitType.ADD_32.getId());
           }
+        });
+        byte[] senRes = ((List<byte[]>) senFuture.get()).get(0);
+        byte[] recRes = ((List<byte[]>) recFuture.get()).get(0);
+        byte[] res = new byte[4];
+        OpenHuFuCodec.xor(senRes, recRes, res);
+        int actual = OpenHuFuCodec.decodeInt(res);
+        int expect = a + b;
+        assertEquals(expect, actual);
+      } finally {
+        if (gmwSender.triplePool != null) {
+          gmwSender.triplePool.close();
+          gmwReceiver.triplePool.close();
         }
-      );
-      Future<Object> recFuture = service.submit(
-        new Callable<Object>() {
-        @Override
-        public Object call() throws Exception {
-          return gmwReceiver.run(0, ImmutableList.of(0, 1), encodeValue(b), CircuitType.ADD_32.getId());
-        }
-      });
-      byte[] senRes = ((List<byte[]>) senFuture.get()).get(0);
-      byte[] recRes = ((List<byte[]>) recFuture.get()).get(0);
-      byte[] res = new byte[4];
-      OpenHuFuCodec.xor(senRes, recRes, res);
-      int actual = OpenHuFuCodec.decodeInt(res);
-      int expect = a + b;
-      assertEquals(expect, actual);
-      rpc0.disconnect();
-      rpc1.disconnect();
+        rpc0.disconnect();
+        rpc1.disconnect();
+      }
     } catch (Exception e) {
       e.printStackTrace();
       throw e;
@@ -107,4 +132,228 @@ public class GMWTest {
     testcase(65536, 258);
     testcase(0x000F0F00, 0x10001000);
   }
+
+  @Test
+  public void testGMWWithExtensionOT() throws Exception {
+    BiFunction<Rpc, ExecutorService, GMW> factory =
+        (rpc, threadPool) -> new GMW(rpc, new ExtensionOT(rpc), threadPool);
+    testcase(2, 6, factory);
+    testcase(241, 278, factory);
+    testcase(65536, 258, factory);
+    testcase(0x000F0F00, 0x10001000, factory);
+    testcase(-7, 3, factory);
+  }
+
+  @Test
+  public void testGMWWithTriples() throws Exception {
+    BiFunction<Rpc, ExecutorService, GMW> factory =
+        (rpc, threadPool) -> tripleGMW(rpc, threadPool, 1024, 4096);
+    testcase(2, 6, factory);
+    testcase(1, 256, factory);
+    testcase(241, 278, factory);
+    testcase(65536, 258, factory);
+    testcase(0x000F0F00, 0x10001000, factory);
+    testcase(-7, 3, factory);
+  }
+
+  @Test
+  public void testOneRoundPerLayer() throws Exception {
+    List<Party> parties = ImmutableList.of(new OpenHuFuOwnerInfo(0, "localhost:0"),
+        new OpenHuFuOwnerInfo(1, "localhost:1"));
+    LocalRpcManager manager = new LocalRpcManager(parties);
+    Rpc rpc0 = manager.getRpc(0);
+    Rpc rpc1 = manager.getRpc(1);
+    rpc0.connect();
+    rpc1.connect();
+    ExecutorService threadPool = Executors.newFixedThreadPool(2);
+    GMW gmw0 = tripleGMW(rpc0, threadPool, 1024, 4096);
+    GMW gmw1 = tripleGMW(rpc1, threadPool, 1024, 4096);
+    try {
+      Future<Object> f0 = threadPool.submit(() -> gmw0.run(7, ImmutableList.of(0, 1),
+          encodeValue(123456), CircuitType.ADD_32.getId()));
+      Future<Object> f1 = threadPool.submit(() -> gmw1.run(7, ImmutableList.of(0, 1),
+          encodeValue(654321), CircuitType.ADD_32.getId()));
+      byte[] res = new byte[4];
+      OpenHuFuCodec.xor(((List<byte[]>) f0.get()).get(0), ((List<byte[]>) f1.get()).get(0), res);
+      assertEquals(123456 + 654321, OpenHuFuCodec.decodeInt(res));
+      long andLayers = CircuitType.ADD_32.getCircuit().getAndDepth();
+      assertEquals(andLayers,
+          rpc0.getMetrics().get(ProtocolType.GMW.getId(), 2, 1).getSentPackets());
+    } finally {
+      gmw0.triplePool.close();
+      gmw1.triplePool.close();
+      threadPool.shutdown();
+      rpc0.disconnect();
+      rpc1.disconnect();
+    }
+  }
+
+  void testBitsliced(BiFunction<Rpc, ExecutorService, GMW> factory, int num) throws Exception {
+    List<Party> parties = ImmutableList.of(new OpenHuFuOwnerInfo(0, "localhost:0"),
+        new OpenHuFuOwnerInfo(1, "localhost:1"));
+    LocalRpcManager manager = new LocalRpcManager(parties);
+    Rpc rpc0 = manager.getRpc(0);
+    Rpc rpc1 = manager.getRpc(1);
+    rpc0.connect();
+    rpc1.connect();
+    ExecutorService threadPool = Executors.newFixedThreadPool(2);
+    GMW gmw0 = factory.apply(rpc0, threadPool);
+    GMW gmw1 = factory.apply(rpc1, threadPool);
+    try {
+      int[] a = new int[num];
+      int[] b = new int[num];
+      List<byte[]> inputs0 = new ArrayList<>();
+      List<byte[]> inputs1 = new ArrayList<>();
+      for (int i = 0; i < num; ++i) {
+        a[i] = rand.nextInt();
+        b[i] = rand.nextInt();
+        inputs0.add(OpenHuFuCodec.encodeInt(a[i]));
+        inputs1.add(OpenHuFuCodec.encodeInt(b[i]));
+      }
+      Future<Object> f0 = threadPool.submit(
+          () -> gmw0.run(9, ImmutableList.of(0, 1), inputs0, CircuitType.ADD_32.getId()));
+      Future<Object> f1 = threadPool.submit(
+          () -> gmw1.run(9, ImmutableList.of(0, 1), inputs1, CircuitType.ADD_32.getId()));
+      List<byte[]> res0 = (List<byte[]>) f0.get();
+      List<byte[]> res1 = (List<byte[]>) f1.get();
+      assertEquals(num, res0.size());
+      for (int i = 0; i < num; ++i) {
+        byte[] res = new byte[4];
+        OpenHuFuCodec.xor(res0.get(i), res1.get(i), res);
+        assertEquals(a[i] + b[i], OpenHuFuCodec.decodeInt(res));
+      }
+    } finally {
+      if (gmw0.triplePool != null) {
+        gmw0.triplePool.close();
+        gmw1.triplePool.close();
+      }
+      threadPool.shutdown();
+      rpc0.disconnect();
+      rpc1.disconnect();
+    }
+  }
+
+  @Test
+  public void testBitslicedGMW() throws Exception {
+    testBitsliced((rpc, threadPool) -> tripleGMW(rpc, threadPool, 4096, 1 << 16), 200);
+    testBitsliced((rpc, threadPool) -> tripleGMW(rpc, threadPool, 4096, 1 << 16), 64);
+    testBitsliced((rpc, threadPool) -> new GMW(rpc, new ExtensionOT(rpc), threadPool), 70);
+  }
+
+  @Test
+  public void testComparator() throws Exception {
+    List<Party> parties = ImmutableList.of(new OpenHuFuOwnerInfo(0, "localhost:0"),
+        new OpenHuFuOwnerInfo(1, "localhost:1"));
+    LocalRpcManager manager = new LocalRpcManager(parties);
+    Rpc rpc0 = manager.getRpc(0);
+    Rpc rpc1 = manager.getRpc(1);
+    rpc0.connect();
+    rpc1.connect();
+    ExecutorService threadPool = Executors.newFixedThreadPool(2);
+    GMW gmw0 = tripleGMW(rpc0, threadPool, 4096, 1 << 16);
+    GMW gmw1 = tripleGMW(rpc1, threadPool, 4096, 1 << 16);
+    try {
+      int[] a = {1, 5, -3, 7, Integer.MIN_VALUE, 0, -1, Integer.MAX_VALUE};
+      int[] b = {2, 5, 4, -8, Integer.MAX_VALUE, -1, 0, Integer.MIN_VALUE};
+      List<byte[]> inputs0 = new ArrayList<>();
+      List<byte[]> inputs1 = new ArrayList<>();
+      for (int i = 0; i < a.length; ++i) {
+        inputs0.add(OpenHuFuCodec.encodeInt(a[i]));
+        inputs1.add(OpenHuFuCodec.encodeInt(b[i]));
+      }
+      for (CircuitType type : ImmutableList.of(CircuitType.LT_32, CircuitType.LTE_32)) {
+        Future<Object> f0 = threadPool.submit(
+            () -> gmw0.run(11, ImmutableList.of(0, 1), inputs0, type.getId()));
+        Future<Object> f1 = threadPool.submit(
+            () -> gmw1.run(11, ImmutableList.of(0, 1), inputs1, type.getId()));
+        List<byte[]> res0 = (List<byte[]>) f0.get();
+        List<byte[]> res1 = (List<byte[]>) f1.get();
+        for (int i = 0; i < a.length; ++i) {
+          // the party with smaller id gives the first operand, the operands are compared as
+          // unsigned integers with the encoding of OpenHuFuCodec
+          int cmp = Integer.compareUnsigned(a[i], b[i]);
+          boolean expect = type == CircuitType.LT_32 ? cmp < 0 : cmp <= 0;
+          assertEquals(type + " " + a[i] + " " + b[i], expect,
+              ((res0.get(i)[0] ^ res1.get(i)[0]) & 1) == 1);
+        }
+      }
+    } finally {
+      gmw0.triplePool.close();
+      gmw1.triplePool.close();
+      threadPool.shutdown();
+      rpc0.disconnect();
+      rpc1.disconnect();
+    }
+  }
+
+  @Test
+  public void testBuiltCircuits() throws Exception {
+    List<Party> parties = ImmutableList.of(new OpenHuFuOwnerInfo(0, "localhost:0"),
+        new OpenHuFuOwnerInfo(1, "localhost:1"));
+    LocalRpcManager manager = new LocalRpcManager(parties);
+    Rpc rpc0 = manager.getRpc(0);
+    Rpc rpc1 = manager.getRpc(1);
+    rpc0.connect();
+    rpc1.connect();
+    ExecutorService threadPool = Executors.newFixedThreadPool(2);
+    GMW gmw0 = tripleGMW(rpc0, threadPool, 4096, 1 << 16);
+    GMW gmw1 = tripleGMW(rpc1, threadPool, 4096, 1 << 16);
+    try {
+      long[] a = {1, 5, -3, 7, Long.MIN_VALUE, 0, -1, Long.MAX_VALUE, rand.nextLong()};
+      long[] b = {2, 5, 4, -8, Long.MAX_VALUE, -1, 0, Long.MIN_VALUE, rand.nextLong()};
+      List<byte[]> inputs0 = new ArrayList<>();
+      List<byte[]> inputs1 = new ArrayList<>();
+      for (int i = 0; i < a.length; ++i) {
+        inputs0.add(OpenHuFuCodec.encodeLong(a[i]));
+        inputs1.add(OpenHuFuCodec.encodeLong(b[i]));
+      }
+      long taskId = 20;
+      for (CircuitType type : ImmutableList.of(CircuitType.LT_64, CircuitType.EQ_64)) {
+        final long tid = taskId++;
+        Future<Object> f0 = threadPool.submit(
+            () -> gmw0.run(tid, ImmutableList.of(0, 1), inputs0, type.getId()));
+        Future<Object> f1 = threadPool.submit(
+            () -> gmw1.run(tid, ImmutableList.of(0, 1), inputs1, type.getId()));
+        List<byte[]> res0 = (List<byte[]>) f0.get();
+        List<byte[]> res1 = (List<byte[]>) f1.get();
+        for (int i = 0; i < a.length; ++i) {
+          boolean expect = type == CircuitType.LT_64 ? Long.compareUnsigned(a[i], b[i]) < 0
+              : a[i] == b[i];
+          assertEquals(type + " " + a[i] + " " + b[i], expect,
+              ((res0.get(i)[0] ^ res1.get(i)[0]) & 1) == 1);
+        }
+      }
+      // the selection bit is shared as s ^ t, bit 64 of the inputs
+      List<byte[]> muxInputs0 = new ArrayList<>();
+      List<byte[]> muxInputs1 = new ArrayList<>();
+      boolean[] sel = new boolean[a.length];
+      for (int i = 0; i < a.length; ++i) {
+        boolean s = rand.nextBoolean();
+        boolean t = rand.nextBoolean();
+        sel[i] = s ^ t;
+        muxInputs0.add(Arrays.copyOf(inputs0.get(i), 9));
+        muxInputs0.get(i)[8] = (byte) (s ? 1 : 0);
+        muxInputs1.add(Arrays.copyOf(inputs1.get(i), 9));
+        muxInputs1.get(i)[8] = (byte) (t ? 1 : 0);
+      }
+      final long muxTaskId = taskId;
+      Future<Object> f0 = threadPool.submit(() -> gmw0.run(muxTaskId, ImmutableList.of(0, 1),
+          muxInputs0, CircuitType.MUX_64.getId()));
+      Future<Object> f1 = threadPool.submit(() -> gmw1.run(muxTaskId, ImmutableList.of(0, 1),
+          muxInputs1, CircuitType.MUX_64.getId()));
+      List<byte[]> res0 = (List<byte[]>) f0.get();
+      List<byte[]> res1 = (List<byte[]>) f1.get();
+      for (int i = 0; i < a.length; ++i) {
+        byte[] res = new byte[8];
+        OpenHuFuCodec.xor(res0.get(i), res1.get(i), res);
+        assertEquals(sel[i] ? a[i] : b[i], OpenHuFuCodec.decodeLong(res));
+      }
+    } finally {
+      gmw0.triplePool.close();
+      gmw1.triplePool.close();
+      threadPool.shutdown();
+      rpc0.disconnect();
+      rpc1.disconnect();
+    }
+  }
 }
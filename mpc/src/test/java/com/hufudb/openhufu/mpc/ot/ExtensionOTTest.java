@@ -0,0 +1,135 @@
+package com.hufudb.openhufu.mpc.ot;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import com.google.common.collect.ImmutableList;
+import com.hufudb.openhufu.mpc.random.BasicRandom;
+import com.hufudb.openhufu.mpc.random.OpenHuFuRandom;
+import com.hufudb.openhufu.rpc.Party;
+import com.hufudb.openhufu.rpc.Rpc;
+import com.hufudb.openhufu.rpc.grpc.OpenHuFuOwnerInfo;
+import com.hufudb.openhufu.rpc.local.LocalRpcManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class ExtensionOTTest {
+  public static OpenHuFuRandom rand = new BasicRandom();
+
+  Rpc rpc0;
+  Rpc rpc1;
+  ExtensionOT ot0;
+  ExtensionOT ot1;
+  ExecutorService service;
+
+  @Before
+  public void setUp() {
+    List<Party> parties = ImmutableList.of(new OpenHuFuOwnerInfo(0, "localhost:0"),
+        new OpenHuFuOwnerInfo(1, "localhost:1"));
+    LocalRpcManager manager = new LocalRpcManager(parties);
+    rpc0 = manager.getRpc(0);
+    rpc1 = manager.getRpc(1);
+    rpc0.connect();
+    rpc1.connect();
+    ot0 = new ExtensionOT(rpc0);
+    ot1 = new ExtensionOT(rpc1);
+    service = Executors.newFixedThreadPool(2);
+  }
+
+  @After
+  public void tearDown() {
+    service.shutdown();
+    rpc0.disconnect();
+    rpc1.disconnect();
+  }
+
+  @Test
+  public void testSingleOT() throws Exception {
+    List<byte[]> secrets = ImmutableList.of("Alice".getBytes(), "Bob".getBytes(),
+        "Jerry".getBytes(), "Tom".getBytes());
+    for (int i = 0; i < 10; ++i) {
+      int sel = rand.nextInt(secrets.size());
+      long extraInfo = i;
+      Future<Object> sender =
+          service.submit(() -> ot0.run(1, ImmutableList.of(0, 1), secrets, extraInfo));
+      Future<Object> receiver =
+          service.submit(() -> ot1.run(1, ImmutableList.of(0, 1), sel, 2, extraInfo));
+      assertArrayEquals(secrets.get(sel), (byte[]) receiver.get());
+      sender.get();
+    }
+  }
+
+  @Test
+  public void testBatchOT() throws Exception {
+    final int num = 10000;
+    List<List<byte[]>> secrets = new ArrayList<>();
+    int[] sels = new int[num];
+    for (int i = 0; i < num; ++i) {
+      // secrets longer than one SHA-256 block are padded with a counter
+      int len = i % 3 == 0 ? 1 : 40;
+      secrets.add(ImmutableList.of(rand.randomBytes(len), rand.randomBytes(len)));
+      sels[i] = rand.nextInt(2);
+    }
+    Future<Object> sender = service.submit(() -> {
+      ot0.sendBatch(2, 1, secrets, 1, 0);
+      return null;
+    });
+    Future<List<byte[]>> receiver = service.submit(() -> ot1.receiveBatch(2, 0, sels, 1, 0));
+    List<byte[]> results = receiver.get();
+    sender.get();
+    assertEquals(num, results.size());
+    for (int i = 0; i < num; ++i) {
+      assertArrayEquals(secrets.get(i).get(sels[i]), results.get(i));
+    }
+  }
+
+  @Test
+  public void testBothDirections() throws Exception {
+    List<byte[]> secrets = Arrays.asList(new byte[] {0}, new byte[] {1});
+    for (int i = 0; i < 4; ++i) {
+      int sel = i & 1;
+      long extraInfo = i;
+      Future<Object> s0 =
+          service.submit(() -> ot0.run(3, ImmutableList.of(0, 1), secrets, extraInfo));
+      Future<Object> r1 =
+          service.submit(() -> ot1.run(3, ImmutableList.of(0, 1), sel, 1, extraInfo));
+      assertArrayEquals(secrets.get(sel), (byte[]) r1.get());
+      s0.get();
+      Future<Object> s1 =
+          service.submit(() -> ot1.run(3, ImmutableList.of(1, 0), secrets, extraInfo));
+      Future<Object> r0 =
+          service.submit(() -> ot0.run(3, ImmutableList.of(1, 0), 1 - sel, 1, extraInfo));
+      assertArrayEquals(secrets.get(1 - sel), (byte[]) r0.get());
+      s1.get();
+    }
+  }
+
+  @Test
+  public void testInvalidate() throws Exception {
+    List<byte[]> secrets = Arrays.asList("Alice".getBytes(), "Bob".getBytes());
+    for (int i = 0; i < 2; ++i) {
+      long extraInfo = i;
+      Future<Object> sender =
+          service.submit(() -> ot0.run(4, ImmutableList.of(0, 1), secrets, extraInfo));
+      Future<Object> receiver =
+          service.submit(() -> ot1.run(4, ImmutableList.of(0, 1), 1, 1, extraInfo));
+      assertArrayEquals(secrets.get(1), (byte[]) receiver.get());
+      sender.get();
+      assertEquals(1L, (long) ot0.senderEpochs.get(1));
+      // party 1 restarts with a new executor and is added again to party 0
+      ot1 = new ExtensionOT(rpc1);
+      ot0.invalidate(1);
+      assertNull(ot0.senderSessions.get(1));
+    }
+  }
+}
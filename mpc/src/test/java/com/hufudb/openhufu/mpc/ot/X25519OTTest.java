@@ -0,0 +1,99 @@
+package com.hufudb.openhufu.mpc.ot;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import java.security.KeyPair;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import com.google.common.collect.ImmutableList;
+import com.hufudb.openhufu.mpc.random.BasicRandom;
+import com.hufudb.openhufu.mpc.random.OpenHuFuRandom;
+import com.hufudb.openhufu.rpc.Party;
+import com.hufudb.openhufu.rpc.Rpc;
+import com.hufudb.openhufu.rpc.grpc.OpenHuFuOwnerInfo;
+import com.hufudb.openhufu.rpc.local.LocalRpcManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class X25519OTTest {
+  public static OpenHuFuRandom rand = new BasicRandom();
+
+  Rpc rpc0;
+  Rpc rpc1;
+  X25519OT otSender;
+  X25519OT otReceiver;
+  ExecutorService service;
+
+  @Before
+  public void setUp() {
+    List<Party> parties = ImmutableList.of(new OpenHuFuOwnerInfo(0, "localhost:0"),
+        new OpenHuFuOwnerInfo(1, "localhost:1"));
+    LocalRpcManager manager = new LocalRpcManager(parties);
+    rpc0 = manager.getRpc(0);
+    rpc1 = manager.getRpc(1);
+    rpc0.connect();
+    rpc1.connect();
+    otSender = new X25519OT(rpc0);
+    otReceiver = new X25519OT(rpc1);
+    service = Executors.newFixedThreadPool(2);
+  }
+
+  @After
+  public void tearDown() {
+    service.shutdown();
+    rpc0.disconnect();
+    rpc1.disconnect();
+  }
+
+  byte[] transfer(long taskId, List<byte[]> secrets, int sel, int exp) throws Exception {
+    Future<Object> senderRes = service.submit(
+        () -> otSender.run(taskId, ImmutableList.of(0, 1), secrets, taskId));
+    Future<Object> receiverRes = service.submit(
+        () -> otReceiver.run(taskId, ImmutableList.of(0, 1), sel, exp, taskId));
+    senderRes.get();
+    return (byte[]) receiverRes.get();
+  }
+
+  @Test
+  public void testX25519OT() throws Exception {
+    List<byte[]> secrets = ImmutableList.of("Alice".getBytes(), "Bob".getBytes(),
+        "Jerry".getBytes(), "Tom".getBytes());
+    for (int i = 0; i < 10; ++i) {
+      int sel = rand.nextInt(secrets.size());
+      assertArrayEquals(secrets.get(sel), transfer(i, secrets, sel, 2));
+    }
+  }
+
+  @Test
+  public void testLongSecrets() throws Exception {
+    // longer than one block of the key derivation
+    List<byte[]> secrets = new ArrayList<>();
+    for (int i = 0; i < 2; ++i) {
+      secrets.add(rand.randomBytes(100));
+    }
+    for (int sel = 0; sel < 2; ++sel) {
+      assertArrayEquals(secrets.get(sel), transfer(sel, secrets, sel, 1));
+    }
+  }
+
+  @Test
+  public void testPseudoPublicKey() throws Exception {
+    KeyPair pair = X25519OT.generateKeyPair();
+    for (int i = 0; i < 10; ++i) {
+      byte[] key = otReceiver.pseudoPublicKey();
+      assertEquals(X25519OT.KEY_BYTES, key.length);
+      // a point of the prime order subgroup, so the shared secret is not all zero
+      byte[] shared = X25519OT.agree(pair.getPrivate(), X25519OT.decodeKey(key));
+      assertNotEquals(0, shared[0] | shared[1] | shared[2] | shared[3]);
+      assertArrayEquals(key, X25519OT.encodeU(X25519OT.decodeU(key)));
+    }
+  }
+}
@@ -0,0 +1,53 @@
+package com.hufudb.openhufu.mpc.psi;
+
+import static org.junit.Assert.assertEquals;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class DigestTableTest {
+  static final int LENGTH = 16;
+
+  static byte[] pack(long[][] digests) {
+    ByteBuffer buffer =
+        ByteBuffer.allocate(digests.length * LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+    for (long[] d : digests) {
+      buffer.putLong(d[0]).putLong(d[1]);
+    }
+    return buffer.array();
+  }
+
+  @Test
+  public void testFindAndChain() {
+    // rows 0, 2 and 4 are equal, row 1 has the same tag as them but a different digest
+    long[][] digests = {{7, 1}, {7, 2}, {7, 1}, {8, 1}, {7, 1}};
+    DigestTable table = new DigestTable(pack(digests), LENGTH, digests.length);
+    ByteBuffer probe = ByteBuffer.wrap(pack(new long[][] {{7, 1}, {7, 2}, {7, 3}, {8, 1}}))
+        .order(ByteOrder.LITTLE_ENDIAN);
+    int row = table.find(probe, 0);
+    assertEquals(0, row);
+    row = table.next(row);
+    assertEquals(2, row);
+    row = table.next(row);
+    assertEquals(4, row);
+    assertEquals(DigestTable.EMPTY, table.next(row));
+    assertEquals(1, table.find(probe, LENGTH));
+    assertEquals(DigestTable.EMPTY, table.next(1));
+    // a collision on the truncated digest only
+    assertEquals(DigestTable.EMPTY, table.find(probe, 2 * LENGTH));
+    assertEquals(3, table.find(probe, 3 * LENGTH));
+    assertEquals(3, table.count(probe, 0));
+    assertEquals(1, table.count(probe, LENGTH));
+    assertEquals(0, table.count(probe, 2 * LENGTH));
+  }
+
+  @Test
+  public void testEmpty() {
+    DigestTable table = new DigestTable(new byte[0], LENGTH, 0);
+    ByteBuffer probe = ByteBuffer.wrap(pack(new long[][] {{1, 1}})).order(ByteOrder.LITTLE_ENDIAN);
+    assertEquals(DigestTable.EMPTY, table.find(probe, 0));
+  }
+}
@@ -182,4 +182,57 @@ public class HashPSITest {
       throw e;
     }
   }
+
+  @Test
+  public void testIntersectLarge() throws Exception {
+    // spans several segments and stream pieces
+    final int size0 = 40000;
+    final int size1 = 70000;
+    List<byte[]> data0 = new ArrayList<>();
+    List<byte[]> data1 = new ArrayList<>();
+    for (int i = 0; i < size0; ++i) {
+      data0.add(OpenHuFuCodec.encodeInt(i * 3));
+    }
+    for (int i = 0; i < size1; ++i) {
+      data1.add(OpenHuFuCodec.encodeInt(i * 2));
+    }
+    ExecutorService service = Executors.newFixedThreadPool(2);
+    Future<int[]> res0 = service.submit(() -> psi0.intersect(1, ImmutableList.of(0, 1), data0,
+        HashFunction.SHA256.getId()));
+    Future<int[]> res1 = service.submit(() -> psi1.intersect(1, ImmutableList.of(0, 1), data1,
+        HashFunction.SHA256.getId()));
+    int[] actual0 = res0.get();
+    int[] actual1 = res1.get();
+    service.shutdown();
+    // party 0 has the smaller set and is the sender, the result is ordered by its indices
+    int expectSize = (size0 * 3 - 1) / 6 + 1;
+    assertEquals(expectSize, actual0.length);
+    assertEquals(expectSize, actual1.length);
+    for (int i = 0; i < expectSize; ++i) {
+      assertEquals(2 * i, actual0[i]);
+      assertEquals(3 * i, actual1[i]);
+    }
+  }
+
+  @Test
+  public void testCardinality() throws Exception {
+    List<byte[]> data0 = generateData(8, 10);
+    List<byte[]> data1 = generateData(8, 100);
+    long expect = 0;
+    for (byte[] d0 : data0) {
+      for (byte[] d1 : data1) {
+        if (Arrays.equals(d0, d1)) {
+          expect++;
+        }
+      }
+    }
+    ExecutorService service = Executors.newFixedThreadPool(2);
+    Future<Long> res0 = service.submit(() -> psi0.cardinality(2, ImmutableList.of(0, 1), data0,
+        HashFunction.MD5.getId()));
+    Future<Long> res1 = service.submit(() -> psi1.cardinality(2, ImmutableList.of(0, 1), data1,
+        HashFunction.MD5.getId()));
+    assertEquals(expect, (long) res0.get());
+    assertEquals(expect, (long) res1.get());
+    service.shutdown();
+  }
 }
@@ -0,0 +1,110 @@
+package com.hufudb.openhufu.mpc.random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Test;
+
+public class AESRandomTest {
+
+  @Test
+  public void testRange() {
+    AESRandom random = new AESRandom();
+    int[] counts = new int[10];
+    for (int i = 0; i < 100000; ++i) {
+      int v = random.nextInt(10);
+      assertTrue(v >= 0 && v < 10);
+      counts[v]++;
+      double d = random.nextDouble();
+      assertTrue(d >= 0 && d < 1);
+      float f = random.nextFloat();
+      assertTrue(f >= 0 && f < 1);
+      int p = random.nextInt(16);
+      assertTrue(p >= 0 && p < 16);
+    }
+    for (int c : counts) {
+      assertTrue(c > 9000 && c < 11000);
+    }
+    int ones = 0;
+    for (int i = 0; i < 100000; ++i) {
+      ones += random.nextBoolean() ? 1 : 0;
+    }
+    assertTrue(ones > 49000 && ones < 51000);
+  }
+
+  @Test
+  public void testBulk() {
+    AESRandom random = new AESRandom();
+    // cross the buffer with unaligned sizes
+    for (int size : new int[] {0, 1, 7, 16, 100, AESRandom.BUFFER_BYTES - 3,
+        AESRandom.BUFFER_BYTES * 3 + 5}) {
+      byte[] a = random.randomBytes(size);
+      byte[] b = new byte[size];
+      random.nextBytes(b);
+      assertEquals(size, a.length);
+      if (size >= 16) {
+        assertFalse(Arrays.equals(a, b));
+        assertFalse(Arrays.equals(a, new byte[size]));
+      }
+      long[] values = new long[size];
+      random.nextLongs(values);
+      Set<Long> distinct = new HashSet<>();
+      for (long v : values) {
+        distinct.add(v);
+      }
+      assertEquals(size, distinct.size());
+    }
+  }
+
+  @Test
+  public void testKeyStream() throws Exception {
+    // a stream with a zero key and iv is the AES-CTR expansion of SeededPRG
+    byte[] seed = new byte[AESRandom.SEED_BYTES];
+    AESRandom.KeyStream stream = new AESRandom.KeyStream(seed, new byte[AESRandom.SEED_BYTES]);
+    byte[] expect = SeededPRG.expand(seed, 3 * AESRandom.BUFFER_BYTES);
+    byte[] actual = new byte[expect.length];
+    int pos = 0;
+    for (int len : new int[] {3, 8, 1000, AESRandom.BUFFER_BYTES + 17}) {
+      stream.nextBytes(actual, pos, len);
+      pos += len;
+    }
+    stream.nextBytes(actual, pos, actual.length - pos);
+    assertArrayEquals(expect, actual);
+  }
+
+  @Test
+  public void testThreads() throws Exception {
+    AESRandom random = new AESRandom();
+    ExecutorService service = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<long[]>> futures = new ArrayList<>();
+      for (int t = 0; t < 4; ++t) {
+        futures.add(service.submit(() -> {
+          long[] values = new long[1000];
+          for (int i = 0; i < values.length; ++i) {
+            values[i] = random.nextLong();
+          }
+          return values;
+        }));
+      }
+      Set<Long> distinct = new HashSet<>();
+      for (Future<long[]> f : futures) {
+        for (long v : f.get()) {
+          distinct.add(v);
+        }
+      }
+      assertEquals(4000, distinct.size());
+    } finally {
+      service.shutdown();
+    }
+  }
+}
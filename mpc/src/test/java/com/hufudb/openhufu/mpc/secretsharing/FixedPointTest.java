@@ -0,0 +1,68 @@
+package com.hufudb.openhufu.mpc.secretsharing;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import java.util.Random;
+import com.hufudb.openhufu.mpc.ProtocolException;
+import org.junit.Test;
+
+public class FixedPointTest {
+
+  @Test
+  public void testEncode() throws ProtocolException {
+    final int bits = FixedPoint.DEFAULT_SCALE_BITS;
+    assertEquals(0L, FixedPoint.encode(0.0, bits));
+    assertEquals(1L << bits, FixedPoint.encode(1.0, bits));
+    assertEquals(-(3L << (bits - 1)), FixedPoint.encode(-1.5, bits));
+    assertEquals(5L, FixedPoint.encode(5.0, 0));
+    Random random = new Random();
+    for (int i = 0; i < 1000; ++i) {
+      double v = (random.nextDouble() - 0.5) * 1e9;
+      assertEquals(v, FixedPoint.decode(FixedPoint.encode(v, bits), bits), 0x1.0p-21);
+    }
+    double[] values = {3.25, -7.5, 1e12, -1e-7};
+    double[] decoded = FixedPoint.decode(FixedPoint.encode(values, bits), bits);
+    assertArrayEquals(new double[] {3.25, -7.5, 1e12, 0.0}, decoded, 0.0);
+  }
+
+  @Test
+  public void testRange() throws ProtocolException {
+    // the largest magnitude is just below 2^(63 - bits)
+    assertEquals(Long.MIN_VALUE + 1024, FixedPoint.encode(-0x1.fffffffffffffp42, 20));
+    for (double v : new double[] {0x1.0p43, -0x1.0p43, Double.NaN, Double.POSITIVE_INFINITY}) {
+      try {
+        FixedPoint.encode(v, 20);
+        fail("encode " + v);
+      } catch (ProtocolException e) {
+        // expected
+      }
+    }
+    try {
+      FixedPoint.checkScaleBits(FixedPoint.MAX_SCALE_BITS + 1);
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testRingSum() throws ProtocolException {
+    // shares wrap around in the ring but their sum is the exact sum of the encodings,
+    // independent of the order of additions unlike double shares
+    final int bits = FixedPoint.DEFAULT_SCALE_BITS;
+    Random random = new Random();
+    double[] values = {0.1, -0.2, 1e10, -1e10, 0.3};
+    long expect = 0;
+    long sum = 0;
+    for (double v : values) {
+      long e = FixedPoint.encode(v, bits);
+      long mask = random.nextLong();
+      expect += e;
+      sum += mask;
+      sum += e - mask;
+    }
+    assertEquals(expect, sum);
+    assertEquals(0.2, FixedPoint.decode(sum, bits), 0x1.0p-19);
+  }
+}
@@ -12,6 +12,7 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.stream.Collectors;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -21,9 +22,11 @@ import com.google.common.collect.ImmutableList;
 import com.hufudb.openhufu.proto.OpenHuFuData.ColumnType;
 import com.hufudb.openhufu.proto.OpenHuFuPlan.OperatorType;
 import com.hufudb.openhufu.rpc.Party;
+import com.hufudb.openhufu.rpc.Rpc;
 import com.hufudb.openhufu.rpc.grpc.OpenHuFuOwnerInfo;
 import com.hufudb.openhufu.rpc.grpc.OpenHuFuRpc;
 import com.hufudb.openhufu.rpc.grpc.OpenHuFuRpcManager;
+import com.hufudb.openhufu.rpc.local.LocalRpcManager;
 import io.grpc.Channel;
 import io.grpc.Server;
 import io.grpc.inprocess.InProcessChannelBuilder;
@@ -86,6 +89,13 @@ public class SecretSharingTest {
     grpcCleanup.register(server4);
   }
 
+  @After
+  public void shutdown() {
+    for (int i = 0; i < manager.getPartyNum(); ++i) {
+      manager.getRpc(i).disconnect();
+    }
+  }
+
   void testCaseLong(long taskId, List<SecretSharing> executors, List<Long> values)
       throws InterruptedException, ExecutionException {
     List<Integer> parties = executors.stream().map(e -> e.getOwnId()).collect(Collectors.toList());
@@ -123,9 +133,39 @@ public class SecretSharingTest {
     assertEquals(expect, (double) res, 0.00001);
   }
 
+  void testCaseVector(long taskId, List<SecretSharing> executors, List<long[]> lvalues,
+      List<double[]> dvalues) throws InterruptedException, ExecutionException {
+    List<Integer> parties = executors.stream().map(e -> e.getOwnId()).collect(Collectors.toList());
+    List<Future<Object[]>> futures = new ArrayList<>();
+    for (int i = 0; i < executors.size(); ++i) {
+      final SecretSharing s = executors.get(i);
+      final long[] lv = lvalues.get(i);
+      final double[] dv = dvalues.get(i);
+      futures.add(threadpool.submit(() -> new Object[] {
+          s.run(taskId, parties, ColumnType.LONG, lv, OperatorType.PLUS),
+          s.run(taskId + 1, parties, ColumnType.DOUBLE, dv, OperatorType.PLUS)}));
+    }
+    Object[] res = futures.get(0).get();
+    long[] lres = (long[]) res[0];
+    double[] dres = (double[]) res[1];
+    assertEquals(lvalues.get(0).length, lres.length);
+    for (int j = 0; j < lres.length; ++j) {
+      long expect = 0;
+      double dexpect = 0.0;
+      for (int i = 0; i < executors.size(); ++i) {
+        expect += lvalues.get(i)[j];
+        dexpect += dvalues.get(i)[j];
+      }
+      assertEquals(expect, lres[j]);
+      assertEquals(dexpect, dres[j], 0.00001);
+    }
+    for (int i = 1; i < executors.size(); ++i) {
+      futures.get(i).get();
+    }
+  }
+
   @Test
   public void testSecretSharing() throws InterruptedException, ExecutionException {
-    Random random = new Random();
     OpenHuFuRpc rpc0 = (OpenHuFuRpc) manager.getRpc(0);
     OpenHuFuRpc rpc1 = (OpenHuFuRpc) manager.getRpc(1);
     OpenHuFuRpc rpc2 = (OpenHuFuRpc) manager.getRpc(2);
@@ -134,9 +174,31 @@ public class SecretSharingTest {
     List<OpenHuFuRpc> rpcs = ImmutableList.of(rpc0, rpc1, rpc2, rpc3, rpc4);
     List<SecretSharing> executors =
         rpcs.stream().map(rpc -> new SecretSharing(rpc)).collect(Collectors.toList());
+    testCases(executors);
+  }
+
+  @Test
+  public void testSecretSharingLocal() throws InterruptedException, ExecutionException {
+    List<Party> parties = ImmutableList.copyOf(manager.getPartySet());
+    LocalRpcManager localManager = new LocalRpcManager(parties);
+    List<SecretSharing> executors = new ArrayList<>();
+    for (int i = 0; i < localManager.getPartyNum(); ++i) {
+      Rpc rpc = localManager.getRpc(i);
+      rpc.connect();
+      executors.add(new SecretSharing(rpc));
+    }
+    testCases(executors);
+    for (int i = 0; i < localManager.getPartyNum(); ++i) {
+      localManager.getRpc(i).disconnect();
+    }
+  }
+
+  void testCases(List<SecretSharing> executors) throws InterruptedException, ExecutionException {
+    Random random = new Random();
     testCaseLong(0L, executors, ImmutableList.of(1L, 2L, 3L, 4L, 5L));
     testCaseLong(1L, executors.subList(0, 3), ImmutableList.of(123L, 321L, 999L));
     testCaseDouble(2L, executors, ImmutableList.of(3.14, 54.12, 99.6, 37.9, 2.78));
+    testCaseDouble(30L, executors, ImmutableList.of(-3.14, 1e9, -1e9, 0.000125, -7.5));
     final int ROUND = 10;
     for (int i = 0; i < ROUND; ++i) {
       int partyNum = random.nextInt(4) + 2;
@@ -149,5 +211,16 @@ public class SecretSharingTest {
       testCaseLong(i * 2 + 3, executors.subList(0, partyNum), lv);
       testCaseDouble(i * 2 + 4, executors.subList(0, partyNum), dv);
     }
+    for (int i = 0; i < ROUND; ++i) {
+      int partyNum = random.nextInt(4) + 2;
+      int size = i == 0 ? 0 : random.nextInt(5000) + 1;
+      List<long[]> lv = new ArrayList<>();
+      List<double[]> dv = new ArrayList<>();
+      for (int j = 0; j < partyNum; ++j) {
+        lv.add(random.longs(size).toArray());
+        dv.add(random.doubles(size).map(d -> d * 1000).toArray());
+      }
+      testCaseVector(i * 2 + 100, executors.subList(0, partyNum), lv, dv);
+    }
   }
 }
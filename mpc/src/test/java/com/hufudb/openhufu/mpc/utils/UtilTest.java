@@ -2,15 +2,21 @@ package com.hufudb.openhufu.mpc.utils;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import com.google.common.collect.ImmutableList;
+import com.google.protobuf.ByteString;
+import com.hufudb.openhufu.mpc.ProtocolException;
 import com.hufudb.openhufu.mpc.codec.OpenHuFuCodec;
 import com.hufudb.openhufu.mpc.random.BasicRandom;
 import com.hufudb.openhufu.mpc.random.OpenHuFuRandom;
@@ -172,6 +178,32 @@ public class UtilTest {
     runStream(generateRandomBytes(10, 10), new Stream(rpc0, 50), new Stream(rpc1, 50), 1, 0);
   }
 
+  @Test
+  public void testStreamFlowControl() throws Exception {
+    // 40 pieces with at most 2 of them in flight, pieces larger than the limit are sent alone
+    runStream(generateRandomBytes(10, 200), new Stream(rpc0, 50, 2), new Stream(rpc1, 50, 2), 0, 1);
+    runStream(generateRandomBytes(10, 199), new Stream(rpc0, 50, 3), new Stream(rpc1, 50, 3), 1, 0);
+    runStream(generateRandomBytes(80, 3), new Stream(rpc0, 50, 1), new Stream(rpc1, 50, 1), 0, 1);
+  }
+
+  @Test
+  public void testStreamCancelled() throws Exception {
+    // a receiver of a cancelled task fails instead of waiting for the next piece
+    Stream s1 = new Stream(rpc1);
+    ExecutorService service = Executors.newSingleThreadExecutor();
+    Future<List<ByteString>> res = service.submit(() -> s1.receiveByteStrings(7, 0, 0));
+    Thread.sleep(100);
+    rpc1.cancel(7);
+    try {
+      res.get(10, TimeUnit.SECONDS);
+      fail("a cancelled stream should fail");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof ProtocolException);
+    } finally {
+      service.shutdown();
+    }
+  }
+
   @Test
   public void testBoardcast() throws Exception {
     runBoardcast(generateRandomBytes(10, 10), new Boardcast(rpc0), new Boardcast(rpc1), 0, 1);
@@ -1,7 +1,6 @@
 package com.hufudb.openhufu.owner;
 
 
-import io.grpc.BindableService;
 import io.grpc.Grpc;
 import io.grpc.Server;
 import io.grpc.ServerBuilder;
@@ -15,6 +14,7 @@ import java.util.concurrent.TimeUnit;
 import com.google.gson.Gson;
 import com.hufudb.openhufu.owner.config.OwnerConfig;
 import com.hufudb.openhufu.owner.config.OwnerConfigFile;
+import com.hufudb.openhufu.rpc.grpc.OpenHuFuRpc;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
 import org.apache.commons.cli.DefaultParser;
@@ -36,18 +36,22 @@ public class OwnerServer {
     this.hostname = config.hostname;
     this.port = config.port;
     this.threadPool = config.threadPool;
-    BindableService pipeService = config.acrossOwnerRpc.getgRpcService();
     this.service = new OwnerService(config);
+    ServerBuilder<?> builder;
     if (config.useTLS) {
       this.creds = config.serverCerts;
-      this.server = Grpc.newServerBuilderForPort(port, creds).addService(service)
-          .addService(pipeService).build();
+      builder = Grpc.newServerBuilderForPort(port, creds).addService(service);
       LOG.info("Owner Server {} start with TLS", config.party.getPartyId());
     } else {
       this.creds = null;
-      this.server = ServerBuilder.forPort(port).addService(service).addService(pipeService).build();
+      builder = ServerBuilder.forPort(port).addService(service);
       LOG.info("Owner Server {} start in plaintext", config.party.getPartyId());
     }
+    // owners on LocalRpc exchange packets in memory and need no pipe service
+    if (config.acrossOwnerRpc instanceof OpenHuFuRpc) {
+      builder.addService(((OpenHuFuRpc) config.acrossOwnerRpc).getgRpcService());
+    }
+    this.server = builder.build();
   }
 
   public void start() throws IOException {
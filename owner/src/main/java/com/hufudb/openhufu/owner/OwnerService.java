@@ -15,10 +15,15 @@ import com.hufudb.openhufu.data.schema.utils.PojoPublishedTableSchema;
 import com.hufudb.openhufu.data.storage.DataSet;
 import com.hufudb.openhufu.mpc.ProtocolExecutor;
 import com.hufudb.openhufu.mpc.ProtocolType;
+import com.hufudb.openhufu.mpc.beaver.BeaverTriple;
+import com.hufudb.openhufu.mpc.beaver.BeaverTriplePool;
+import com.hufudb.openhufu.mpc.gmw.GMW;
+import com.hufudb.openhufu.mpc.ot.ExtensionOT;
 import com.hufudb.openhufu.rpc.grpc.OpenHuFuOwnerInfo;
-import com.hufudb.openhufu.rpc.grpc.OpenHuFuRpc;
 import com.hufudb.openhufu.rpc.Party;
+import com.hufudb.openhufu.rpc.Rpc;
 import com.hufudb.openhufu.proto.ServiceGrpc;
+import com.hufudb.openhufu.proto.DataPacket.RpcMetricsProto;
 import com.hufudb.openhufu.proto.OpenHuFuData.DataSetProto;
 import com.hufudb.openhufu.proto.OpenHuFuData.SchemaProto;
 import com.hufudb.openhufu.proto.OpenHuFuData.TableSchemaListProto;
@@ -26,7 +31,9 @@ import com.hufudb.openhufu.proto.OpenHuFuPlan.QueryPlanProto;
 import com.hufudb.openhufu.proto.OpenHuFuService.GeneralRequest;
 import com.hufudb.openhufu.proto.OpenHuFuService.GeneralResponse;
 import com.hufudb.openhufu.proto.OpenHuFuService.OwnerInfo;
+import io.grpc.Status;
 import io.grpc.stub.StreamObserver;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
@@ -38,24 +45,43 @@ public class OwnerService extends ServiceGrpc.ServiceImplBase {
   private static final Logger LOG = LoggerFactory.getLogger(OwnerService.class);
   protected final String endpoint;
   protected final ExecutorService threadPool;
-  protected final OpenHuFuRpc ownerSideRpc;
+  protected final Rpc ownerSideRpc;
   protected final OwnerSideImplementor implementor;
   protected final Adapter adapter;
   protected final Map<ProtocolType, ProtocolExecutor> libraries;
+  // OT extension sessions and triples with the other owners, shared by the tasks of this owner
+  protected final ExtensionOT extensionOT;
+  protected final BeaverTriplePool triplePool;
   protected final SchemaManager schemaManager;
+  protected final int compressionThreshold;
 
   public OwnerService(OwnerConfig config) {
     this.threadPool = config.threadPool;
     this.endpoint = String.format("%s:%d", config.hostname, config.port);
     this.ownerSideRpc = config.acrossOwnerRpc;
     this.adapter = config.adapter;
-    this.implementor = new OwnerSideImplementor(ownerSideRpc, adapter, threadPool);
+    this.extensionOT = new ExtensionOT(ownerSideRpc);
+    this.triplePool = new BeaverTriplePool(ownerSideRpc,
+        new BeaverTriple(ownerSideRpc, extensionOT), BeaverTriplePool.DEFAULT_BATCH_SIZE,
+        BeaverTriplePool.DEFAULT_CAPACITY);
+    this.libraries = initLibraries(config.librarys);
+    this.implementor = new OwnerSideImplementor(ownerSideRpc, adapter, threadPool, libraries);
     this.schemaManager = this.adapter.getSchemaManager();
-    this.libraries = config.librarys;
+    this.compressionThreshold = config.compressionThreshold;
     ImplementorConfig.initImplementorConfig(config.implementorConfigPath);
     initPublishedTable(config.tables);
   }
 
+  // the libraries of the config, and GMW over the OT extension and triples of this owner
+  Map<ProtocolType, ProtocolExecutor> initLibraries(Map<ProtocolType, ProtocolExecutor> librarys) {
+    Map<ProtocolType, ProtocolExecutor> libs = new EnumMap<>(ProtocolType.class);
+    if (librarys != null) {
+      libs.putAll(librarys);
+    }
+    libs.put(ProtocolType.GMW, new GMW(ownerSideRpc, extensionOT, triplePool, threadPool));
+    return libs;
+  }
+
   @Override
   public void query(QueryPlanProto request, StreamObserver<DataSetProto> responseObserver) {
     Plan plan = Plan.fromProto(request);
@@ -67,11 +93,28 @@ public class OwnerService extends ServiceGrpc.ServiceImplBase {
     }
     try {
       DataSet result = implementor.implement(plan);
-      StreamDataSet output = new StreamDataSet(result, responseObserver);
+      StreamDataSet output = new StreamDataSet(result, responseObserver, compressionThreshold);
       output.stream();
       output.close();
     } catch (Exception e) {
       LOG.error("Error in query", e);
+      cancelTasks(request);
+      responseObserver.onError(
+          Status.INTERNAL.withDescription("Error in query: " + e.getMessage()).asException());
+    }
+  }
+
+  // cancel the tasks of a failed plan and their reserved sub tasks,
+  // so that the other owners stop waiting for them
+  void cancelTasks(QueryPlanProto plan) {
+    if (plan.hasTaskInfo()) {
+      final long taskId = plan.getTaskInfo().getTaskId();
+      for (long t = taskId; t <= taskId + plan.getTaskInfo().getReservedTasks(); ++t) {
+        ownerSideRpc.cancel(t);
+      }
+    }
+    for (QueryPlanProto child : plan.getChildrenList()) {
+      cancelTasks(child);
     }
   }
 
@@ -90,6 +133,10 @@ public class OwnerService extends ServiceGrpc.ServiceImplBase {
     LOG.info("Connect to owner {}", OpenHuFuOwnerInfo.fromProto(request));
     boolean ok = ownerSideRpc.addParty(OpenHuFuOwnerInfo.fromProto(request));
     ownerSideRpc.connect();
+    // the owner may be added again after a restart, set up the OT extension and triples again,
+    // stop the triple generation first so that it does not set up the OT extension again
+    triplePool.invalidate(request.getId());
+    extensionOT.invalidate(request.getId());
     responseObserver.onNext(GeneralResponse.newBuilder().setStatus(ok ? 0 : 1)
         .setMsg(ok ? "" : "Fail to add owner").build());
     responseObserver.onCompleted();
@@ -104,11 +151,18 @@ public class OwnerService extends ServiceGrpc.ServiceImplBase {
     responseObserver.onCompleted();
   }
 
+  @Override
+  public void getMetrics(GeneralRequest request, StreamObserver<RpcMetricsProto> responseObserver) {
+    boolean reset = "reset".equalsIgnoreCase(request.getValue());
+    responseObserver.onNext(ownerSideRpc.getMetrics().toProto(reset));
+    responseObserver.onCompleted();
+  }
+
   public ExecutorService getThreadPool() {
     return threadPool;
   }
 
-  public OpenHuFuRpc getOwnerSideRpc() {
+  public Rpc getOwnerSideRpc() {
     return ownerSideRpc;
   }
 
@@ -169,6 +223,8 @@ public class OwnerService extends ServiceGrpc.ServiceImplBase {
   }
 
   protected void shutdown() {
+    triplePool.close();
+    ownerSideRpc.disconnect();
     adapter.shutdown();
   }
 }
@@ -8,7 +8,7 @@ import com.hufudb.openhufu.mpc.ProtocolExecutor;
 import com.hufudb.openhufu.mpc.ProtocolType;
 import com.hufudb.openhufu.owner.adapter.Adapter;
 import com.hufudb.openhufu.rpc.Party;
-import com.hufudb.openhufu.rpc.grpc.OpenHuFuRpc;
+import com.hufudb.openhufu.rpc.Rpc;
 import io.grpc.ChannelCredentials;
 import io.grpc.ServerCredentials;
 
@@ -18,17 +18,18 @@ public class OwnerConfig {
   public String hostname;
   public ExecutorService threadPool;
   public Adapter adapter;
-  public OpenHuFuRpc acrossOwnerRpc;
+  public Rpc acrossOwnerRpc;
   public boolean useTLS;
   public ServerCredentials serverCerts;
   public ChannelCredentials clientCerts;
   public List<PojoPublishedTableSchema> tables;
   public Map<ProtocolType, ProtocolExecutor> librarys;
   public String implementorConfigPath;
+  public int compressionThreshold = -1;
   public OwnerConfig() {}
 
   public OwnerConfig(Party party, int port, String hostname, ExecutorService threadPool,
-      Adapter adapter, OpenHuFuRpc acrossOwnerRpc, boolean useTLS, ServerCredentials serverCerts,
+      Adapter adapter, Rpc acrossOwnerRpc, boolean useTLS, ServerCredentials serverCerts,
       ChannelCredentials clientCerts, List<PojoPublishedTableSchema> tables) {
     this.party = party;
     this.port = port;
@@ -23,6 +23,8 @@ import com.hufudb.openhufu.owner.adapter.AdapterLoader;
 import com.hufudb.openhufu.proto.OpenHuFuService.OwnerInfo;
 import com.hufudb.openhufu.rpc.grpc.OpenHuFuOwnerInfo;
 import com.hufudb.openhufu.rpc.grpc.OpenHuFuRpc;
+import com.hufudb.openhufu.rpc.grpc.pipe.PipeConfig;
+import com.hufudb.openhufu.rpc.local.LocalRpc;
 import io.grpc.TlsChannelCredentials;
 import io.grpc.TlsServerCredentials;
 import org.slf4j.Logger;
@@ -43,6 +45,12 @@ public class OwnerConfigFile {
   public AdapterConfig adapterconfig;
   public List<LibraryConfig> libraryconfigs;
   public String implementorconfigpath;
+  public PipeConfig pipeconfig;
+  // grpc (default) or local, local owners must run in the same JVM
+  public String rpctype;
+  // gzip query results of at least compressionthreshold bytes, negative means no compression
+  // compression of packets between owners is set in pipeconfig
+  public int compressionthreshold = -1;
   public OwnerConfigFile(int id, int port, int threadnum, String hostname, String privatekeypath,
       String certchainpath, String trustcertpath, String implementorconfigpath) {
     this.id = id;
@@ -128,18 +136,25 @@ public class OwnerConfigFile {
         config.useTLS = false;
       }
     }
-    if (trustcertpath != null) {
+    if (pipeconfig == null) {
+      pipeconfig = new PipeConfig();
+    }
+    if ("local".equalsIgnoreCase(rpctype)) {
+      config.acrossOwnerRpc = new LocalRpc(config.party);
+      LOG.info("Use local rpc between owners");
+    } else if (trustcertpath != null) {
       try {
         File rootCert = new File(trustcertpath);
         config.clientCerts = TlsChannelCredentials.newBuilder().trustManager(rootCert).build();
-        config.acrossOwnerRpc = new OpenHuFuRpc(config.party, config.threadPool, config.clientCerts);
+        config.acrossOwnerRpc =
+            new OpenHuFuRpc(config.party, config.threadPool, config.clientCerts, pipeconfig);
         LOG.info("load trustcertFile");
       } catch (Exception e) {
         LOG.error("Fail to read trustcertFile: {}", e.getMessage());
-        config.acrossOwnerRpc = new OpenHuFuRpc(config.party, config.threadPool);
+        config.acrossOwnerRpc = new OpenHuFuRpc(config.party, config.threadPool, null, pipeconfig);
       }
     } else {
-      config.acrossOwnerRpc = new OpenHuFuRpc(config.party, config.threadPool);
+      config.acrossOwnerRpc = new OpenHuFuRpc(config.party, config.threadPool, null, pipeconfig);
     }
     config.adapter = getAdapter(adapterconfig);
     config.librarys = getLibrary();
@@ -148,6 +163,7 @@ public class OwnerConfigFile {
       throw new OpenHuFuException(ErrorCode.IMPLEMENTOR_CONFIG_FILE_PATH_NOT_SET);
     }
     config.implementorConfigPath = implementorconfigpath;
+    config.compressionThreshold = compressionthreshold;
     return config;
   }
 }
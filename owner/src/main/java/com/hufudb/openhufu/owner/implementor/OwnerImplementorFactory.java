@@ -3,6 +3,8 @@ package com.hufudb.openhufu.owner.implementor;
 import com.hufudb.openhufu.common.exception.ErrorCode;
 import com.hufudb.openhufu.common.exception.OpenHuFuException;
 import com.hufudb.openhufu.expression.AggFuncType;
+import com.hufudb.openhufu.mpc.ProtocolExecutor;
+import com.hufudb.openhufu.mpc.ProtocolType;
 import com.hufudb.openhufu.owner.config.ImplementorConfig;
 import com.hufudb.openhufu.owner.config.ImplementorConfig.Implementor;
 import com.hufudb.openhufu.owner.implementor.aggregate.OwnerAggregateFunction;
@@ -40,13 +42,19 @@ public class OwnerImplementorFactory {
       OpenHuFuPlan.Expression agg,
       Rpc rpc,
       ExecutorService threadPool,
+      Map<ProtocolType, ProtocolExecutor> libraries,
       OpenHuFuPlan.TaskInfo taskInfo) {
     String className = aggFuncType2ClassName.get(aggFuncType);
+    if (className == null) {
+      throw new OpenHuFuException(ErrorCode.IMPLEMENTOR_CONFIG_MISSING,
+          aggFuncType.getName().toLowerCase());
+    }
     try {
       Class clazz = Class.forName(className);
       Constructor constructor =
           clazz.getDeclaredConstructor(OwnerAggregateFunction.defaultConstructorClass());
-      return (OwnerAggregateFunction) constructor.newInstance(agg, rpc, threadPool, taskInfo);
+      return (OwnerAggregateFunction) constructor.newInstance(agg, rpc, threadPool, libraries,
+          taskInfo);
     } catch (ClassNotFoundException e) {
       throw new OpenHuFuException(e, ErrorCode.IMPLEMENTOR_CLASS_NOT_FOUND, className);
     } catch (NoSuchMethodException e) {
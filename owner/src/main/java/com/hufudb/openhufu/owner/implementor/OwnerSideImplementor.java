@@ -1,18 +1,27 @@
 package com.hufudb.openhufu.owner.implementor;
 
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
+import com.hufudb.openhufu.common.exception.ErrorCode;
+import com.hufudb.openhufu.common.exception.OpenHuFuException;
+import com.hufudb.openhufu.data.storage.ArrayRow;
 import com.hufudb.openhufu.data.storage.DataSet;
 import com.hufudb.openhufu.data.storage.EmptyDataSet;
+import com.hufudb.openhufu.data.storage.ProtoDataSet;
+import com.hufudb.openhufu.expression.ExpressionUtils;
 import com.hufudb.openhufu.implementor.PlanImplementor;
 import com.hufudb.openhufu.interpreter.Interpreter;
 import com.hufudb.openhufu.mpc.ProtocolException;
+import com.hufudb.openhufu.mpc.ProtocolExecutor;
+import com.hufudb.openhufu.mpc.ProtocolType;
 import com.hufudb.openhufu.owner.adapter.Adapter;
 import com.hufudb.openhufu.owner.implementor.aggregate.OwnerAggregation;
 import com.hufudb.openhufu.plan.BinaryPlan;
 import com.hufudb.openhufu.plan.LeafPlan;
 import com.hufudb.openhufu.plan.Plan;
 import com.hufudb.openhufu.plan.UnaryPlan;
+import com.hufudb.openhufu.proto.OpenHuFuPlan.Expression;
 import com.hufudb.openhufu.proto.OpenHuFuPlan.PlanType;
 import com.hufudb.openhufu.rpc.Rpc;
 import org.slf4j.Logger;
@@ -25,11 +34,14 @@ public class OwnerSideImplementor implements PlanImplementor {
   Rpc rpc;
   Adapter dataSourceAdapter;
   ExecutorService threadPool;
+  Map<ProtocolType, ProtocolExecutor> libraries;
 
-  public OwnerSideImplementor(Rpc rpc, Adapter adapter, ExecutorService threadPool) {
+  public OwnerSideImplementor(Rpc rpc, Adapter adapter, ExecutorService threadPool,
+      Map<ProtocolType, ProtocolExecutor> libraries) {
     this.rpc = rpc;
     this.dataSourceAdapter = adapter;
     this.threadPool = threadPool;
+    this.libraries = libraries;
   }
 
   @Override
@@ -57,6 +69,9 @@ public class OwnerSideImplementor implements PlanImplementor {
       throw new UnsupportedOperationException("Not support two side on a single owner yet");
     }
     try {
+      if (binary.getJoinCond().getCountOnly()) {
+        return countOnlyJoin(binary, in, isLeft);
+      }
       DataSet result =
           OwnerImplementorFactory.getJoin().join(in, binary.getJoinCond(), isLeft, rpc, binary.getTaskInfo());
       if (!binary.getSelectExps().isEmpty()) {
@@ -64,9 +79,29 @@ public class OwnerSideImplementor implements PlanImplementor {
       }
       return result;
     } catch (ProtocolException e) {
-      LOG.error("Error in owner side join: {}", e);
+      // OwnerService cancels the tasks of the plan and reports the error
+      LOG.error("Error in owner side join", e);
+      throw new OpenHuFuException(e, ErrorCode.PROTOCOL_FAILED, "owner side join");
+    }
+  }
+
+  /**
+   * the COUNT(*)s of a join marked as countOnly by the planner, the first party returns them
+   */
+  DataSet countOnlyJoin(BinaryPlan binary, DataSet in, boolean isLeft) throws ProtocolException {
+    long count = OwnerImplementorFactory.getJoin()
+        .count(in, binary.getJoinCond(), isLeft, rpc, binary.getTaskInfo());
+    if (binary.getTaskInfo().getParties(0) != rpc.ownParty().getPartyId()) {
       return EmptyDataSet.INSTANCE;
     }
+    List<Expression> aggs = binary.getAggExps();
+    ProtoDataSet.Builder builder = ProtoDataSet.newBuilder(ExpressionUtils.createSchema(aggs));
+    ArrayRow.Builder row = ArrayRow.newBuilder(aggs.size());
+    for (int i = 0; i < aggs.size(); ++i) {
+      row.set(i, Interpreter.cast(aggs.get(i).getOutType(), count));
+    }
+    builder.addRow(row.build());
+    return builder.build();
   }
 
   @Override
@@ -79,7 +114,7 @@ public class OwnerSideImplementor implements PlanImplementor {
     }
     if (!unary.getAggExps().isEmpty()) {
       input = OwnerAggregation.aggregate(input, unary.getGroups(), unary.getAggExps(),
-          children.get(0).getOutTypes(), rpc, threadPool, unary.getTaskInfo());
+          children.get(0).getOutTypes(), rpc, threadPool, libraries, unary.getTaskInfo());
     }
     return input;
   }
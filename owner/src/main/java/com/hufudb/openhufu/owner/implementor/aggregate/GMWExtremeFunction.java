@@ -0,0 +1,168 @@
+package com.hufudb.openhufu.owner.implementor.aggregate;
+
+import com.google.common.collect.ImmutableList;
+import com.hufudb.openhufu.common.exception.ErrorCode;
+import com.hufudb.openhufu.common.exception.OpenHuFuException;
+import com.hufudb.openhufu.data.storage.Row;
+import com.hufudb.openhufu.interpreter.Interpreter;
+import com.hufudb.openhufu.mpc.ProtocolException;
+import com.hufudb.openhufu.mpc.bristol.CircuitType;
+import com.hufudb.openhufu.mpc.codec.OpenHuFuCodec;
+import com.hufudb.openhufu.mpc.gmw.GMW;
+import com.hufudb.openhufu.mpc.utils.Boardcast;
+import com.hufudb.openhufu.proto.OpenHuFuData.ColumnType;
+import com.hufudb.openhufu.proto.OpenHuFuPlan.TaskInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * MAX / MIN of 32-bit integers over the parties of taskInfo with a tournament of LT_32 circuits
+ *   Level l: the alive parties are paired in order and the matches of a level run in parallel,
+ *            the loser of a match leaves
+ *     The players first tell each other whether they have rows:
+ *       Header: [ptoId: boardcast, senderId: P, receiverId: Q, extraInfo: EXCHANGE_FLAG + l]
+ *       Payload: [P has rows]
+ *     A player with rows beats a player without rows, if both have rows they compare their
+ *     local extremes with GMW and open the comparison bit to both players:
+ *       Header: [ptoId: boardcast, senderId: P, receiverId: Q, extraInfo: OPEN_FLAG + l]
+ *       Payload: [share of the bit]
+ *     The first player announces the winner to the other parties for the pairs of next level:
+ *       Header: [ptoId: boardcast, senderId: P, receiverId: *, extraInfo: ANNOUNCE_FLAG + l]
+ *       Payload: [winner]
+ *   After ceil(log n) levels the winner holds the global extreme, and sends it to parties[0]
+ *       Header: [ptoId: boardcast, senderId: W, receiverId: parties[0], extraInfo: RESULT_FLAG]
+ *       Payload: [value, has rows]
+ * The tournament reveals the party holding the extreme and which parties have no rows
+ */
+public abstract class GMWExtremeFunction extends OwnerAggregateFunction {
+  static final Logger LOG = LoggerFactory.getLogger(GMWExtremeFunction.class);
+  static final long EXCHANGE_FLAG = 1L << 40;
+  static final long ANNOUNCE_FLAG = 2L << 40;
+  static final long RESULT_FLAG = 3L << 40;
+  static final long OPEN_FLAG = 4L << 40;
+
+  protected final GMW gmw;
+  protected final Boardcast boardcast;
+  protected final boolean isMax;
+  private int value;
+  private boolean hasValue;
+
+  protected GMWExtremeFunction(int inputRef, ColumnType type, GMW gmw, Boardcast boardcast,
+      TaskInfo taskInfo, boolean isMax) {
+    super(inputRef, type, taskInfo);
+    switch (type) {
+      case BYTE:
+      case SHORT:
+      case INT:
+        break;
+      default:
+        throw new UnsupportedOperationException(
+            "Secure " + (isMax ? "MAX" : "MIN") + " only supports 32-bit integers");
+    }
+    this.gmw = gmw;
+    this.boardcast = boardcast;
+    this.isMax = isMax;
+    this.value = 0;
+    this.hasValue = false;
+  }
+
+  @Override
+  public void add(Row ele) {
+    Object e = ele.get(inputRef);
+    if (e == null) {
+      return;
+    }
+    int v = ((Number) e).intValue();
+    if (!hasValue || (isMax ? v > value : v < value)) {
+      value = v;
+    }
+    hasValue = true;
+  }
+
+  // play a match with other, return true if the own value wins
+  boolean match(long taskId, int otherId, int level) throws ProtocolException {
+    final int ownId = gmw.getOwnId();
+    boardcast.run(taskId, ImmutableList.of(ownId, otherId),
+        ImmutableList.of(OpenHuFuCodec.encodeBoolean(hasValue)), EXCHANGE_FLAG + level);
+    List<byte[]> remote = (List<byte[]>) boardcast.run(taskId, ImmutableList.of(otherId, ownId),
+        ImmutableList.of(), EXCHANGE_FLAG + level);
+    boolean otherHasValue = OpenHuFuCodec.decodeBoolean(remote.get(0));
+    if (hasValue != otherHasValue) {
+      return hasValue;
+    } else if (!hasValue) {
+      // both are empty, the party with smaller id goes on
+      return ownId < otherId;
+    }
+    // LT_32 compares unsigned integers, flip the sign bit to keep the signed order
+    List<byte[]> share = (List<byte[]>) gmw.run(taskId, ImmutableList.of(ownId, otherId),
+        ImmutableList.of(OpenHuFuCodec.encodeInt(value ^ Integer.MIN_VALUE)),
+        CircuitType.LT_32.getId());
+    boardcast.run(taskId, ImmutableList.of(ownId, otherId), ImmutableList.of(share.get(0)),
+        OPEN_FLAG + level);
+    List<byte[]> otherShare = (List<byte[]>) boardcast.run(taskId,
+        ImmutableList.of(otherId, ownId), ImmutableList.of(), OPEN_FLAG + level);
+    // the party with smaller id gives the first operand
+    boolean less = ((share.get(0)[0] ^ otherShare.get(0)[0]) & 1) == 1;
+    boolean firstWins = isMax != less;
+    return (ownId < otherId) == firstWins;
+  }
+
+  @Override
+  public Comparable aggregate() {
+    try {
+      final long taskId = taskInfo.getTaskId();
+      final int ownId = gmw.getOwnId();
+      final List<Integer> parties = taskInfo.getPartiesList();
+      List<Integer> alive = parties;
+      for (int level = 0; alive.size() > 1; ++level) {
+        List<Integer> next = new ArrayList<>();
+        for (int i = 0; i + 1 < alive.size(); i += 2) {
+          int first = alive.get(i);
+          int second = alive.get(i + 1);
+          int winner;
+          if (ownId == first || ownId == second) {
+            int otherId = ownId == first ? second : first;
+            winner = match(taskId, otherId, level) ? ownId : otherId;
+            if (ownId == first) {
+              List<Integer> receivers = new ArrayList<>();
+              receivers.add(ownId);
+              parties.stream().filter(p -> p != first && p != second).forEach(receivers::add);
+              boardcast.run(taskId, receivers,
+                  ImmutableList.of(OpenHuFuCodec.encodeInt(winner)), ANNOUNCE_FLAG + level);
+            }
+          } else {
+            List<byte[]> announce = (List<byte[]>) boardcast.run(taskId,
+                ImmutableList.of(first, ownId), ImmutableList.of(), ANNOUNCE_FLAG + level);
+            winner = OpenHuFuCodec.decodeInt(announce.get(0));
+          }
+          next.add(winner);
+        }
+        if (alive.size() % 2 == 1) {
+          next.add(alive.get(alive.size() - 1));
+        }
+        alive = next;
+      }
+      int winner = alive.get(0);
+      int receiver = parties.get(0);
+      if (ownId == winner && ownId != receiver) {
+        boardcast.run(taskId, ImmutableList.of(ownId, receiver), ImmutableList.of(
+            OpenHuFuCodec.encodeInt(value), OpenHuFuCodec.encodeBoolean(hasValue)), RESULT_FLAG);
+      } else if (ownId == receiver && ownId != winner) {
+        List<byte[]> result = (List<byte[]>) boardcast.run(taskId,
+            ImmutableList.of(winner, ownId), ImmutableList.of(), RESULT_FLAG);
+        value = OpenHuFuCodec.decodeInt(result.get(0));
+        hasValue = OpenHuFuCodec.decodeBoolean(result.get(1));
+      }
+      if (ownId != receiver || !hasValue) {
+        return null;
+      }
+      return (Comparable) Interpreter.cast(type, value);
+    } catch (ProtocolException e) {
+      LOG.error("Error when executing GMW tournament", e);
+      throw new OpenHuFuException(e, ErrorCode.PROTOCOL_FAILED, "GMWExtremeFunction");
+    }
+  }
+}
@@ -5,6 +5,7 @@ import com.hufudb.openhufu.data.storage.Row;
 import com.hufudb.openhufu.proto.OpenHuFuData;
 import com.hufudb.openhufu.proto.OpenHuFuPlan;
 import com.hufudb.openhufu.rpc.Rpc;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 
 public abstract class OwnerAggregateFunction implements AggregateFunction<Row, Comparable> {
@@ -19,11 +20,12 @@ public abstract class OwnerAggregateFunction implements AggregateFunction<Row, C
     this.taskInfo = taskInfo;
   }
   /*
-  * the parameters of constructor for each aggregate function class
+  * the parameters of constructor for each aggregate function class,
+  * the Map<ProtocolType, ProtocolExecutor> holds the protocol executors of the owner
    */
   public static Class[] defaultConstructorClass() {
     return new Class[] {OpenHuFuPlan.Expression.class, Rpc.class, ExecutorService.class,
-        OpenHuFuPlan.TaskInfo.class};
+        Map.class, OpenHuFuPlan.TaskInfo.class};
   }
 
 }
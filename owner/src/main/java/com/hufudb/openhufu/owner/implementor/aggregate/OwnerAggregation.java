@@ -1,8 +1,11 @@
 package com.hufudb.openhufu.owner.implementor.aggregate;
 
+import com.hufudb.openhufu.common.exception.ErrorCode;
+import com.hufudb.openhufu.common.exception.OpenHuFuException;
 import com.hufudb.openhufu.expression.AggFuncType;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 
 import com.hufudb.openhufu.data.function.AggregateFunction;
@@ -16,6 +19,10 @@ import com.hufudb.openhufu.expression.ExpressionFactory;
 import com.hufudb.openhufu.expression.ExpressionUtils;
 import com.hufudb.openhufu.expression.SingleAggregator;
 import com.hufudb.openhufu.interpreter.Interpreter;
+import com.hufudb.openhufu.mpc.ProtocolException;
+import com.hufudb.openhufu.mpc.ProtocolExecutor;
+import com.hufudb.openhufu.mpc.ProtocolType;
+import com.hufudb.openhufu.owner.implementor.aggregate.group.SecretSharingGroupAggregation;
 import com.hufudb.openhufu.owner.implementor.OwnerImplementorFactory;
 import com.hufudb.openhufu.proto.OpenHuFuData.ColumnType;
 import com.hufudb.openhufu.proto.OpenHuFuPlan;
@@ -28,16 +35,34 @@ import org.slf4j.LoggerFactory;
 public class OwnerAggregation {
   static final Logger LOG = LoggerFactory.getLogger(OwnerAggregation.class);
 
-  public static AggregateFunction getAggregateFunc(Expression exp, Rpc rpc, ExecutorService threadPool, TaskInfo taskInfo) {
+  public static AggregateFunction getAggregateFunc(Expression exp, Rpc rpc, ExecutorService threadPool, Map<ProtocolType, ProtocolExecutor> libraries, TaskInfo taskInfo) {
     if (exp.getOpType().equals(OpenHuFuPlan.OperatorType.AGG_FUNC)) {
       LOG.info("using aggfunc: " + AggFuncType.of(exp.getI32()).getName());
-      return OwnerImplementorFactory.getAggregationFunction(AggFuncType.of(exp.getI32()), exp, rpc, threadPool, taskInfo);
+      return OwnerImplementorFactory.getAggregationFunction(AggFuncType.of(exp.getI32()), exp, rpc, threadPool, libraries, taskInfo);
     } else {
       throw new UnsupportedOperationException("Just support single aggregate function");
     }
   }
 
-  public static DataSet aggregate(DataSet input, List<Integer> groups, List<Expression> aggs, List<ColumnType> types, Rpc rpc, ExecutorService threadPool, TaskInfo taskInfo) {
+  /**
+   * task info of the idx-th aggregate function, the functions share the parties
+   * but each takes its own task id (taskId + 1 + idx) reserved by the planner
+   */
+  static TaskInfo functionTaskInfo(TaskInfo taskInfo, int idx, int functionCount) {
+    if (functionCount == 1 && taskInfo.getReservedTasks() == 0) {
+      // plans without reserved task ids, a single function takes the task id of the plan
+      return taskInfo;
+    }
+    if (idx >= taskInfo.getReservedTasks()) {
+      LOG.error("No task id reserved for aggregate function {} in task {}", idx,
+          taskInfo.getTaskId());
+      throw new UnsupportedOperationException("No task id reserved for aggregate function");
+    }
+    return taskInfo.toBuilder().setTaskId(taskInfo.getTaskId() + 1 + idx).setReservedTasks(0)
+        .build();
+  }
+
+  public static DataSet aggregate(DataSet input, List<Integer> groups, List<Expression> aggs, List<ColumnType> types, Rpc rpc, ExecutorService threadPool, Map<ProtocolType, ProtocolExecutor> libraries, TaskInfo taskInfo) {
     List<AggregateFunction<Row, Comparable>> aggFunctions = new ArrayList<>();
     List<ColumnType> aggTypes = new ArrayList<>();
     // interval aggregations
@@ -45,13 +70,19 @@ public class OwnerAggregation {
     // select from interval aggregations
     List<Expression> finalSelects = new ArrayList<>();
     if (!groups.isEmpty()) {
-      LOG.warn("Not support 'group by' clause");
-      throw new UnsupportedOperationException("Not support 'group by' clause");
+      try {
+        return new SecretSharingGroupAggregation(rpc).aggregate(input, groups, aggs, taskInfo);
+      } catch (ProtocolException e) {
+        LOG.error("Error in owner side group aggregation", e);
+        throw new OpenHuFuException(e, ErrorCode.PROTOCOL_FAILED, "owner side group aggregation");
+      }
     }
+    final int functionCount = ExpressionUtils.countAggregateFunctions(aggs);
     for (Expression exp : aggs) {
       if (exp.getInCount() == 1) {
         int ref = interAggs.size();
-        aggFunctions.add(getAggregateFunc(exp, rpc, threadPool, taskInfo));
+        aggFunctions.add(getAggregateFunc(exp, rpc, threadPool, libraries,
+            functionTaskInfo(taskInfo, ref, functionCount)));
         aggTypes.add(exp.getOutType());
         interAggs.add(exp);
         finalSelects.add(ExpressionFactory.createInputRef(ref, exp.getOutType(), exp.getModifier()));
@@ -62,7 +93,8 @@ public class OwnerAggregation {
         //  what if there is DIVIDE(DIVIDE(SUM(), SUM()), 3)?
         for (Expression inner : exp.getInList()) {
           int ref = interAggs.size();
-          aggFunctions.add(getAggregateFunc(inner, rpc, threadPool, taskInfo));
+          aggFunctions.add(getAggregateFunc(inner, rpc, threadPool, libraries,
+              functionTaskInfo(taskInfo, ref, functionCount)));
           aggTypes.add(exp.getOutType());
 
           Expression inputRef = ExpressionFactory.createInputRef(ref, inner.getOutType(), inner.getModifier());
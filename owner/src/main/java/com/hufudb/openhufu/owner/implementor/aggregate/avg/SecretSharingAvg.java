@@ -0,0 +1,98 @@
+package com.hufudb.openhufu.owner.implementor.aggregate.avg;
+
+import com.hufudb.openhufu.common.exception.ErrorCode;
+import com.hufudb.openhufu.common.exception.OpenHuFuException;
+import com.hufudb.openhufu.data.function.AggregateFunction;
+import com.hufudb.openhufu.data.storage.Row;
+import com.hufudb.openhufu.interpreter.Interpreter;
+import com.hufudb.openhufu.mpc.ProtocolException;
+import com.hufudb.openhufu.mpc.ProtocolExecutor;
+import com.hufudb.openhufu.mpc.ProtocolType;
+import com.hufudb.openhufu.mpc.secretsharing.FixedPoint;
+import com.hufudb.openhufu.mpc.secretsharing.SecretSharing;
+import com.hufudb.openhufu.owner.implementor.aggregate.OwnerAggregateFunction;
+import com.hufudb.openhufu.proto.OpenHuFuData;
+import com.hufudb.openhufu.proto.OpenHuFuPlan;
+import com.hufudb.openhufu.rpc.Rpc;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * sum and count are shared as one long vector, so AVG takes the same rounds as SUM,
+ * the sum of integer inputs is shared exactly, the sum of FLOAT/DOUBLE inputs is shared
+ * in the fixed point encoding
+ */
+public class SecretSharingAvg extends OwnerAggregateFunction {
+  static final Logger LOG = LoggerFactory.getLogger(SecretSharingAvg.class);
+  private long sum;
+  private double doubleSum;
+  private long count;
+  final private boolean isDouble;
+  final private SecretSharing ss;
+  final private boolean hasOutput;
+
+  SecretSharingAvg(int inputRef, SecretSharing ss, OpenHuFuData.ColumnType type,
+      boolean isDouble, OpenHuFuPlan.TaskInfo taskInfo) {
+    super(inputRef, type, taskInfo);
+    this.sum = 0;
+    this.doubleSum = 0.0;
+    this.count = 0;
+    this.isDouble = isDouble;
+    this.ss = ss;
+    this.hasOutput = ss.getOwnId() == taskInfo.getPartiesList().get(0);
+  }
+
+  public SecretSharingAvg(OpenHuFuPlan.Expression agg, Rpc rpc, ExecutorService threadPool,
+      Map<ProtocolType, ProtocolExecutor> libraries, OpenHuFuPlan.TaskInfo taskInfo) {
+    this(agg.getIn(0).getI32(), new SecretSharing(rpc), agg.getOutType(),
+        agg.getIn(0).getOutType() == OpenHuFuData.ColumnType.DOUBLE
+            || agg.getIn(0).getOutType() == OpenHuFuData.ColumnType.FLOAT, taskInfo);
+  }
+
+  @Override
+  public Comparable aggregate() {
+    try {
+      final int scaleBits = ss.getScaleBits();
+      long[] res = ss.sumLongs(taskInfo.getTaskId(), taskInfo.getPartiesList(),
+          new long[] {isDouble ? FixedPoint.encode(doubleSum, scaleBits) : sum, count});
+      if (!hasOutput || res[1] == 0) {
+        return null;
+      }
+      Number avg;
+      if (isDouble) {
+        avg = FixedPoint.decode(res[0], scaleBits) / res[1];
+      } else if (type == OpenHuFuData.ColumnType.DOUBLE
+          || type == OpenHuFuData.ColumnType.FLOAT) {
+        avg = (double) res[0] / res[1];
+      } else {
+        // integer AVG truncates as the integer division
+        avg = res[0] / res[1];
+      }
+      return (Comparable) Interpreter.cast(type, avg);
+    } catch (ProtocolException e) {
+      LOG.error("Error when executing secretsharing", e);
+      throw new OpenHuFuException(e, ErrorCode.PROTOCOL_FAILED, "SecretSharingAvg");
+    }
+  }
+
+  @Override
+  public void add(Row ele) {
+    Object e = ele.get(inputRef);
+    if (e != null) {
+      if (isDouble) {
+        doubleSum += ((Number) e).doubleValue();
+      } else {
+        sum += ((Number) e).longValue();
+      }
+      count++;
+    }
+  }
+
+  @Override
+  public AggregateFunction<Row, Comparable> copy() {
+    return new SecretSharingAvg(inputRef, ss, type, isDouble, taskInfo);
+  }
+}
@@ -0,0 +1,68 @@
+package com.hufudb.openhufu.owner.implementor.aggregate.count;
+
+import com.hufudb.openhufu.common.exception.ErrorCode;
+import com.hufudb.openhufu.common.exception.OpenHuFuException;
+import com.hufudb.openhufu.data.function.AggregateFunction;
+import com.hufudb.openhufu.data.storage.Row;
+import com.hufudb.openhufu.interpreter.Interpreter;
+import com.hufudb.openhufu.mpc.ProtocolException;
+import com.hufudb.openhufu.mpc.ProtocolExecutor;
+import com.hufudb.openhufu.mpc.ProtocolType;
+import com.hufudb.openhufu.mpc.secretsharing.SecretSharing;
+import com.hufudb.openhufu.owner.implementor.aggregate.OwnerAggregateFunction;
+import com.hufudb.openhufu.proto.OpenHuFuData;
+import com.hufudb.openhufu.proto.OpenHuFuPlan;
+import com.hufudb.openhufu.rpc.Rpc;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+public class SecretSharingCount extends OwnerAggregateFunction {
+  static final Logger LOG = LoggerFactory.getLogger(SecretSharingCount.class);
+  private long count;
+  final private SecretSharing ss;
+  final private boolean hasOutput;
+
+  SecretSharingCount(int inputRef, SecretSharing ss, OpenHuFuData.ColumnType type, OpenHuFuPlan.TaskInfo taskInfo) {
+    super(inputRef, type, taskInfo);
+    this.count = 0;
+    this.ss = ss;
+    this.hasOutput = ss.getOwnId() == taskInfo.getPartiesList().get(0);
+  }
+
+  public SecretSharingCount(OpenHuFuPlan.Expression agg, Rpc rpc, ExecutorService threadPool,
+      Map<ProtocolType, ProtocolExecutor> libraries, OpenHuFuPlan.TaskInfo taskInfo) {
+    // COUNT(*) has no input
+    this(agg.getInCount() > 0 ? agg.getIn(0).getI32() : -1, new SecretSharing(rpc),
+        agg.getOutType(), taskInfo);
+  }
+
+  @Override
+  public Comparable aggregate() {
+    try {
+      Object res = ss.run(taskInfo.getTaskId(), taskInfo.getPartiesList(),
+          OpenHuFuData.ColumnType.LONG, count, OpenHuFuPlan.OperatorType.PLUS);
+      if (!hasOutput) {
+        return null;
+      }
+      return (Comparable) Interpreter.cast(type, res);
+    } catch (ProtocolException e) {
+      LOG.error("Error when executing secretsharing", e);
+      throw new OpenHuFuException(e, ErrorCode.PROTOCOL_FAILED, "SecretSharingCount");
+    }
+  }
+
+  @Override
+  public void add(Row ele) {
+    if (inputRef < 0 || ele.get(inputRef) != null) {
+      count++;
+    }
+  }
+
+  @Override
+  public AggregateFunction<Row, Comparable> copy() {
+    return new SecretSharingCount(inputRef, ss, type, taskInfo);
+  }
+}
@@ -0,0 +1,427 @@
+package com.hufudb.openhufu.owner.implementor.aggregate.group;
+
+import java.util.ArrayList;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import com.google.common.collect.ImmutableList;
+import com.google.common.primitives.Longs;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.UnsafeByteOperations;
+import com.hufudb.openhufu.data.schema.Schema;
+import com.hufudb.openhufu.data.storage.ArrayRow;
+import com.hufudb.openhufu.data.storage.DataSet;
+import com.hufudb.openhufu.data.storage.DataSetIterator;
+import com.hufudb.openhufu.data.storage.EmptyDataSet;
+import com.hufudb.openhufu.data.storage.ProtoDataSet;
+import com.hufudb.openhufu.data.storage.ProtoRowDataSet;
+import com.hufudb.openhufu.data.storage.Row;
+import com.hufudb.openhufu.expression.AggFuncType;
+import com.hufudb.openhufu.expression.ExpressionFactory;
+import com.hufudb.openhufu.expression.ExpressionUtils;
+import com.hufudb.openhufu.interpreter.Interpreter;
+import com.hufudb.openhufu.mpc.ProtocolException;
+import com.hufudb.openhufu.mpc.codec.HashFunction;
+import com.hufudb.openhufu.mpc.codec.OpenHuFuCodec;
+import com.hufudb.openhufu.mpc.secretsharing.FixedPoint;
+import com.hufudb.openhufu.mpc.secretsharing.SecretSharing;
+import com.hufudb.openhufu.mpc.utils.Stream;
+import com.hufudb.openhufu.proto.OpenHuFuData.ColumnType;
+import com.hufudb.openhufu.proto.OpenHuFuData.DataSetProto;
+import com.hufudb.openhufu.proto.OpenHuFuPlan.Expression;
+import com.hufudb.openhufu.proto.OpenHuFuPlan.OperatorType;
+import com.hufudb.openhufu.proto.OpenHuFuPlan.TaskInfo;
+import com.hufudb.openhufu.rpc.Rpc;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Grouped SUM / COUNT over the owners of taskInfo, the first party (leader) outputs the result
+ *   Step1: each owner aggregates its rows into per-group partials with a hash map
+ *   Step2: the other owners send the SHA-256 digests of their encoded group keys to the leader
+ *          (as HashPSI hashes join keys), the leader merges them with the digests of its own keys
+ *          into the group domain, and sends each owner the domain size, the domain index of each
+ *          of its keys and the positions of the keys new to the domain which it asks for,
+ *          so the owners don't learn the groups of each other
+ *   Step3: the owners send the plaintext of the keys asked for, one owner for each group the
+ *          leader lacks, the leader checks them against their digests
+ *   Step4: each owner lays out its partials as vectors over the domain, 0 for missing groups,
+ *          and all vectors are summed with one call of SecretSharing, the double partials
+ *          in the fixed point encoding of FixedPoint
+ * Leakage: the leader learns the digests of the keys of each owner, i.e. which owners share a
+ * group, and the plaintext of the groups it outputs. As all groups are output and the digests
+ * are not keyed, the leader can still hash an output key to find its owners, the digests only
+ * hide keys that are never output. An owner learns the number of groups, and which of its keys
+ * are asked for, i.e. held by neither the leader nor an owner before it. Only the partial
+ * SUM / COUNT of each owner stay secret. Hiding the keys of each owner from the leader needs a
+ * PSI / OPRF based union of the keys, which is not done
+ */
+public class SecretSharingGroupAggregation {
+  static final Logger LOG = LoggerFactory.getLogger(SecretSharingGroupAggregation.class);
+  static final int MAX_SIZE = 1000;
+  static final long KEY_STREAM = 0L;
+  static final long INDEX_STREAM = 1L;
+  static final long DIGEST_STREAM = 2L;
+  static final HashFunction KEY_HASH = HashFunction.SHA256;
+  // digests in a piece of the digest stream
+  static final int DIGEST_CHUNK = 1 << 15;
+
+  final Rpc rpc;
+  final SecretSharing ss;
+  final Stream stream;
+
+  public SecretSharingGroupAggregation(Rpc rpc) {
+    this.rpc = rpc;
+    this.ss = new SecretSharing(rpc);
+    this.stream = new Stream(rpc);
+  }
+
+  /**
+   * a flattened aggregate call, partials of SUM / COUNT are kept in the long or double vectors
+   */
+  static class AggCall {
+    final AggFuncType func;
+    final int inputRef;
+    final ColumnType outType;
+    final boolean isDouble;
+    // group key index for GROUPKEY, offset in the long or double partials for others
+    int offset;
+
+    AggCall(Expression exp, List<Integer> groups) {
+      if (AggFuncType.isDistinct(exp.getI32())) {
+        throw new UnsupportedOperationException("Not support distinct aggregation with group by");
+      }
+      this.func = AggFuncType.of(exp.getI32());
+      this.inputRef = exp.getInCount() > 0 ? exp.getIn(0).getI32() : -1;
+      this.outType = exp.getOutType();
+      this.isDouble = outType == ColumnType.DOUBLE || outType == ColumnType.FLOAT;
+      switch (func) {
+        case GROUPKEY:
+          this.offset = groups.indexOf(inputRef);
+          if (offset < 0) {
+            throw new UnsupportedOperationException("Group key should be in group by clause");
+          }
+          break;
+        case SUM:
+        case COUNT:
+          break;
+        default:
+          throw new UnsupportedOperationException(
+              String.format("Not support %s with group by", func.getName()));
+      }
+    }
+  }
+
+  static class Partial {
+    final long[] longs;
+    final double[] doubles;
+
+    Partial(int longNum, int doubleNum) {
+      this.longs = new long[longNum];
+      this.doubles = new double[doubleNum];
+    }
+  }
+
+  public DataSet aggregate(DataSet input, List<Integer> groups, List<Expression> aggs,
+      TaskInfo taskInfo) throws ProtocolException {
+    List<AggCall> calls = new ArrayList<>();
+    // interval aggregations
+    List<Expression> interAggs = new ArrayList<>();
+    // select from interval aggregations
+    List<Expression> finalSelects = new ArrayList<>();
+    for (Expression exp : aggs) {
+      if (exp.getOpType().equals(OperatorType.AGG_FUNC)) {
+        int ref = interAggs.size();
+        calls.add(new AggCall(exp, groups));
+        interAggs.add(exp);
+        finalSelects.add(
+            ExpressionFactory.createInputRef(ref, exp.getOutType(), exp.getModifier()));
+      } else {
+        // one layer above aggregate calls, e.g. DIVIDE(SUM(), SUM()) of AVG
+        Expression.Builder builder = exp.toBuilder();
+        builder.clearIn();
+        for (Expression inner : exp.getInList()) {
+          int ref = interAggs.size();
+          calls.add(new AggCall(inner, groups));
+          interAggs.add(inner);
+          builder.addIn(ExpressionFactory.createInputRef(ref, inner.getOutType(),
+              inner.getModifier()));
+        }
+        finalSelects.add(builder.build());
+      }
+    }
+    int longNum = 0;
+    int doubleNum = 0;
+    for (AggCall call : calls) {
+      if (call.func != AggFuncType.GROUPKEY) {
+        call.offset = call.isDouble ? doubleNum++ : longNum++;
+      }
+    }
+    Map<Row, Partial> partials = localAggregate(input, groups, calls, longNum, doubleNum);
+    List<Integer> parties = taskInfo.getPartiesList();
+    long taskId = taskInfo.getTaskId();
+    int leader = parties.get(0);
+    boolean isLeader = leader == rpc.ownParty().getPartyId();
+    Schema.Builder keySchemaBuilder = Schema.newBuilder();
+    groups.forEach(g -> keySchemaBuilder.add(input.getSchema().getColumnDesc(g)));
+    Schema keySchema = keySchemaBuilder.build();
+    List<Row> keys = ImmutableList.copyOf(partials.keySet());
+    byte[] digests = digests(keySchema, keys);
+    List<Row> domain = null;
+    int domainSize;
+    int[] indices;
+    if (isLeader) {
+      domain = mergeDomain(taskId, parties, keySchema, keys, digests);
+      domainSize = domain.size();
+      indices = IntStream.range(0, partials.size()).toArray();
+    } else {
+      int[] reply = sendDigests(taskId, leader, keySchema, keys, digests);
+      domainSize = reply[0];
+      indices = Arrays.copyOfRange(reply, 1, reply.length);
+    }
+    long[] longs = new long[domainSize * longNum];
+    double[] doubles = new double[domainSize * doubleNum];
+    int i = 0;
+    for (Partial p : partials.values()) {
+      System.arraycopy(p.longs, 0, longs, indices[i] * longNum, longNum);
+      System.arraycopy(p.doubles, 0, doubles, indices[i] * doubleNum, doubleNum);
+      ++i;
+    }
+    if (longNum + doubleNum > 0) {
+      // doubles are summed in the fixed point encoding together with the longs
+      final int scaleBits = ss.getScaleBits();
+      long[] sum =
+          ss.sumLongs(taskId, parties, Longs.concat(longs, FixedPoint.encode(doubles, scaleBits)));
+      doubles = FixedPoint.decode(Arrays.copyOfRange(sum, longs.length, sum.length), scaleBits);
+      longs = Arrays.copyOf(sum, longs.length);
+    }
+    LOG.debug("{} aggregates {} local groups in a domain of {} groups", rpc.ownParty(),
+        partials.size(), domainSize);
+    if (!isLeader) {
+      return EmptyDataSet.INSTANCE;
+    }
+    Schema outSchema = ExpressionUtils.createSchema(interAggs);
+    ProtoDataSet.Builder builder = ProtoDataSet.newBuilder(outSchema);
+    ArrayRow.Builder row = ArrayRow.newBuilder(calls.size());
+    for (int d = 0; d < domainSize; ++d) {
+      row.reset();
+      for (int c = 0; c < calls.size(); ++c) {
+        AggCall call = calls.get(c);
+        Object value;
+        if (call.func == AggFuncType.GROUPKEY) {
+          value = domain.get(d).get(call.offset);
+        } else if (call.isDouble) {
+          value = doubles[d * doubleNum + call.offset];
+        } else {
+          value = longs[d * longNum + call.offset];
+        }
+        row.set(c, Interpreter.cast(call.outType, value));
+      }
+      builder.addRow(row.build());
+    }
+    // reorder the output
+    return Interpreter.map(builder.build(), finalSelects);
+  }
+
+  static Map<Row, Partial> localAggregate(DataSet input, List<Integer> groups, List<AggCall> calls,
+      int longNum, int doubleNum) {
+    Map<Row, Partial> partials = new LinkedHashMap<>();
+    ArrayRow.Builder keyBuilder = ArrayRow.newBuilder(groups.size());
+    DataSetIterator it = input.getIterator();
+    while (it.next()) {
+      keyBuilder.reset();
+      for (int i = 0; i < groups.size(); ++i) {
+        keyBuilder.set(i, it.get(groups.get(i)));
+      }
+      Partial p = partials.computeIfAbsent(keyBuilder.build(),
+          k -> new Partial(longNum, doubleNum));
+      for (AggCall call : calls) {
+        if (call.func == AggFuncType.GROUPKEY) {
+          continue;
+        }
+        Object v = call.inputRef < 0 ? Boolean.TRUE : it.get(call.inputRef);
+        if (v == null) {
+          continue;
+        }
+        if (call.func == AggFuncType.COUNT) {
+          if (call.isDouble) {
+            p.doubles[call.offset] += 1.0;
+          } else {
+            p.longs[call.offset] += 1L;
+          }
+        } else if (call.isDouble) {
+          p.doubles[call.offset] += ((Number) v).doubleValue();
+        } else {
+          p.longs[call.offset] += ((Number) v).longValue();
+        }
+      }
+    }
+    input.close();
+    return partials;
+  }
+
+  // SHA-256 of each encoded key, concatenated
+  static byte[] digests(Schema keySchema, List<Row> keys) throws ProtocolException {
+    ProtoDataSet.Builder builder = ProtoDataSet.newBuilder(keySchema);
+    keys.forEach(builder::addRow);
+    List<byte[]> encoded = ProtoRowDataSet.project(builder.build(),
+        IntStream.range(0, keySchema.size()).boxed().collect(Collectors.toList())).toBytes();
+    final int length = KEY_HASH.getLength();
+    byte[] digests = new byte[encoded.size() * length];
+    MessageDigest md = KEY_HASH.newDigest();
+    try {
+      for (int i = 0; i < encoded.size(); ++i) {
+        md.update(encoded.get(i));
+        md.digest(digests, i * length, length);
+      }
+    } catch (DigestException e) {
+      throw new ProtocolException("Fail to hash group keys", e);
+    }
+    return digests;
+  }
+
+  static List<ByteString> chunks(byte[] digests) {
+    final int step = DIGEST_CHUNK * KEY_HASH.getLength();
+    List<ByteString> chunks = new ArrayList<>();
+    for (int off = 0; off < digests.length; off += step) {
+      chunks.add(
+          UnsafeByteOperations.unsafeWrap(digests, off, Math.min(step, digests.length - off)));
+    }
+    return chunks;
+  }
+
+  static List<ByteString> encode(Schema keySchema, List<Row> keys) {
+    ProtoDataSet.Builder builder = ProtoDataSet.newBuilder(keySchema);
+    keys.forEach(builder::addRow);
+    return ProtoDataSet.slice(builder.build(), MAX_SIZE).stream()
+        .map(DataSetProto::toByteString).collect(Collectors.toList());
+  }
+
+  // other owners: send the digests of the local keys, receive [domain size, index of each key,
+  // positions of the keys asked for], and send the keys asked for
+  int[] sendDigests(long taskId, int leader, Schema keySchema, List<Row> keys, byte[] digests)
+      throws ProtocolException {
+    stream.sendByteStrings(taskId, ImmutableList.of(leader), chunks(digests), DIGEST_STREAM);
+    List<ByteString> result = stream.receiveByteStrings(taskId, leader, INDEX_STREAM);
+    if (result.size() != 1) {
+      throw new ProtocolException("Fail to receive group indices from Party [" + leader + "]");
+    }
+    ByteString bytes = result.get(0);
+    int[] reply =
+        OpenHuFuCodec.decodeInts(bytes.asReadOnlyByteBuffer(), bytes.size() / Integer.BYTES);
+    final int n = keys.size();
+    if (reply.length < n + 1) {
+      throw new ProtocolException("Wrong number of group indices from Party [" + leader + "]");
+    }
+    if (reply.length > n + 1) {
+      List<Row> asked = new ArrayList<>();
+      for (int i = n + 1; i < reply.length; ++i) {
+        if (reply[i] < 0 || reply[i] >= n) {
+          throw new ProtocolException("Wrong group position from Party [" + leader + "]");
+        }
+        asked.add(keys.get(reply[i]));
+      }
+      stream.sendByteStrings(taskId, ImmutableList.of(leader), encode(keySchema, asked),
+          KEY_STREAM);
+    }
+    return Arrays.copyOf(reply, n + 1);
+  }
+
+  // leader: merge the digests of all owners into the domain, own keys come first, and collect
+  // the plaintext of the keys new to the domain
+  List<Row> mergeDomain(long taskId, List<Integer> parties, Schema keySchema, List<Row> keys,
+      byte[] digests) throws ProtocolException {
+    final int length = KEY_HASH.getLength();
+    Map<ByteString, Integer> index = new HashMap<>();
+    List<ByteString> domainDigests = new ArrayList<>();
+    List<Row> domain = new ArrayList<>(keys);
+    ByteString own = UnsafeByteOperations.unsafeWrap(digests);
+    for (int j = 0; j < keys.size(); ++j) {
+      ByteString d = own.substring(j * length, (j + 1) * length);
+      index.put(d, j);
+      domainDigests.add(d);
+    }
+    List<int[]> indices = new ArrayList<>();
+    // positions in the keys of each owner, and the domain indices of them
+    List<List<Integer>> asked = new ArrayList<>();
+    List<List<Integer>> askedIndices = new ArrayList<>();
+    for (int i = 1; i < parties.size(); ++i) {
+      ByteString received =
+          ByteString.copyFrom(stream.receiveByteStrings(taskId, parties.get(i), DIGEST_STREAM));
+      if (received.size() % length != 0) {
+        throw new ProtocolException("Wrong digests of group keys from Party [" + parties.get(i)
+            + "]");
+      }
+      int[] idx = new int[received.size() / length];
+      List<Integer> positions = new ArrayList<>();
+      List<Integer> newIndices = new ArrayList<>();
+      for (int j = 0; j < idx.length; ++j) {
+        ByteString d = received.substring(j * length, (j + 1) * length);
+        Integer id = index.get(d);
+        if (id == null) {
+          id = domain.size();
+          index.put(d, id);
+          domainDigests.add(d);
+          domain.add(null);
+          positions.add(j);
+          newIndices.add(id);
+        }
+        idx[j] = id;
+      }
+      indices.add(idx);
+      asked.add(positions);
+      askedIndices.add(newIndices);
+    }
+    // the domain is complete only after all digests are received
+    for (int i = 1; i < parties.size(); ++i) {
+      int[] idx = indices.get(i - 1);
+      List<Integer> positions = asked.get(i - 1);
+      int[] reply = new int[idx.length + 1 + positions.size()];
+      reply[0] = domain.size();
+      System.arraycopy(idx, 0, reply, 1, idx.length);
+      for (int j = 0; j < positions.size(); ++j) {
+        reply[idx.length + 1 + j] = positions.get(j);
+      }
+      stream.sendByteStrings(taskId, ImmutableList.of(parties.get(i)),
+          ImmutableList.of(UnsafeByteOperations.unsafeWrap(OpenHuFuCodec.encodeInts(reply))),
+          INDEX_STREAM);
+    }
+    for (int i = 1; i < parties.size(); ++i) {
+      List<Integer> newIndices = askedIndices.get(i - 1);
+      if (newIndices.isEmpty()) {
+        continue;
+      }
+      int party = parties.get(i);
+      List<Row> received = new ArrayList<>();
+      for (ByteString b : stream.receiveByteStrings(taskId, party, KEY_STREAM)) {
+        try {
+          DataSetIterator it = ProtoDataSet.create(DataSetProto.parseFrom(b)).getIterator();
+          while (it.next()) {
+            received.add(ArrayRow.materialize(it));
+          }
+        } catch (InvalidProtocolBufferException e) {
+          throw new ProtocolException("Fail to parse group keys of Party [" + party + "]", e);
+        }
+      }
+      if (received.size() != newIndices.size()) {
+        throw new ProtocolException("Wrong number of group keys from Party [" + party + "]");
+      }
+      ByteString check = UnsafeByteOperations.unsafeWrap(digests(keySchema, received));
+      for (int j = 0; j < received.size(); ++j) {
+        int id = newIndices.get(j);
+        if (!check.substring(j * length, (j + 1) * length).equals(domainDigests.get(id))) {
+          throw new ProtocolException("Group key of Party [" + party + "] mismatches its digest");
+        }
+        domain.set(id, received.get(j));
+      }
+    }
+    return domain;
+  }
+}
@@ -0,0 +1,34 @@
+package com.hufudb.openhufu.owner.implementor.aggregate.max;
+
+import com.hufudb.openhufu.data.function.AggregateFunction;
+import com.hufudb.openhufu.data.storage.Row;
+import com.hufudb.openhufu.mpc.ProtocolExecutor;
+import com.hufudb.openhufu.mpc.ProtocolType;
+import com.hufudb.openhufu.mpc.gmw.GMW;
+import com.hufudb.openhufu.mpc.utils.Boardcast;
+import com.hufudb.openhufu.owner.implementor.aggregate.GMWExtremeFunction;
+import com.hufudb.openhufu.proto.OpenHuFuData;
+import com.hufudb.openhufu.proto.OpenHuFuPlan;
+import com.hufudb.openhufu.rpc.Rpc;
+
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+public class GMWMax extends GMWExtremeFunction {
+
+  GMWMax(int inputRef, OpenHuFuData.ColumnType type, GMW gmw, Boardcast boardcast,
+      OpenHuFuPlan.TaskInfo taskInfo) {
+    super(inputRef, type, gmw, boardcast, taskInfo, true);
+  }
+
+  public GMWMax(OpenHuFuPlan.Expression agg, Rpc rpc, ExecutorService threadPool,
+      Map<ProtocolType, ProtocolExecutor> libraries, OpenHuFuPlan.TaskInfo taskInfo) {
+    this(agg.getIn(0).getI32(), agg.getOutType(), (GMW) libraries.get(ProtocolType.GMW),
+        new Boardcast(rpc), taskInfo);
+  }
+
+  @Override
+  public AggregateFunction<Row, Comparable> copy() {
+    return new GMWMax(inputRef, type, gmw, boardcast, taskInfo);
+  }
+}
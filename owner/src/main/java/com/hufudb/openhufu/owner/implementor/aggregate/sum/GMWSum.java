@@ -1,13 +1,16 @@
 package com.hufudb.openhufu.owner.implementor.aggregate.sum;
 
 import com.google.common.collect.ImmutableList;
+import com.hufudb.openhufu.common.exception.ErrorCode;
+import com.hufudb.openhufu.common.exception.OpenHuFuException;
 import com.hufudb.openhufu.data.function.AggregateFunction;
 import com.hufudb.openhufu.data.storage.Row;
 import com.hufudb.openhufu.mpc.ProtocolException;
+import com.hufudb.openhufu.mpc.ProtocolExecutor;
+import com.hufudb.openhufu.mpc.ProtocolType;
 import com.hufudb.openhufu.mpc.bristol.CircuitType;
 import com.hufudb.openhufu.mpc.codec.OpenHuFuCodec;
 import com.hufudb.openhufu.mpc.gmw.GMW;
-import com.hufudb.openhufu.mpc.ot.PublicKeyOT;
 import com.hufudb.openhufu.mpc.utils.Boardcast;
 import com.hufudb.openhufu.owner.implementor.aggregate.OwnerAggregateFunction;
 import com.hufudb.openhufu.proto.OpenHuFuPlan;
@@ -16,6 +19,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 
 public class GMWSum extends OwnerAggregateFunction {
@@ -32,8 +36,10 @@ public class GMWSum extends OwnerAggregateFunction {
     this.boardcast = boardcast;
   }
 
-  public GMWSum(OpenHuFuPlan.Expression agg, Rpc rpc, ExecutorService threadPool, OpenHuFuPlan.TaskInfo taskInfo) {
-    this(agg.getIn(0).getI32(), new GMW(rpc, new PublicKeyOT(rpc), threadPool), new Boardcast(rpc), taskInfo);
+  public GMWSum(OpenHuFuPlan.Expression agg, Rpc rpc, ExecutorService threadPool,
+      Map<ProtocolType, ProtocolExecutor> libraries, OpenHuFuPlan.TaskInfo taskInfo) {
+    this(agg.getIn(0).getI32(), (GMW) libraries.get(ProtocolType.GMW), new Boardcast(rpc),
+        taskInfo);
   }
 
   @Override
@@ -52,7 +58,7 @@ public class GMWSum extends OwnerAggregateFunction {
       }
     } catch (ProtocolException e) {
       LOG.error("Error when executing GMW", e);
-      return null;
+      throw new OpenHuFuException(e, ErrorCode.PROTOCOL_FAILED, "GMWSum");
     }
   }
 
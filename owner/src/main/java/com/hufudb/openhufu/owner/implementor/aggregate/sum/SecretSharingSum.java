@@ -1,8 +1,12 @@
 package com.hufudb.openhufu.owner.implementor.aggregate.sum;
 
+import com.hufudb.openhufu.common.exception.ErrorCode;
+import com.hufudb.openhufu.common.exception.OpenHuFuException;
 import com.hufudb.openhufu.data.function.AggregateFunction;
 import com.hufudb.openhufu.data.storage.Row;
 import com.hufudb.openhufu.mpc.ProtocolException;
+import com.hufudb.openhufu.mpc.ProtocolExecutor;
+import com.hufudb.openhufu.mpc.ProtocolType;
 import com.hufudb.openhufu.mpc.secretsharing.SecretSharing;
 import com.hufudb.openhufu.owner.implementor.aggregate.OwnerAggregateFunction;
 import com.hufudb.openhufu.proto.OpenHuFuData;
@@ -11,29 +15,44 @@ import com.hufudb.openhufu.rpc.Rpc;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 
 public class SecretSharingSum extends OwnerAggregateFunction {
   static final Logger LOG = LoggerFactory.getLogger(SecretSharingSum.class);
-  private int sum;
+  private long sum;
+  // FLOAT/DOUBLE inputs, shared in the fixed point encoding of SecretSharing
+  private double doubleSum;
+  final private boolean isDouble;
   final private SecretSharing ss;
   final private boolean hasOutput;
 
   SecretSharingSum(int inputRef, SecretSharing ss, OpenHuFuData.ColumnType type, OpenHuFuPlan.TaskInfo taskInfo) {
     super(inputRef, type, taskInfo);
     this.sum = 0;
+    this.doubleSum = 0.0;
+    this.isDouble = type == OpenHuFuData.ColumnType.DOUBLE || type == OpenHuFuData.ColumnType.FLOAT;
     this.ss = ss;
     this.hasOutput = ss.getOwnId() == taskInfo.getPartiesList().get(0);
   }
 
-  public SecretSharingSum(OpenHuFuPlan.Expression agg, Rpc rpc, ExecutorService threadPool, OpenHuFuPlan.TaskInfo taskInfo) {
+  public SecretSharingSum(OpenHuFuPlan.Expression agg, Rpc rpc, ExecutorService threadPool,
+      Map<ProtocolType, ProtocolExecutor> libraries, OpenHuFuPlan.TaskInfo taskInfo) {
     this(agg.getIn(0).getI32(), new SecretSharing(rpc), agg.getOutType(), taskInfo);
   }
 
   @Override
   public Comparable aggregate() {
     try {
-      Object res = ss.run(taskInfo.getTaskId(), taskInfo.getPartiesList(), type, sum, OpenHuFuPlan.OperatorType.PLUS);
+      // not a conditional expression, which would promote the long sum to double
+      Object local;
+      if (isDouble) {
+        local = doubleSum;
+      } else {
+        local = sum;
+      }
+      Object res = ss.run(taskInfo.getTaskId(), taskInfo.getPartiesList(), type, local,
+          OpenHuFuPlan.OperatorType.PLUS);
       if (!hasOutput) {
         return null;
       }
@@ -53,14 +72,18 @@ public class SecretSharingSum extends OwnerAggregateFunction {
       }
     } catch (ProtocolException e) {
       LOG.error("Error when executing secretsharing");
-      return null;
+      throw new OpenHuFuException(e, ErrorCode.PROTOCOL_FAILED, "SecretSharingSum");
     }
   }
 
   @Override
   public void add(Row ele) {
     Object e = ele.get(inputRef);
-    sum += ((Number) e).intValue();
+    if (isDouble) {
+      doubleSum += ((Number) e).doubleValue();
+    } else {
+      sum += ((Number) e).longValue();
+    }
   }
   @Override
   public AggregateFunction<Row, Comparable> copy() {
@@ -4,8 +4,11 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 import com.google.common.collect.ImmutableList;
+import com.google.common.primitives.Ints;
+import com.google.protobuf.ByteString;
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.hufudb.openhufu.data.storage.DataSet;
+import com.hufudb.openhufu.data.storage.DataSetIterator;
 import com.hufudb.openhufu.data.storage.EmptyDataSet;
 import com.hufudb.openhufu.data.storage.HorizontalDataSet;
 import com.hufudb.openhufu.data.storage.MaterializedDataSet;
@@ -16,6 +19,7 @@ import com.hufudb.openhufu.mpc.ProtocolException;
 import com.hufudb.openhufu.mpc.codec.HashFunction;
 import com.hufudb.openhufu.mpc.codec.OpenHuFuCodec;
 import com.hufudb.openhufu.mpc.psi.HashPSI;
+import com.hufudb.openhufu.mpc.utils.Boardcast;
 import com.hufudb.openhufu.mpc.utils.Stream;
 import com.hufudb.openhufu.proto.OpenHuFuData.DataSetProto;
 import com.hufudb.openhufu.proto.OpenHuFuPlan.JoinCondition;
@@ -26,6 +30,8 @@ import org.slf4j.LoggerFactory;
 
 public class HashEqualJoin implements OwnerJoin {
   static final int MAX_SIZE = 1000;
+  // the statistics exchanged to choose the collector, apart from other boardcasts of the task
+  static final long STATS_FLAG = 1L << 41;
   static final Logger LOG = LoggerFactory.getLogger(HashEqualJoin.class);
 
   public HashEqualJoin() {
@@ -36,15 +42,16 @@ public class HashEqualJoin implements OwnerJoin {
     return keySets.toBytes();
   }
 
-  static List<byte[]> encode(DataSet source) {
-    return ProtoDataSet.slice(source, MAX_SIZE).stream().map(proto -> proto.toByteArray())
+  static List<ByteString> encode(DataSet source) {
+    return ProtoDataSet.slice(source, MAX_SIZE).stream().map(proto -> proto.toByteString())
         .collect(Collectors.toList());
   }
 
-  MaterializedDataSet decode(List<byte[]> payload) {
+  // parse from the received ByteStrings directly, bytes fields alias the received buffers
+  MaterializedDataSet decode(List<ByteString> payload) {
     try {
       List<ProtoDataSet> dataSets = new ArrayList<>();
-      for (byte[] b : payload) {
+      for (ByteString b : payload) {
         dataSets.add(ProtoDataSet.create(DataSetProto.parseFrom(b)));
       }
       return new HorizontalDataSet(dataSets);
@@ -54,51 +61,113 @@ public class HashEqualJoin implements OwnerJoin {
     }
   }
 
-  @Override
-  public DataSet join(DataSet in, JoinCondition joinCond, boolean isLeft, Rpc rpc, TaskInfo taskInfo)
-      throws ProtocolException {
+  // join keys of the own side
+  static List<byte[]> encodeKeys(MaterializedDataSet localSet, JoinCondition joinCond,
+      boolean isLeft) {
+    long startTime = System.currentTimeMillis();
+    List<byte[]> joinKey =
+        encode(isLeft ? joinCond.getLeftKeyList() : joinCond.getRightKeyList(), localSet);
+    long endTime = System.currentTimeMillis();
+    LOG.info("{} encode use {} ms", isLeft ? "Left" : "Right", endTime - startTime);
+    return joinKey;
+  }
+
+  static void checkSupported(JoinCondition joinCond, TaskInfo taskInfo) {
     if (joinCond.hasCondition()) {
       LOG.error("HashEqualJoin not support theta join");
       throw new UnsupportedOperationException("HashEqualJoin not support theta join");
     }
-    // note: require the party of left table precede the party of right table
-    List<Integer> parties = taskInfo.getPartiesList();
-    if (parties.size() != 2) {
+    if (taskInfo.getPartiesCount() != 2) {
       LOG.error("HashEqualJoin only support two parties");
       throw new UnsupportedOperationException("HashEqualJoin only support two parties");
     }
+  }
+
+  @Override
+  public long count(DataSet in, JoinCondition joinCond, boolean isLeft, Rpc rpc,
+      TaskInfo taskInfo) throws ProtocolException {
+    checkSupported(joinCond, taskInfo);
+    MaterializedDataSet localSet = ProtoDataSet.materialize(in);
+    List<byte[]> joinKey = encodeKeys(localSet, joinCond, isLeft);
+    long count = new HashPSI(rpc).cardinality(taskInfo.getTaskId(), taskInfo.getPartiesList(),
+        joinKey, HashFunction.SHA256.getId());
+    LOG.debug("Get {} rows in HashPSI cardinality", count);
+    return count;
+  }
+
+  // estimated bytes of the encoded rows, from a sample of at most MAX_SIZE rows
+  static long estimateBytes(MaterializedDataSet rows) {
+    final int sampleSize = Math.min(rows.rowCount(), MAX_SIZE);
+    if (sampleSize == 0) {
+      return 0;
+    }
+    ProtoDataSet.Builder builder = ProtoDataSet.newBuilder(rows.getSchema());
+    DataSetIterator it = rows.getIterator();
+    for (int i = 0; i < sampleSize && it.next(); ++i) {
+      builder.addRow(it);
+    }
+    long sampleBytes = builder.buildProto().getSerializedSize();
+    return sampleBytes * rows.rowCount() / sampleSize;
+  }
+
+  /**
+   * the party collecting the result, for COST_BASED both parties exchange the estimated bytes of
+   * their matched rows, the party with more bytes collects so that the smaller side is moved,
+   * the left party collects on tie
+   */
+  static int chooseCollector(MaterializedDataSet matched, JoinCondition joinCond, boolean isLeft,
+      Rpc rpc, TaskInfo taskInfo) throws ProtocolException {
+    final int leftId = taskInfo.getParties(0);
+    final int rightId = taskInfo.getParties(1);
+    switch (joinCond.getCollector()) {
+      case LEFT_SIDE:
+        return leftId;
+      case RIGHT_SIDE:
+        return rightId;
+      case COST_BASED:
+        break;
+      default:
+        LOG.error("Unsupported collector {} in HashEqualJoin", joinCond.getCollector());
+        throw new UnsupportedOperationException("Unsupported collector in HashEqualJoin");
+    }
+    final int ownId = isLeft ? leftId : rightId;
+    final int otherId = isLeft ? rightId : leftId;
+    final long localBytes = estimateBytes(matched);
+    Boardcast boardcast = new Boardcast(rpc);
+    boardcast.run(taskInfo.getTaskId(), ImmutableList.of(ownId, otherId),
+        ImmutableList.of(OpenHuFuCodec.encodeLong(localBytes)), STATS_FLAG);
+    List<byte[]> remote = (List<byte[]>) boardcast.run(taskInfo.getTaskId(),
+        ImmutableList.of(otherId, ownId), ImmutableList.of(), STATS_FLAG);
+    final long remoteBytes = OpenHuFuCodec.decodeLong(remote.get(0));
+    final long leftBytes = isLeft ? localBytes : remoteBytes;
+    final long rightBytes = isLeft ? remoteBytes : localBytes;
+    LOG.debug("Matched rows of left {} bytes, right {} bytes", leftBytes, rightBytes);
+    return rightBytes > leftBytes ? rightId : leftId;
+  }
+
+  @Override
+  public DataSet join(DataSet in, JoinCondition joinCond, boolean isLeft, Rpc rpc, TaskInfo taskInfo)
+      throws ProtocolException {
+    checkSupported(joinCond, taskInfo);
+    // note: require the party of left table precede the party of right table
+    List<Integer> parties = taskInfo.getPartiesList();
     HashPSI psi = new HashPSI(rpc);
     Stream st = new Stream(rpc);
-    List<byte[]> joinKey;
-    // At present, the left party collect result
-    int receiverId = parties.get(0);
-    int senderId = parties.get(1);
     MaterializedDataSet localSet = ProtoDataSet.materialize(in);
-    // todo: choose collector by data size
-    if (isLeft) {
-      assert parties.get(0) == rpc.ownParty().getPartyId();
-      long startTime = System.currentTimeMillis();
-      joinKey = encode(joinCond.getLeftKeyList(), localSet);
-      long endTime = System.currentTimeMillis();
-      LOG.info("Left encode use {} ms", endTime - startTime);
-    } else {
-      assert parties.get(1) == rpc.ownParty().getPartyId();
-      long startTime = System.currentTimeMillis();
-      joinKey = encode(joinCond.getRightKeyList(), localSet);
-      long endTime = System.currentTimeMillis();
-      LOG.info("Right encode use {} ms", endTime - startTime);
-    }
-    List<byte[]> res = (List<byte[]>) psi.run(taskInfo.getTaskId(), parties, joinKey, HashFunction.SHA256.getId());
-    LOG.debug("Get {} rows in HashPSI", res.size());
-    if (res.size() == 0) {
+    assert parties.get(isLeft ? 0 : 1) == rpc.ownParty().getPartyId();
+    List<byte[]> joinKey = encodeKeys(localSet, joinCond, isLeft);
+    int[] res = psi.intersect(taskInfo.getTaskId(), parties, joinKey, HashFunction.SHA256.getId());
+    LOG.debug("Get {} rows in HashPSI", res.length);
+    if (res.length == 0) {
       return EmptyDataSet.INSTANCE;
     }
-    localSet = new JoinFilterDataSet(localSet,
-        res.stream().map(b -> OpenHuFuCodec.decodeInt(b)).collect(Collectors.toList()));
+    localSet = new JoinFilterDataSet(localSet, Ints.asList(res));
+    int receiverId = chooseCollector(localSet, joinCond, isLeft, rpc, taskInfo);
+    int senderId = receiverId == parties.get(0) ? parties.get(1) : parties.get(0);
     if (senderId == rpc.ownParty().getPartyId()) {
       return senderProcedure(localSet, taskInfo.getTaskId(), senderId, receiverId, st);
     } else if (receiverId == rpc.ownParty().getPartyId()) {
-      return receiverProcedure(localSet, taskInfo.getTaskId(), senderId, receiverId, st);
+      return receiverProcedure(localSet, isLeft, taskInfo.getTaskId(), senderId, receiverId, st);
     } else {
       LOG.error("{} not found in participants of HashEqualJoin", rpc.ownParty());
       throw new RuntimeException("Not participant of HashEqualJoin");
@@ -107,20 +176,22 @@ public class HashEqualJoin implements OwnerJoin {
 
   DataSet senderProcedure(MaterializedDataSet in, long taskId, int senderId, int receiverId,
       Stream stream) throws ProtocolException {
-    List<byte[]> inputs = encode(in);
-    stream.run(taskId, ImmutableList.of(senderId, receiverId), inputs);
+    List<ByteString> inputs = encode(in);
+    stream.sendByteStrings(taskId, ImmutableList.of(receiverId), inputs, 0);
     return EmptyDataSet.INSTANCE;
   }
 
-  DataSet receiverProcedure(MaterializedDataSet localDataSet, long taskId, int senderId, int receiverId,
-      Stream stream) throws ProtocolException {
-    List<byte[]> result = (List<byte[]>)
-        stream.run(taskId, ImmutableList.of(senderId, receiverId), ImmutableList.of());
+  // the columns of the left table always precede the columns of the right table
+  DataSet receiverProcedure(MaterializedDataSet localDataSet, boolean isLeft, long taskId,
+      int senderId, int receiverId, Stream stream) throws ProtocolException {
+    List<ByteString> result = stream.receiveByteStrings(taskId, senderId, 0);
     MaterializedDataSet remoteDataSet = decode(result);
     if (remoteDataSet.rowCount() == 0) {
       return EmptyDataSet.INSTANCE;
-    } else {
+    } else if (isLeft) {
       return VerticalDataSet.create(localDataSet, remoteDataSet);
+    } else {
+      return VerticalDataSet.create(remoteDataSet, localDataSet);
     }
   }
 }
@@ -0,0 +1,216 @@
+package com.hufudb.openhufu.owner.implementor.join;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import com.google.common.collect.ImmutableList;
+import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.protobuf.ByteString;
+import com.hufudb.openhufu.data.storage.DataSet;
+import com.hufudb.openhufu.data.storage.EmptyDataSet;
+import com.hufudb.openhufu.data.storage.HorizontalDataSet;
+import com.hufudb.openhufu.data.storage.MaterializedDataSet;
+import com.hufudb.openhufu.data.storage.ProtoDataSet;
+import com.hufudb.openhufu.data.storage.VerticalDataSet;
+import com.hufudb.openhufu.mpc.ProtocolException;
+import com.hufudb.openhufu.mpc.codec.HashFunction;
+import com.hufudb.openhufu.mpc.codec.OpenHuFuCodec;
+import com.hufudb.openhufu.mpc.psi.HashPSI;
+import com.hufudb.openhufu.mpc.utils.Boardcast;
+import com.hufudb.openhufu.mpc.utils.Stream;
+import com.hufudb.openhufu.proto.OpenHuFuPlan.JoinCondition;
+import com.hufudb.openhufu.proto.OpenHuFuPlan.TaskInfo;
+import com.hufudb.openhufu.rpc.Rpc;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Equi-join of a left input on k owners and a right input on m owners
+ *   Each pair (L_i, R_j) runs HashPSI with its own task id taskId + 1 + i * m + j, the k * m
+ *   task ids are reserved in TaskInfo.reservedTasks, the pairs of an owner run in parallel
+ *   L_0 collects the result: for each pair, both owners stream their matched rows to L_0
+ *     Header: [ptoId: stream, taskId: pair task id, senderId: L_i/R_j, receiverId: L_0]
+ *   L_0 receives the streams of all pairs in parallel, zips the rows of each pair and
+ *   concatenates the pairs, the other owners return empty result
+ * With k = m = 1 it falls back to HashEqualJoin, which chooses the collector by cost
+ */
+public class MultiPartyHashEqualJoin extends HashEqualJoin {
+  static final Logger LOG = LoggerFactory.getLogger(MultiPartyHashEqualJoin.class);
+  static final long COUNT_FLAG = 1L << 40;
+
+  // unbounded, the pair tasks of an owner wait for each other through the rpc
+  private static final ExecutorService PAIR_POOL = Executors.newCachedThreadPool(
+      new ThreadFactoryBuilder().setNameFormat("pairwise-join-%d").setDaemon(true).build());
+
+  public MultiPartyHashEqualJoin() {
+  }
+
+  static int leftPartyCount(TaskInfo taskInfo) {
+    if (taskInfo.getLeftPartyCount() > 0) {
+      return taskInfo.getLeftPartyCount();
+    }
+    // plans without leftPartyCount come from two parties
+    if (taskInfo.getPartiesCount() == 2) {
+      return 1;
+    }
+    LOG.error("Unknown left parties of join in task {}", taskInfo.getTaskId());
+    throw new UnsupportedOperationException("Unknown left parties of join");
+  }
+
+  static long pairTaskId(TaskInfo taskInfo, int leftCount, int i, int j) {
+    int rightCount = taskInfo.getPartiesCount() - leftCount;
+    return taskInfo.getTaskId() + 1 + (long) i * rightCount + j;
+  }
+
+  static <T> List<T> collect(List<Future<T>> futures) throws ProtocolException {
+    List<T> results = new ArrayList<>(futures.size());
+    try {
+      for (Future<T> f : futures) {
+        results.add(f.get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ProtocolException("Interrupted in MultiPartyHashEqualJoin", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof ProtocolException) {
+        throw (ProtocolException) e.getCause();
+      }
+      throw new ProtocolException("Error in pair of MultiPartyHashEqualJoin", e.getCause());
+    }
+    return results;
+  }
+
+  MaterializedDataSet receiveRows(Stream stream, long taskId, int senderId)
+      throws ProtocolException {
+    List<ByteString> rows = stream.receiveByteStrings(taskId, senderId, 0);
+    return rows.isEmpty() ? EmptyDataSet.INSTANCE : decode(rows);
+  }
+
+  void sendRows(Stream stream, long taskId, int collectorId, MaterializedDataSet rows)
+      throws ProtocolException {
+    List<ByteString> payload = rows.rowCount() == 0 ? ImmutableList.of() : encode(rows);
+    stream.sendByteStrings(taskId, ImmutableList.of(collectorId), payload, 0);
+  }
+
+  static MaterializedDataSet zip(MaterializedDataSet left, MaterializedDataSet right) {
+    if (left.rowCount() == 0 || right.rowCount() == 0) {
+      return null;
+    }
+    return VerticalDataSet.create(left, right);
+  }
+
+  @Override
+  public DataSet join(DataSet in, JoinCondition joinCond, boolean isLeft, Rpc rpc,
+      TaskInfo taskInfo) throws ProtocolException {
+    if (joinCond.hasCondition()) {
+      LOG.error("MultiPartyHashEqualJoin not support theta join");
+      throw new UnsupportedOperationException("MultiPartyHashEqualJoin not support theta join");
+    }
+    if (taskInfo.getPartiesCount() == 2) {
+      return super.join(in, joinCond, isLeft, rpc, taskInfo);
+    }
+    final List<Integer> parties = taskInfo.getPartiesList();
+    final int leftCount = leftPartyCount(taskInfo);
+    final List<Integer> lefts = parties.subList(0, leftCount);
+    final List<Integer> rights = parties.subList(leftCount, parties.size());
+    final int ownId = rpc.ownParty().getPartyId();
+    final int collectorId = lefts.get(0);
+    final Stream stream = new Stream(rpc);
+    final MaterializedDataSet localSet = ProtoDataSet.materialize(in);
+    final List<byte[]> joinKey = encodeKeys(localSet, joinCond, isLeft);
+    final int ownIdx = isLeft ? lefts.indexOf(ownId) : rights.indexOf(ownId);
+    final List<Integer> peers = isLeft ? rights : lefts;
+    List<Future<MaterializedDataSet>> pairs = new ArrayList<>();
+    for (int p = 0; p < peers.size(); ++p) {
+      final int peerId = peers.get(p);
+      final int i = isLeft ? ownIdx : p;
+      final int j = isLeft ? p : ownIdx;
+      final long pairTaskId = pairTaskId(taskInfo, leftCount, i, j);
+      pairs.add(PAIR_POOL.submit(() -> {
+        int[] res = new HashPSI(rpc).intersect(pairTaskId, ImmutableList.of(lefts.get(i),
+            rights.get(j)), joinKey, HashFunction.SHA256.getId());
+        LOG.debug("Get {} rows in HashPSI with Party[{}]", res.length, peerId);
+        MaterializedDataSet matched = new JoinFilterDataSet(localSet, Ints.asList(res));
+        if (ownId == collectorId) {
+          // pair (L_0, R_j), both know whether the pair is empty
+          return res.length == 0 ? null : zip(matched, receiveRows(stream, pairTaskId, peerId));
+        } else if (i > 0 || res.length > 0) {
+          // the collector doesn't know whether the pairs of others are empty, they always send
+          sendRows(stream, pairTaskId, collectorId, matched);
+        }
+        return null;
+      }));
+    }
+    if (ownId != collectorId) {
+      collect(pairs);
+      return EmptyDataSet.INSTANCE;
+    }
+    // pairs without the collector
+    for (int i = 1; i < lefts.size(); ++i) {
+      for (int j = 0; j < rights.size(); ++j) {
+        final long pairTaskId = pairTaskId(taskInfo, leftCount, i, j);
+        final int leftId = lefts.get(i);
+        final int rightId = rights.get(j);
+        pairs.add(PAIR_POOL.submit(() -> zip(receiveRows(stream, pairTaskId, leftId),
+            receiveRows(stream, pairTaskId, rightId))));
+      }
+    }
+    List<MaterializedDataSet> results = new ArrayList<>();
+    for (MaterializedDataSet result : collect(pairs)) {
+      if (result != null) {
+        results.add(result);
+      }
+    }
+    LOG.debug("Collect {} non-empty pairs of {} x {} owners", results.size(), lefts.size(),
+        rights.size());
+    return results.isEmpty() ? EmptyDataSet.INSTANCE : new HorizontalDataSet(results);
+  }
+
+  @Override
+  public long count(DataSet in, JoinCondition joinCond, boolean isLeft, Rpc rpc,
+      TaskInfo taskInfo) throws ProtocolException {
+    if (joinCond.hasCondition()) {
+      LOG.error("MultiPartyHashEqualJoin not support theta join");
+      throw new UnsupportedOperationException("MultiPartyHashEqualJoin not support theta join");
+    }
+    final List<Integer> parties = taskInfo.getPartiesList();
+    final int leftCount = leftPartyCount(taskInfo);
+    final List<Integer> lefts = parties.subList(0, leftCount);
+    final List<Integer> rights = parties.subList(leftCount, parties.size());
+    final int ownId = rpc.ownParty().getPartyId();
+    final int collectorId = lefts.get(0);
+    final List<byte[]> joinKey =
+        encodeKeys(ProtoDataSet.materialize(in), joinCond, isLeft);
+    final int ownIdx = isLeft ? lefts.indexOf(ownId) : rights.indexOf(ownId);
+    final List<Integer> peers = isLeft ? rights : lefts;
+    List<Future<Long>> pairs = new ArrayList<>();
+    for (int p = 0; p < peers.size(); ++p) {
+      final int i = isLeft ? ownIdx : p;
+      final int j = isLeft ? p : ownIdx;
+      final long pairTaskId = pairTaskId(taskInfo, leftCount, i, j);
+      pairs.add(PAIR_POOL.submit(() -> new HashPSI(rpc).cardinality(pairTaskId,
+          ImmutableList.of(lefts.get(i), rights.get(j)), joinKey, HashFunction.SHA256.getId())));
+    }
+    long count = collect(pairs).stream().mapToLong(Long::longValue).sum();
+    if (!isLeft) {
+      return count;
+    }
+    // the left owners hold the counts of all pairs, sum them up at the collector
+    Boardcast boardcast = new Boardcast(rpc);
+    if (ownId != collectorId) {
+      boardcast.run(taskInfo.getTaskId(), ImmutableList.of(ownId, collectorId),
+          ImmutableList.of(OpenHuFuCodec.encodeLong(count)), COUNT_FLAG);
+      return count;
+    }
+    for (int i = 1; i < lefts.size(); ++i) {
+      List<byte[]> partial = (List<byte[]>) boardcast.run(taskInfo.getTaskId(),
+          ImmutableList.of(lefts.get(i), ownId), ImmutableList.of(), COUNT_FLAG);
+      count += OpenHuFuCodec.decodeLong(partial.get(0));
+    }
+    return count;
+  }
+}
@@ -14,4 +14,13 @@ public interface OwnerJoin {
 
   DataSet join(DataSet in, JoinCondition joinCond, boolean isLeft, Rpc rpc, TaskInfo taskInfo)
       throws ProtocolException;
+
+  /**
+   * number of rows of the join, for joins marked as countOnly, no row is exchanged
+   */
+  default long count(DataSet in, JoinCondition joinCond, boolean isLeft, Rpc rpc,
+      TaskInfo taskInfo) throws ProtocolException {
+    throw new UnsupportedOperationException(
+        getClass().getSimpleName() + " not support count only join");
+  }
 }
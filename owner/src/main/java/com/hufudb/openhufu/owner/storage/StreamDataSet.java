@@ -6,6 +6,7 @@ import com.hufudb.openhufu.data.storage.DataSetIterator;
 import com.hufudb.openhufu.data.storage.EmptyDataSet;
 import com.hufudb.openhufu.data.storage.ProtoDataSet;
 import com.hufudb.openhufu.proto.OpenHuFuData.DataSetProto;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
 
 /**
@@ -16,12 +17,28 @@ public class StreamDataSet implements DataSet {
 
   private final DataSet source;
   private final StreamObserver<DataSetProto> observer;
+  private final int compressionThreshold;
   long count;
 
-  public StreamDataSet(DataSet source, StreamObserver<DataSetProto> observer) {
+  /**
+   * messages of at least compressionThreshold bytes are sent with gzip if the client accepts it,
+   * negative compressionThreshold disables compression
+   */
+  public StreamDataSet(DataSet source, StreamObserver<DataSetProto> observer,
+      int compressionThreshold) {
     this.source = source;
     this.observer = observer;
     this.count = 0;
+    if (compressionThreshold >= 0 && observer instanceof ServerCallStreamObserver) {
+      ((ServerCallStreamObserver<DataSetProto>) observer).setCompression("gzip");
+      this.compressionThreshold = compressionThreshold;
+    } else {
+      this.compressionThreshold = -1;
+    }
+  }
+
+  public StreamDataSet(DataSet source, StreamObserver<DataSetProto> observer) {
+    this(source, observer, -1);
   }
 
   /**
@@ -44,7 +61,11 @@ public class StreamDataSet implements DataSet {
   }
 
   private void send(DataSetProto proto) {
-    LOG.debug("Send %d rows in total");
+    LOG.debug("Send {} rows in total", count);
+    if (compressionThreshold >= 0) {
+      ((ServerCallStreamObserver<DataSetProto>) observer)
+          .setMessageCompression(proto.getSerializedSize() >= compressionThreshold);
+    }
     observer.onNext(proto);
   }
 
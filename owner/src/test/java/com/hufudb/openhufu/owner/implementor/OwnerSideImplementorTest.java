@@ -0,0 +1,129 @@
+package com.hufudb.openhufu.owner.implementor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.hufudb.openhufu.data.schema.Schema;
+import com.hufudb.openhufu.data.storage.ArrayRow;
+import com.hufudb.openhufu.data.storage.DataSet;
+import com.hufudb.openhufu.data.storage.DataSetIterator;
+import com.hufudb.openhufu.data.storage.EmptyDataSet;
+import com.hufudb.openhufu.data.storage.ProtoDataSet;
+import com.hufudb.openhufu.expression.AggFuncType;
+import com.hufudb.openhufu.expression.ExpressionFactory;
+import com.hufudb.openhufu.owner.config.ImplementorConfig;
+import com.hufudb.openhufu.plan.BinaryPlan;
+import com.hufudb.openhufu.proto.OpenHuFuData.ColumnType;
+import com.hufudb.openhufu.proto.OpenHuFuData.Modifier;
+import com.hufudb.openhufu.proto.OpenHuFuPlan.JoinCondition;
+import com.hufudb.openhufu.proto.OpenHuFuPlan.JoinType;
+import com.hufudb.openhufu.proto.OpenHuFuPlan.PlanType;
+import com.hufudb.openhufu.proto.OpenHuFuPlan.QueryPlanProto;
+import com.hufudb.openhufu.proto.OpenHuFuPlan.TaskInfo;
+import com.hufudb.openhufu.rpc.Party;
+import com.hufudb.openhufu.rpc.Rpc;
+import com.hufudb.openhufu.rpc.grpc.OpenHuFuOwnerInfo;
+import com.hufudb.openhufu.rpc.local.LocalRpcManager;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class OwnerSideImplementorTest {
+  static final Schema SCHEMA = Schema.newBuilder().add("k", ColumnType.LONG, Modifier.PUBLIC)
+      .build();
+
+  @BeforeClass
+  public static void setUp() {
+    // the join of owner1.yml, MultiPartyHashEqualJoin
+    ImplementorConfig.initImplementorConfig(
+        OwnerSideImplementorTest.class.getClassLoader().getResource("owner1.yml").getPath());
+  }
+
+  static DataSet keys(long... keys) {
+    ProtoDataSet.Builder dBuilder = ProtoDataSet.newBuilder(SCHEMA);
+    for (long k : keys) {
+      ArrayRow.Builder builder = ArrayRow.newBuilder(1);
+      builder.set(0, k);
+      dBuilder.addRow(builder.build());
+    }
+    return dBuilder.build();
+  }
+
+  // SELECT COUNT(*), COUNT(*) FROM l JOIN r ON l.k = r.k, marked as countOnly by the planner
+  static BinaryPlan countJoin(int leftCount) {
+    TaskInfo.Builder taskInfo = TaskInfo.newBuilder().setTaskId(100)
+        .setLeftPartyCount(leftCount).setReservedTasks(leftCount * (3 - leftCount));
+    for (int i = 0; i < 3; ++i) {
+      taskInfo.addParties(i);
+    }
+    QueryPlanProto empty = QueryPlanProto.newBuilder().setType(PlanType.EMPTY).build();
+    return BinaryPlan.fromProto(QueryPlanProto.newBuilder().setType(PlanType.BINARY)
+        .addChildren(empty).addChildren(empty)
+        .setJoinInfo(JoinCondition.newBuilder().setType(JoinType.INNER)
+            .setModifier(Modifier.PUBLIC).addLeftKey(0).addRightKey(0).setCountOnly(true))
+        .addAggExp(ExpressionFactory.createAggFunc(ColumnType.LONG, Modifier.PUBLIC,
+            AggFuncType.COUNT.getId(), ImmutableList.of()))
+        .addAggExp(ExpressionFactory.createAggFunc(ColumnType.INT, Modifier.PUBLIC,
+            AggFuncType.COUNT.getId(), ImmutableList.of()))
+        .setTaskInfo(taskInfo).build());
+  }
+
+  List<DataSet> countOnlyJoin(int leftCount, DataSet... inputs) throws Exception {
+    List<Party> parties = ImmutableList.of(new OpenHuFuOwnerInfo(0, "localhost:0"),
+        new OpenHuFuOwnerInfo(1, "localhost:1"), new OpenHuFuOwnerInfo(2, "localhost:2"));
+    LocalRpcManager manager = new LocalRpcManager(parties);
+    ExecutorService threadPool = Executors.newFixedThreadPool(3);
+    List<Rpc> rpcs = new ArrayList<>();
+    try {
+      for (int i = 0; i < 3; ++i) {
+        Rpc rpc = manager.getRpc(i);
+        rpc.connect();
+        rpcs.add(rpc);
+      }
+      BinaryPlan binary = countJoin(leftCount);
+      List<Future<DataSet>> futures = new ArrayList<>();
+      for (int i = 0; i < 3; ++i) {
+        final OwnerSideImplementor implementor =
+            new OwnerSideImplementor(rpcs.get(i), null, threadPool, ImmutableMap.of());
+        final DataSet in = inputs[i];
+        final boolean isLeft = i < leftCount;
+        futures.add(threadPool.submit(() -> implementor.countOnlyJoin(binary, in, isLeft)));
+      }
+      List<DataSet> results = new ArrayList<>();
+      for (Future<DataSet> f : futures) {
+        results.add(f.get());
+      }
+      return results;
+    } finally {
+      threadPool.shutdown();
+      for (Rpc rpc : rpcs) {
+        rpc.disconnect();
+      }
+    }
+  }
+
+  static void assertCount(long expected, List<DataSet> results) {
+    // the first party returns one row with the count for each COUNT(*)
+    DataSetIterator it = results.get(0).getIterator();
+    assertTrue(it.next());
+    assertEquals(expected, it.get(0));
+    assertEquals((int) expected, it.get(1));
+    assertFalse(it.next());
+    assertTrue(results.get(1) instanceof EmptyDataSet);
+    assertTrue(results.get(2) instanceof EmptyDataSet);
+  }
+
+  @Test
+  public void testCountOnlyJoin() throws Exception {
+    assertCount(4L, countOnlyJoin(2, keys(1, 2, 3), keys(3, 4, 5), keys(2, 3, 5, 7)));
+    assertCount(3L, countOnlyJoin(1, keys(1, 2, 3, 4), keys(2, 9), keys(3, 4)));
+    // no matched rows
+    assertCount(0L, countOnlyJoin(1, keys(1, 2), keys(), keys(3)));
+  }
+}
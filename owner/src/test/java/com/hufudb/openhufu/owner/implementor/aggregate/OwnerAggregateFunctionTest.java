@@ -0,0 +1,236 @@
+package com.hufudb.openhufu.owner.implementor.aggregate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import com.google.common.collect.ImmutableList;
+import com.hufudb.openhufu.data.storage.ArrayRow;
+import com.hufudb.openhufu.expression.AggFuncType;
+import com.hufudb.openhufu.expression.ExpressionFactory;
+import com.hufudb.openhufu.mpc.ProtocolExecutor;
+import com.hufudb.openhufu.mpc.ProtocolType;
+import com.hufudb.openhufu.mpc.beaver.BeaverTriple;
+import com.hufudb.openhufu.mpc.beaver.BeaverTriplePool;
+import com.hufudb.openhufu.mpc.gmw.GMW;
+import com.hufudb.openhufu.mpc.ot.ExtensionOT;
+import com.hufudb.openhufu.owner.implementor.aggregate.avg.SecretSharingAvg;
+import com.hufudb.openhufu.owner.implementor.aggregate.count.SecretSharingCount;
+import com.hufudb.openhufu.owner.implementor.aggregate.max.GMWMax;
+import com.hufudb.openhufu.owner.implementor.aggregate.min.GMWMin;
+import com.hufudb.openhufu.owner.implementor.aggregate.sum.SecretSharingSum;
+import com.hufudb.openhufu.proto.OpenHuFuData.ColumnType;
+import com.hufudb.openhufu.proto.OpenHuFuData.Modifier;
+import com.hufudb.openhufu.proto.OpenHuFuPlan.Expression;
+import com.hufudb.openhufu.proto.OpenHuFuPlan.TaskInfo;
+import com.hufudb.openhufu.rpc.Party;
+import com.hufudb.openhufu.rpc.Rpc;
+import com.hufudb.openhufu.rpc.grpc.OpenHuFuOwnerInfo;
+import com.hufudb.openhufu.rpc.local.LocalRpcManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class OwnerAggregateFunctionTest {
+  static final int OWNERS = 3;
+
+  interface FunctionFactory {
+    OwnerAggregateFunction create(Rpc rpc, Map<ProtocolType, ProtocolExecutor> libraries,
+        TaskInfo taskInfo);
+  }
+
+  ExecutorService threadPool;
+  List<Rpc> rpcs;
+  List<BeaverTriplePool> pools;
+  List<Map<ProtocolType, ProtocolExecutor>> libraries;
+  long nextTaskId = 100;
+
+  @Before
+  public void setUp() {
+    List<Party> parties = new ArrayList<>();
+    for (int i = 0; i < OWNERS; ++i) {
+      parties.add(new OpenHuFuOwnerInfo(i, "localhost:" + i));
+    }
+    LocalRpcManager manager = new LocalRpcManager(parties);
+    threadPool = Executors.newCachedThreadPool();
+    rpcs = new ArrayList<>();
+    pools = new ArrayList<>();
+    libraries = new ArrayList<>();
+    for (int i = 0; i < OWNERS; ++i) {
+      Rpc rpc = manager.getRpc(i);
+      rpc.connect();
+      ExtensionOT ot = new ExtensionOT(rpc);
+      BeaverTriplePool pool = new BeaverTriplePool(rpc, new BeaverTriple(rpc, ot), 1024, 4096);
+      Map<ProtocolType, ProtocolExecutor> library = new EnumMap<>(ProtocolType.class);
+      library.put(ProtocolType.GMW, new GMW(rpc, ot, pool, threadPool));
+      rpcs.add(rpc);
+      pools.add(pool);
+      libraries.add(library);
+    }
+  }
+
+  @After
+  public void tearDown() {
+    for (BeaverTriplePool pool : pools) {
+      pool.close();
+    }
+    threadPool.shutdown();
+    for (Rpc rpc : rpcs) {
+      rpc.disconnect();
+    }
+  }
+
+  static Expression agg(AggFuncType func, ColumnType outType, ColumnType inType) {
+    return ExpressionFactory.createAggFunc(outType, Modifier.PUBLIC, func.getId(),
+        ImmutableList.of(ExpressionFactory.createInputRef(0, inType, Modifier.PUBLIC)));
+  }
+
+  TaskInfo taskInfo(int reservedTasks) {
+    TaskInfo.Builder builder = TaskInfo.newBuilder().setTaskId(nextTaskId)
+        .setReservedTasks(reservedTasks);
+    for (int i = 0; i < OWNERS; ++i) {
+      builder.addParties(i);
+    }
+    nextTaskId += 1 + reservedTasks;
+    return builder.build();
+  }
+
+  // aggregates the column of each owner in parallel, owner i holds inputs[i]
+  List<Comparable> run(FunctionFactory factory, TaskInfo taskInfo, List<Object>... inputs)
+      throws Exception {
+    List<Future<Comparable>> futures = new ArrayList<>();
+    for (int i = 0; i < OWNERS; ++i) {
+      final OwnerAggregateFunction func = factory.create(rpcs.get(i), libraries.get(i), taskInfo);
+      final List<Object> input = inputs[i];
+      futures.add(threadPool.submit(() -> {
+        for (Object v : input) {
+          ArrayRow.Builder builder = ArrayRow.newBuilder(1);
+          builder.set(0, v);
+          func.add(builder.build());
+        }
+        return func.aggregate();
+      }));
+    }
+    List<Comparable> results = new ArrayList<>();
+    for (Future<Comparable> f : futures) {
+      results.add(f.get());
+    }
+    // only the first party outputs the result
+    for (int i = 1; i < OWNERS; ++i) {
+      assertNull(results.get(i));
+    }
+    return results;
+  }
+
+  Comparable max(List<Object>... inputs) throws Exception {
+    Expression exp = agg(AggFuncType.MAX, ColumnType.INT, ColumnType.INT);
+    return run((rpc, library, t) -> new GMWMax(exp, rpc, threadPool, library, t), taskInfo(0),
+        inputs).get(0);
+  }
+
+  Comparable min(List<Object>... inputs) throws Exception {
+    Expression exp = agg(AggFuncType.MIN, ColumnType.INT, ColumnType.INT);
+    return run((rpc, library, t) -> new GMWMin(exp, rpc, threadPool, library, t), taskInfo(0),
+        inputs).get(0);
+  }
+
+  @Test
+  public void testGMWMax() throws Exception {
+    assertEquals(9, max(Arrays.asList(1, 9, -3), Arrays.asList(4, 2), Arrays.asList(7, 8)));
+    // ties between the parties
+    assertEquals(5, max(Arrays.asList(5, 1), Arrays.asList(5), Arrays.asList(3, 5)));
+    // negative values with empty parties, the empty parties don't win with their sentinel
+    assertEquals(-4, max(Arrays.asList(), Arrays.asList(-7, -4), Arrays.asList()));
+    assertEquals(-2, max(Arrays.asList(-9), Arrays.asList(), Arrays.asList(-2, -5)));
+    assertEquals(Integer.MIN_VALUE,
+        max(Arrays.asList(Integer.MIN_VALUE), Arrays.asList(), Arrays.asList()));
+    // nulls are ignored, no rows at all gives null
+    assertEquals(3, max(Arrays.asList((Object) null), Arrays.asList(3, null), Arrays.asList()));
+    assertNull(max(Arrays.asList(), Arrays.asList((Object) null), Arrays.asList()));
+  }
+
+  @Test
+  public void testGMWMin() throws Exception {
+    assertEquals(-3, min(Arrays.asList(1, 9, -3), Arrays.asList(4, 2), Arrays.asList(7, 8)));
+    assertEquals(2, min(Arrays.asList(2, 6), Arrays.asList(2), Arrays.asList(2, 3)));
+    // the empty parties don't win with their sentinel
+    assertEquals(6, min(Arrays.asList(), Arrays.asList(6, 8), Arrays.asList()));
+    assertEquals(Integer.MAX_VALUE,
+        min(Arrays.asList(), Arrays.asList(), Arrays.asList(Integer.MAX_VALUE)));
+    assertEquals(-8, min(Arrays.asList(-8), Arrays.asList(), Arrays.asList(-1)));
+    assertNull(min(Arrays.asList(), Arrays.asList(), Arrays.asList()));
+  }
+
+  @Test
+  public void testSecretSharingCount() throws Exception {
+    Expression exp = agg(AggFuncType.COUNT, ColumnType.LONG, ColumnType.INT);
+    FunctionFactory count = (rpc, library, t) -> new SecretSharingCount(exp, rpc, threadPool,
+        library, t);
+    assertEquals(5L, run(count, taskInfo(0), Arrays.asList(1, -2), Arrays.asList(3),
+        Arrays.asList(-4, 5)).get(0));
+    // nulls are not counted, empty parties count 0
+    assertEquals(2L, run(count, taskInfo(0), Arrays.asList(1, null), Arrays.asList(),
+        Arrays.asList(null, -5)).get(0));
+    assertEquals(0L, run(count, taskInfo(0), Arrays.asList(), Arrays.asList(),
+        Arrays.asList()).get(0));
+  }
+
+  @Test
+  public void testSecretSharingAvg() throws Exception {
+    Expression longAvg = agg(AggFuncType.AVG, ColumnType.LONG, ColumnType.LONG);
+    FunctionFactory avg = (rpc, library, t) -> new SecretSharingAvg(longAvg, rpc, threadPool,
+        library, t);
+    assertEquals(3L, run(avg, taskInfo(0), Arrays.asList(1L, 2L), Arrays.asList(6L),
+        Arrays.asList()).get(0));
+    // integer sums are shared exactly, beyond the precision of double
+    long big = (1L << 60) + 1;
+    assertEquals(big, run(avg, taskInfo(0), Arrays.asList(big), Arrays.asList(big),
+        Arrays.asList(big)).get(0));
+    // negative values, integer AVG truncates
+    assertEquals(-2L, run(avg, taskInfo(0), Arrays.asList(-1L, -4L), Arrays.asList(),
+        Arrays.asList(-2L, null)).get(0));
+    assertNull(run(avg, taskInfo(0), Arrays.asList(), Arrays.asList((Object) null),
+        Arrays.asList()).get(0));
+    Expression doubleAvg = agg(AggFuncType.AVG, ColumnType.DOUBLE, ColumnType.DOUBLE);
+    FunctionFactory davg = (rpc, library, t) -> new SecretSharingAvg(doubleAvg, rpc, threadPool,
+        library, t);
+    assertEquals(-0.75, (double) run(davg, taskInfo(0), Arrays.asList(-1.5, 0.5),
+        Arrays.asList(), Arrays.asList(-2.0, 0.0)).get(0), 1e-6);
+    Expression intToDouble = agg(AggFuncType.AVG, ColumnType.DOUBLE, ColumnType.INT);
+    FunctionFactory iavg = (rpc, library, t) -> new SecretSharingAvg(intToDouble, rpc,
+        threadPool, library, t);
+    assertEquals(2.5, (double) run(iavg, taskInfo(0), Arrays.asList(1, 2), Arrays.asList(3),
+        Arrays.asList(4)).get(0), 0);
+  }
+
+  @Test
+  public void testFunctionTaskIds() throws Exception {
+    // the functions of one plan take their own task ids and may run at the same time
+    TaskInfo taskInfo = taskInfo(3);
+    Expression sum = agg(AggFuncType.SUM, ColumnType.LONG, ColumnType.LONG);
+    Expression count = agg(AggFuncType.COUNT, ColumnType.LONG, ColumnType.LONG);
+    Expression max = agg(AggFuncType.MAX, ColumnType.INT, ColumnType.INT);
+    List<FunctionFactory> factories = ImmutableList.of(
+        (rpc, library, t) -> new SecretSharingSum(sum, rpc, threadPool, library,
+            OwnerAggregation.functionTaskInfo(t, 0, 3)),
+        (rpc, library, t) -> new SecretSharingCount(count, rpc, threadPool, library,
+            OwnerAggregation.functionTaskInfo(t, 1, 3)),
+        (rpc, library, t) -> new GMWMax(max, rpc, threadPool, library,
+            OwnerAggregation.functionTaskInfo(t, 2, 3)));
+    List<Object> expected = ImmutableList.of(-3L, 4L, 5);
+    List<Future<List<Comparable>>> futures = new ArrayList<>();
+    for (FunctionFactory factory : factories) {
+      futures.add(threadPool.submit(() -> run(factory, taskInfo, Arrays.asList(1L, -9L),
+          Arrays.asList(5L), Arrays.asList(0L))));
+    }
+    for (int i = 0; i < factories.size(); ++i) {
+      assertEquals(expected.get(i), futures.get(i).get().get(0));
+    }
+  }
+}
@@ -0,0 +1,179 @@
+package com.hufudb.openhufu.owner.implementor.aggregate.group;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import com.google.common.collect.ImmutableList;
+import com.hufudb.openhufu.data.schema.Schema;
+import com.hufudb.openhufu.data.storage.ArrayRow;
+import com.hufudb.openhufu.data.storage.DataSet;
+import com.hufudb.openhufu.data.storage.DataSetIterator;
+import com.hufudb.openhufu.data.storage.EmptyDataSet;
+import com.hufudb.openhufu.data.storage.ProtoDataSet;
+import com.hufudb.openhufu.data.storage.Row;
+import com.hufudb.openhufu.expression.AggFuncType;
+import com.hufudb.openhufu.expression.ExpressionFactory;
+import com.hufudb.openhufu.proto.OpenHuFuData.ColumnType;
+import com.hufudb.openhufu.proto.OpenHuFuData.Modifier;
+import com.hufudb.openhufu.proto.OpenHuFuPlan.Expression;
+import com.hufudb.openhufu.proto.OpenHuFuPlan.TaskInfo;
+import com.hufudb.openhufu.rpc.Party;
+import com.hufudb.openhufu.rpc.Rpc;
+import com.hufudb.openhufu.rpc.grpc.OpenHuFuOwnerInfo;
+import com.hufudb.openhufu.rpc.local.LocalRpcManager;
+import org.junit.Test;
+
+public class SecretSharingGroupAggregationTest {
+  // (g, l, d)
+  static final Schema SCHEMA = Schema.newBuilder().add("g", ColumnType.INT, Modifier.PUBLIC)
+      .add("l", ColumnType.LONG, Modifier.PUBLIC).add("d", ColumnType.DOUBLE, Modifier.PUBLIC)
+      .build();
+
+  static Expression agg(AggFuncType func, ColumnType outType, int ref, ColumnType inType) {
+    return ExpressionFactory.createAggFunc(outType, Modifier.PUBLIC, func.getId(),
+        ImmutableList.of(ExpressionFactory.createInputRef(ref, inType, Modifier.PUBLIC)));
+  }
+
+  // SELECT g, SUM(l), SUM(d), COUNT(l), COUNT(*), COUNT(d) GROUP BY g
+  static final List<Expression> AGGS = ImmutableList.of(
+      agg(AggFuncType.GROUPKEY, ColumnType.INT, 0, ColumnType.INT),
+      agg(AggFuncType.SUM, ColumnType.LONG, 1, ColumnType.LONG),
+      agg(AggFuncType.SUM, ColumnType.DOUBLE, 2, ColumnType.DOUBLE),
+      agg(AggFuncType.COUNT, ColumnType.LONG, 1, ColumnType.LONG),
+      ExpressionFactory.createAggFunc(ColumnType.LONG, Modifier.PUBLIC,
+          AggFuncType.COUNT.getId(), ImmutableList.of()),
+      agg(AggFuncType.COUNT, ColumnType.LONG, 2, ColumnType.DOUBLE));
+
+  static DataSet dataSet(Object[]... rows) {
+    ProtoDataSet.Builder dBuilder = ProtoDataSet.newBuilder(SCHEMA);
+    for (Object[] r : rows) {
+      ArrayRow.Builder builder = ArrayRow.newBuilder(3);
+      for (int i = 0; i < 3; ++i) {
+        builder.set(i, r[i]);
+      }
+      dBuilder.addRow(builder.build());
+    }
+    return dBuilder.build();
+  }
+
+  static Object[] row(Object g, Object l, Object d) {
+    return new Object[] {g, l, d};
+  }
+
+  List<DataSet> run(DataSet... inputs) throws Exception {
+    List<Party> parties = ImmutableList.of(new OpenHuFuOwnerInfo(0, "localhost:0"),
+        new OpenHuFuOwnerInfo(1, "localhost:1"), new OpenHuFuOwnerInfo(2, "localhost:2"));
+    LocalRpcManager manager = new LocalRpcManager(parties);
+    TaskInfo taskInfo = TaskInfo.newBuilder().setTaskId(100).addParties(0).addParties(1)
+        .addParties(2).build();
+    ExecutorService threadPool = Executors.newFixedThreadPool(3);
+    List<Rpc> rpcs = new ArrayList<>();
+    try {
+      for (int i = 0; i < 3; ++i) {
+        Rpc rpc = manager.getRpc(i);
+        rpc.connect();
+        rpcs.add(rpc);
+      }
+      List<Future<DataSet>> futures = new ArrayList<>();
+      for (int i = 0; i < 3; ++i) {
+        final Rpc rpc = rpcs.get(i);
+        final DataSet input = inputs[i];
+        futures.add(threadPool.submit(() -> new SecretSharingGroupAggregation(rpc)
+            .aggregate(input, ImmutableList.of(0), AGGS, taskInfo)));
+      }
+      List<DataSet> results = new ArrayList<>();
+      for (Future<DataSet> f : futures) {
+        results.add(f.get());
+      }
+      return results;
+    } finally {
+      threadPool.shutdown();
+      for (Rpc rpc : rpcs) {
+        rpc.disconnect();
+      }
+    }
+  }
+
+  static List<String> rows(DataSet result) {
+    List<String> actual = new ArrayList<>();
+    DataSetIterator it = result.getIterator();
+    while (it.next()) {
+      // the double sums are decoded from the fixed point encoding
+      actual.add(String.format("%s,%s,%.3f,%s,%s,%s", it.get(0), it.get(1),
+          ((Number) it.get(2)).doubleValue(), it.get(3), it.get(4), it.get(5)));
+    }
+    result.close();
+    Collections.sort(actual);
+    return actual;
+  }
+
+  @Test
+  public void testOverlappingAndDisjointGroups() throws Exception {
+    // group 1 is on all owners, group 2 on owner 0 and 2, groups 3, 4 and 5 on a single owner
+    List<DataSet> results = run(
+        dataSet(row(1, 10L, 1.5), row(2, -4L, 0.25), row(1, 5L, null), row(3, 7L, -2.5)),
+        dataSet(row(1, -20L, 2.0), row(4, 100L, 3.125), row(4, null, 1.0)),
+        dataSet(row(2, 6L, -0.75), row(1, 1L, 0.5), row(5, -9L, -1.0)));
+    assertEquals(Arrays.asList(
+        "1,-4,4.000,4,4,3",
+        "2,2,-0.500,2,2,2",
+        "3,7,-2.500,1,1,1",
+        "4,100,4.125,1,2,2",
+        "5,-9,-1.000,1,1,1"), rows(results.get(0)));
+    assertTrue(results.get(1) instanceof EmptyDataSet);
+    assertTrue(results.get(2) instanceof EmptyDataSet);
+  }
+
+  @Test
+  public void testSharedGroups() throws Exception {
+    // the groups of owner 1 and 2 are on the leader, so no plaintext key is asked for,
+    // the null group is hashed as well
+    List<DataSet> results = run(
+        dataSet(row(1, 1L, 1.0), row(2, 2L, 2.0), row(null, 3L, 3.0)),
+        dataSet(row(2, 10L, 0.5), row(null, 20L, 0.5)),
+        dataSet(row(1, 100L, -1.0), row(2, 200L, -2.0)));
+    assertEquals(Arrays.asList(
+        "1,101,0.000,2,2,2",
+        "2,212,0.500,3,3,3",
+        "null,23,3.500,2,2,2"), rows(results.get(0)));
+  }
+
+  @Test
+  public void testDigests() throws Exception {
+    Schema keySchema = Schema.newBuilder().add("g", ColumnType.INT, Modifier.PUBLIC).build();
+    ArrayRow.Builder builder = ArrayRow.newBuilder(1);
+    builder.set(0, 7);
+    Row seven = builder.build();
+    builder.reset();
+    builder.set(0, 8);
+    Row eight = builder.build();
+    int length = SecretSharingGroupAggregation.KEY_HASH.getLength();
+    byte[] digests =
+        SecretSharingGroupAggregation.digests(keySchema, ImmutableList.of(seven, eight));
+    assertEquals(2 * length, digests.length);
+    // the digest of a key does not depend on the other keys
+    assertArrayEquals(Arrays.copyOfRange(digests, length, 2 * length),
+        SecretSharingGroupAggregation.digests(keySchema, ImmutableList.of(eight)));
+    assertFalse(Arrays.equals(Arrays.copyOf(digests, length),
+        Arrays.copyOfRange(digests, length, 2 * length)));
+  }
+
+  @Test
+  public void testEmptyOwner() throws Exception {
+    // the leader has no rows, all groups come from the others
+    List<DataSet> results = run(dataSet(),
+        dataSet(row(7, 1L, 1.0), row(8, 2L, 2.0)),
+        dataSet(row(8, 3L, -3.0)));
+    assertEquals(Arrays.asList(
+        "7,1,1.000,1,1,1",
+        "8,5,-1.000,2,2,2"), rows(results.get(0)));
+  }
+}
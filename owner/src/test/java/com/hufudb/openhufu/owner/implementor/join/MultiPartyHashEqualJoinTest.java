@@ -0,0 +1,168 @@
+package com.hufudb.openhufu.owner.implementor.join;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import com.google.common.collect.ImmutableList;
+import com.hufudb.openhufu.data.schema.Schema;
+import com.hufudb.openhufu.data.storage.ArrayRow;
+import com.hufudb.openhufu.data.storage.DataSet;
+import com.hufudb.openhufu.data.storage.DataSetIterator;
+import com.hufudb.openhufu.data.storage.EmptyDataSet;
+import com.hufudb.openhufu.data.storage.ProtoDataSet;
+import com.hufudb.openhufu.proto.OpenHuFuData.ColumnType;
+import com.hufudb.openhufu.proto.OpenHuFuData.Modifier;
+import com.hufudb.openhufu.proto.OpenHuFuPlan.JoinCondition;
+import com.hufudb.openhufu.proto.OpenHuFuPlan.JoinType;
+import com.hufudb.openhufu.proto.OpenHuFuPlan.TaskInfo;
+import com.hufudb.openhufu.rpc.Party;
+import com.hufudb.openhufu.rpc.Rpc;
+import com.hufudb.openhufu.rpc.grpc.OpenHuFuOwnerInfo;
+import com.hufudb.openhufu.rpc.local.LocalRpcManager;
+import org.junit.Test;
+
+public class MultiPartyHashEqualJoinTest {
+  static final Schema SCHEMA = Schema.newBuilder().add("k", ColumnType.LONG, Modifier.PUBLIC)
+      .add("v", ColumnType.STRING, Modifier.PUBLIC).build();
+
+  static final JoinCondition COND = JoinCondition.newBuilder().setType(JoinType.INNER)
+      .setModifier(Modifier.PUBLIC).addLeftKey(0).addRightKey(0).build();
+
+  // rows (k, "<owner>-<k>") for the given keys
+  static List<Object[]> rows(int owner, long... keys) {
+    List<Object[]> rows = new ArrayList<>();
+    for (long k : keys) {
+      rows.add(new Object[] {k, owner + "-" + k});
+    }
+    return rows;
+  }
+
+  static DataSet dataSet(List<Object[]> rows) {
+    ProtoDataSet.Builder dBuilder = ProtoDataSet.newBuilder(SCHEMA);
+    for (Object[] r : rows) {
+      ArrayRow.Builder builder = ArrayRow.newBuilder(2);
+      builder.set(0, r[0]);
+      builder.set(1, r[1]);
+      dBuilder.addRow(builder.build());
+    }
+    return dBuilder.build();
+  }
+
+  static List<String> expectedJoin(List<List<Object[]>> lefts, List<List<Object[]>> rights) {
+    List<String> expected = new ArrayList<>();
+    for (List<Object[]> left : lefts) {
+      for (List<Object[]> right : rights) {
+        for (Object[] l : left) {
+          for (Object[] r : right) {
+            if (l[0].equals(r[0])) {
+              expected.add(l[0] + "," + l[1] + "," + r[0] + "," + r[1]);
+            }
+          }
+        }
+      }
+    }
+    Collections.sort(expected);
+    return expected;
+  }
+
+  static List<String> actualJoin(DataSet result) {
+    List<String> actual = new ArrayList<>();
+    DataSetIterator it = result.getIterator();
+    while (it.next()) {
+      actual.add(it.get(0) + "," + it.get(1) + "," + it.get(2) + "," + it.get(3));
+    }
+    result.close();
+    Collections.sort(actual);
+    return actual;
+  }
+
+  // runs the join (or count) of the 3 owners in parallel, owners [0, leftCount) hold the left
+  List<Object> run(List<List<Object[]>> inputs, int leftCount, boolean count) throws Exception {
+    List<Party> parties = ImmutableList.of(new OpenHuFuOwnerInfo(0, "localhost:0"),
+        new OpenHuFuOwnerInfo(1, "localhost:1"), new OpenHuFuOwnerInfo(2, "localhost:2"));
+    LocalRpcManager manager = new LocalRpcManager(parties);
+    TaskInfo taskInfo = TaskInfo.newBuilder().setTaskId(100).addParties(0).addParties(1)
+        .addParties(2).setLeftPartyCount(leftCount)
+        .setReservedTasks(leftCount * (3 - leftCount)).build();
+    ExecutorService threadPool = Executors.newFixedThreadPool(3);
+    List<Rpc> rpcs = new ArrayList<>();
+    try {
+      List<Future<Object>> futures = new ArrayList<>();
+      for (int i = 0; i < 3; ++i) {
+        Rpc rpc = manager.getRpc(i);
+        rpc.connect();
+        rpcs.add(rpc);
+      }
+      for (int i = 0; i < 3; ++i) {
+        final Rpc rpc = rpcs.get(i);
+        final DataSet in = dataSet(inputs.get(i));
+        final boolean isLeft = i < leftCount;
+        futures.add(threadPool.submit(() -> {
+          MultiPartyHashEqualJoin join = new MultiPartyHashEqualJoin();
+          return count ? (Object) join.count(in, COND, isLeft, rpc, taskInfo)
+              : join.join(in, COND, isLeft, rpc, taskInfo);
+        }));
+      }
+      List<Object> results = new ArrayList<>();
+      for (Future<Object> f : futures) {
+        results.add(f.get());
+      }
+      return results;
+    } finally {
+      threadPool.shutdown();
+      for (Rpc rpc : rpcs) {
+        rpc.disconnect();
+      }
+    }
+  }
+
+  void testJoin(List<List<Object[]>> inputs, int leftCount) throws Exception {
+    List<Object> results = run(inputs, leftCount, false);
+    assertEquals(expectedJoin(inputs.subList(0, leftCount), inputs.subList(leftCount, 3)),
+        actualJoin((DataSet) results.get(0)));
+    for (int i = 1; i < 3; ++i) {
+      assertTrue(results.get(i) instanceof EmptyDataSet);
+    }
+  }
+
+  void testCount(List<List<Object[]>> inputs, int leftCount) throws Exception {
+    List<Object> results = run(inputs, leftCount, true);
+    long expected =
+        expectedJoin(inputs.subList(0, leftCount), inputs.subList(leftCount, 3)).size();
+    // the collector holds the total count
+    assertEquals(expected, (long) results.get(0));
+  }
+
+  @Test
+  public void testTwoLeftOwners() throws Exception {
+    List<List<Object[]>> inputs = ImmutableList.of(rows(0, 1, 2, 3, 4), rows(1, 3, 4, 5, 6),
+        rows(2, 2, 4, 6, 8));
+    testJoin(inputs, 2);
+    testCount(inputs, 2);
+  }
+
+  @Test
+  public void testTwoRightOwners() throws Exception {
+    List<List<Object[]>> inputs = ImmutableList.of(rows(0, 1, 2, 3, 4, -5), rows(1, 2, 7, -5),
+        rows(2, 4, 9));
+    testJoin(inputs, 1);
+    testCount(inputs, 1);
+  }
+
+  @Test
+  public void testEmptyPairs() throws Exception {
+    // owner 1 matches nothing, the pairs with it are empty
+    List<List<Object[]>> inputs = ImmutableList.of(rows(0, 1, 2, 3), rows(1, 10, 11),
+        rows(2, 3, 4));
+    testJoin(inputs, 2);
+    testCount(inputs, 2);
+    List<List<Object[]>> disjoint = ImmutableList.of(rows(0, 1, 2), rows(1, 3), rows(2, 4));
+    testJoin(disjoint, 1);
+    testCount(disjoint, 1);
+  }
+}
@@ -32,6 +32,18 @@ public class ExpressionUtils {
     return agg.getInList().stream().map(exp -> exp.getI32()).collect(Collectors.toList());
   }
 
+  /**
+   * count the aggregate functions evaluated for aggs, one for each single aggregate,
+   * and one for each aggregate inside an expression like DIVIDE(SUM(), SUM())
+   */
+  public static int countAggregateFunctions(List<Expression> aggs) {
+    int count = 0;
+    for (Expression exp : aggs) {
+      count += exp.getInCount() == 1 ? 1 : exp.getInCount();
+    }
+    return count;
+  }
+
   public static Object getLiteral(Expression lit) {
     switch (lit.getOutType()) {
       case BOOLEAN:
@@ -1,6 +1,7 @@
 package com.hufudb.openhufu.rpc;
 
 import java.util.Set;
+import com.hufudb.openhufu.rpc.metrics.RpcMetrics;
 import com.hufudb.openhufu.rpc.utils.DataPacket;
 import com.hufudb.openhufu.rpc.utils.DataPacketHeader;
 
@@ -14,4 +15,9 @@ public interface Rpc {
   long getPayloadByteLength(boolean reset);
   long getSendDataPacketNum(boolean reset);
   void disconnect();
+  boolean addParty(Party party);
+  boolean removeParty(Party party);
+  RpcMetrics getMetrics();
+  // cancel the task on all parties, waiters of the task get null
+  void cancel(long taskId);
 }
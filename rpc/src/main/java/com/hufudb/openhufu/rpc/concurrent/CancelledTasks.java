@@ -0,0 +1,29 @@
+package com.hufudb.openhufu.rpc.concurrent;
+
+/**
+ * Recently cancelled taskIds, the oldest ones are forgotten when the capacity is exceeded
+ */
+public class CancelledTasks {
+  private static final int DEFAULT_CAPACITY = 1024;
+
+  private final RecentKeys<Long> tasks;
+
+  public CancelledTasks(int capacity) {
+    this.tasks = new RecentKeys<>(capacity);
+  }
+
+  public CancelledTasks() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * return false if the task has already been cancelled
+   */
+  public boolean add(long taskId) {
+    return tasks.add(taskId);
+  }
+
+  public boolean contains(long taskId) {
+    return tasks.contains(taskId);
+  }
+}
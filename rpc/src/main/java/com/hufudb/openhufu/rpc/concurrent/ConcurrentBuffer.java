@@ -1,83 +1,133 @@
 package com.hufudb.openhufu.rpc.concurrent;
 
-import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Predicate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Unbounded mailbox, each key owns a slot future which is completed by the producer and consumed
+ * by the waiter of that key, so a put only wakes up the consumer waiting for the same key
+ */
 public class ConcurrentBuffer<K, V> {
   private static final Logger LOG = LoggerFactory.getLogger(ConcurrentBuffer.class);
   private static final long WAIT_TIMEOUT = 500000;
+  private static final int ABANDONED_CAPACITY = 1024;
 
   private final static int DEFAULT_OFFSET = 8;
-  private final Object buff[];
-  private final Map<K, Integer> searchIndex;
-  private final int mask;
-  private final ReadWriteLock lock;
-  private final Condition condition;
-  private int wpoint;
+  private final ConcurrentMap<K, CompletableFuture<V>> slots;
+  private final long waitTimeout;
+  // keys whose waiters gave up without a value, their late values are dropped
+  private final RecentKeys<K> abandoned;
+
+  ConcurrentBuffer(int offset, long waitTimeout) {
+    this.slots = new ConcurrentHashMap<>(1 << offset);
+    this.waitTimeout = waitTimeout;
+    this.abandoned = new RecentKeys<>(ABANDONED_CAPACITY);
+  }
 
   /**
-   * create a buffer with 1 << offset slot
+   * create a buffer with initial capacity of 1 << offset slot, the buffer grows when necessary
    */
   public ConcurrentBuffer(int offset) {
-    this.buff = new Object[1 << offset];
-    this.searchIndex = new HashMap<>();
-    this.mask = (1 << offset) - 1;
-    this.lock = new ReentrantReadWriteLock();
-    this.condition = lock.writeLock().newCondition();
+    this(offset, WAIT_TIMEOUT);
   }
 
   public ConcurrentBuffer() {
     this(DEFAULT_OFFSET);
   }
 
+  /**
+   * return false if a value with the same key is still in the buffer,
+   * a value whose waiter has given up (timeout or interrupt) is dropped
+   */
   public boolean put(K key, V value) {
-    lock.writeLock().lock();
-    if (buff[wpoint] != null) {
-      LOG.warn("Buffer full");
-      lock.writeLock().unlock();
+    boolean[] duplicate = new boolean[1];
+    boolean[] late = new boolean[1];
+    // complete the slot inside compute, so that it can't race with the removal of a waiter
+    slots.compute(key, (k, slot) -> {
+      if (slot == null) {
+        if (abandoned.contains(k)) {
+          late[0] = true;
+          return null;
+        }
+        return CompletableFuture.completedFuture(value);
+      }
+      if (!slot.complete(value)) {
+        duplicate[0] = true;
+      }
+      return slot;
+    });
+    if (duplicate[0]) {
+      LOG.warn("Duplicate value for {}", key);
       return false;
-    } else {
-      buff[wpoint] = value;
-      searchIndex.put(key, wpoint);
-      wpoint = (wpoint + 1) & mask;
-      condition.signalAll();
-      lock.writeLock().unlock();
-      return true;
     }
+    if (late[0]) {
+      LOG.debug("Drop late value for {}", key);
+    }
+    return true;
   }
 
   // block the thread if header not found
   public V blockingPop(K key) {
+    return await(key, slots.computeIfAbsent(key, k -> new CompletableFuture<>()));
+  }
+
+  /**
+   * same as blockingPop(key), but return null at once if the key is cancelled,
+   * cancelled must be marked before cancel(...) is called to avoid missing a waiter
+   */
+  public V blockingPop(K key, Predicate<K> cancelled) {
+    CompletableFuture<V> slot = slots.computeIfAbsent(key, k -> new CompletableFuture<>());
+    if (cancelled.test(key)) {
+      slot.completeExceptionally(new CancellationException("Cancelled before waiting"));
+    }
+    return await(key, slot);
+  }
+
+  private V await(K key, CompletableFuture<V> slot) {
     V target = null;
-    int idx = -1;
-    lock.writeLock().lock();
+    boolean interrupted = false;
+    boolean timeout = false;
     try {
-      while (!searchIndex.containsKey(key)) {
-        if (!condition.await(WAIT_TIMEOUT, TimeUnit.MILLISECONDS)) {
-          if (searchIndex.containsKey(key)) break;
-          LOG.warn("Wait timeout for {}", key);
-          return null;
-        }
-      }
-      idx = searchIndex.get(key);
-      target = (V) buff[idx];
+      target = slot.get(waitTimeout, TimeUnit.MILLISECONDS);
+    } catch (TimeoutException e) {
+      LOG.warn("Wait timeout for {}", key);
+      timeout = true;
     } catch (InterruptedException e) { // NOSONAR
-      LOG.error("Error when waiting for packet: {}", e.getMessage());
-    } finally {
-      lock.writeLock().unlock();
+      // the waiter is stopped by its owner, e.g. a background thread on shutdown
+      LOG.debug("Interrupted when waiting for {}", key);
+      interrupted = true;
+      Thread.currentThread().interrupt();
+    } catch (CancellationException e) {
+      LOG.warn("Stop waiting for {}: {}", key, e.getMessage());
+    } catch (ExecutionException e) {
+      LOG.warn("Stop waiting for {}: {}", key, e.getCause().getMessage());
+    }
+    final boolean gaveUp = timeout || interrupted;
+    // remove the slot inside compute, so that a put either completes it or sees the key abandoned
+    slots.compute(key, (k, s) -> {
+      if (s != slot) {
+        return s;
+      }
+      if (gaveUp && !slot.isDone()) {
+        abandoned.add(k);
+      }
+      return null;
+    });
+    if (target == null && slot.isDone() && !slot.isCompletedExceptionally()) {
+      // the value may arrive between timeout and removal
+      target = slot.getNow(null);
     }
-    if (target != null) {
-      lock.writeLock().lock();
-      searchIndex.remove(key);
-      buff[idx] = null;
-      lock.writeLock().unlock();
-    } else {
+    if (target == null && !interrupted) {
       LOG.warn("Get NULL for {}", key);
     }
     return target;
@@ -85,20 +135,29 @@ public class ConcurrentBuffer<K, V> {
 
   // return null if header not found
   public V pop(K key) {
-    V target = null;
-    int idx = -1;
-    lock.readLock().lock();
-    if (searchIndex.containsKey(key)) {
-      idx = searchIndex.get(key);
-      target = (V) buff[idx];
+    CompletableFuture<V> slot = slots.get(key);
+    if (slot == null || !slot.isDone() || slot.isCompletedExceptionally()
+        || !slots.remove(key, slot)) {
+      return null;
     }
-    lock.readLock().unlock();
-    if (target != null) {
-      lock.writeLock().lock();
-      searchIndex.remove(key);
-      buff[idx] = null;
-      lock.writeLock().unlock();
+    return slot.getNow(null);
+  }
+
+  /**
+   * drop the values whose key matches, and wake up their waiters with cause
+   * return the number of slots removed
+   */
+  public int cancel(Predicate<K> match, Throwable cause) {
+    int count = 0;
+    Iterator<Map.Entry<K, CompletableFuture<V>>> it = slots.entrySet().iterator();
+    while (it.hasNext()) {
+      Map.Entry<K, CompletableFuture<V>> entry = it.next();
+      if (match.test(entry.getKey())) {
+        it.remove();
+        entry.getValue().completeExceptionally(cause);
+        count++;
+      }
     }
-    return target;
+    return count;
   }
 }
@@ -0,0 +1,46 @@
+package com.hufudb.openhufu.rpc.concurrent;
+
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Recently added keys, the oldest ones are forgotten when the capacity is exceeded
+ */
+class RecentKeys<K> {
+  private final int capacity;
+  private final Set<K> keys;
+  private final Queue<K> order;
+  private final AtomicInteger size;
+
+  RecentKeys(int capacity) {
+    this.capacity = capacity;
+    this.keys = ConcurrentHashMap.newKeySet();
+    this.order = new ConcurrentLinkedQueue<>();
+    this.size = new AtomicInteger(0);
+  }
+
+  /**
+   * return false if the key has already been added
+   */
+  boolean add(K key) {
+    if (!keys.add(key)) {
+      return false;
+    }
+    order.add(key);
+    if (size.incrementAndGet() > capacity) {
+      K eldest = order.poll();
+      if (eldest != null) {
+        keys.remove(eldest);
+        size.decrementAndGet();
+      }
+    }
+    return true;
+  }
+
+  boolean contains(K key) {
+    return keys.contains(key);
+  }
+}
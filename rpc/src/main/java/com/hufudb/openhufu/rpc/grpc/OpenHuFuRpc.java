@@ -1,5 +1,6 @@
 package com.hufudb.openhufu.rpc.grpc;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -10,11 +11,16 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
 import com.hufudb.openhufu.rpc.Party;
 import com.hufudb.openhufu.rpc.Rpc;
+import com.hufudb.openhufu.proto.DataPacket.CancelProto;
+import com.hufudb.openhufu.rpc.concurrent.CancelledTasks;
 import com.hufudb.openhufu.rpc.concurrent.ConcurrentBuffer;
-import com.hufudb.openhufu.rpc.grpc.pipe.PipeClient;
+import com.hufudb.openhufu.rpc.grpc.pipe.PipeClientPool;
+import com.hufudb.openhufu.rpc.grpc.pipe.PipeConfig;
 import com.hufudb.openhufu.rpc.grpc.pipe.PipeService;
+import com.hufudb.openhufu.rpc.metrics.RpcMetrics;
 import com.hufudb.openhufu.rpc.utils.DataPacket;
 import com.hufudb.openhufu.rpc.utils.DataPacketHeader;
 import io.grpc.BindableService;
@@ -29,17 +35,17 @@ public class OpenHuFuRpc implements Rpc {
   final Party own;
   final Set<Party> parties;
   final Map<Integer, Party> participantMap;
-  final Map<Integer, PipeClient> clientMap;
+  final Map<Integer, PipeClientPool> clientMap;
   final Map<Integer, ConcurrentBuffer<DataPacketHeader, DataPacket>> bufferMap;
   final PipeService gRpcService;
   final ExecutorService threadPool;
-  long payloadByteLength;
-  long dataPacketNum;
+  final RpcMetrics metrics;
   final ChannelCredentials rootCert;
+  final PipeConfig pipeConfig;
   final ReadWriteLock lock;
 
   public OpenHuFuRpc(Party own, Set<Party> parties, ExecutorService threadPool,
-                     ChannelCredentials rootCert) {
+                     ChannelCredentials rootCert, PipeConfig pipeConfig) {
     this.own = own;
     this.parties = parties;
     this.participantMap = new HashMap<>();
@@ -48,16 +54,21 @@ public class OpenHuFuRpc implements Rpc {
     this.threadPool = threadPool;
     for (Party p : parties) {
       this.participantMap.put(p.getPartyId(), p);
-      this.clientMap.put(p.getPartyId(), new PipeClient(own.getPartyName(), rootCert));
+      this.clientMap.put(p.getPartyId(), new PipeClientPool(p.getPartyName(), rootCert, pipeConfig));
       this.bufferMap.put(p.getPartyId(), new ConcurrentBuffer<DataPacketHeader, DataPacket>());
     }
-    this.gRpcService = new PipeService(bufferMap);
-    this.payloadByteLength = 0;
-    this.dataPacketNum = 0;
+    this.gRpcService = new PipeService(bufferMap, new CancelledTasks());
+    this.metrics = new RpcMetrics();
     this.rootCert = rootCert;
+    this.pipeConfig = pipeConfig;
     this.lock = new ReentrantReadWriteLock();
   }
 
+  public OpenHuFuRpc(Party own, Set<Party> parties, ExecutorService threadPool,
+                     ChannelCredentials rootCert) {
+    this(own, parties, threadPool, rootCert, new PipeConfig());
+  }
+
   public OpenHuFuRpc(Party own, ExecutorService threadPool) {
     this(own, new HashSet<>(Arrays.asList(own)), threadPool, null);
   }
@@ -66,28 +77,52 @@ public class OpenHuFuRpc implements Rpc {
     this(own, new HashSet<>(Arrays.asList(own)), threadPool, rootCert);
   }
 
+  public OpenHuFuRpc(Party own, ExecutorService threadPool, ChannelCredentials rootCert,
+                     PipeConfig pipeConfig) {
+    this(own, new HashSet<>(Arrays.asList(own)), threadPool, rootCert, pipeConfig);
+  }
+
   public OpenHuFuRpc(Party own, List<Party> parties, List<Channel> channels) {
+    this(own, parties, channels, new PipeConfig());
+  }
+
+  public OpenHuFuRpc(Party own, List<Party> parties, List<Channel> channels,
+                     PipeConfig pipeConfig) {
+    this(own, pipeConfig, parties,
+        p -> new PipeClientPool(channels.get(parties.indexOf(p)), pipeConfig));
     assert parties.size() == channels.size();
+  }
+
+  /**
+   * channelFactory opens a channel to a party for each of the pipeConfig.channels clients,
+   * the caller owns the channels
+   */
+  public OpenHuFuRpc(Party own, List<Party> parties, Function<Party, Channel> channelFactory,
+                     PipeConfig pipeConfig) {
+    this(own, pipeConfig, parties,
+        p -> new PipeClientPool(() -> channelFactory.apply(p), pipeConfig));
+  }
+
+  private OpenHuFuRpc(Party own, PipeConfig pipeConfig, List<Party> parties,
+                      Function<Party, PipeClientPool> clients) {
     this.own = own;
     this.parties = new HashSet<>();
     this.participantMap = new HashMap<>();
     this.clientMap = new HashMap<>();
     this.bufferMap = new HashMap<>();
-    for (int i = 0; i < parties.size(); ++i) {
-      Party p = parties.get(i);
-      Channel ch = channels.get(i);
+    for (Party p : parties) {
       this.parties.add(p);
       this.participantMap.put(p.getPartyId(), p);
       // if (!p.equals(own)) {
-        this.clientMap.put(p.getPartyId(), new PipeClient(ch));
+        this.clientMap.put(p.getPartyId(), clients.apply(p));
         this.bufferMap.put(p.getPartyId(), new ConcurrentBuffer<DataPacketHeader, DataPacket>());
       // }
     }
-    this.gRpcService = new PipeService(bufferMap);
+    this.gRpcService = new PipeService(bufferMap, new CancelledTasks());
     this.threadPool = Executors.newFixedThreadPool(THREAD_NUM);
-    this.payloadByteLength = 0;
-    this.dataPacketNum = 0;
+    this.metrics = new RpcMetrics();
     this.rootCert = null;
+    this.pipeConfig = pipeConfig;
     this.lock = new ReentrantReadWriteLock();
   }
 
@@ -122,12 +157,14 @@ public class OpenHuFuRpc implements Rpc {
       return;
     }
     lock.readLock().lock();
-    PipeClient client = clientMap.get(receiverId);
+    PipeClientPool client = clientMap.get(receiverId);
     lock.readLock().unlock();
     if (client != null) {
-      client.send(dataPacket.toProto());
-      dataPacketNum++;
-      payloadByteLength += dataPacket.getPayloadByteLength();
+      long start = System.nanoTime();
+      int channelId = client.send(dataPacket.toProto());
+      metrics.recordSend(dataPacket.getHeader(), dataPacket.getPayloadByteLength(),
+          System.nanoTime() - start);
+      metrics.recordChannel(receiverId, channelId, dataPacket.getPayloadByteLength());
     } else {
       LOG.error("No connection to receiver[{}]", receiverId);
     }
@@ -136,25 +173,44 @@ public class OpenHuFuRpc implements Rpc {
   @Override
   public DataPacket receive(DataPacketHeader header) {
     ConcurrentBuffer<DataPacketHeader, DataPacket> buffer = bufferMap.get(header.getSenderId());
-    return buffer.blockingPop(header);
+    long start = System.nanoTime();
+    DataPacket packet =
+        buffer.blockingPop(header, h -> gRpcService.isCancelled(h.getTaskId()));
+    if (packet != null) {
+      metrics.recordReceive(header, packet.getPayloadByteLength(), System.nanoTime() - start);
+    }
+    return packet;
   }
 
   @Override
   public long getPayloadByteLength(boolean reset) {
-    long length = payloadByteLength;
-    if (reset) {
-      payloadByteLength = 0;
-    }
-    return length;
+    return metrics.getSentBytes(reset);
   }
 
   @Override
   public long getSendDataPacketNum(boolean reset) {
-    long number = dataPacketNum;
-    if (reset) {
-      dataPacketNum = 0;
-    }
-    return number;
+    return metrics.getSentPackets(reset);
+  }
+
+  @Override
+  public RpcMetrics getMetrics() {
+    return metrics;
+  }
+
+  @Override
+  public void cancel(long taskId) {
+    gRpcService.cancelTask(taskId);
+    CancelProto request =
+        CancelProto.newBuilder().setTaskId(taskId).setSenderId(own.getPartyId()).build();
+    lock.readLock().lock();
+    List<PipeClientPool> peers = new ArrayList<>();
+    clientMap.forEach((id, c) -> {
+      if (id != own.getPartyId()) {
+        peers.add(c);
+      }
+    });
+    lock.readLock().unlock();
+    peers.forEach(c -> c.cancel(request));
   }
 
   @Override
@@ -168,6 +224,7 @@ public class OpenHuFuRpc implements Rpc {
     return gRpcService;
   }
 
+  @Override
   public boolean addParty(Party party) {
     lock.writeLock().lock();
     if (parties.contains(party)) {
@@ -177,12 +234,13 @@ public class OpenHuFuRpc implements Rpc {
     }
     parties.add(party);
     participantMap.put(party.getPartyId(), party);
-    clientMap.put(party.getPartyId(), new PipeClient(party.getPartyName(), rootCert));
+    clientMap.put(party.getPartyId(), new PipeClientPool(party.getPartyName(), rootCert, pipeConfig));
     bufferMap.put(party.getPartyId(), new ConcurrentBuffer<DataPacketHeader, DataPacket>());
     lock.writeLock().unlock();
     return true;
   }
 
+  @Override
   public boolean removeParty(Party party) {
     lock.writeLock().lock();
     if (!parties.contains(party)) {
@@ -192,7 +250,10 @@ public class OpenHuFuRpc implements Rpc {
     }
     parties.remove(party);
     participantMap.remove(party.getPartyId());
-    clientMap.remove(party.getPartyId());
+    PipeClientPool client = clientMap.remove(party.getPartyId());
+    if (client != null) {
+      client.close();
+    }
     bufferMap.remove(party.getPartyId());
     lock.writeLock().unlock();
     return true;
@@ -4,11 +4,13 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Executors;
+import java.util.function.Function;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.hufudb.openhufu.rpc.Party;
 import com.hufudb.openhufu.rpc.Rpc;
 import com.hufudb.openhufu.rpc.RpcManager;
+import com.hufudb.openhufu.rpc.grpc.pipe.PipeConfig;
 import io.grpc.Channel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -30,12 +32,30 @@ public class OpenHuFuRpcManager implements RpcManager {
   }
 
   public OpenHuFuRpcManager(List<Party> parties, List<Channel> channels) {
+    this(parties, channels, new PipeConfig());
+  }
+
+  public OpenHuFuRpcManager(List<Party> parties, List<Channel> channels, PipeConfig pipeConfig) {
     assert parties.size() == channels.size();
     this.parties = ImmutableSet.copyOf(parties);
     ImmutableMap.Builder<Integer, Rpc> rpcMapBuilder = ImmutableMap.builder();
     for (int i = 0; i < parties.size(); ++i) {
       Party pt = parties.get(i);
-      rpcMapBuilder.put(pt.getPartyId(), new OpenHuFuRpc(pt, parties, channels));
+      rpcMapBuilder.put(pt.getPartyId(), new OpenHuFuRpc(pt, parties, channels, pipeConfig));
+    }
+    this.rpcMap = rpcMapBuilder.build();
+  }
+
+  /**
+   * channelFactory opens a channel to a party for each client of the pipes,
+   * pipeConfig.channels clients for each pair of parties
+   */
+  public OpenHuFuRpcManager(List<Party> parties, Function<Party, Channel> channelFactory,
+      PipeConfig pipeConfig) {
+    this.parties = ImmutableSet.copyOf(parties);
+    ImmutableMap.Builder<Integer, Rpc> rpcMapBuilder = ImmutableMap.builder();
+    for (Party pt : parties) {
+      rpcMapBuilder.put(pt.getPartyId(), new OpenHuFuRpc(pt, parties, channelFactory, pipeConfig));
     }
     this.rpcMap = rpcMapBuilder.build();
   }
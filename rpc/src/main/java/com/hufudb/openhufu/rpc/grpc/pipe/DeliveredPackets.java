@@ -0,0 +1,59 @@
+package com.hufudb.openhufu.rpc.grpc.pipe;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Sequence numbers of the stream packets delivered from each pipe client, so that a packet
+ * resent after a broken stream is delivered once even if it has been popped already.
+ * For each client all packets up to contiguous are delivered, and the delivered packets above
+ * it are kept in a window, the gaps falling out of the window are given up.
+ * Only the most recently used clients are remembered.
+ */
+class DeliveredPackets {
+  static final int DEFAULT_CLIENTS = 1024;
+  static final long DEFAULT_WINDOW = 1 << 16;
+
+  static class Client {
+    long contiguous = 0;
+    final TreeSet<Long> above = new TreeSet<>();
+  }
+
+  private final long window;
+  private final Map<Long, Client> clients;
+
+  DeliveredPackets(int maxClients, long window) {
+    this.window = window;
+    this.clients = new LinkedHashMap<Long, Client>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Long, Client> eldest) {
+        return size() > maxClients;
+      }
+    };
+  }
+
+  DeliveredPackets() {
+    this(DEFAULT_CLIENTS, DEFAULT_WINDOW);
+  }
+
+  /**
+   * mark packet seq of client as delivered
+   * @return false if it has been delivered before
+   */
+  synchronized boolean deliver(long clientId, long seq) {
+    Client client = clients.computeIfAbsent(clientId, id -> new Client());
+    if (seq <= client.contiguous || !client.above.add(seq)) {
+      return false;
+    }
+    if (client.contiguous < seq - window) {
+      // give up the gaps below the window
+      client.contiguous = seq - window;
+      client.above.headSet(client.contiguous, true).clear();
+    }
+    while (!client.above.isEmpty() && client.above.first() == client.contiguous + 1) {
+      client.contiguous = client.above.pollFirst();
+    }
+    return true;
+  }
+}
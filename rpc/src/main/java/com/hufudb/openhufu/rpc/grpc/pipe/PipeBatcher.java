@@ -0,0 +1,80 @@
+package com.hufudb.openhufu.rpc.grpc.pipe;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import com.hufudb.openhufu.proto.DataPacket.DataPacketBatchProto;
+import com.hufudb.openhufu.proto.DataPacket.DataPacketProto;
+
+/**
+ * Coalesce the packets sent to one receiver, a batch is flushed when it reaches
+ * the byte threshold or when the oldest packet has waited for the time window
+ */
+class PipeBatcher {
+  // timers of all batchers, flushing is asynchronous so one thread is enough
+  private static final ScheduledExecutorService TIMER =
+      Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "pipe-batcher");
+        t.setDaemon(true);
+        return t;
+      });
+
+  private final long delayMs;
+  private final int maxBytes;
+  private final Consumer<DataPacketBatchProto> sink;
+  private List<DataPacketProto> pending;
+  private int pendingBytes;
+  private ScheduledFuture<?> timer;
+
+  PipeBatcher(PipeConfig config, Consumer<DataPacketBatchProto> sink) {
+    this.delayMs = config.batchDelayMs;
+    this.maxBytes = config.batchBytes;
+    this.sink = sink;
+    this.pending = new ArrayList<>();
+    this.pendingBytes = 0;
+  }
+
+  void add(DataPacketProto packet) {
+    DataPacketBatchProto batch = null;
+    synchronized (this) {
+      pending.add(packet);
+      pendingBytes += packet.getSerializedSize();
+      if (pendingBytes >= maxBytes) {
+        batch = take();
+      } else if (timer == null) {
+        timer = TIMER.schedule(this::flush, delayMs, TimeUnit.MILLISECONDS);
+      }
+    }
+    if (batch != null) {
+      sink.accept(batch);
+    }
+  }
+
+  void flush() {
+    DataPacketBatchProto batch;
+    synchronized (this) {
+      batch = take();
+    }
+    if (batch != null) {
+      sink.accept(batch);
+    }
+  }
+
+  private DataPacketBatchProto take() {
+    if (timer != null) {
+      timer.cancel(false);
+      timer = null;
+    }
+    if (pending.isEmpty()) {
+      return null;
+    }
+    DataPacketBatchProto batch = DataPacketBatchProto.newBuilder().addAllPackets(pending).build();
+    pending = new ArrayList<>();
+    pendingBytes = 0;
+    return batch;
+  }
+}
@@ -1,6 +1,12 @@
 package com.hufudb.openhufu.rpc.grpc.pipe;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
 import com.hufudb.openhufu.proto.PipeGrpc;
+import com.hufudb.openhufu.proto.DataPacket.CancelProto;
+import com.hufudb.openhufu.proto.DataPacket.DataPacketBatchProto;
 import com.hufudb.openhufu.proto.DataPacket.DataPacketProto;
 import com.hufudb.openhufu.proto.DataPacket.ResponseProto;
 import org.slf4j.Logger;
@@ -8,19 +14,51 @@ import org.slf4j.LoggerFactory;
 import io.grpc.Channel;
 import io.grpc.ChannelCredentials;
 import io.grpc.Grpc;
+import io.grpc.ManagedChannel;
 import io.grpc.ManagedChannelBuilder;
+import io.grpc.Status;
 import io.grpc.StatusRuntimeException;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import io.grpc.stub.StreamObserver;
 
 public class PipeClient {
   private static final Logger LOG = LoggerFactory.getLogger(PipeClient.class);
+  private static final String GZIP = "gzip";
+  // recheck the stream at this interval while waiting for it to be ready
+  private static final long READY_WAIT_MS = 1000;
 
   private PipeGrpc.PipeBlockingStub stub;
-  private final Channel channel;
+  private PipeGrpc.PipeStub asyncStub;
+  // stubs with gzip, null if compression is disabled
+  private PipeGrpc.PipeBlockingStub zipStub;
+  private PipeGrpc.PipeStub zipAsyncStub;
+  private final int compressionThreshold;
+  private ClientCallStreamObserver<DataPacketProto> stream;
+  private ResponseObserver streamResponse;
+  private boolean streaming;
+  private PipeBatcher batcher;
+  private Channel channel;
   private final String endpoint;
+  // set if the client opens its own channel to endpoint, which is shut down by close
+  private final boolean ownsChannel;
+  private final ChannelCredentials certRoot;
+  // identifies the packets of this client on the receiver, with the sequence numbers of them
+  private final long clientId = ThreadLocalRandom.current().nextLong();
+  private long nextSeq = 0;
 
-  public PipeClient(Channel channel) {
+  public PipeClient(Channel channel, PipeConfig config) {
     this.channel = channel;
     this.endpoint = channel.toString();
+    this.ownsChannel = false;
+    this.certRoot = null;
+    this.streaming = config.streaming;
+    this.compressionThreshold = config.compressionThreshold;
+    this.batcher = config.batchDelayMs > 0 ? new PipeBatcher(config, this::sendBatch) : null;
+  }
+
+  public PipeClient(Channel channel) {
+    this(channel, new PipeConfig());
   }
 
   public PipeClient(String endpoint) {
@@ -28,33 +66,113 @@ public class PipeClient {
   }
 
   public PipeClient(String endpoint, ChannelCredentials certRoot) {
-    if (certRoot == null) {
-      channel = ManagedChannelBuilder.forTarget(endpoint).usePlaintext().build();
-      LOG.info("Channel to {} in plaintext", endpoint);
-    } else {
-      channel = Grpc.newChannelBuilder(endpoint, certRoot).build();
-      LOG.info("Channel to {} with TLS", endpoint);
-    }
+    this(endpoint, certRoot, new PipeConfig());
+  }
+
+  /**
+   * the client opens its channel to endpoint on connect, and shuts it down on close
+   */
+  public PipeClient(String endpoint, ChannelCredentials certRoot, PipeConfig config) {
+    this.channel = null;
     this.endpoint = endpoint;
+    this.ownsChannel = true;
+    this.certRoot = certRoot;
+    this.streaming = config.streaming;
+    this.compressionThreshold = config.compressionThreshold;
+    this.batcher = config.batchDelayMs > 0 ? new PipeBatcher(config, this::sendBatch) : null;
   }
 
-  public void connect() {
+  public synchronized void connect() {
     if (stub != null) {
       LOG.info("Connection to {} has already established", endpoint);
       return;
     }
+    if (ownsChannel) {
+      if (certRoot == null) {
+        channel = ManagedChannelBuilder.forTarget(endpoint).usePlaintext().build();
+        LOG.info("Channel to {} in plaintext", endpoint);
+      } else {
+        channel = Grpc.newChannelBuilder(endpoint, certRoot).build();
+        LOG.info("Channel to {} with TLS", endpoint);
+      }
+    }
     stub = PipeGrpc.newBlockingStub(channel);
+    asyncStub = PipeGrpc.newStub(channel);
+    if (compressionThreshold >= 0) {
+      zipStub = stub.withCompression(GZIP);
+      zipAsyncStub = asyncStub.withCompression(GZIP);
+    }
     LOG.info("Connect to {}", endpoint);
   }
 
+  private boolean compress(int size) {
+    return compressionThreshold >= 0 && size >= compressionThreshold;
+  }
+
   public void send(DataPacketProto packet) {
-    if (stub == null) {
-      LOG.warn("No connection to {}", endpoint);
-      return;
+    PipeBatcher currentBatcher;
+    synchronized (this) {
+      currentBatcher = batcher;
+    }
+    if (currentBatcher != null) {
+      currentBatcher.add(packet);
+    } else {
+      sendDirectly(packet);
+    }
+  }
+
+  private void sendDirectly(DataPacketProto packet) {
+    PipeGrpc.PipeBlockingStub current;
+    synchronized (this) {
+      if (streaming && stub != null && streamPacket(packet)) {
+        return;
+      }
+      if (stub == null) {
+        LOG.warn("No connection to {}", endpoint);
+        return;
+      }
+      current = compress(packet.getSerializedSize()) ? zipStub : stub;
+    }
+    sendUnary(current, packet);
+  }
+
+  /**
+   * send the packet on the stream once it is ready, so grpc never buffers more than its window,
+   * the packet is numbered and kept until the peer acks it, called with the lock held
+   * @return false if the stream is closed while waiting
+   */
+  private boolean streamPacket(DataPacketProto packet) {
+    ClientCallStreamObserver<DataPacketProto> out = getStream();
+    if (out == null) {
+      return false;
+    }
+    ResponseObserver observer = streamResponse;
+    while (!out.isReady() && out == stream) {
+      try {
+        wait(READY_WAIT_MS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        break;
+      }
+    }
+    if (out != stream || !out.isReady()) {
+      return false;
+    }
+    LOG.debug("Stream packet to {}", endpoint);
+    if (compressionThreshold >= 0) {
+      out.setMessageCompression(compress(packet.getSerializedSize()));
     }
+    DataPacketProto numbered = packet.toBuilder().setClientId(clientId).setSeq(++nextSeq).build();
+    // added before onNext, an error raised inside onNext resends it
+    observer.pending.add(numbered);
+    out.onNext(numbered);
+    return true;
+  }
+
+  private void sendUnary(PipeGrpc.PipeBlockingStub current, DataPacketProto packet) {
     LOG.debug("Send packet to {}", endpoint);
     try {
-      ResponseProto resp = stub.send(packet);
+      ResponseProto resp = current.send(packet);
       if (resp.getStatus() != 0) {
         LOG.error("Error when send message in pipe: {}", resp.getMsg());
       }
@@ -63,11 +181,200 @@ public class PipeClient {
     }
   }
 
-  public void close() {
+  public void cancel(CancelProto request) {
+    PipeGrpc.PipeBlockingStub current;
+    synchronized (this) {
+      current = stub;
+    }
+    if (current == null) {
+      LOG.warn("No connection to {}", endpoint);
+      return;
+    }
+    try {
+      ResponseProto resp = current.cancel(request);
+      if (resp.getStatus() != 0) {
+        LOG.error("Error when cancel task in pipe: {}", resp.getMsg());
+      }
+    } catch (StatusRuntimeException e) {
+      LOG.error("RPC failed in cancel task: {}", e.getMessage());
+    }
+  }
+
+  private synchronized void sendBatch(DataPacketBatchProto batch) {
+    if (asyncStub == null) {
+      LOG.warn("No connection to {}, drop {} packets", endpoint, batch.getPacketsCount());
+      return;
+    }
+    LOG.debug("Send batch of {} packets to {}", batch.getPacketsCount(), endpoint);
+    PipeGrpc.PipeStub current = compress(batch.getSerializedSize()) ? zipAsyncStub : asyncStub;
+    current.sendBatch(batch, new StreamObserver<ResponseProto>() {
+      @Override
+      public void onNext(ResponseProto resp) {
+        if (resp.getStatus() != 0) {
+          LOG.error("Error when send batch in pipe: {}", resp.getMsg());
+        }
+      }
+
+      @Override
+      public void onError(Throwable t) {
+        onBatchError(batch, t);
+      }
+
+      @Override
+      public void onCompleted() {}
+    });
+  }
+
+  private void onBatchError(DataPacketBatchProto batch, Throwable t) {
+    Status status = Status.fromThrowable(t);
+    if (status.getCode() != Status.Code.UNIMPLEMENTED) {
+      LOG.error("RPC failed in send batch to {}: {}", endpoint, status);
+      return;
+    }
+    // the peer does not support batch, resend the packets one by one
+    LOG.warn("Disable batching for {}", endpoint);
+    synchronized (this) {
+      batcher = null;
+    }
+    batch.getPacketsList().forEach(this::sendDirectly);
+  }
+
+  // open the stream lazily, it is reopened by the next packet after a failure,
+  // null if the stream fails while starting
+  private ClientCallStreamObserver<DataPacketProto> getStream() {
+    if (stream == null) {
+      ResponseObserver observer = new ResponseObserver();
+      streamResponse = observer;
+      // gzip is enabled per message when compression is on
+      PipeGrpc.PipeStub current = compressionThreshold >= 0 ? zipAsyncStub : asyncStub;
+      ClientCallStreamObserver<DataPacketProto> out =
+          (ClientCallStreamObserver<DataPacketProto>) current.stream(observer);
+      if (streamResponse != observer) {
+        // onStreamError has been called in the same thread
+        return null;
+      }
+      stream = out;
+      LOG.debug("Open pipe stream to {}", endpoint);
+    }
+    return stream;
+  }
+
+  private synchronized void onStreamReady() {
+    notifyAll();
+  }
+
+  private synchronized void onStreamAck(ResponseObserver observer, long acked) {
+    while (observer.acked < acked && !observer.pending.isEmpty()) {
+      observer.pending.poll();
+      observer.acked++;
+    }
+  }
+
+  private synchronized void onStreamCompleted(ResponseObserver observer) {
+    if (observer == streamResponse) {
+      stream = null;
+      streamResponse = null;
+      notifyAll();
+    }
+  }
+
+  /**
+   * the packets not acked on the failed stream may be lost, resend them with unary calls,
+   * the peer drops a resent packet it took without acking by its sequence number
+   */
+  private void onStreamError(ResponseObserver observer, Throwable t) {
+    Status status = Status.fromThrowable(t);
+    List<DataPacketProto> unacked;
+    PipeGrpc.PipeBlockingStub current;
+    PipeGrpc.PipeBlockingStub zipCurrent;
+    synchronized (this) {
+      LOG.error("Pipe stream to {} failed: {}", endpoint, status);
+      if (status.getCode() == Status.Code.UNIMPLEMENTED) {
+        // the peer does not support stream, fall back to unary call
+        LOG.warn("Fall back to unary pipe for {}", endpoint);
+        streaming = false;
+      }
+      if (observer == streamResponse) {
+        stream = null;
+        streamResponse = null;
+      }
+      unacked = new ArrayList<>(observer.pending);
+      observer.pending.clear();
+      current = stub;
+      zipCurrent = zipStub;
+      // wake up the senders waiting for the failed stream
+      notifyAll();
+    }
+    if (unacked.isEmpty()) {
+      return;
+    }
+    if (current == null) {
+      LOG.warn("No connection to {}, drop {} unacked packets", endpoint, unacked.size());
+      return;
+    }
+    LOG.warn("Resend {} unacked packets to {}", unacked.size(), endpoint);
+    for (DataPacketProto packet : unacked) {
+      sendUnary(compress(packet.getSerializedSize()) ? zipCurrent : current, packet);
+    }
+  }
+
+  public synchronized void close() {
     if (stub == null) {
       LOG.warn("Connection to {} has already close", endpoint);
       return;
     }
+    if (batcher != null) {
+      batcher.flush();
+    }
+    if (stream != null) {
+      stream.onCompleted();
+      stream = null;
+      streamResponse = null;
+    }
     stub = null;
+    asyncStub = null;
+    zipStub = null;
+    zipAsyncStub = null;
+    if (ownsChannel) {
+      // the calls in flight are finished before the channel terminates
+      ((ManagedChannel) channel).shutdown();
+      channel = null;
+    }
+  }
+
+  // the channel in use, an own channel is null until connect and after close
+  synchronized Channel getChannel() {
+    return channel;
+  }
+
+  class ResponseObserver implements ClientResponseObserver<DataPacketProto, ResponseProto> {
+    // packets sent on this stream and not acked yet, in the order of sending,
+    // the peer acks them in batches
+    final ArrayDeque<DataPacketProto> pending = new ArrayDeque<>();
+    long acked = 0;
+
+    @Override
+    public void beforeStart(ClientCallStreamObserver<DataPacketProto> requestStream) {
+      requestStream.setOnReadyHandler(PipeClient.this::onStreamReady);
+    }
+
+    @Override
+    public void onNext(ResponseProto resp) {
+      if (resp.getStatus() != 0) {
+        LOG.error("Error when stream message in pipe: {}", resp.getMsg());
+      }
+      onStreamAck(this, resp.getAcked());
+    }
+
+    @Override
+    public void onError(Throwable t) {
+      onStreamError(this, t);
+    }
+
+    @Override
+    public void onCompleted() {
+      LOG.debug("Pipe stream to {} completed", endpoint);
+      onStreamCompleted(this);
+    }
   }
 }
@@ -0,0 +1,77 @@
+package com.hufudb.openhufu.rpc.grpc.pipe;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+import com.hufudb.openhufu.proto.DataPacket.CancelProto;
+import com.hufudb.openhufu.proto.DataPacket.DataPacketProto;
+import io.grpc.Channel;
+import io.grpc.ChannelCredentials;
+
+/**
+ * PipeClients to one peer, packets are spread over the clients by taskId hash,
+ * so that packets of one task keep their order and a large task only occupies one channel,
+ * each client has a channel of its own
+ */
+public class PipeClientPool {
+  private final List<PipeClient> clients;
+
+  public PipeClientPool(String endpoint, ChannelCredentials certRoot, PipeConfig config) {
+    this.clients = new ArrayList<>();
+    for (int i = 0; i < Math.max(config.channels, 1); ++i) {
+      clients.add(new PipeClient(endpoint, certRoot, config));
+    }
+  }
+
+  /**
+   * a single client on the given channel, use PipeClientPool(Supplier, PipeConfig) for more
+   * channels
+   */
+  public PipeClientPool(Channel channel, PipeConfig config) {
+    if (config.channels > 1) {
+      throw new IllegalArgumentException(String.format(
+          "%d channels are configured, but a single channel is given", config.channels));
+    }
+    this.clients = new ArrayList<>();
+    clients.add(new PipeClient(channel, config));
+  }
+
+  /**
+   * each client has its own channel from channels, the caller owns the channels
+   */
+  public PipeClientPool(Supplier<? extends Channel> channels, PipeConfig config) {
+    this.clients = new ArrayList<>();
+    for (int i = 0; i < Math.max(config.channels, 1); ++i) {
+      clients.add(new PipeClient(channels.get(), config));
+    }
+  }
+
+  public int size() {
+    return clients.size();
+  }
+
+  public int select(long taskId) {
+    return Math.floorMod(Long.hashCode(taskId), clients.size());
+  }
+
+  /**
+   * return the index of the client used to send the packet
+   */
+  public int send(DataPacketProto packet) {
+    int idx = select(packet.getHeaderProto().getTaskId());
+    clients.get(idx).send(packet);
+    return idx;
+  }
+
+  public void cancel(CancelProto request) {
+    clients.get(select(request.getTaskId())).cancel(request);
+  }
+
+  public void connect() {
+    clients.forEach(PipeClient::connect);
+  }
+
+  public void close() {
+    clients.forEach(PipeClient::close);
+  }
+}
@@ -0,0 +1,20 @@
+package com.hufudb.openhufu.rpc.grpc.pipe;
+
+/**
+ * Configurations of the pipes between owners
+ * add new config item to tune the transport
+ */
+public class PipeConfig {
+  // send packets through a long-lived bidirectional stream, otherwise one unary call per packet
+  public boolean streaming = true;
+  // number of channels to each peer, packets are spread over them by taskId
+  public int channels = 1;
+  // gzip packets of at least compressionThreshold bytes, negative means no compression
+  public int compressionThreshold = -1;
+  // coalesce packets to the same receiver for at most batchDelayMs, 0 means no batching
+  public int batchDelayMs = 0;
+  // flush the batch once the buffered packets reach batchBytes
+  public int batchBytes = 64 * 1024;
+
+  public PipeConfig() {}
+}
@@ -1,9 +1,13 @@
 package com.hufudb.openhufu.rpc.grpc.pipe;
 
 import java.util.Map;
+import java.util.concurrent.CancellationException;
 import com.hufudb.openhufu.proto.PipeGrpc;
+import com.hufudb.openhufu.proto.DataPacket.CancelProto;
+import com.hufudb.openhufu.proto.DataPacket.DataPacketBatchProto;
 import com.hufudb.openhufu.proto.DataPacket.DataPacketProto;
 import com.hufudb.openhufu.proto.DataPacket.ResponseProto;
+import com.hufudb.openhufu.rpc.concurrent.CancelledTasks;
 import com.hufudb.openhufu.rpc.concurrent.ConcurrentBuffer;
 import com.hufudb.openhufu.rpc.utils.DataPacket;
 import com.hufudb.openhufu.rpc.utils.DataPacketHeader;
@@ -14,35 +18,144 @@ import org.slf4j.LoggerFactory;
 public class PipeService extends PipeGrpc.PipeImplBase {
   private static final Logger LOG = LoggerFactory.getLogger(PipeService.class);
   private static final ResponseProto OK = ResponseProto.newBuilder().build();
+  // the stream acks the packets taken so far once for every ACK_INTERVAL packets
+  static final int ACK_INTERVAL = 64;
 
   private final Map<Integer, ConcurrentBuffer<DataPacketHeader, DataPacket>> buffers;
+  private final CancelledTasks cancelledTasks;
+  private final DeliveredPackets delivered;
 
   /*
    * partyId -> concurrentBuffer each buffer only collects packets from the correspongding party
    */
-  public PipeService(Map<Integer, ConcurrentBuffer<DataPacketHeader, DataPacket>> buffers) {
+  public PipeService(Map<Integer, ConcurrentBuffer<DataPacketHeader, DataPacket>> buffers,
+      CancelledTasks cancelledTasks) {
     this.buffers = buffers;
+    this.cancelledTasks = cancelledTasks;
+    this.delivered = new DeliveredPackets();
   }
 
-  @Override
-  public void send(DataPacketProto request, StreamObserver<ResponseProto> responseObserver) {
+  public PipeService(Map<Integer, ConcurrentBuffer<DataPacketHeader, DataPacket>> buffers) {
+    this(buffers, new CancelledTasks());
+  }
+
+  /**
+   * mark the task as cancelled, drop its buffered packets and wake up its waiters
+   */
+  public int cancelTask(long taskId) {
+    if (!cancelledTasks.add(taskId)) {
+      return 0;
+    }
+    CancellationException cause =
+        new CancellationException(String.format("Task[%d] is cancelled", taskId));
+    int count = 0;
+    for (ConcurrentBuffer<DataPacketHeader, DataPacket> buffer : buffers.values()) {
+      count += buffer.cancel(h -> h.getTaskId() == taskId, cause);
+    }
+    LOG.info("Cancel task {}, drop {} packets or waiters", taskId, count);
+    return count;
+  }
+
+  public boolean isCancelled(long taskId) {
+    return cancelledTasks.contains(taskId);
+  }
+
+  ResponseProto put(DataPacketProto request) {
     int senderId = request.getHeaderProto().getSenderId();
     DataPacket packet = DataPacket.fromProto(request);
     LOG.debug("Pipe get {}", packet);
     ConcurrentBuffer<DataPacketHeader, DataPacket> buffer = buffers.get(senderId);
-    ResponseProto resp = OK;
     if (buffer == null) {
       LOG.error("No buffer for Party[{}]", senderId);
-      resp = ResponseProto.newBuilder().setStatus(1)
+      return ResponseProto.newBuilder().setStatus(1)
           .setMsg(String.format("No buffer for Party[%d]", senderId)).build();
-    } else {
-      boolean ok = buffer.put(packet.getHeader(), packet);
-      if (!ok) {
-        resp = ResponseProto.newBuilder().setStatus(1)
-            .setMsg(String.format("Buffer of Party[%d] is full", senderId)).build();
+    }
+    long taskId = packet.getHeader().getTaskId();
+    if (cancelledTasks.contains(taskId)) {
+      LOG.debug("Drop packet of cancelled task {}", taskId);
+      return OK;
+    }
+    if (request.getSeq() > 0 && !delivered.deliver(request.getClientId(), request.getSeq())) {
+      // resent after a broken stream, but taken from the stream before
+      LOG.debug("Drop delivered packet {}", packet);
+      return OK;
+    }
+    boolean ok = buffer.put(packet.getHeader(), packet);
+    if (!ok) {
+      return ResponseProto.newBuilder().setStatus(1)
+          .setMsg(String.format("Duplicate packet from Party[%d]", senderId)).build();
+    }
+    if (cancelledTasks.contains(taskId)) {
+      // cancelled while putting
+      buffer.pop(packet.getHeader());
+    }
+    return OK;
+  }
+
+  @Override
+  public void send(DataPacketProto request, StreamObserver<ResponseProto> responseObserver) {
+    responseObserver.onNext(put(request));
+    responseObserver.onCompleted();
+  }
+
+  @Override
+  public void cancel(CancelProto request, StreamObserver<ResponseProto> responseObserver) {
+    LOG.info("Party[{}] cancels task {}", request.getSenderId(), request.getTaskId());
+    cancelTask(request.getTaskId());
+    responseObserver.onNext(OK);
+    responseObserver.onCompleted();
+  }
+
+  /**
+   * split the batch back into the buffers, the first failure is reported
+   */
+  @Override
+  public void sendBatch(DataPacketBatchProto request, StreamObserver<ResponseProto> responseObserver) {
+    ResponseProto resp = OK;
+    for (DataPacketProto packet : request.getPacketsList()) {
+      ResponseProto r = put(packet);
+      if (r.getStatus() != 0 && resp.getStatus() == 0) {
+        resp = r;
       }
     }
     responseObserver.onNext(resp);
     responseObserver.onCompleted();
   }
+
+  /**
+   * packets from the stream are put into the buffer of the sender directly,
+   * every ACK_INTERVAL packets, a failed packet and the end of the stream are answered with the
+   * number of packets taken from the stream so far, so the sender can drop the packets it keeps
+   * for resending if the stream breaks
+   */
+  @Override
+  public StreamObserver<DataPacketProto> stream(StreamObserver<ResponseProto> responseObserver) {
+    return new StreamObserver<DataPacketProto>() {
+      long taken = 0;
+      long acked = 0;
+
+      @Override
+      public void onNext(DataPacketProto request) {
+        ResponseProto resp = put(request);
+        taken++;
+        if (resp.getStatus() != 0 || taken - acked >= ACK_INTERVAL) {
+          acked = taken;
+          responseObserver.onNext(resp.toBuilder().setAcked(acked).build());
+        }
+      }
+
+      @Override
+      public void onError(Throwable t) {
+        LOG.warn("Pipe stream closed with error: {}", t.getMessage());
+      }
+
+      @Override
+      public void onCompleted() {
+        if (taken > acked) {
+          responseObserver.onNext(OK.toBuilder().setAcked(taken).build());
+        }
+        responseObserver.onCompleted();
+      }
+    };
+  }
 }
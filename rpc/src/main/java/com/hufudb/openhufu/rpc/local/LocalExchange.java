@@ -0,0 +1,34 @@
+package com.hufudb.openhufu.rpc.local;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory exchange shared by the LocalRpcs of one JVM
+ * partyId -> rpc of that party, a party joins the exchange on connect
+ */
+public class LocalExchange {
+  private static final LocalExchange DEFAULT = new LocalExchange();
+
+  private final Map<Integer, LocalRpc> rpcs;
+
+  public LocalExchange() {
+    this.rpcs = new ConcurrentHashMap<>();
+  }
+
+  public static LocalExchange getDefault() {
+    return DEFAULT;
+  }
+
+  void register(LocalRpc rpc) {
+    rpcs.put(rpc.ownParty().getPartyId(), rpc);
+  }
+
+  void unregister(LocalRpc rpc) {
+    rpcs.remove(rpc.ownParty().getPartyId(), rpc);
+  }
+
+  LocalRpc get(int partyId) {
+    return rpcs.get(partyId);
+  }
+}
@@ -0,0 +1,189 @@
+package com.hufudb.openhufu.rpc.local;
+
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import com.hufudb.openhufu.rpc.Party;
+import com.hufudb.openhufu.rpc.Rpc;
+import com.hufudb.openhufu.rpc.concurrent.CancelledTasks;
+import com.hufudb.openhufu.rpc.concurrent.ConcurrentBuffer;
+import com.hufudb.openhufu.rpc.metrics.RpcMetrics;
+import com.hufudb.openhufu.rpc.utils.DataPacket;
+import com.hufudb.openhufu.rpc.utils.DataPacketHeader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Rpc for parties in the same JVM, packets are handed over to the receiver through a
+ * LocalExchange without serialization, the payload arrays are shared instead of copied
+ */
+public class LocalRpc implements Rpc {
+  private static final Logger LOG = LoggerFactory.getLogger(LocalRpc.class);
+  final Party own;
+  final Set<Party> parties;
+  final Map<Integer, Party> participantMap;
+  final Map<Integer, ConcurrentBuffer<DataPacketHeader, DataPacket>> bufferMap;
+  final LocalExchange exchange;
+  final RpcMetrics metrics;
+  final CancelledTasks cancelledTasks;
+
+  public LocalRpc(Party own, Set<Party> parties, LocalExchange exchange) {
+    this.own = own;
+    this.parties = ConcurrentHashMap.newKeySet();
+    this.participantMap = new ConcurrentHashMap<>();
+    this.bufferMap = new ConcurrentHashMap<>();
+    this.exchange = exchange;
+    for (Party p : parties) {
+      addParty(p);
+    }
+    this.metrics = new RpcMetrics();
+    this.cancelledTasks = new CancelledTasks();
+  }
+
+  public LocalRpc(Party own, LocalExchange exchange) {
+    this(own, new HashSet<>(Arrays.asList(own)), exchange);
+  }
+
+  public LocalRpc(Party own) {
+    this(own, LocalExchange.getDefault());
+  }
+
+  @Override
+  public Party ownParty() {
+    return own;
+  }
+
+  @Override
+  public Set<Party> getPartySet() {
+    return parties;
+  }
+
+  @Override
+  public Party getParty(int partyId) {
+    return participantMap.get(partyId);
+  }
+
+  @Override
+  public void connect() {
+    exchange.register(this);
+  }
+
+  @Override
+  public void send(DataPacket dataPacket) {
+    int receiverId = dataPacket.getHeader().getReceiverId();
+    int senderId = dataPacket.getHeader().getSenderId();
+    if (senderId != own.getPartyId()) {
+      LOG.error("Packet with wrong senderId[{}]", senderId);
+      return;
+    }
+    LocalRpc receiver = participantMap.containsKey(receiverId) ? exchange.get(receiverId) : null;
+    if (receiver != null) {
+      long start = System.nanoTime();
+      receiver.deliver(dataPacket);
+      metrics.recordSend(dataPacket.getHeader(), dataPacket.getPayloadByteLength(),
+          System.nanoTime() - start);
+    } else {
+      LOG.error("No connection to receiver[{}]", receiverId);
+    }
+  }
+
+  void deliver(DataPacket dataPacket) {
+    int senderId = dataPacket.getHeader().getSenderId();
+    ConcurrentBuffer<DataPacketHeader, DataPacket> buffer = bufferMap.get(senderId);
+    if (buffer == null) {
+      LOG.error("No buffer for Party[{}]", senderId);
+      return;
+    }
+    long taskId = dataPacket.getHeader().getTaskId();
+    if (cancelledTasks.contains(taskId)) {
+      LOG.debug("Drop packet of cancelled task {}", taskId);
+      return;
+    }
+    buffer.put(dataPacket.getHeader(), dataPacket);
+    if (cancelledTasks.contains(taskId)) {
+      // cancelled while putting
+      buffer.pop(dataPacket.getHeader());
+    }
+  }
+
+  void cancelTask(long taskId) {
+    if (!cancelledTasks.add(taskId)) {
+      return;
+    }
+    CancellationException cause =
+        new CancellationException(String.format("Task[%d] is cancelled", taskId));
+    int count = 0;
+    for (ConcurrentBuffer<DataPacketHeader, DataPacket> buffer : bufferMap.values()) {
+      count += buffer.cancel(h -> h.getTaskId() == taskId, cause);
+    }
+    LOG.info("Cancel task {}, drop {} packets or waiters", taskId, count);
+  }
+
+  @Override
+  public DataPacket receive(DataPacketHeader header) {
+    ConcurrentBuffer<DataPacketHeader, DataPacket> buffer = bufferMap.get(header.getSenderId());
+    long start = System.nanoTime();
+    DataPacket packet =
+        buffer.blockingPop(header, h -> cancelledTasks.contains(h.getTaskId()));
+    if (packet != null) {
+      metrics.recordReceive(header, packet.getPayloadByteLength(), System.nanoTime() - start);
+    }
+    return packet;
+  }
+
+  @Override
+  public long getPayloadByteLength(boolean reset) {
+    return metrics.getSentBytes(reset);
+  }
+
+  @Override
+  public long getSendDataPacketNum(boolean reset) {
+    return metrics.getSentPackets(reset);
+  }
+
+  @Override
+  public RpcMetrics getMetrics() {
+    return metrics;
+  }
+
+  @Override
+  public void cancel(long taskId) {
+    cancelTask(taskId);
+    for (Party p : parties) {
+      LocalRpc peer = p.getPartyId() == own.getPartyId() ? null : exchange.get(p.getPartyId());
+      if (peer != null) {
+        peer.cancelTask(taskId);
+      }
+    }
+  }
+
+  @Override
+  public void disconnect() {
+    exchange.unregister(this);
+  }
+
+  @Override
+  public boolean addParty(Party party) {
+    if (!parties.add(party)) {
+      LOG.warn("{} already exists", party);
+      return false;
+    }
+    participantMap.put(party.getPartyId(), party);
+    bufferMap.put(party.getPartyId(), new ConcurrentBuffer<DataPacketHeader, DataPacket>());
+    return true;
+  }
+
+  @Override
+  public boolean removeParty(Party party) {
+    if (!parties.remove(party)) {
+      LOG.warn("{} not exists", party);
+      return false;
+    }
+    participantMap.remove(party.getPartyId());
+    bufferMap.remove(party.getPartyId());
+    return true;
+  }
+}
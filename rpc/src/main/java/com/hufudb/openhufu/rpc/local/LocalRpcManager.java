@@ -0,0 +1,43 @@
+package com.hufudb.openhufu.rpc.local;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.hufudb.openhufu.rpc.Party;
+import com.hufudb.openhufu.rpc.Rpc;
+import com.hufudb.openhufu.rpc.RpcManager;
+
+/**
+ * LocalRpcs of all parties on a private exchange, used to measure protocols without transport
+ */
+public class LocalRpcManager implements RpcManager {
+  final Set<Party> parties;
+  final Map<Integer, Rpc> rpcMap;
+
+  public LocalRpcManager(List<Party> parties) {
+    this.parties = ImmutableSet.copyOf(parties);
+    LocalExchange exchange = new LocalExchange();
+    ImmutableMap.Builder<Integer, Rpc> rpcMapBuilder = ImmutableMap.builder();
+    for (Party pt : parties) {
+      rpcMapBuilder.put(pt.getPartyId(), new LocalRpc(pt, this.parties, exchange));
+    }
+    this.rpcMap = rpcMapBuilder.build();
+  }
+
+  @Override
+  public Rpc getRpc(int partyId) {
+    return rpcMap.get(partyId);
+  }
+
+  @Override
+  public int getPartyNum() {
+    return rpcMap.size();
+  }
+
+  @Override
+  public Set<Party> getPartySet() {
+    return parties;
+  }
+}
@@ -0,0 +1,72 @@
+package com.hufudb.openhufu.rpc.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import com.hufudb.openhufu.proto.DataPacket.HistogramProto;
+
+/**
+ * Lock-free latency histogram with power-of-two buckets in nanoseconds
+ */
+public class LatencyHistogram {
+  private static final int BUCKET_NUM = 64;
+
+  private final LongAdder count;
+  private final LongAdder sum;
+  private final LongAccumulator max;
+  private final LongAdder[] buckets;
+
+  public LatencyHistogram() {
+    this.count = new LongAdder();
+    this.sum = new LongAdder();
+    this.max = new LongAccumulator(Math::max, 0);
+    this.buckets = new LongAdder[BUCKET_NUM];
+    for (int i = 0; i < BUCKET_NUM; ++i) {
+      buckets[i] = new LongAdder();
+    }
+  }
+
+  public void record(long nanos) {
+    if (nanos < 0) {
+      nanos = 0;
+    }
+    count.increment();
+    sum.add(nanos);
+    max.accumulate(nanos);
+    buckets[bucketOf(nanos)].increment();
+  }
+
+  static int bucketOf(long nanos) {
+    return nanos == 0 ? 0 : 63 - Long.numberOfLeadingZeros(nanos);
+  }
+
+  public long getCount() {
+    return count.sum();
+  }
+
+  public long getSumNanos() {
+    return sum.sum();
+  }
+
+  public long getMaxNanos() {
+    return max.get();
+  }
+
+  public HistogramProto toProto(boolean reset) {
+    HistogramProto.Builder builder = HistogramProto.newBuilder();
+    if (reset) {
+      builder.setCount(count.sumThenReset()).setSumNanos(sum.sumThenReset())
+          .setMaxNanos(max.getThenReset());
+    } else {
+      builder.setCount(count.sum()).setSumNanos(sum.sum()).setMaxNanos(max.get());
+    }
+    // trailing empty buckets are omitted
+    int last = BUCKET_NUM - 1;
+    while (last >= 0 && buckets[last].sum() == 0) {
+      last--;
+    }
+    for (int i = 0; i <= last; ++i) {
+      builder.addBuckets(reset ? buckets[i].sumThenReset() : buckets[i].sum());
+    }
+    return builder.build();
+  }
+}
@@ -0,0 +1,113 @@
+package com.hufudb.openhufu.rpc.metrics;
+
+import java.util.Comparator;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import com.hufudb.openhufu.proto.DataPacket.ChannelMetricsProto;
+import com.hufudb.openhufu.proto.DataPacket.RpcMetricsProto;
+import com.hufudb.openhufu.rpc.utils.DataPacketHeader;
+
+/**
+ * Metrics registry of a Rpc, counters are kept per (ptoId, stepId, peer) and per channel
+ */
+public class RpcMetrics {
+  private final ConcurrentMap<StepKey, StepMetrics> steps;
+  // (0, channelId, peerId) -> [packets, bytes] of the channel
+  private final ConcurrentMap<StepKey, LongAdder[]> channels;
+  private final LongAdder sentPackets;
+  private final LongAdder sentBytes;
+
+  public RpcMetrics() {
+    this.steps = new ConcurrentHashMap<>();
+    this.channels = new ConcurrentHashMap<>();
+    this.sentPackets = new LongAdder();
+    this.sentBytes = new LongAdder();
+  }
+
+  public StepMetrics get(int ptoId, int stepId, int peerId) {
+    return steps.computeIfAbsent(new StepKey(ptoId, stepId, peerId),
+        k -> new StepMetrics(ptoId, stepId, peerId));
+  }
+
+  public void recordSend(DataPacketHeader header, long bytes, long nanos) {
+    sentPackets.increment();
+    sentBytes.add(bytes);
+    get(header.getPtoId(), header.getStepId(), header.getReceiverId()).recordSend(bytes, nanos);
+  }
+
+  public void recordReceive(DataPacketHeader header, long bytes, long waitNanos) {
+    get(header.getPtoId(), header.getStepId(), header.getSenderId()).recordReceive(bytes,
+        waitNanos);
+  }
+
+  public void recordChannel(int peerId, int channelId, long bytes) {
+    LongAdder[] counters = channels.computeIfAbsent(new StepKey(0, channelId, peerId),
+        k -> new LongAdder[] {new LongAdder(), new LongAdder()});
+    counters[0].increment();
+    counters[1].add(bytes);
+  }
+
+  public long getChannelPackets(int peerId, int channelId) {
+    LongAdder[] counters = channels.get(new StepKey(0, channelId, peerId));
+    return counters == null ? 0 : counters[0].sum();
+  }
+
+  public long getSentPackets(boolean reset) {
+    return reset ? sentPackets.sumThenReset() : sentPackets.sum();
+  }
+
+  public long getSentBytes(boolean reset) {
+    return reset ? sentBytes.sumThenReset() : sentBytes.sum();
+  }
+
+  public RpcMetricsProto toProto(boolean reset) {
+    RpcMetricsProto.Builder builder = RpcMetricsProto.newBuilder();
+    steps.entrySet().stream().sorted(Comparator.comparing(e -> e.getKey()))
+        .forEach(e -> builder.addSteps(e.getValue().toProto(reset)));
+    channels.entrySet().stream().sorted(Comparator.comparing(e -> e.getKey())).forEach(e -> {
+      LongAdder[] counters = e.getValue();
+      builder.addChannels(ChannelMetricsProto.newBuilder().setPeerId(e.getKey().peerId)
+          .setChannelId(e.getKey().stepId)
+          .setPackets(reset ? counters[0].sumThenReset() : counters[0].sum())
+          .setBytes(reset ? counters[1].sumThenReset() : counters[1].sum()));
+    });
+    return builder.build();
+  }
+
+  static final class StepKey implements Comparable<StepKey> {
+    final int ptoId;
+    final int stepId;
+    final int peerId;
+
+    StepKey(int ptoId, int stepId, int peerId) {
+      this.ptoId = ptoId;
+      this.stepId = stepId;
+      this.peerId = peerId;
+    }
+
+    @Override
+    public int compareTo(StepKey o) {
+      int c = Integer.compare(ptoId, o.ptoId);
+      if (c == 0) {
+        c = Integer.compare(stepId, o.stepId);
+      }
+      return c == 0 ? Integer.compare(peerId, o.peerId) : c;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(ptoId, stepId, peerId);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof StepKey)) {
+        return false;
+      }
+      StepKey that = (StepKey) obj;
+      return ptoId == that.ptoId && stepId == that.stepId && peerId == that.peerId;
+    }
+  }
+}
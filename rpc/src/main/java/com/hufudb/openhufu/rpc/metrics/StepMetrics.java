@@ -0,0 +1,85 @@
+package com.hufudb.openhufu.rpc.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+import com.hufudb.openhufu.proto.DataPacket.StepMetricsProto;
+
+/**
+ * Traffic and latency of one (ptoId, stepId, peer)
+ */
+public class StepMetrics {
+  private final int ptoId;
+  private final int stepId;
+  private final int peerId;
+  private final LongAdder sentPackets;
+  private final LongAdder sentBytes;
+  private final LongAdder receivedPackets;
+  private final LongAdder receivedBytes;
+  private final LatencyHistogram sendLatency;
+  private final LatencyHistogram waitLatency;
+
+  StepMetrics(int ptoId, int stepId, int peerId) {
+    this.ptoId = ptoId;
+    this.stepId = stepId;
+    this.peerId = peerId;
+    this.sentPackets = new LongAdder();
+    this.sentBytes = new LongAdder();
+    this.receivedPackets = new LongAdder();
+    this.receivedBytes = new LongAdder();
+    this.sendLatency = new LatencyHistogram();
+    this.waitLatency = new LatencyHistogram();
+  }
+
+  public void recordSend(long bytes, long nanos) {
+    sentPackets.increment();
+    sentBytes.add(bytes);
+    sendLatency.record(nanos);
+  }
+
+  /**
+   * waitNanos is the time spent in blocking for the packet
+   */
+  public void recordReceive(long bytes, long waitNanos) {
+    receivedPackets.increment();
+    receivedBytes.add(bytes);
+    waitLatency.record(waitNanos);
+  }
+
+  public long getSentPackets() {
+    return sentPackets.sum();
+  }
+
+  public long getSentBytes() {
+    return sentBytes.sum();
+  }
+
+  public long getReceivedPackets() {
+    return receivedPackets.sum();
+  }
+
+  public long getReceivedBytes() {
+    return receivedBytes.sum();
+  }
+
+  public LatencyHistogram getSendLatency() {
+    return sendLatency;
+  }
+
+  public LatencyHistogram getWaitLatency() {
+    return waitLatency;
+  }
+
+  public StepMetricsProto toProto(boolean reset) {
+    StepMetricsProto.Builder builder =
+        StepMetricsProto.newBuilder().setPtoId(ptoId).setStepId(stepId).setPeerId(peerId);
+    if (reset) {
+      builder.setSentPackets(sentPackets.sumThenReset()).setSentBytes(sentBytes.sumThenReset())
+          .setReceivedPackets(receivedPackets.sumThenReset())
+          .setReceivedBytes(receivedBytes.sumThenReset());
+    } else {
+      builder.setSentPackets(sentPackets.sum()).setSentBytes(sentBytes.sum())
+          .setReceivedPackets(receivedPackets.sum()).setReceivedBytes(receivedBytes.sum());
+    }
+    return builder.setSendLatency(sendLatency.toProto(reset))
+        .setWaitLatency(waitLatency.toProto(reset)).build();
+  }
+}
@@ -4,16 +4,29 @@ import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.stream.Collectors;
 import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
 import com.hufudb.openhufu.proto.DataPacket.DataPacketProto;
 import com.hufudb.openhufu.proto.DataPacket.PayloadProto;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 
+/**
+ * payload is kept as ByteString, so that it is not copied between the protocols and the proto,
+ * use getPayloadByteStrings or getPayloadBuffers to read it without copy
+ */
 public final class DataPacket {
   private DataPacketHeader header;
-  private List<byte[]> payload;
+  private List<ByteString> payload;
 
+  /**
+   * the arrays are wrapped without copy, they must not be modified after this call
+   */
   public static DataPacket fromByteArrayList(DataPacketHeader header, List<byte[]> payload) {
+    return fromByteStringList(header,
+        payload.stream().map(p -> UnsafeByteOperations.unsafeWrap(p)).collect(Collectors.toList()));
+  }
+
+  public static DataPacket fromByteStringList(DataPacketHeader header, List<ByteString> payload) {
     DataPacket dataPacket = new DataPacket();
     dataPacket.header = header;
     dataPacket.payload = payload;
@@ -26,38 +39,49 @@ public final class DataPacket {
     return header;
   }
 
+  /**
+   * copy of the payload, prefer getPayloadByteStrings for large payload
+   */
   public List<byte[]> getPayload() {
+    return payload.stream().map(ByteString::toByteArray).collect(Collectors.toList());
+  }
+
+  public List<ByteString> getPayloadByteStrings() {
     return payload;
   }
 
+  // read-only views of the payload
+  public List<ByteBuffer> getPayloadBuffers() {
+    return payload.stream().map(ByteString::asReadOnlyByteBuffer).collect(Collectors.toList());
+  }
+
+  public int getPayloadSize() {
+    return payload.size();
+  }
+
   public int getHeaderByteLength() {
     return 32;
   }
 
   public int getPayloadByteLength() {
-    return payload.stream().map(p -> p.length).reduce(0,
+    return payload.stream().map(p -> p.size()).reduce(0,
         (totalLength, length) -> totalLength + length);
   }
 
   public DataPacketProto toProto() {
     return DataPacketProto.newBuilder().setHeaderProto(header.toProto())
-        .setPayloadProto(PayloadProto.newBuilder()
-            .addAllPayloadBytes(
-                payload.stream().map(p -> ByteString.copyFrom(p)).collect(Collectors.toList()))
-            .build())
+        .setPayloadProto(PayloadProto.newBuilder().addAllPayloadBytes(payload).build())
         .build();
   }
 
   public static DataPacket fromProto(DataPacketProto proto) {
-    return DataPacket.fromByteArrayList(DataPacketHeader.fromProto(proto.getHeaderProto()),
-        proto.getPayloadProto().getPayloadBytesList().stream().map(p -> p.toByteArray())
-            .collect(Collectors.toList()));
+    return DataPacket.fromByteStringList(DataPacketHeader.fromProto(proto.getHeaderProto()),
+        proto.getPayloadProto().getPayloadBytesList());
   }
 
   @Override
   public int hashCode() {
-    return new HashCodeBuilder().append(header)
-        .append(payload.stream().map(ByteBuffer::wrap).collect(Collectors.toList())).toHashCode();
+    return new HashCodeBuilder().append(header).append(payload).toHashCode();
   }
 
   @Override
@@ -70,9 +94,7 @@ public final class DataPacket {
     }
     DataPacket that = (DataPacket) obj;
     return new EqualsBuilder().append(this.header, that.header)
-        .append(this.payload.stream().map(ByteBuffer::wrap).collect(Collectors.toList()),
-            that.payload.stream().map(ByteBuffer::wrap).collect(Collectors.toList()))
-        .isEquals();
+        .append(this.payload, that.payload).isEquals();
   }
 
   @Override
@@ -0,0 +1,21 @@
+package com.hufudb.openhufu.rpc.concurrent;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class CancelledTasksTest {
+  @Test
+  public void cancelledTasksTest() {
+    CancelledTasks tasks = new CancelledTasks(2);
+    assertTrue(tasks.add(1));
+    assertFalse(tasks.add(1));
+    assertTrue(tasks.add(2));
+    assertTrue(tasks.contains(1));
+    assertTrue(tasks.add(3));
+    // the eldest task is forgotten
+    assertFalse(tasks.contains(1));
+    assertTrue(tasks.contains(2));
+    assertTrue(tasks.contains(3));
+  }
+}
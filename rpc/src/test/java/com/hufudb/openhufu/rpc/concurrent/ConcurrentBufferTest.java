@@ -1,10 +1,12 @@
 package com.hufudb.openhufu.rpc.concurrent;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -31,8 +33,78 @@ public class ConcurrentBufferTest {
     for (Future<Boolean> future : futures) {
       assertTrue(future.get());
     }
-    assertFalse(buffer.put(100, 100));
+    // the buffer grows beyond its initial capacity
+    assertTrue(buffer.put(100, 100));
+    assertFalse("Error when putting a duplicate key", buffer.put(100, 101));
     assertTrue(buffer.pop(1) == 1);
+    assertNull(buffer.pop(1));
+    assertTrue(buffer.pop(100) == 100);
     assertNull(buffer.pop(100));
+    assertNull(buffer.pop(200));
+    threadpool.shutdown();
+  }
+
+  @Test
+  public void blockingPopTest() throws Exception {
+    ConcurrentBuffer<Integer, Integer> buffer = new ConcurrentBuffer<>();
+    ExecutorService threadpool = Executors.newFixedThreadPool(8);
+    ExecutorService producers = Executors.newFixedThreadPool(4);
+    final int n = 1000;
+    List<Future<Integer>> consumers = new ArrayList<>();
+    for (int i = 0; i < n; ++i) {
+      final int key = i;
+      consumers.add(threadpool.submit(() -> buffer.blockingPop(key)));
+    }
+    for (int i = n - 1; i >= 0; --i) {
+      final int key = i;
+      producers.submit(() -> buffer.put(key, key * 2));
+    }
+    for (int i = 0; i < n; ++i) {
+      assertEquals(i * 2, (int) consumers.get(i).get());
+    }
+    assertNull(buffer.pop(0));
+    threadpool.shutdown();
+    producers.shutdown();
+  }
+
+  @Test
+  public void cancelTest() throws Exception {
+    ConcurrentBuffer<Integer, Integer> buffer = new ConcurrentBuffer<>();
+    ExecutorService threadpool = Executors.newFixedThreadPool(2);
+    buffer.put(1, 1);
+    buffer.put(3, 3);
+    buffer.put(4, 4);
+    Future<Integer> waiter = threadpool.submit(() -> buffer.blockingPop(5));
+    // drop the odd keys and wake up the waiter of 5 once it is waiting
+    int count = 0;
+    while (count < 3) {
+      count += buffer.cancel(k -> k % 2 == 1, new CancellationException("cancel odd"));
+      Thread.sleep(1);
+    }
+    assertNull(waiter.get());
+    assertNull(buffer.pop(1));
+    assertTrue(buffer.pop(4) == 4);
+    // waiters of cancelled keys return at once
+    assertNull(buffer.blockingPop(7, k -> k % 2 == 1));
+    assertTrue(buffer.put(7, 7));
+    threadpool.shutdown();
+  }
+
+  @Test
+  public void latePutTest() throws Exception {
+    ConcurrentBuffer<Integer, Integer> buffer = new ConcurrentBuffer<>(3, 10);
+    assertNull(buffer.blockingPop(1));
+    // the value after the timeout is dropped instead of staying in the buffer
+    assertTrue(buffer.put(1, 1));
+    assertNull(buffer.pop(1));
+    // so is the value of an interrupted waiter
+    Thread.currentThread().interrupt();
+    assertNull(buffer.blockingPop(2));
+    assertTrue(Thread.interrupted());
+    assertTrue(buffer.put(2, 2));
+    assertNull(buffer.pop(2));
+    // other keys are kept
+    assertTrue(buffer.put(3, 3));
+    assertTrue(buffer.pop(3) == 3);
   }
 }
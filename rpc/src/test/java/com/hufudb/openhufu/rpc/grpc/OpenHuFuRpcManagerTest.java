@@ -2,14 +2,21 @@ package com.hufudb.openhufu.rpc.grpc;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import com.google.common.collect.ImmutableList;
 import com.hufudb.openhufu.rpc.Party;
+import com.hufudb.openhufu.rpc.grpc.pipe.PipeConfig;
 import com.hufudb.openhufu.rpc.utils.DataPacket;
 import com.hufudb.openhufu.rpc.utils.DataPacketHeader;
 import org.junit.Rule;
@@ -110,4 +117,197 @@ public class OpenHuFuRpcManagerTest {
     rpc1.disconnect();
     rpc0.disconnect();
   }
+
+  @Test
+  public void openhufuUnaryRpcTest() throws Exception {
+    String ownerName0 = InProcessServerBuilder.generateName();
+    String ownerName1 = InProcessServerBuilder.generateName();
+    Party owner0 = new OpenHuFuOwnerInfo(0, ownerName0);
+    Party owner1 = new OpenHuFuOwnerInfo(1, ownerName1);
+    List<Party> parties = ImmutableList.of(owner0, owner1);
+    List<Channel> channels = Arrays.asList(
+      grpcCleanup.register(InProcessChannelBuilder.forName(ownerName0).directExecutor().build()),
+      grpcCleanup.register(InProcessChannelBuilder.forName(ownerName1).directExecutor().build())
+    );
+    PipeConfig config = new PipeConfig();
+    config.streaming = false;
+    OpenHuFuRpcManager manager = new OpenHuFuRpcManager(parties, channels, config);
+    OpenHuFuRpc rpc0 = (OpenHuFuRpc) manager.getRpc(0);
+    OpenHuFuRpc rpc1 = (OpenHuFuRpc) manager.getRpc(1);
+    grpcCleanup.register(InProcessServerBuilder.forName(ownerName0).directExecutor().addService(rpc0.getgRpcService()).build().start());
+    grpcCleanup.register(InProcessServerBuilder.forName(ownerName1).directExecutor().addService(rpc1.getgRpcService()).build().start());
+    rpc0.connect();
+    rpc1.connect();
+    DataPacket packet0 = generateDataPacket(0, 1);
+    DataPacket packet1 = generateDataPacket(1, 0);
+    rpc0.send(packet0);
+    rpc1.send(packet1);
+    assertTrue("rpc0 receive wrong message", rpc0.receive(packet1.getHeader()).equals(packet1));
+    assertTrue("rpc1 receive wrong message", rpc1.receive(packet0.getHeader()).equals(packet0));
+    rpc0.disconnect();
+    rpc1.disconnect();
+  }
+
+  @Test
+  public void openhufuBatchRpcTest() throws Exception {
+    String ownerName0 = InProcessServerBuilder.generateName();
+    String ownerName1 = InProcessServerBuilder.generateName();
+    Party owner0 = new OpenHuFuOwnerInfo(0, ownerName0);
+    Party owner1 = new OpenHuFuOwnerInfo(1, ownerName1);
+    List<Party> parties = ImmutableList.of(owner0, owner1);
+    List<Channel> channels = Arrays.asList(
+      grpcCleanup.register(InProcessChannelBuilder.forName(ownerName0).directExecutor().build()),
+      grpcCleanup.register(InProcessChannelBuilder.forName(ownerName1).directExecutor().build())
+    );
+    PipeConfig config = new PipeConfig();
+    config.batchDelayMs = 5;
+    // a batch holds about 3 packets
+    config.batchBytes = 128;
+    OpenHuFuRpcManager manager = new OpenHuFuRpcManager(parties, channels, config);
+    OpenHuFuRpc rpc0 = (OpenHuFuRpc) manager.getRpc(0);
+    OpenHuFuRpc rpc1 = (OpenHuFuRpc) manager.getRpc(1);
+    grpcCleanup.register(InProcessServerBuilder.forName(ownerName0).directExecutor().addService(rpc0.getgRpcService()).build().start());
+    grpcCleanup.register(InProcessServerBuilder.forName(ownerName1).directExecutor().addService(rpc1.getgRpcService()).build().start());
+    rpc0.connect();
+    rpc1.connect();
+    List<DataPacket> packets = new ArrayList<>();
+    for (int i = 0; i < 10; ++i) {
+      DataPacketHeader header = new DataPacketHeader(1, 2, i, 0, 1);
+      DataPacket packet = DataPacket.fromByteArrayList(header, generatePayloads(2, 10));
+      packets.add(packet);
+      rpc0.send(packet);
+    }
+    for (DataPacket packet : packets) {
+      assertTrue("rpc1 receive wrong message", rpc1.receive(packet.getHeader()).equals(packet));
+    }
+    assertEquals(10, rpc0.getSendDataPacketNum(false));
+    assertEquals(20, rpc0.getMetrics().get(2, 9, 1).getSentBytes());
+    assertEquals(1, rpc1.getMetrics().get(2, 9, 0).getReceivedPackets());
+    rpc0.disconnect();
+    rpc1.disconnect();
+  }
+
+  @Test
+  public void openhufuCancelTest() throws Exception {
+    String ownerName0 = InProcessServerBuilder.generateName();
+    String ownerName1 = InProcessServerBuilder.generateName();
+    Party owner0 = new OpenHuFuOwnerInfo(0, ownerName0);
+    Party owner1 = new OpenHuFuOwnerInfo(1, ownerName1);
+    List<Party> parties = ImmutableList.of(owner0, owner1);
+    List<Channel> channels = Arrays.asList(
+      grpcCleanup.register(InProcessChannelBuilder.forName(ownerName0).directExecutor().build()),
+      grpcCleanup.register(InProcessChannelBuilder.forName(ownerName1).directExecutor().build())
+    );
+    OpenHuFuRpcManager manager = new OpenHuFuRpcManager(parties, channels);
+    OpenHuFuRpc rpc0 = (OpenHuFuRpc) manager.getRpc(0);
+    OpenHuFuRpc rpc1 = (OpenHuFuRpc) manager.getRpc(1);
+    grpcCleanup.register(InProcessServerBuilder.forName(ownerName0).directExecutor().addService(rpc0.getgRpcService()).build().start());
+    grpcCleanup.register(InProcessServerBuilder.forName(ownerName1).directExecutor().addService(rpc1.getgRpcService()).build().start());
+    rpc0.connect();
+    rpc1.connect();
+    ExecutorService threadpool = Executors.newSingleThreadExecutor();
+    DataPacket packet0 = generateDataPacket(0, 1);
+    Future<DataPacket> waiter = threadpool.submit(() -> rpc1.receive(packet0.getHeader()));
+    // rpc1 waits for a packet of task 1 until rpc0 cancels the task
+    rpc0.cancel(1);
+    assertNull(waiter.get(10, TimeUnit.SECONDS));
+    assertNull(rpc1.receive(packet0.getHeader()));
+    rpc0.send(packet0);
+    DataPacket other = DataPacket.fromByteArrayList(new DataPacketHeader(2, 2, 3, 0, 1), generatePayloads(1, 4));
+    rpc0.send(other);
+    assertTrue(rpc1.receive(other.getHeader()).equals(other));
+    threadpool.shutdown();
+    rpc0.disconnect();
+    rpc1.disconnect();
+  }
+
+  @Test
+  public void openhufuChannelPoolTest() throws Exception {
+    String ownerName0 = InProcessServerBuilder.generateName();
+    String ownerName1 = InProcessServerBuilder.generateName();
+    Party owner0 = new OpenHuFuOwnerInfo(0, ownerName0);
+    Party owner1 = new OpenHuFuOwnerInfo(1, ownerName1);
+    List<Party> parties = ImmutableList.of(owner0, owner1);
+    PipeConfig config = new PipeConfig();
+    config.channels = 3;
+    // each client opens its own channel
+    List<Channel> opened = new ArrayList<>();
+    OpenHuFuRpcManager manager = new OpenHuFuRpcManager(parties, p -> {
+      Channel ch = grpcCleanup.register(
+          InProcessChannelBuilder.forName(p.getPartyName()).directExecutor().build());
+      opened.add(ch);
+      return ch;
+    }, config);
+    // two parties with 2 peers each (including itself), 3 channels for each peer
+    assertEquals(12, opened.size());
+    assertEquals(12, new HashSet<>(opened).size());
+    OpenHuFuRpc rpc0 = (OpenHuFuRpc) manager.getRpc(0);
+    OpenHuFuRpc rpc1 = (OpenHuFuRpc) manager.getRpc(1);
+    grpcCleanup.register(InProcessServerBuilder.forName(ownerName0).directExecutor().addService(rpc0.getgRpcService()).build().start());
+    grpcCleanup.register(InProcessServerBuilder.forName(ownerName1).directExecutor().addService(rpc1.getgRpcService()).build().start());
+    rpc0.connect();
+    rpc1.connect();
+    List<DataPacket> packets = new ArrayList<>();
+    for (int taskId = 0; taskId < 6; ++taskId) {
+      DataPacket packet = DataPacket.fromByteArrayList(new DataPacketHeader(taskId, 2, 3, 0, 1),
+          generatePayloads(1, 8));
+      packets.add(packet);
+      rpc0.send(packet);
+    }
+    for (DataPacket packet : packets) {
+      assertTrue("rpc1 receive wrong message", rpc1.receive(packet.getHeader()).equals(packet));
+    }
+    // each channel carries the packets of two tasks
+    for (int channelId = 0; channelId < 3; ++channelId) {
+      assertEquals(2, rpc0.getMetrics().getChannelPackets(1, channelId));
+    }
+    assertEquals(3, rpc0.getMetrics().toProto(false).getChannelsCount());
+    rpc0.disconnect();
+    rpc1.disconnect();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void openhufuSingleChannelPoolTest() {
+    // clients do not share a given channel
+    PipeConfig config = new PipeConfig();
+    config.channels = 3;
+    new OpenHuFuRpcManager(ImmutableList.of(new OpenHuFuOwnerInfo(0, "owner0")),
+        ImmutableList.of(grpcCleanup.register(
+            InProcessChannelBuilder.forName("owner0").directExecutor().build())),
+        config);
+  }
+
+  @Test
+  public void openhufuCompressionRpcTest() throws Exception {
+    for (boolean streaming : new boolean[] {true, false}) {
+      String ownerName0 = InProcessServerBuilder.generateName();
+      String ownerName1 = InProcessServerBuilder.generateName();
+      Party owner0 = new OpenHuFuOwnerInfo(0, ownerName0);
+      Party owner1 = new OpenHuFuOwnerInfo(1, ownerName1);
+      List<Party> parties = ImmutableList.of(owner0, owner1);
+      List<Channel> channels = Arrays.asList(
+        grpcCleanup.register(InProcessChannelBuilder.forName(ownerName0).directExecutor().build()),
+        grpcCleanup.register(InProcessChannelBuilder.forName(ownerName1).directExecutor().build())
+      );
+      PipeConfig config = new PipeConfig();
+      config.streaming = streaming;
+      config.compressionThreshold = 64;
+      OpenHuFuRpcManager manager = new OpenHuFuRpcManager(parties, channels, config);
+      OpenHuFuRpc rpc0 = (OpenHuFuRpc) manager.getRpc(0);
+      OpenHuFuRpc rpc1 = (OpenHuFuRpc) manager.getRpc(1);
+      grpcCleanup.register(InProcessServerBuilder.forName(ownerName0).directExecutor().addService(rpc0.getgRpcService()).build().start());
+      grpcCleanup.register(InProcessServerBuilder.forName(ownerName1).directExecutor().addService(rpc1.getgRpcService()).build().start());
+      rpc0.connect();
+      rpc1.connect();
+      // the small packet is sent as is, the large one with gzip
+      DataPacket small = DataPacket.fromByteArrayList(new DataPacketHeader(1, 2, 3, 0, 1), generatePayloads(1, 8));
+      DataPacket large = DataPacket.fromByteArrayList(new DataPacketHeader(1, 2, 4, 0, 1), generatePayloads(4, 1024));
+      rpc0.send(small);
+      rpc0.send(large);
+      assertTrue("rpc1 receive wrong message", rpc1.receive(small.getHeader()).equals(small));
+      assertTrue("rpc1 receive wrong message", rpc1.receive(large.getHeader()).equals(large));
+      rpc0.disconnect();
+      rpc1.disconnect();
+    }
+  }
 }
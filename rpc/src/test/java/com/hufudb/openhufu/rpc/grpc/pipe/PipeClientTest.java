@@ -0,0 +1,188 @@
+package com.hufudb.openhufu.rpc.grpc.pipe;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.hufudb.openhufu.proto.DataPacket.DataPacketProto;
+import com.hufudb.openhufu.proto.DataPacket.HeaderProto;
+import com.hufudb.openhufu.proto.DataPacket.ResponseProto;
+import com.hufudb.openhufu.proto.PipeGrpc;
+import com.hufudb.openhufu.rpc.concurrent.ConcurrentBuffer;
+import com.hufudb.openhufu.rpc.utils.DataPacket;
+import com.hufudb.openhufu.rpc.utils.DataPacketHeader;
+import io.grpc.ManagedChannel;
+import io.grpc.Status;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import io.grpc.testing.GrpcCleanupRule;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class PipeClientTest {
+  @Rule
+  public final GrpcCleanupRule grpcCleanup = new GrpcCleanupRule();
+
+  static DataPacketProto packet(int stepId) {
+    return DataPacketProto.newBuilder()
+        .setHeaderProto(HeaderProto.newBuilder().setTaskId(1).setStepId(stepId)).build();
+  }
+
+  // records the stepIds taken by the unary call and acked on the stream
+  static class RecordingPipe extends PipeGrpc.PipeImplBase {
+    final List<Integer> unary = Collections.synchronizedList(new ArrayList<>());
+    final List<Integer> streamed = Collections.synchronizedList(new ArrayList<>());
+
+    @Override
+    public void send(DataPacketProto request, StreamObserver<ResponseProto> responseObserver) {
+      unary.add(request.getHeaderProto().getStepId());
+      responseObserver.onNext(ResponseProto.getDefaultInstance());
+      responseObserver.onCompleted();
+    }
+  }
+
+  PipeClient connect(PipeGrpc.PipeImplBase service) throws Exception {
+    String name = InProcessServerBuilder.generateName();
+    grpcCleanup.register(
+        InProcessServerBuilder.forName(name).directExecutor().addService(service).build().start());
+    PipeClient client = new PipeClient(grpcCleanup
+        .register(InProcessChannelBuilder.forName(name).directExecutor().build()));
+    client.connect();
+    return client;
+  }
+
+  @Test
+  public void testUnimplementedStream() throws Exception {
+    // a peer without the stream method, the packet sent on the stream is resent by unary call
+    RecordingPipe pipe = new RecordingPipe();
+    PipeClient client = connect(pipe);
+    for (int i = 0; i < 5; ++i) {
+      client.send(packet(i));
+    }
+    assertEquals(ImmutableList.of(0, 1, 2, 3, 4), pipe.unary);
+    client.close();
+  }
+
+  @Test
+  public void testBrokenStream() throws Exception {
+    // each stream acks two packets and fails on the third without taking it
+    RecordingPipe pipe = new RecordingPipe() {
+      @Override
+      public StreamObserver<DataPacketProto> stream(StreamObserver<ResponseProto> out) {
+        return new StreamObserver<DataPacketProto>() {
+          long acked = 0;
+
+          @Override
+          public void onNext(DataPacketProto request) {
+            if (acked == 2) {
+              out.onError(Status.UNAVAILABLE.asRuntimeException());
+              return;
+            }
+            streamed.add(request.getHeaderProto().getStepId());
+            out.onNext(ResponseProto.newBuilder().setAcked(++acked).build());
+          }
+
+          @Override
+          public void onError(Throwable t) {}
+
+          @Override
+          public void onCompleted() {
+            out.onCompleted();
+          }
+        };
+      }
+    };
+    PipeClient client = connect(pipe);
+    for (int i = 0; i < 6; ++i) {
+      client.send(packet(i));
+    }
+    client.close();
+    assertEquals(ImmutableList.of(0, 1, 3, 4), pipe.streamed);
+    assertEquals(ImmutableList.of(2, 5), pipe.unary);
+  }
+
+  @Test
+  public void testResendDelivered() throws Exception {
+    // the stream delivers three packets, which are popped at once, and fails without acking
+    ConcurrentBuffer<DataPacketHeader, DataPacket> buffer = new ConcurrentBuffer<>();
+    PipeService service = new PipeService(ImmutableMap.of(0, buffer));
+    List<Integer> popped = Collections.synchronizedList(new ArrayList<>());
+    PipeGrpc.PipeImplBase pipe = new PipeGrpc.PipeImplBase() {
+      @Override
+      public void send(DataPacketProto request, StreamObserver<ResponseProto> out) {
+        service.send(request, out);
+      }
+
+      @Override
+      public StreamObserver<DataPacketProto> stream(StreamObserver<ResponseProto> out) {
+        return new StreamObserver<DataPacketProto>() {
+          int taken = 0;
+
+          @Override
+          public void onNext(DataPacketProto request) {
+            if (taken == 3) {
+              out.onError(Status.UNAVAILABLE.asRuntimeException());
+              return;
+            }
+            service.put(request);
+            assertNotNull(buffer.pop(DataPacket.fromProto(request).getHeader()));
+            popped.add(request.getHeaderProto().getStepId());
+            taken++;
+          }
+
+          @Override
+          public void onError(Throwable t) {}
+
+          @Override
+          public void onCompleted() {
+            out.onCompleted();
+          }
+        };
+      }
+    };
+    PipeClient client = connect(pipe);
+    for (int i = 0; i < 4; ++i) {
+      client.send(packet(i));
+    }
+    client.close();
+    assertEquals(ImmutableList.of(0, 1, 2), popped);
+    // the resent packets 0 to 2 are dropped, packet 3 is delivered by the unary call
+    for (int i = 0; i < 3; ++i) {
+      assertNull(buffer.pop(DataPacket.fromProto(packet(i)).getHeader()));
+    }
+    assertNotNull(buffer.pop(DataPacket.fromProto(packet(3)).getHeader()));
+  }
+
+  @Test
+  public void testCloseOwnChannel() throws Exception {
+    // the client opens its channel on connect and shuts it down on close, without a peer
+    PipeClient client = new PipeClient("localhost:1");
+    assertNull(client.getChannel());
+    client.connect();
+    ManagedChannel first = (ManagedChannel) client.getChannel();
+    client.close();
+    assertTrue(first.isShutdown());
+    assertNull(client.getChannel());
+    // connect again with a new channel
+    client.connect();
+    ManagedChannel second = (ManagedChannel) client.getChannel();
+    assertNotSame(first, second);
+    client.close();
+    assertTrue(second.isShutdown());
+    // a given channel is left to its owner
+    ManagedChannel given = grpcCleanup.register(
+        InProcessChannelBuilder.forName(InProcessServerBuilder.generateName()).build());
+    PipeClient shared = new PipeClient(given);
+    shared.connect();
+    shared.close();
+    assertFalse(given.isShutdown());
+  }
+}
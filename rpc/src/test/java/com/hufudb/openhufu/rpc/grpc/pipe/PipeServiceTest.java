@@ -0,0 +1,113 @@
+package com.hufudb.openhufu.rpc.grpc.pipe;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.hufudb.openhufu.proto.DataPacket.DataPacketProto;
+import com.hufudb.openhufu.proto.DataPacket.ResponseProto;
+import com.hufudb.openhufu.proto.PipeGrpc;
+import com.hufudb.openhufu.rpc.concurrent.ConcurrentBuffer;
+import com.hufudb.openhufu.rpc.utils.DataPacket;
+import com.hufudb.openhufu.rpc.utils.DataPacketHeader;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import io.grpc.testing.GrpcCleanupRule;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class PipeServiceTest {
+  @Rule
+  public final GrpcCleanupRule grpcCleanup = new GrpcCleanupRule();
+
+  static DataPacketProto packet(int stepId, long clientId, long seq) {
+    return PipeClientTest.packet(stepId).toBuilder().setClientId(clientId).setSeq(seq).build();
+  }
+
+  static DataPacketHeader header(DataPacketProto packet) {
+    return DataPacket.fromProto(packet).getHeader();
+  }
+
+  @Test
+  public void testDropDelivered() {
+    ConcurrentBuffer<DataPacketHeader, DataPacket> buffer = new ConcurrentBuffer<>();
+    PipeService service = new PipeService(ImmutableMap.of(0, buffer));
+    DataPacketProto p = packet(1, 7, 1);
+    assertEquals(0, service.put(p).getStatus());
+    assertNotNull(buffer.pop(header(p)));
+    // resent after it is popped, dropped without a new buffer entry
+    assertEquals(0, service.put(p).getStatus());
+    assertNull(buffer.pop(header(p)));
+    // the same sequence number of another client
+    DataPacketProto q = packet(2, 8, 1);
+    assertEquals(0, service.put(q).getStatus());
+    assertNotNull(buffer.pop(header(q)));
+    // packets without sequence numbers are not tracked
+    DataPacketProto r = PipeClientTest.packet(3);
+    assertEquals(0, service.put(r).getStatus());
+    assertNotNull(buffer.pop(header(r)));
+    assertEquals(0, service.put(r).getStatus());
+    assertNotNull(buffer.pop(header(r)));
+  }
+
+  @Test
+  public void testDeliveredWindow() {
+    DeliveredPackets delivered = new DeliveredPackets(2, 4);
+    assertTrue(delivered.deliver(1, 2));
+    assertTrue(delivered.deliver(1, 3));
+    assertTrue(delivered.deliver(1, 1));
+    assertFalse(delivered.deliver(1, 2));
+    assertFalse(delivered.deliver(1, 3));
+    // 4 is missing, 5 and 6 wait above it
+    assertTrue(delivered.deliver(1, 5));
+    assertTrue(delivered.deliver(1, 6));
+    assertFalse(delivered.deliver(1, 6));
+    assertTrue(delivered.deliver(1, 4));
+    assertFalse(delivered.deliver(1, 4));
+    // the gaps below the window are given up
+    assertTrue(delivered.deliver(1, 20));
+    assertFalse(delivered.deliver(1, 10));
+    assertTrue(delivered.deliver(1, 17));
+    // the least recently used client is forgotten
+    assertTrue(delivered.deliver(2, 1));
+    assertTrue(delivered.deliver(3, 1));
+    assertTrue(delivered.deliver(1, 1));
+  }
+
+  @Test
+  public void testCumulativeAck() throws Exception {
+    ConcurrentBuffer<DataPacketHeader, DataPacket> buffer = new ConcurrentBuffer<>();
+    String name = InProcessServerBuilder.generateName();
+    grpcCleanup.register(InProcessServerBuilder.forName(name).directExecutor()
+        .addService(new PipeService(ImmutableMap.of(0, buffer))).build().start());
+    PipeGrpc.PipeStub stub = PipeGrpc.newStub(grpcCleanup
+        .register(InProcessChannelBuilder.forName(name).directExecutor().build()));
+    List<Long> acks = Collections.synchronizedList(new ArrayList<>());
+    StreamObserver<DataPacketProto> out = stub.stream(new StreamObserver<ResponseProto>() {
+      @Override
+      public void onNext(ResponseProto resp) {
+        acks.add(resp.getAcked());
+      }
+
+      @Override
+      public void onError(Throwable t) {}
+
+      @Override
+      public void onCompleted() {}
+    });
+    final int num = 2 * PipeService.ACK_INTERVAL + 3;
+    for (int i = 0; i < num; ++i) {
+      out.onNext(packet(i, 1, i + 1));
+    }
+    out.onCompleted();
+    assertEquals(ImmutableList.of((long) PipeService.ACK_INTERVAL,
+        2L * PipeService.ACK_INTERVAL, (long) num), acks);
+  }
+}
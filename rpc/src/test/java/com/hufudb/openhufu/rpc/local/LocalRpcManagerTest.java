@@ -0,0 +1,63 @@
+package com.hufudb.openhufu.rpc.local;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import java.util.ArrayList;
+import java.util.List;
+import com.google.common.collect.ImmutableList;
+import com.hufudb.openhufu.rpc.Party;
+import com.hufudb.openhufu.rpc.grpc.OpenHuFuOwnerInfo;
+import com.hufudb.openhufu.rpc.utils.DataPacket;
+import com.hufudb.openhufu.rpc.utils.DataPacketHeader;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class LocalRpcManagerTest {
+  DataPacket generateDataPacket(int senderId, int receiverId) {
+    DataPacketHeader header = new DataPacketHeader(1, 2, 3, senderId, receiverId);
+    List<byte[]> payloads = new ArrayList<>();
+    payloads.add(new byte[] {1, 2, 3});
+    payloads.add(new byte[] {4, 5});
+    return DataPacket.fromByteArrayList(header, payloads);
+  }
+
+  @Test
+  public void localRpcTest() {
+    Party owner0 = new OpenHuFuOwnerInfo(0, "owner0");
+    Party owner1 = new OpenHuFuOwnerInfo(1, "owner1");
+    Party owner2 = new OpenHuFuOwnerInfo(2, "owner2");
+    List<Party> parties = ImmutableList.of(owner0, owner1);
+    LocalRpcManager manager = new LocalRpcManager(parties);
+    assertEquals(2, manager.getPartyNum());
+    LocalRpc rpc0 = (LocalRpc) manager.getRpc(0);
+    LocalRpc rpc1 = (LocalRpc) manager.getRpc(1);
+    assertFalse("Error when adding an existing party", rpc0.addParty(owner1));
+    assertFalse("Error when removing an unexisting party", rpc0.removeParty(owner2));
+    rpc0.connect();
+    rpc1.connect();
+    DataPacket packet0 = generateDataPacket(0, 1);
+    DataPacket packet1 = generateDataPacket(1, 0);
+    DataPacket packet00 = generateDataPacket(0, 0);
+    rpc0.send(packet0);
+    rpc1.send(packet1);
+    rpc0.send(packet00);
+    // packets are handed over without copy
+    assertSame(packet1, rpc0.receive(packet1.getHeader()));
+    assertSame(packet0, rpc1.receive(packet0.getHeader()));
+    assertSame(packet00, rpc0.receive(packet00.getHeader()));
+    rpc0.send(generateDataPacket(0, 2));
+    rpc0.send(generateDataPacket(1, 0));
+    assertEquals(2, rpc0.getSendDataPacketNum(true));
+    assertEquals(10, rpc0.getPayloadByteLength(true));
+    assertEquals(0, rpc0.getSendDataPacketNum(false));
+    assertTrue(rpc0.removeParty(owner1));
+    rpc0.send(generateDataPacket(0, 1));
+    assertEquals(0, rpc0.getSendDataPacketNum(false));
+    rpc0.disconnect();
+    rpc1.disconnect();
+  }
+}
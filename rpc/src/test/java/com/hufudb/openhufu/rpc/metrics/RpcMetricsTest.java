@@ -0,0 +1,55 @@
+package com.hufudb.openhufu.rpc.metrics;
+
+import static org.junit.Assert.assertEquals;
+import com.hufudb.openhufu.proto.DataPacket.HistogramProto;
+import com.hufudb.openhufu.proto.DataPacket.RpcMetricsProto;
+import com.hufudb.openhufu.proto.DataPacket.StepMetricsProto;
+import com.hufudb.openhufu.rpc.utils.DataPacketHeader;
+import org.junit.Test;
+
+public class RpcMetricsTest {
+  @Test
+  public void histogramTest() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(0);
+    histogram.record(1);
+    histogram.record(5);
+    histogram.record(7);
+    histogram.record(1024);
+    assertEquals(5, histogram.getCount());
+    assertEquals(1037, histogram.getSumNanos());
+    assertEquals(1024, histogram.getMaxNanos());
+    HistogramProto proto = histogram.toProto(true);
+    assertEquals(11, proto.getBucketsCount());
+    assertEquals(2, proto.getBuckets(0));
+    assertEquals(2, proto.getBuckets(2));
+    assertEquals(1, proto.getBuckets(10));
+    assertEquals(0, histogram.getCount());
+    assertEquals(0, histogram.toProto(false).getBucketsCount());
+  }
+
+  @Test
+  public void rpcMetricsTest() {
+    RpcMetrics metrics = new RpcMetrics();
+    metrics.recordSend(new DataPacketHeader(1, 2, 1, 0, 1), 10, 100);
+    metrics.recordSend(new DataPacketHeader(2, 2, 1, 0, 1), 20, 300);
+    metrics.recordSend(new DataPacketHeader(1, 2, 0, 0, 2), 5, 100);
+    metrics.recordReceive(new DataPacketHeader(1, 2, 1, 2, 0), 8, 1000);
+    assertEquals(3, metrics.getSentPackets(false));
+    assertEquals(35, metrics.getSentBytes(true));
+    assertEquals(0, metrics.getSentBytes(false));
+    RpcMetricsProto proto = metrics.toProto(false);
+    assertEquals(3, proto.getStepsCount());
+    // steps are ordered by (ptoId, stepId, peerId)
+    StepMetricsProto first = proto.getSteps(0);
+    assertEquals(0, first.getStepId());
+    assertEquals(2, first.getPeerId());
+    StepMetricsProto second = proto.getSteps(1);
+    assertEquals(2, second.getSentPackets());
+    assertEquals(30, second.getSentBytes());
+    assertEquals(400, second.getSendLatency().getSumNanos());
+    StepMetricsProto third = proto.getSteps(2);
+    assertEquals(1, third.getReceivedPackets());
+    assertEquals(1000, third.getWaitLatency().getMaxNanos());
+  }
+}
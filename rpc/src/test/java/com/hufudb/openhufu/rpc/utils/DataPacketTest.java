@@ -0,0 +1,40 @@
+package com.hufudb.openhufu.rpc.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import java.nio.ByteBuffer;
+import java.util.List;
+import com.google.common.collect.ImmutableList;
+import com.google.protobuf.ByteString;
+import com.hufudb.openhufu.proto.DataPacket.DataPacketProto;
+import org.junit.Test;
+
+public class DataPacketTest {
+  @Test
+  public void payloadTest() {
+    DataPacketHeader header = new DataPacketHeader(1, 2, 3, 0, 1);
+    byte[] b0 = new byte[] {1, 2, 3};
+    byte[] b1 = new byte[] {4, 5};
+    DataPacket packet = DataPacket.fromByteArrayList(header, ImmutableList.of(b0, b1));
+    assertEquals(2, packet.getPayloadSize());
+    assertEquals(5, packet.getPayloadByteLength());
+    DataPacketProto proto = packet.toProto();
+    // the proto shares the ByteStrings of the packet
+    assertSame(packet.getPayloadByteStrings().get(0), proto.getPayloadProto().getPayloadBytes(0));
+    DataPacket parsed = DataPacket.fromProto(proto);
+    assertTrue(parsed.equals(packet));
+    assertEquals(packet.hashCode(), parsed.hashCode());
+    List<byte[]> copy = parsed.getPayload();
+    assertArrayEquals(b0, copy.get(0));
+    copy.get(0)[0] = 9;
+    assertEquals(1, parsed.getPayloadByteStrings().get(0).byteAt(0));
+    ByteBuffer view = parsed.getPayloadBuffers().get(1);
+    assertTrue(view.isReadOnly());
+    assertEquals(ByteBuffer.wrap(b1), view);
+    DataPacket fromByteString = DataPacket.fromByteStringList(header,
+        ImmutableList.of(ByteString.copyFrom(b0), ByteString.copyFrom(b1)));
+    assertTrue(fromByteString.equals(packet));
+  }
+}